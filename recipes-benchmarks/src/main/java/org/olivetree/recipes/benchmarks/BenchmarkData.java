@@ -0,0 +1,62 @@
+package org.olivetree.recipes.benchmarks;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Test data and throwaway databases shared by the benchmarks
+final class BenchmarkData {
+    private static final String[] WORDS = {"tomato", "basil", "garlic", "onion", "pasta", "rice", "lemon", "chicken",
+            "butter", "pepper", "olive", "oil", "bread", "soup", "salad", "roasted", "baked", "fresh"};
+
+    private BenchmarkData() {
+    }
+
+    static Recipe recipe(int i) {
+        Recipe recipe = new Recipe();
+        recipe.setName(WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i);
+        recipe.setDescription("A " + WORDS[(i * 7) % WORDS.length] + " and " + WORDS[(i * 13) % WORDS.length]
+                + " recipe, serves " + (i % 6 + 1));
+        recipe.setDurationInMinutes((long) (i % 240 + 5));
+
+        return recipe;
+    }
+
+    static List<Recipe> recipes(int count) {
+        return IntStream.range(0, count).mapToObj(BenchmarkData::recipe).toList();
+    }
+
+    // Same composition as the server, tuned by recipes.* properties on top of a pooled JDBC repository
+    static RecipeRepository openRepository(Path directory, Properties overrides) {
+        Properties properties = new Properties();
+        properties.setProperty("recipes.pool.enabled", "true");
+        properties.setProperty("recipes.pool.maxSize", "16");
+        properties.putAll(overrides);
+
+        return RecipeRepository.openRecipeRepository(directory.resolve("recipes").toString(), properties);
+    }
+
+    static RecipeRepository openRepository(Path directory) {
+        return openRepository(directory, new Properties());
+    }
+
+    static Path createDirectory() throws IOException {
+        return Files.createTempDirectory("recipes-benchmark");
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try(Stream<Path> paths = Files.walk(directory)) {
+            for(Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
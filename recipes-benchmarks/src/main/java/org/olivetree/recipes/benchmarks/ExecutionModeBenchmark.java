@@ -0,0 +1,105 @@
+package org.olivetree.recipes.benchmarks;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.ExecutionMode;
+import org.olivetree.recipes.server.RecipeServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Platform worker pool against virtual threads under many concurrent clients. Every call reaches H2 (no
+// cache), behind a connection pool of 16 and a concurrency limit of 16 callers. Throughput gives requests
+// per second and SampleTime the latency percentiles, p99 included. The virtual mode needs Java 21:
+//   java -jar benchmarks.jar ExecutionModeBenchmark -jvm <jdk21>/bin/java
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(128)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private static final int TABLE_SIZE = 10000;
+
+    @Param({"platform", "virtual"})
+    public String executionMode;
+
+    private Path directory;
+    private RecipeRepository recipeRepository;
+    private HttpServer httpServer;
+    private HttpClient httpClient;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("recipes.concurrency.enabled", "true");
+        properties.setProperty("recipes.concurrency.maxCalls", "16");
+        properties.setProperty("recipes.concurrency.acquireTimeoutMillis", "30000");
+
+        directory = BenchmarkData.createDirectory();
+        recipeRepository = BenchmarkData.openRepository(directory, properties);
+        ids = recipeRepository.createRecipes(BenchmarkData.recipes(TABLE_SIZE)).stream().map(Recipe::getId).toList();
+
+        httpServer = RecipeServer.createHttpServer(recipeRepository, ExecutionMode.valueOf(executionMode.toUpperCase(Locale.ROOT)));
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpServer.shutdownNow();
+        recipeRepository.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public String getRecipe() throws IOException, InterruptedException {
+        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return send(HttpRequest.newBuilder(uri("/recipes/" + id)).GET().build());
+    }
+
+    @Benchmark
+    public String getRecipesPage() throws IOException, InterruptedException {
+        Long after = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return send(HttpRequest.newBuilder(uri("/recipes?limit=100&after=" + after)).GET().build());
+    }
+
+    private static URI uri(String path) {
+        return URI.create(RecipeServer.BASE_URI + path);
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if(response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+
+        return response.body();
+    }
+}
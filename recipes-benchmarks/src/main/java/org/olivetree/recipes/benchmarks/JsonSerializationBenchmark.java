@@ -0,0 +1,64 @@
+package org.olivetree.recipes.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.olivetree.recipes.domain.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Jackson (de)serialization of the List<Recipe> bodies returned by GET /recipes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int listSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<Recipe> recipes;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        writer = objectMapper.writerFor(new TypeReference<List<Recipe>>() {});
+        reader = objectMapper.readerFor(new TypeReference<List<Recipe>>() {});
+
+        recipes = BenchmarkData.recipes(listSize);
+        for(int i = 0; i < recipes.size(); i++) {
+            recipes.get(i).setId((long) i + 1);
+        }
+        json = writer.writeValueAsBytes(recipes);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(recipes);
+    }
+
+    @Benchmark
+    public List<Recipe> deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
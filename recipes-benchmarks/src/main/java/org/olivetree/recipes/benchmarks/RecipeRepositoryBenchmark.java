@@ -0,0 +1,120 @@
+package org.olivetree.recipes.benchmarks;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// CRUD and search against the repository, at several table sizes and storage engines
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class RecipeRepositoryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    @Param({"jdbc", "columnar", "log"})
+    public String engine;
+
+    private Path directory;
+    private RecipeRepository recipeRepository;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createDirectory();
+
+        Properties properties = new Properties();
+        properties.setProperty("recipes.engine", engine);
+        recipeRepository = BenchmarkData.openRepository(directory, properties);
+
+        ids = recipeRepository.createRecipes(BenchmarkData.recipes(tableSize)).stream().map(Recipe::getId).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        recipeRepository.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    @Benchmark
+    public Optional<Recipe> getRecipeById() {
+        return recipeRepository.getRecipeById(randomId());
+    }
+
+    // Deleted again right away so the table keeps its size
+    @Benchmark
+    public Recipe createAndDeleteRecipe() {
+        Recipe recipe = recipeRepository.createRecipe(BenchmarkData.recipe(ThreadLocalRandom.current().nextInt(tableSize)));
+        recipeRepository.deleteRecipe(recipe.getId());
+
+        return recipe;
+    }
+
+    @Benchmark
+    public void updateRecipe() {
+        Long id = randomId();
+        recipeRepository.updateRecipe(id, BenchmarkData.recipe(id.intValue()));
+    }
+
+    // Batches of several writers at once, which only wait for each other while they take their change sequences
+    @Benchmark
+    @Threads(4)
+    public int updateRecipesConcurrently() {
+        Map<Long, Recipe> recipes = new HashMap<>();
+        for(int i = 0; i < 100; i++) {
+            Long id = randomId();
+            recipes.put(id, BenchmarkData.recipe(id.intValue()));
+        }
+
+        return recipeRepository.updateRecipes(recipes);
+    }
+
+    @Benchmark
+    public List<Recipe> getRecipesPage() {
+        return recipeRepository.getRecipesAfter(randomId(), 100);
+    }
+
+    // About 1/24 of the table matches
+    @Benchmark
+    public List<Recipe> findRecipesByDuration() {
+        long from = ThreadLocalRandom.current().nextLong(5, 235);
+        return recipeRepository.findRecipes(new RecipeSearch(from, from + 9));
+    }
+
+    @Benchmark
+    public List<Recipe> findRecipesByText() {
+        return recipeRepository.findRecipes(new RecipeSearch(null, null, "garlic lemon"));
+    }
+}
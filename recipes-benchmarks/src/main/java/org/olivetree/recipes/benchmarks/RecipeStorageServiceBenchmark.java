@@ -0,0 +1,75 @@
+package org.olivetree.recipes.benchmarks;
+
+import org.olivetree.recipes.cli.service.RecipeStorageService;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// getAllRecipes returns the recipes in id order. The repository does the ordering, sortById is the cost of
+// doing it in Java as the service used to.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class RecipeStorageServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private Path directory;
+    private RecipeRepository recipeRepository;
+    private RecipeStorageService recipeStorageService;
+    private List<Recipe> shuffledRecipes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createDirectory();
+        recipeRepository = BenchmarkData.openRepository(directory);
+        recipeStorageService = new RecipeStorageService(recipeRepository);
+
+        shuffledRecipes = new ArrayList<>(recipeRepository.createRecipes(BenchmarkData.recipes(tableSize)));
+        Collections.shuffle(shuffledRecipes, new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        recipeRepository.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public List<Recipe> getAllRecipes() {
+        return recipeStorageService.getAllRecipes();
+    }
+
+    @Benchmark
+    public List<Recipe> sortById() {
+        List<Recipe> recipes = new ArrayList<>(shuffledRecipes);
+        recipes.sort(Comparator.comparing(Recipe::getId));
+
+        return recipes;
+    }
+}
@@ -0,0 +1,107 @@
+package org.olivetree.recipes.benchmarks;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.RecipeServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// End to end calls to RecipeResource and RecipeSearchResource over HTTP, against an in-process server on
+// RecipeServer.BASE_URI (port 8080 has to be free)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class RestApiBenchmark {
+
+    @Param({"1000", "10000"})
+    public int tableSize;
+
+    private Path directory;
+    private RecipeRepository recipeRepository;
+    private HttpServer httpServer;
+    private HttpClient httpClient;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createDirectory();
+        recipeRepository = BenchmarkData.openRepository(directory);
+        ids = recipeRepository.createRecipes(BenchmarkData.recipes(tableSize)).stream().map(Recipe::getId).toList();
+
+        httpServer = RecipeServer.createHttpServer(recipeRepository);
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpServer.shutdownNow();
+        recipeRepository.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public String getRecipe() throws IOException, InterruptedException {
+        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return send(HttpRequest.newBuilder(uri("/recipes/" + id)).GET().build());
+    }
+
+    @Benchmark
+    public String getRecipesPage() throws IOException, InterruptedException {
+        Long after = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return send(HttpRequest.newBuilder(uri("/recipes?limit=100&after=" + after)).GET().build());
+    }
+
+    @Benchmark
+    public String getAllRecipes() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/recipes")).GET().build());
+    }
+
+    @Benchmark
+    public String searchRecipes() throws IOException, InterruptedException {
+        long from = ThreadLocalRandom.current().nextLong(5, 235);
+        String body = "{\"durationFrom\":" + from + ",\"durationTo\":" + (from + 9) + "}";
+
+        return send(HttpRequest.newBuilder(uri("/search/recipe"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private static URI uri(String path) {
+        return URI.create(RecipeServer.BASE_URI + path);
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if(response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+
+        return response.body();
+    }
+}
@@ -21,9 +21,12 @@ public class RecipesCliApplication {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecipesCliApplication.class);
 
+    private static final int LIST_PAGE_SIZE = 100;
+
     private static RecipeStorageService recipeStorageService;
     public static void main(String[] args) {
-        RecipeRepository recipeRepo = RecipeRepository.openRecipeRepository(loadDatabaseFilename());
+        Properties properties = loadProperties();
+        RecipeRepository recipeRepo = RecipeRepository.openRecipeRepository(properties.getProperty("recipes.database"), properties);
 
         recipeStorageService = new RecipeStorageService(recipeRepo);
 
@@ -98,8 +101,17 @@ public class RecipesCliApplication {
 
     private static void listRecipes() {
         LOG.info("Getting all recipes");
-        recipeStorageService.getAllRecipes()
-                .forEach(r -> LOG.info(r.toString()));
+
+        Long afterId = null;
+        List<Recipe> page;
+        do {
+            page = recipeStorageService.getRecipesAfter(afterId, LIST_PAGE_SIZE);
+            page.forEach(r -> LOG.info(r.toString()));
+
+            if(!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while(page.size() == LIST_PAGE_SIZE);
     }
 
     private static void deleteRecipe(Scanner scanner) {
@@ -124,12 +136,12 @@ public class RecipesCliApplication {
         }
     }
 
-    private static String loadDatabaseFilename() {
+    private static Properties loadProperties() {
         try(InputStream propertiesStream = RecipesCliApplication.class.getResourceAsStream("/server.properties")) {
             Properties properties = new Properties();
             properties.load(propertiesStream);
 
-            return properties.getProperty("recipes.database");
+            return properties;
         } catch (IOException e) {
             throw new IllegalStateException("Could not load database file");
         }
@@ -6,7 +6,6 @@ import org.olivetree.recipes.domain.Recipe;
 import org.olivetree.recipes.domain.RecipeSearch;
 import org.olivetree.recipes.repository.RecipeRepository;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,22 +27,24 @@ public class RecipeStorageService {
     }
 
     public List<Recipe> getAllRecipes() {
-        return recipeRepository.getAllRecipes()
-                .stream()
-                .sorted(Comparator.comparing(Recipe::getId))
-                .toList();
+        return recipeRepository.getAllRecipes();
     }
 
-    public void updateRecipe(Long id, Recipe recipe) throws RecipeNotFoundException, RecipeConstraintsException {
-        Recipe existingRecipe = getRecipe(id);
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return recipeRepository.getRecipesAfter(afterId, limit);
+    }
 
-        Recipe updatedRecipe = getUpdatedRecipe(existingRecipe, recipe);
+    // Blank or missing fields keep their stored value
+    public void updateRecipe(Long id, Recipe recipe) throws RecipeNotFoundException, RecipeConstraintsException {
+        Recipe patch = Recipe.asPatch(recipe);
 
-        if(!Recipe.isValidRecipe(updatedRecipe)) {
+        if(!Recipe.isValidPatch(patch)) {
             throw new RecipeConstraintsException();
         }
 
-        recipeRepository.updateRecipe(id, recipe);
+        if(recipeRepository.patchRecipe(id, patch).isEmpty()) {
+            throw new RecipeNotFoundException();
+        }
     }
 
     public void createRecipe(Recipe recipe) throws RecipeConstraintsException {
@@ -54,38 +55,12 @@ public class RecipeStorageService {
     }
 
     public void deleteRecipe(Long id) throws RecipeNotFoundException {
-        getRecipe(id);
-
-        recipeRepository.deleteRecipe(id);
+        if(!recipeRepository.deleteRecipe(id)) {
+            throw new RecipeNotFoundException();
+        }
     }
 
     public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
         return recipeRepository.findRecipes(recipeSearch);
     }
-
-    private Recipe getUpdatedRecipe(Recipe existingRecipe, Recipe recipe) {
-        Recipe r = new Recipe();
-
-        String recipeName = isNotNullAndNotBlank(recipe.getName()) ?
-                recipe.getName() :
-                existingRecipe.getName();
-
-        String recipeDescription = isNotNullAndNotBlank(recipe.getDescription()) ?
-                recipe.getDescription() :
-                existingRecipe.getDescription();
-
-        Long durationInMinutes = recipe.getDurationInMinutes() != null ?
-                recipe.getDurationInMinutes() :
-                existingRecipe.getDurationInMinutes();
-
-        r.setName(recipeName);
-        r.setDescription(recipeDescription);
-        r.setDurationInMinutes(durationInMinutes);
-
-        return r;
-    }
-
-    private boolean isNotNullAndNotBlank(String str) {
-        return str != null && !str.isBlank();
-    }
 }
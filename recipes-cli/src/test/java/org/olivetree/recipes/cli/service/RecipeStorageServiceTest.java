@@ -18,6 +18,11 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -86,7 +91,7 @@ public class RecipeStorageServiceTest {
         @Test
         @DisplayName("throw exception if recipe does not exist")
         public void shouldThrowNotFoundExceptionIfRecipeDoesNotExist() {
-            when(recipeRepository.getRecipeById(1L))
+            when(recipeRepository.patchRecipe(eq(1L), any()))
                     .thenReturn(Optional.empty());
 
             assertThrows(RecipeNotFoundException.class, () -> recipeStorageService.updateRecipe(1L, getRecipe(null, "Foo", "Bar", 50L)));
@@ -94,29 +99,29 @@ public class RecipeStorageServiceTest {
 
         @ParameterizedTest
         @CsvSource(textBlock = """
-                , Recipe 1 description, 50
-                Recipe 1,, 50
+                , Recipe 1 description, 9950
+                Recipe 1,, 1440
                 Recipe 1, Recipe 1 description, 9950
                 """)
         @DisplayName("throw exception if recipe does not comply with constraints")
         public void shouldThrowConstraintsExceptionIfRecipeDoesNotComply(String name, String description, Long duration) {
             Recipe recipe = getRecipe(null, name, description, duration);
 
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.of(recipe));
-
             assertThrows(RecipeConstraintsException.class, () -> recipeStorageService.updateRecipe(1L, recipe));
+            verify(recipeRepository, never()).patchRecipe(any(), any());
         }
 
         @Test
-        @DisplayName("modify the recipe")
+        @DisplayName("modify the recipe keeping the stored value of blank fields")
         public void shouldModifyRecipe() {
-            Recipe recipe = getRecipe(null, "Recipe 1", "Recipe 1 description", 90L);
+            Recipe recipe = getRecipe(null, "Recipe 1", " ", 90L);
 
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.of(recipe));
+            when(recipeRepository.patchRecipe(eq(1L), any()))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 90L)));
 
             assertDoesNotThrow(() -> recipeStorageService.updateRecipe(1L, recipe));
+            verify(recipeRepository).patchRecipe(eq(1L), argThat(patch -> patch.getDescription() == null));
+            verify(recipeRepository, never()).getRecipeById(1L);
         }
     }
 
@@ -143,8 +148,8 @@ public class RecipeStorageServiceTest {
         @Test
         @DisplayName("throw exception if recipe does not exist")
         public void shouldThrowNotFoundExceptionIfRecipeDoesNotExist() {
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.empty());
+            when(recipeRepository.deleteRecipe(1L))
+                    .thenReturn(false);
 
             assertThrows(RecipeNotFoundException.class, () -> recipeStorageService.deleteRecipe(1L));
         }
@@ -152,9 +157,9 @@ public class RecipeStorageServiceTest {
 
     private List<Recipe> getMockedRecipes() {
         return List.of(
-                getRecipe(3L, "Recipe 3", "Recipe 3 description", 50L),
                 getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L),
-                getRecipe(2L, "Recipe 2", "Recipe 2 description", 50L)
+                getRecipe(2L, "Recipe 2", "Recipe 2 description", 50L),
+                getRecipe(3L, "Recipe 3", "Recipe 3 description", 50L)
         );
     }
 
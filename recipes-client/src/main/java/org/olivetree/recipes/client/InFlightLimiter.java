@@ -0,0 +1,90 @@
+package org.olivetree.recipes.client;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+// Runs at most maxInFlight requests at a time. Further requests wait in a queue and are started as the running
+// ones complete, so callers get their future right away instead of blocking.
+class InFlightLimiter {
+    private final int maxInFlight;
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+    // Whether a thread is starting waiting requests
+    private boolean draining;
+
+    InFlightLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<? extends CompletionStage<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletionStage<T> response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+
+            // The slot is free before the result completes, so callbacks can send the next request right away
+            response.whenComplete((value, failure) -> {
+                release();
+                if(failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        synchronized(this) {
+            waiting.add(start);
+        }
+        drain();
+
+        return result;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private void release() {
+        synchronized(this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    // Starts waiting requests while there are free slots. Only one thread drains at a time: a request that
+    // completes while being started frees its slot and returns, and the draining thread starts the next one.
+    // Requests completing right away are started one after another instead of recursively, however many wait.
+    private void drain() {
+        synchronized(this) {
+            if(draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        while(true) {
+            Runnable next;
+            synchronized(this) {
+                if(inFlight >= maxInFlight || waiting.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                next = waiting.poll();
+                inFlight++;
+            }
+            next.run();
+        }
+    }
+}
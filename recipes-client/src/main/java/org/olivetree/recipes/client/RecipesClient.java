@@ -1,58 +1,172 @@
 package org.olivetree.recipes.client;
 
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.GenericType;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache5.connector.Apache5ClientProperties;
+import org.glassfish.jersey.apache5.connector.Apache5ConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
 import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.cache.CacheStats;
+import org.olivetree.recipes.server.BatchItemResult;
+import org.olivetree.recipes.server.RecipeMediaTypes;
 import org.olivetree.recipes.server.RecipeServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 import static org.olivetree.recipes.client.RecipesRestCommands.*;
 
-public class RecipesClient {
+// Keeps a pool of keep-alive connections to the server, so one client should be shared and closed when done.
+// Every call has an async variant returning a CompletableFuture, which fails with a WebApplicationException
+// when the server answers with an error. With a response cache, recipes and listings read again are revalidated
+// instead of downloaded, and writes through this client drop what they change from the cache.
+public class RecipesClient implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecipesClient.class);
 
     private final Client client;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final MediaType mediaType;
+    private final InFlightLimiter inFlight;
+    private final ResponseCache responseCache;
     private final String RECIPES_URI = RecipeServer.BASE_URI + "/recipes";
     private final String SEARCH_RECIPES_URI = RecipeServer.BASE_URI + "/search/recipe";
+    private static final String BATCH_PATH = "batch";
+    private static final String SINCE_PARAM = "since";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int SYNC_PAGE_SIZE = 1000;
 
     public RecipesClient() {
-        client = ClientBuilder.newClient();
+        this(RecipesClientConfig.defaults());
+    }
+
+    public RecipesClient(MediaType mediaType, boolean compression) {
+        this(RecipesClientConfig.defaults().withMediaType(mediaType, compression));
+    }
+
+    public RecipesClient(RecipesClientConfig config) {
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        // Every request goes to the same server
+        connectionManager.setMaxTotal(config.maxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.maxConnections());
+
+        ClientConfig clientConfig = new ClientConfig()
+                .connectorProvider(new Apache5ConnectorProvider())
+                .property(Apache5ClientProperties.CONNECTION_MANAGER, connectionManager)
+                // Targets with their own properties get their own connector, which would shut the pool down with it
+                .property(Apache5ClientProperties.CONNECTION_MANAGER_SHARED, true)
+                .property(ClientProperties.CONNECT_TIMEOUT, (int) config.connectTimeout().toMillis())
+                .property(ClientProperties.READ_TIMEOUT, (int) config.readTimeout().toMillis())
+                // Async requests block a thread on the connection while they run
+                .property(ClientProperties.ASYNC_THREADPOOL_SIZE, config.maxInFlight())
+                .register(JacksonSmileProvider.class);
+
+        if(config.compression()) {
+            clientConfig.register(EncodingFilter.class)
+                    .register(GZipEncoder.class)
+                    .register(DeflateEncoder.class);
+        }
+
+        if(config.responseCache() != null) {
+            this.responseCache = new ResponseCache(config.responseCache());
+            clientConfig.register(responseCache);
+        } else {
+            this.responseCache = null;
+        }
+
+        this.mediaType = config.mediaType();
+        this.client = ClientBuilder.newClient(clientConfig);
+        this.inFlight = new InFlightLimiter(config.maxInFlight());
+    }
+
+    // Smile and compressed responses, for bulk transfers
+    public static RecipesClient compact() {
+        return new RecipesClient(RecipeMediaTypes.SMILE_TYPE, true);
+    }
+
+    // Async requests sent but not completed yet, and the ones waiting for one of them to complete
+    public int getInFlightRequests() {
+        return inFlight.getInFlight();
+    }
+
+    public int getWaitingRequests() {
+        return inFlight.getWaiting();
+    }
+
+    public Optional<CacheStats> getResponseCacheStats() {
+        return Optional.ofNullable(responseCache).map(ResponseCache::getStats);
+    }
+
+    // Closes the pooled connections
+    @Override
+    public void close() {
+        client.close();
+        connectionManager.close();
     }
 
     public Recipe get(Long id) {
         return client
                 .target(RECIPES_URI)
                 .path(String.valueOf(id))
-                .request(MediaType.APPLICATION_JSON)
+                .request(mediaType)
                 .get(Recipe.class);
     }
 
     public List<Recipe> get() {
         Response response = client
                 .target(RECIPES_URI)
-                .request(MediaType.APPLICATION_JSON)
+                .request(mediaType)
                 .get();
 
         return response.readEntity(new GenericType<>() {
         });
     }
 
+    public CompletableFuture<Recipe> getAsync(Long id) {
+        return inFlight.submit(() -> client
+                .target(RECIPES_URI)
+                .path(String.valueOf(id))
+                .request(mediaType)
+                .rx()
+                .get(Recipe.class));
+    }
+
+    public CompletableFuture<List<Recipe>> getAsync() {
+        return inFlight.submit(() -> client
+                .target(RECIPES_URI)
+                .request(mediaType)
+                .rx()
+                .get(new GenericType<List<Recipe>>() {}));
+    }
+
     public List<Recipe> search(RecipeSearch recipeSearch) {
         try (Response response = client
                 .target(SEARCH_RECIPES_URI)
-                .request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(recipeSearch, MediaType.APPLICATION_JSON))) {
+                .request(mediaType)
+                .post(Entity.entity(recipeSearch, mediaType))) {
 
             if(response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
                 return Collections.emptyList();
@@ -62,19 +176,143 @@ public class RecipesClient {
         }
     }
 
+    public CompletableFuture<List<Recipe>> searchAsync(RecipeSearch recipeSearch) {
+        return inFlight.submit(() -> client
+                .target(SEARCH_RECIPES_URI)
+                .request(mediaType)
+                .rx()
+                .post(Entity.entity(recipeSearch, mediaType))
+                .thenApply(response -> {
+                    try(response) {
+                        if(response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                            return Collections.<Recipe>emptyList();
+                        }
+                        if(response.getStatus() != Response.Status.OK.getStatusCode()) {
+                            throw new WebApplicationException(response);
+                        }
+
+                        return response.readEntity(new GenericType<List<Recipe>>() {});
+                    }
+                }));
+    }
+
+    // The response holds a pooled connection until it is closed
     public Response post(Recipe recipe) {
         return client.target(RECIPES_URI)
-                .request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(recipe, MediaType.APPLICATION_JSON));
+                .request(mediaType)
+                .post(Entity.entity(recipe, mediaType));
+    }
+
+    // The recipe as created, with its id
+    public CompletableFuture<Recipe> postAsync(Recipe recipe) {
+        return inFlight.submit(() -> client.target(RECIPES_URI)
+                .request(mediaType)
+                .rx()
+                .post(Entity.entity(recipe, mediaType), Recipe.class));
     }
 
+    // The response holds a pooled connection until it is closed
     public Response put(Recipe recipe) {
         return client.target(RECIPES_URI)
                 .path(String.valueOf(recipe.getId()))
-                .request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(recipe, MediaType.APPLICATION_JSON));
+                .request(mediaType)
+                .put(Entity.entity(recipe, mediaType));
     }
 
+    // Completes with false when there is no recipe with the id
+    public CompletableFuture<Boolean> putAsync(Recipe recipe) {
+        return inFlight.submit(() -> client.target(RECIPES_URI)
+                .path(String.valueOf(recipe.getId()))
+                .request(mediaType)
+                .rx()
+                .put(Entity.entity(recipe, mediaType))
+                .thenApply(RecipesClient::toFound));
+    }
+
+    // Changes only the fields set on the recipe and answers with the recipe as stored
+    public Recipe patch(Recipe recipe) {
+        return client.target(RECIPES_URI)
+                .path(String.valueOf(recipe.getId()))
+                .request(mediaType)
+                // Not every connector can send PATCH, the server takes it as an overridden POST
+                .header(RecipeServer.METHOD_OVERRIDE_HEADER, HttpMethod.PATCH)
+                .post(Entity.entity(recipe, mediaType), Recipe.class);
+    }
+
+    public CompletableFuture<Recipe> patchAsync(Recipe recipe) {
+        return inFlight.submit(() -> client.target(RECIPES_URI)
+                .path(String.valueOf(recipe.getId()))
+                .request(mediaType)
+                .header(RecipeServer.METHOD_OVERRIDE_HEADER, HttpMethod.PATCH)
+                .rx()
+                .post(Entity.entity(recipe, mediaType), Recipe.class));
+    }
+
+    // Creates all recipes in one request. The results are in the order of the recipes, invalid recipes are
+    // reported with status 400 and do not stop the others.
+    public List<BatchItemResult> postAll(List<Recipe> recipes) {
+        return client.target(RECIPES_URI)
+                .path(BATCH_PATH)
+                .request(mediaType)
+                .post(Entity.entity(recipes, mediaType), new GenericType<>() {});
+    }
+
+    // Deletes all recipes in one request, ids that do not exist are reported with status 404
+    public List<BatchItemResult> deleteAll(Collection<Long> ids) {
+        List<BatchItemResult> results = client.target(RECIPES_URI)
+                .path(BATCH_PATH)
+                // Jersey refuses DELETE requests with a body unless told otherwise
+                .property(ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, true)
+                .request(mediaType)
+                .method(HttpMethod.DELETE, Entity.entity(ids, mediaType), new GenericType<>() {});
+
+        // The request only names the batch, the recipes it deleted are dropped here
+        if(responseCache != null) {
+            ids.forEach(id -> responseCache.invalidate(UriBuilder.fromUri(RECIPES_URI).path(String.valueOf(id)).build()));
+        }
+
+        return results;
+    }
+
+    // Brings replica, recipes by id, up to date with the changes after since, page by page. Returns the since to
+    // pass next time, start with 0 and an empty map to copy every recipe. When the server pruned the deletes after
+    // since, the replica is cleared and copied again from 0.
+    public long syncSince(long since, Map<Long, Recipe> replica) {
+        boolean hasMore = true;
+        while(hasMore) {
+            try(Response response = client.target(RECIPES_URI)
+                    .queryParam(SINCE_PARAM, since)
+                    .queryParam(LIMIT_PARAM, SYNC_PAGE_SIZE)
+                    .request(mediaType)
+                    .get()) {
+
+                if(response.getStatus() == Response.Status.GONE.getStatusCode() && since > 0) {
+                    replica.clear();
+                    since = 0;
+                    continue;
+                }
+                if(response.getStatus() != Response.Status.OK.getStatusCode()) {
+                    throw new WebApplicationException(response);
+                }
+
+                List<RecipeDelta> changes = response.readEntity(new GenericType<>() {});
+                for(RecipeDelta change : changes) {
+                    if(change.deleted()) {
+                        replica.remove(change.id());
+                    } else {
+                        replica.put(change.id(), change.recipe());
+                    }
+                    since = change.sequence();
+                }
+
+                hasMore = response.getHeaderString(NEXT_CURSOR_HEADER) != null;
+            }
+        }
+
+        return since;
+    }
+
+    // The response holds a pooled connection until it is closed
     public Response delete(Long id) {
         return client.target(RECIPES_URI)
                 .path(String.valueOf(id))
@@ -82,6 +320,30 @@ public class RecipesClient {
                 .delete();
     }
 
+    // Completes with false when there is no recipe with the id
+    public CompletableFuture<Boolean> deleteAsync(Long id) {
+        return inFlight.submit(() -> client.target(RECIPES_URI)
+                .path(String.valueOf(id))
+                .request()
+                .rx()
+                .delete()
+                .thenApply(RecipesClient::toFound));
+    }
+
+    // Whether a write without a response body found its recipe
+    private static boolean toFound(Response response) {
+        try(response) {
+            if(response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return false;
+            }
+            if(response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                throw new WebApplicationException(response);
+            }
+
+            return true;
+        }
+    }
+
     private static void displayHelp() {
         System.out.printf("""
                 Recipes REST API Client application
@@ -103,85 +365,82 @@ public class RecipesClient {
 
         boolean isFinished = false;
 
-        while(!isFinished) {
-            var scanner = new Scanner(System.in);
+        // One client for the whole session, so the commands reuse its connections
+        try(RecipesClient client = new RecipesClient()) {
+            while(!isFinished) {
+                var scanner = new Scanner(System.in);
 
-            String line = "";
-            while (line.isEmpty()) {
-                line = scanner.nextLine().trim();
-            }
+                String line = "";
+                while (line.isEmpty()) {
+                    line = scanner.nextLine().trim();
+                }
 
-            RecipesRestCommands cliCommand = RecipesRestCommands.getCommand(line);
-
-            if(cliCommand == null) {
-                LOG.error("Command not recognized: " + line);
-            } else {
-                switch (cliCommand) {
-                    case LIST -> listRecipes();
-                    case SEARCH -> searchRecipes(scanner);
-                    case ADD -> createRecipe(scanner);
-                    case DELETE -> deleteRecipe(scanner);
-                    case UPDATE -> updateRecipe(scanner);
-                    case HELP -> displayHelp();
-                    case QUIT -> isFinished = true;
+                RecipesRestCommands cliCommand = RecipesRestCommands.getCommand(line);
+
+                if(cliCommand == null) {
+                    LOG.error("Command not recognized: " + line);
+                } else {
+                    switch (cliCommand) {
+                        case LIST -> listRecipes(client);
+                        case SEARCH -> searchRecipes(client, scanner);
+                        case ADD -> createRecipe(client, scanner);
+                        case DELETE -> deleteRecipe(client, scanner);
+                        case UPDATE -> updateRecipe(client, scanner);
+                        case HELP -> displayHelp();
+                        case QUIT -> isFinished = true;
+                    }
                 }
             }
         }
     }
 
-    private static void searchRecipes(Scanner scanner) {
+    private static void searchRecipes(RecipesClient client, Scanner scanner) {
         RecipeSearch recipeSearch = getRecipeSearchFromUser(scanner);
 
-        RecipesClient client = new RecipesClient();
         List<Recipe> recipes = client.search(recipeSearch);
 
         recipes.forEach(r -> LOG.info(r.toString()));
     }
 
-    private static void listRecipes() {
-        RecipesClient client = new RecipesClient();
-
+    private static void listRecipes(RecipesClient client) {
         List<Recipe> recipes = client.get();
         recipes.forEach(r -> LOG.info(r.toString()));
     }
 
-    private static void createRecipe(Scanner scanner) {
+    private static void createRecipe(RecipesClient client, Scanner scanner) {
         Recipe recipe = getRecipeFromUser(scanner);
 
-        RecipesClient client = new RecipesClient();
-        Response response = client.post(recipe);
-
-        switch (response.getStatusInfo().toEnum()) {
-            case OK -> LOG.info("Recipe successfully created");
-            case BAD_REQUEST -> LOG.error("Recipe is not valid");
+        try(Response response = client.post(recipe)) {
+            switch (response.getStatusInfo().toEnum()) {
+                case OK -> LOG.info("Recipe successfully created");
+                case BAD_REQUEST -> LOG.error("Recipe is not valid");
+            }
         }
     }
 
-    private static void deleteRecipe(Scanner scanner) {
+    private static void deleteRecipe(RecipesClient client, Scanner scanner) {
         long recipeId = getRecipeIdFromUser(scanner);
 
-        RecipesClient client = new RecipesClient();
-        Response response = client.delete(recipeId);
-
-        switch (response.getStatusInfo().toEnum()) {
-            case NOT_FOUND -> LOG.error("Recipe with id {} does not exist", recipeId);
-            case NO_CONTENT -> LOG.info("Recipe with id {} successfully deleted", recipeId);
+        try(Response response = client.delete(recipeId)) {
+            switch (response.getStatusInfo().toEnum()) {
+                case NOT_FOUND -> LOG.error("Recipe with id {} does not exist", recipeId);
+                case NO_CONTENT -> LOG.info("Recipe with id {} successfully deleted", recipeId);
+            }
         }
     }
 
-    private static void updateRecipe(Scanner scanner) {
+    private static void updateRecipe(RecipesClient client, Scanner scanner) {
 
         long recipeId = getRecipeIdFromUser(scanner);
         Recipe recipe = getRecipeFromUser(scanner);
         recipe.setId(recipeId);
 
-        RecipesClient client = new RecipesClient();
-        Response response = client.put(recipe);
-
-        switch (response.getStatusInfo().toEnum()) {
-            case NOT_FOUND -> LOG.error("Recipe with id {} does not exist", recipeId);
-            case BAD_REQUEST -> LOG.error("Recipe is not valid");
-            case NO_CONTENT -> LOG.info("Recipe with id {} successfully updated", recipeId);
+        try(Response response = client.put(recipe)) {
+            switch (response.getStatusInfo().toEnum()) {
+                case NOT_FOUND -> LOG.error("Recipe with id {} does not exist", recipeId);
+                case BAD_REQUEST -> LOG.error("Recipe is not valid");
+                case NO_CONTENT -> LOG.info("Recipe with id {} successfully updated", recipeId);
+            }
         }
     }
 
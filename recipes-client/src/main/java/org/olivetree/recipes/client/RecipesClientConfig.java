@@ -0,0 +1,40 @@
+package org.olivetree.recipes.client;
+
+import jakarta.ws.rs.core.MediaType;
+import org.olivetree.recipes.repository.cache.CacheConfig;
+
+import java.time.Duration;
+
+// mediaType is either JSON or RecipeMediaTypes.SMILE_TYPE, the more compact binary form, and is used both ways.
+// With compression, responses may come gzip or deflate encoded. maxConnections bounds the keep-alive
+// connections kept open to the server, maxInFlight the requests of the async variants running at a time.
+// responseCache, when not null, bounds the responses of GET requests kept to be revalidated with their ETag.
+public record RecipesClientConfig(MediaType mediaType,
+                                  boolean compression,
+                                  int maxConnections,
+                                  Duration connectTimeout,
+                                  Duration readTimeout,
+                                  int maxInFlight,
+                                  CacheConfig responseCache) {
+
+    public RecipesClientConfig {
+        if(maxConnections < 1) {
+            throw new IllegalArgumentException("Invalid maximum of connections: " + maxConnections);
+        }
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid maximum of requests in flight: " + maxInFlight);
+        }
+    }
+
+    public static RecipesClientConfig defaults() {
+        return new RecipesClientConfig(MediaType.APPLICATION_JSON_TYPE, false, 20, Duration.ofSeconds(5), Duration.ofSeconds(30), 20, null);
+    }
+
+    public RecipesClientConfig withMediaType(MediaType mediaType, boolean compression) {
+        return new RecipesClientConfig(mediaType, compression, maxConnections, connectTimeout, readTimeout, maxInFlight, responseCache);
+    }
+
+    public RecipesClientConfig withResponseCache(CacheConfig responseCache) {
+        return new RecipesClientConfig(mediaType, compression, maxConnections, connectTimeout, readTimeout, maxInFlight, responseCache);
+    }
+}
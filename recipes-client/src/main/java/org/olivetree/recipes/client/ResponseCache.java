@@ -0,0 +1,207 @@
+package org.olivetree.recipes.client;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.olivetree.recipes.repository.cache.BoundedCache;
+import org.olivetree.recipes.repository.cache.CacheConfig;
+import org.olivetree.recipes.repository.cache.CacheStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+
+// Private HTTP cache of GET responses, keyed by URI. A response is kept when it has an ETag or a Cache-Control
+// max-age, and not when it says no-store. Within max-age it is answered without a request, after that (and
+// always without max-age) it is revalidated with If-None-Match when it has an ETag, and a 304 answers with the
+// kept body. Without an ETag it is fetched again.
+//
+// Bodies are kept as received, still compressed when they came compressed, and decoded when read like any
+// other response. Any other method sent by the same client drops the entries of its URI and of the
+// collection above it, so a client never reads its own writes stale.
+class ResponseCache implements ClientRequestFilter, ClientResponseFilter {
+    // Longer bodies, like large listings, are passed through without being kept
+    static final int MAXIMUM_ENTRY_BYTES = 1024 * 1024;
+
+    private static final String CACHED_PROPERTY = ResponseCache.class.getName() + ".cached";
+    private static final String ANSWERED_PROPERTY = ResponseCache.class.getName() + ".answered";
+
+    private final BoundedCache<String, CachedResponse> cache;
+
+    ResponseCache(CacheConfig config) {
+        this.cache = new BoundedCache<>(config);
+    }
+
+    CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    void invalidate(URI uri) {
+        cache.invalidate(keyOf(uri));
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+        if(!HttpMethod.GET.equals(request.getMethod())) {
+            return;
+        }
+
+        CachedResponse cached = cache.get(keyOf(request.getUri()));
+        if(cached == null || !cached.accept().equals(acceptOf(request))) {
+            return;
+        }
+
+        if(cached.isFresh()) {
+            request.setProperty(ANSWERED_PROPERTY, true);
+            request.abortWith(cached.toResponse());
+        } else if(cached.etag() != null) {
+            request.setProperty(CACHED_PROPERTY, cached);
+            request.getHeaders().putSingle(HttpHeaders.IF_NONE_MATCH, cached.etag());
+        }
+        // An expired response kept only for its max-age cannot be revalidated, the request fetches it again
+    }
+
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+        if(request.getProperty(ANSWERED_PROPERTY) != null) {
+            return;
+        }
+
+        String key = keyOf(request.getUri());
+        if(!HttpMethod.GET.equals(request.getMethod())) {
+            cache.invalidate(key);
+            cache.invalidate(parentOf(key));
+            return;
+        }
+
+        CacheControl cacheControl = cacheControlOf(response);
+        if(cacheControl != null && cacheControl.isNoStore()) {
+            cache.invalidate(key);
+            return;
+        }
+
+        CachedResponse cached = (CachedResponse) request.getProperty(CACHED_PROPERTY);
+        if(response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && cached != null) {
+            CachedResponse revalidated = cached.revalidated(freshUntil(cacheControl));
+            cache.put(key, revalidated);
+            revalidated.answer(response);
+        } else if(response.getStatus() == Response.Status.OK.getStatusCode()) {
+            store(key, request, response, cacheControl);
+        } else {
+            cache.invalidate(key);
+        }
+    }
+
+    private void store(String key, ClientRequestContext request, ClientResponseContext response, CacheControl cacheControl) throws IOException {
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        long freshUntil = freshUntil(cacheControl);
+        if(etag == null && freshUntil == 0) {
+            cache.invalidate(key);
+            return;
+        }
+
+        // Reads one byte more than an entry can hold to know whether the body fits
+        InputStream body = response.getEntityStream();
+        byte[] bytes = body.readNBytes(MAXIMUM_ENTRY_BYTES + 1);
+        if(bytes.length > MAXIMUM_ENTRY_BYTES) {
+            cache.invalidate(key);
+            response.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(bytes), body));
+            return;
+        }
+
+        body.close();
+        response.setEntityStream(new ByteArrayInputStream(bytes));
+        cache.put(key, new CachedResponse(acceptOf(request), etag, bytes,
+                response.getHeaderString(HttpHeaders.CONTENT_TYPE),
+                response.getHeaderString(HttpHeaders.CONTENT_ENCODING),
+                freshUntil));
+    }
+
+    // The query stays part of the key, the fragment is never sent
+    private static String keyOf(URI uri) {
+        String key = uri.toString();
+        int fragment = key.indexOf('#');
+
+        return fragment < 0 ? key : key.substring(0, fragment);
+    }
+
+    // The collection a URI belongs to, /recipes for /recipes/1
+    private static String parentOf(String key) {
+        int query = key.indexOf('?');
+        String path = query < 0 ? key : key.substring(0, query);
+
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+
+    private static String acceptOf(ClientRequestContext request) {
+        String accept = request.getHeaderString(HttpHeaders.ACCEPT);
+
+        return accept == null ? "" : accept;
+    }
+
+    private static CacheControl cacheControlOf(ClientResponseContext response) {
+        String header = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        if(header == null) {
+            return null;
+        }
+
+        try {
+            return RuntimeDelegate.getInstance().createHeaderDelegate(CacheControl.class).fromString(header);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // System.nanoTime until which the response can be used without asking the server, 0 for never
+    private static long freshUntil(CacheControl cacheControl) {
+        if(cacheControl == null || cacheControl.isNoCache() || cacheControl.getMaxAge() <= 0) {
+            return 0;
+        }
+
+        return System.nanoTime() + cacheControl.getMaxAge() * 1_000_000_000L;
+    }
+
+    private record CachedResponse(String accept, String etag, byte[] body, String contentType, String contentEncoding,
+                                  long freshUntil) {
+
+        boolean isFresh() {
+            return freshUntil != 0 && System.nanoTime() - freshUntil < 0;
+        }
+
+        CachedResponse revalidated(long freshUntil) {
+            return new CachedResponse(accept, etag, body, contentType, contentEncoding, freshUntil);
+        }
+
+        Response toResponse() {
+            Response.ResponseBuilder response = Response.ok(body).header(HttpHeaders.CONTENT_TYPE, contentType);
+            if(etag != null) {
+                response.header(HttpHeaders.ETAG, etag);
+            }
+            if(contentEncoding != null) {
+                response.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            }
+
+            return response.build();
+        }
+
+        // Turns a 304 into the kept 200
+        void answer(ClientResponseContext response) {
+            response.setStatus(Response.Status.OK.getStatusCode());
+            if(contentType != null) {
+                response.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, contentType);
+            }
+            if(contentEncoding != null) {
+                response.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            }
+            response.setEntityStream(new ByteArrayInputStream(body));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.olivetree.recipes.client;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightLimiterTest {
+
+    @Test
+    @DisplayName("In-flight limiter should start queued requests as the running ones complete")
+    public void shouldLimitRequestsInFlight() throws Exception {
+        InFlightLimiter limiter = new InFlightLimiter(2);
+        List<CompletableFuture<Integer>> responses = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            results.add(limiter.submit(() -> {
+                CompletableFuture<Integer> response = new CompletableFuture<>();
+                responses.add(response);
+                return response;
+            }));
+        }
+
+        assertEquals(2, responses.size());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, limiter.getWaiting());
+
+        responses.get(0).complete(0);
+        assertEquals(0, results.get(0).get());
+        assertEquals(3, responses.size());
+        assertEquals(2, limiter.getInFlight());
+
+        for(int i = 1; i < 5; i++) {
+            responses.get(i).complete(i);
+        }
+        assertEquals(4, results.get(4).get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    @DisplayName("In-flight limiter should start a long queue of requests completing right away without recursing")
+    public void shouldStartQueuedRequestsInLoop() throws Exception {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        limiter.submit(() -> first);
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for(int i = 0; i < 100_000; i++) {
+            int value = i;
+            results.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+        first.complete(-1);
+
+        // A recursive hand-off overflows the stack, which leaves the later results never completed
+        assertEquals(99_999, results.get(99_999).get(10, TimeUnit.SECONDS));
+        assertTrue(results.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    @DisplayName("In-flight limiter should free the slot of a request that failed to start")
+    public void shouldReleaseFailedRequests() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+
+        CompletableFuture<Integer> result = limiter.submit(() -> {
+            throw new IllegalStateException("Closed");
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,272 @@
+package org.olivetree.recipes.client;
+
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.cache.CacheConfig;
+import org.olivetree.recipes.repository.cache.CachePolicy;
+import org.olivetree.recipes.server.BatchItemResult;
+import org.olivetree.recipes.server.ExecutionMode;
+import org.olivetree.recipes.server.RecipeServer;
+import org.olivetree.recipes.server.RepositoryExecutorConfig;
+import org.olivetree.recipes.server.ServerConfig;
+import org.olivetree.recipes.server.compression.CompressionConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecipesClientTest {
+
+    @TempDir
+    private Path databaseDirectory;
+
+    private RecipeRepository recipeRepository;
+    private HttpServer server;
+    private RecipesClient client;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if(client != null) {
+            client.close();
+        }
+        if(server != null) {
+            server.shutdownNow();
+        }
+        if(recipeRepository != null) {
+            recipeRepository.close();
+        }
+    }
+
+    // Compression from the first byte, so compact clients get every response compressed
+    private RecipesClient start(RecipesClientConfig config, Properties properties) {
+        recipeRepository = RecipeRepository.openRecipeRepository(databaseDirectory.resolve("recipes").toString(), properties);
+        server = RecipeServer.createHttpServer(recipeRepository, new ServerConfig(ExecutionMode.PLATFORM,
+                RepositoryExecutorConfig.defaults(), null, new CompressionConfig(0), null));
+
+        client = new RecipesClient(config);
+        return client;
+    }
+
+    private RecipesClient start(RecipesClientConfig config) {
+        return start(config, new Properties());
+    }
+
+    private RecipesClient start() {
+        return start(RecipesClientConfig.defaults());
+    }
+
+    @Nested
+    @DisplayName("Blocking calls should")
+    public class BlockingTests {
+        @Test
+        @DisplayName("create a recipe and read it back")
+        public void shouldCreateAndGetRecipe() {
+            RecipesClient client = start();
+
+            Recipe created;
+            try(Response response = client.post(getRecipe("Tomato Soup", 40L))) {
+                assertEquals(200, response.getStatus());
+                created = response.readEntity(Recipe.class);
+            }
+
+            Recipe recipe = client.get(created.getId());
+            assertEquals("Tomato Soup", recipe.getName());
+            assertEquals(List.of(created.getId()), client.get().stream().map(Recipe::getId).toList());
+            assertEquals(1, client.search(new RecipeSearch(30L, 50L)).size());
+            assertTrue(client.search(new RecipeSearch(1L, 5L)).isEmpty());
+        }
+
+        @Test
+        @DisplayName("patch only the fields set and answer with the recipe as stored")
+        public void shouldPatchRecipe() {
+            RecipesClient client = start();
+            Recipe created = client.postAsync(getRecipe("Tomato Soup", 40L)).join();
+
+            Recipe patch = new Recipe();
+            patch.setId(created.getId());
+            patch.setDurationInMinutes(45L);
+
+            Recipe patched = client.patch(patch);
+            assertEquals("Tomato Soup", patched.getName());
+            assertEquals(45L, patched.getDurationInMinutes());
+            assertNotEquals(created.getVersion(), patched.getVersion());
+        }
+
+        @Test
+        @DisplayName("report the outcome of every item of a batch")
+        public void shouldReportBatchItems() {
+            RecipesClient client = start();
+
+            List<BatchItemResult> created = client.postAll(List.of(getRecipe("Tomato Soup", 40L), new Recipe(),
+                    getRecipe("Basil Pesto", 10L)));
+            assertEquals(List.of(201, 400, 201), created.stream().map(BatchItemResult::status).toList());
+
+            Long id = created.get(0).id();
+            List<BatchItemResult> deleted = client.deleteAll(List.of(id, -1L));
+            assertEquals(List.of(204, 404), deleted.stream().map(BatchItemResult::status).toList());
+            assertEquals(1, client.get().size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Async calls should")
+    public class AsyncTests {
+        @Test
+        @DisplayName("create, update and delete recipes")
+        public void shouldWriteRecipes() {
+            RecipesClient client = start();
+
+            Recipe created = client.postAsync(getRecipe("Tomato Soup", 40L)).join();
+            created.setName("Tomato Bisque");
+            assertTrue(client.putAsync(created).join());
+            assertEquals("Tomato Bisque", client.getAsync(created.getId()).join().getName());
+            assertEquals(1, client.searchAsync(new RecipeSearch(30L, 50L)).join().size());
+            assertTrue(client.searchAsync(new RecipeSearch(1L, 5L)).join().isEmpty());
+
+            assertTrue(client.deleteAsync(created.getId()).join());
+            assertFalse(client.deleteAsync(created.getId()).join());
+            assertFalse(client.putAsync(created).join());
+        }
+
+        @Test
+        @DisplayName("fail with the error the server answered")
+        public void shouldFailWithServerError() {
+            RecipesClient client = start();
+
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> client.getAsync(-1L).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(NotFoundException.class, failure.getCause());
+            assertEquals(0, client.getInFlightRequests());
+        }
+
+        @Test
+        @DisplayName("complete every call when more are sent than may be in flight")
+        public void shouldCompleteQueuedCalls() {
+            RecipesClient client = start(new RecipesClientConfig(RecipesClientConfig.defaults().mediaType(), false, 2,
+                    RecipesClientConfig.defaults().connectTimeout(), RecipesClientConfig.defaults().readTimeout(), 2, null));
+
+            List<CompletableFuture<Recipe>> calls = new ArrayList<>();
+            for(int i = 0; i < 20; i++) {
+                calls.add(client.postAsync(getRecipe("Recipe " + i, 10L)));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+
+            assertEquals(20, client.getAsync().join().size());
+            assertEquals(0, client.getInFlightRequests());
+            assertEquals(0, client.getWaitingRequests());
+        }
+    }
+
+    @Nested
+    @DisplayName("Delta sync should")
+    public class SyncTests {
+        @Test
+        @DisplayName("bring a replica up to date with creates, updates and deletes")
+        public void shouldSyncReplica() {
+            RecipesClient client = start();
+            Map<Long, Recipe> replica = new HashMap<>();
+
+            Recipe soup = client.postAsync(getRecipe("Tomato Soup", 40L)).join();
+            Recipe pesto = client.postAsync(getRecipe("Basil Pesto", 10L)).join();
+            long since = client.syncSince(0, replica);
+            assertEquals(2, replica.size());
+
+            pesto.setName("Walnut Pesto");
+            assertTrue(client.putAsync(pesto).join());
+            assertTrue(client.deleteAsync(soup.getId()).join());
+            long next = client.syncSince(since, replica);
+
+            assertTrue(next > since);
+            assertEquals(List.of(pesto.getId()), List.copyOf(replica.keySet()));
+            assertEquals("Walnut Pesto", replica.get(pesto.getId()).getName());
+            assertEquals(next, client.syncSince(next, replica));
+        }
+
+        @Test
+        @DisplayName("copy everything again when the deletes since its sequence were pruned")
+        public void shouldResetReplicaAfterPruning() {
+            Properties properties = new Properties();
+            properties.setProperty(RecipeRepository.TOMBSTONE_RETENTION_PROPERTY, "1");
+            RecipesClient client = start(RecipesClientConfig.defaults(), properties);
+            Map<Long, Recipe> replica = new HashMap<>();
+
+            Recipe soup = client.postAsync(getRecipe("Tomato Soup", 40L)).join();
+            Recipe pesto = client.postAsync(getRecipe("Basil Pesto", 10L)).join();
+            long since = client.syncSince(0, replica);
+
+            assertTrue(client.deleteAsync(soup.getId()).join());
+            pesto.setName("Walnut Pesto");
+            assertTrue(client.putAsync(pesto).join());
+            Recipe stew = client.postAsync(getRecipe("Beef Stew", 120L)).join();
+            assertTrue(client.deleteAsync(stew.getId()).join());
+            long next = client.syncSince(since, replica);
+
+            assertEquals(recipeRepository.getChangeCount(), next);
+            assertEquals(List.of(pesto.getId()), List.copyOf(replica.keySet()));
+            assertEquals("Walnut Pesto", replica.get(pesto.getId()).getName());
+        }
+    }
+
+    @Nested
+    @DisplayName("Compact client should")
+    public class CompactTests {
+        @Test
+        @DisplayName("exchange recipes as compressed Smile")
+        public void shouldRoundTripSmile() {
+            start();
+            try(RecipesClient compact = RecipesClient.compact()) {
+                Recipe created = compact.postAsync(getRecipe("Tomato Soup", 40L)).join();
+
+                assertEquals("Tomato Soup", compact.get(created.getId()).getName());
+                assertEquals(1, compact.get().size());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Response cache should")
+    public class ResponseCacheTests {
+        @Test
+        @DisplayName("answer unchanged recipes from the cache and drop the ones written")
+        public void shouldRevalidateAndInvalidate() {
+            RecipesClient client = start(RecipesClientConfig.defaults().withResponseCache(new CacheConfig(100, CachePolicy.LRU)));
+            Recipe created = client.postAsync(getRecipe("Tomato Soup", 40L)).join();
+
+            client.get(created.getId());
+            assertEquals("Tomato Soup", client.get(created.getId()).getName());
+            assertEquals(1, client.getResponseCacheStats().orElseThrow().hits());
+
+            created.setName("Tomato Bisque");
+            client.put(created).close();
+
+            assertEquals("Tomato Bisque", client.get(created.getId()).getName());
+            assertEquals(1, client.getResponseCacheStats().orElseThrow().hits());
+        }
+    }
+
+    private static Recipe getRecipe(String name, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(name + " description");
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
@@ -0,0 +1,167 @@
+package org.olivetree.recipes.client;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.olivetree.recipes.repository.cache.CacheConfig;
+import org.olivetree.recipes.repository.cache.CachePolicy;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+    // Away from the recipes server port, so both can run at once
+    private static final String BASE_URI = "http://localhost:8089";
+
+    private CountingResource resource;
+    private HttpServer server;
+    private ResponseCache responseCache;
+    private Client client;
+
+    @BeforeEach
+    public void setUp() {
+        resource = new CountingResource();
+        server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), new ResourceConfig().register(resource));
+
+        responseCache = new ResponseCache(new CacheConfig(100, CachePolicy.LRU));
+        client = ClientBuilder.newClient().register(responseCache);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Response cache should revalidate a kept response with its ETag and answer a 304 with its body")
+    public void shouldRevalidateWithETag() {
+        assertEquals("version 1", get("tagged"));
+        assertEquals("version 1", get("tagged"));
+
+        assertEquals(1, resource.bodies.get());
+        assertEquals(List.of("\"1\""), resource.conditions);
+        assertEquals(1, responseCache.getStats().hits());
+    }
+
+    @Test
+    @DisplayName("Response cache should drop a response written through the same client")
+    public void shouldDropWrittenResponse() {
+        assertEquals("version 1", get("tagged"));
+
+        target("tagged").request().post(Entity.text("")).close();
+
+        assertEquals("version 2", get("tagged"));
+        assertEquals(2, resource.bodies.get());
+        assertTrue(resource.conditions.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Response cache should answer within max-age and refetch an expired response without an ETag")
+    public void shouldRefetchExpiredResponseWithoutETag() throws InterruptedException {
+        assertEquals("fresh", get("fresh"));
+        assertEquals("fresh", get("fresh"));
+        assertEquals(1, resource.bodies.get());
+
+        Thread.sleep(1100);
+
+        assertEquals("fresh", get("fresh"));
+        assertEquals(2, resource.bodies.get());
+        assertTrue(resource.conditions.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Response cache should not keep no-store responses")
+    public void shouldNotKeepNoStoreResponses() {
+        get("private");
+        get("private");
+
+        assertEquals(2, resource.bodies.get());
+    }
+
+    private String get(String path) {
+        return target(path).request(MediaType.TEXT_PLAIN).get(String.class);
+    }
+
+    private WebTarget target(String path) {
+        return client.target(BASE_URI).path("responses").path(path);
+    }
+
+    // Counts the bodies it sends and records the If-None-Match of the requests it gets
+    @Path("responses")
+    public static class CountingResource {
+        private final AtomicInteger bodies = new AtomicInteger();
+        private final List<String> conditions = new CopyOnWriteArrayList<>();
+        private final AtomicInteger version = new AtomicInteger(1);
+
+        @GET
+        @Path("tagged")
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response getTagged(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Context Request request) {
+            record(ifNoneMatch);
+            EntityTag etag = new EntityTag(String.valueOf(version.get()));
+
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if(notModified != null) {
+                return notModified.tag(etag).build();
+            }
+
+            bodies.incrementAndGet();
+            return Response.ok("version " + version.get()).tag(etag).build();
+        }
+
+        @POST
+        @Path("tagged")
+        public Response updateTagged() {
+            version.incrementAndGet();
+            return Response.noContent().build();
+        }
+
+        @GET
+        @Path("fresh")
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response getFresh(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+            record(ifNoneMatch);
+            bodies.incrementAndGet();
+            return Response.ok("fresh").header(HttpHeaders.CACHE_CONTROL, "max-age=1").build();
+        }
+
+        @GET
+        @Path("private")
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response getPrivate(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+            record(ifNoneMatch);
+            bodies.incrementAndGet();
+            return Response.ok("private").header(HttpHeaders.CACHE_CONTROL, "no-store").tag("1").build();
+        }
+
+        private void record(String ifNoneMatch) {
+            if(ifNoneMatch != null) {
+                conditions.add(ifNoneMatch);
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@ public class Recipe {
     private String name;
     private String description;
     private Long durationInMinutes;
+    // Incremented by every update, set by the repository
+    private Long version;
 
     public Long getId() {
         return id;
@@ -40,6 +42,14 @@ public class Recipe {
         this.durationInMinutes = durationInMinutes;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public static boolean isValidRecipe(Recipe recipe) {
         if(recipe == null || recipe.getName() == null ||
                 recipe.getDescription() == null ||
@@ -51,6 +61,42 @@ public class Recipe {
         return durationInMinutes <= MAX_RECIPE_DURATION_IN_MINUTES;
     }
 
+    // A partial update only needs the fields it sets to be valid, the others keep their stored value
+    public static boolean isValidPatch(Recipe patch) {
+        if(patch == null) {
+            return false;
+        }
+
+        Long durationInMinutes = patch.getDurationInMinutes();
+        return durationInMinutes == null || durationInMinutes <= MAX_RECIPE_DURATION_IN_MINUTES;
+    }
+
+    // Blank name and description mean "unchanged", like missing ones
+    public static Recipe asPatch(Recipe recipe) {
+        Recipe patch = new Recipe();
+        patch.setName(isNotNullAndNotBlank(recipe.getName()) ? recipe.getName() : null);
+        patch.setDescription(isNotNullAndNotBlank(recipe.getDescription()) ? recipe.getDescription() : null);
+        patch.setDurationInMinutes(recipe.getDurationInMinutes());
+
+        return patch;
+    }
+
+    // Applies a patch to a stored recipe, keeping its id and version
+    public static Recipe merge(Recipe recipe, Recipe patch) {
+        Recipe merged = new Recipe();
+        merged.setId(recipe.getId());
+        merged.setName(patch.getName() != null ? patch.getName() : recipe.getName());
+        merged.setDescription(patch.getDescription() != null ? patch.getDescription() : recipe.getDescription());
+        merged.setDurationInMinutes(patch.getDurationInMinutes() != null ? patch.getDurationInMinutes() : recipe.getDurationInMinutes());
+        merged.setVersion(recipe.getVersion());
+
+        return merged;
+    }
+
+    private static boolean isNotNullAndNotBlank(String str) {
+        return str != null && !str.isBlank();
+    }
+
     @Override
     public String toString() {
         return "id=" + id + ", name=" + name + ", description=" + description + ", duration=" + durationInMinutes;
@@ -0,0 +1,14 @@
+package org.olivetree.recipes.domain;
+
+// A recipe as a write left it, or only its id when the write deleted it. sequence is the position of the write
+// in the repository's change sequence, see RecipeRepository.getChangesSince.
+public record RecipeDelta(long sequence, long id, boolean deleted, Recipe recipe) {
+
+    public static RecipeDelta changed(long sequence, Recipe recipe) {
+        return new RecipeDelta(sequence, recipe.getId(), false, recipe);
+    }
+
+    public static RecipeDelta deleted(long sequence, long id) {
+        return new RecipeDelta(sequence, id, true, null);
+    }
+}
@@ -1,3 +1,22 @@
 package org.olivetree.recipes.domain;
 
-public record RecipeSearch(Long durationFrom, Long durationTo) {}
+// Both duration bounds are needed to filter by duration. text matches recipes whose name or description
+// contain every word of it, see TextQuery. A text without any word filters nothing.
+public record RecipeSearch(Long durationFrom, Long durationTo, String text) {
+
+    // Matches every recipe
+    public static final RecipeSearch ALL = new RecipeSearch(null, null, null);
+
+    public RecipeSearch(Long durationFrom, Long durationTo) {
+        this(durationFrom, durationTo, null);
+    }
+
+    public boolean hasDurationRange() {
+        return durationFrom != null && durationTo != null;
+    }
+
+    // Words are runs of letters and digits, as the Tokenizer splits them
+    public boolean hasText() {
+        return text != null && text.chars().anyMatch(Character::isLetterOrDigit);
+    }
+}
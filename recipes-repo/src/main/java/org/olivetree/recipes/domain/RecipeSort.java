@@ -0,0 +1,126 @@
+package org.olivetree.recipes.domain;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+// Order of a listing or search, given as sort=<field>[,asc|desc]. Recipes with the same value are ordered
+// by id in the same direction, which makes the order total so pages can continue after a recipe.
+//
+// The cursor a page continues from carries the sort key and the id of the last recipe, <key>,<id>, or only
+// the id when sorting by id. It does not depend on that recipe still existing when the next page is read.
+public record RecipeSort(Field field, boolean descending) {
+
+    public static final RecipeSort BY_ID = new RecipeSort(Field.ID, false);
+
+    public enum Field {
+        ID("id", Comparator.comparing(Recipe::getId), Comparator.comparing(RecipeSummary::id)),
+        NAME("name", Comparator.comparing(Recipe::getName), Comparator.comparing(RecipeSummary::name)),
+        DURATION("duration", Comparator.comparing(Recipe::getDurationInMinutes), Comparator.comparing(RecipeSummary::durationInMinutes));
+
+        private final String column;
+        private final Comparator<Recipe> comparator;
+        private final Comparator<RecipeSummary> summaryComparator;
+
+        Field(String column, Comparator<Recipe> comparator, Comparator<RecipeSummary> summaryComparator) {
+            this.column = column;
+            this.comparator = comparator;
+            this.summaryComparator = summaryComparator;
+        }
+
+        // Also the name used by the sort parameter
+        public String column() {
+            return column;
+        }
+    }
+
+    // null or blank sorts by id. Throws IllegalArgumentException for unknown fields or directions.
+    public static RecipeSort parse(String sort) {
+        if(sort == null || sort.isBlank()) {
+            return BY_ID;
+        }
+
+        String[] parts = sort.trim().toLowerCase(Locale.ROOT).split("\\s*,\\s*", -1);
+        if(parts.length > 2) {
+            throw new IllegalArgumentException("Invalid sort: " + sort);
+        }
+
+        Field field = switch(parts[0]) {
+            case "id" -> Field.ID;
+            case "name" -> Field.NAME;
+            case "duration" -> Field.DURATION;
+            default -> throw new IllegalArgumentException("Unknown sort field: " + parts[0]);
+        };
+
+        String direction = parts.length == 2 ? parts[1] : "asc";
+        return switch(direction) {
+            case "asc" -> new RecipeSort(field, false);
+            case "desc" -> new RecipeSort(field, true);
+            default -> throw new IllegalArgumentException("Unknown sort direction: " + direction);
+        };
+    }
+
+    public boolean isById() {
+        return equals(BY_ID);
+    }
+
+    public String cursorOf(Recipe recipe) {
+        return cursorOf(switch(field) {
+            case ID -> null;
+            case NAME -> recipe.getName();
+            case DURATION -> recipe.getDurationInMinutes();
+        }, recipe.getId());
+    }
+
+    public String cursorOf(RecipeSummary summary) {
+        return cursorOf(switch(field) {
+            case ID -> null;
+            case NAME -> summary.name();
+            case DURATION -> summary.durationInMinutes();
+        }, summary.id());
+    }
+
+    private static String cursorOf(Object key, Long id) {
+        return key == null ? String.valueOf(id) : key + "," + id;
+    }
+
+    // A recipe with the sort key and id of the cursor, to compare recipes against. Names may contain commas,
+    // the id is after the last one. Throws IllegalArgumentException for cursors of another sort.
+    public Recipe parseCursor(String cursor) {
+        Recipe after = new Recipe();
+        if(field == Field.ID) {
+            after.setId(Long.parseLong(cursor));
+            return after;
+        }
+
+        int separator = cursor.lastIndexOf(',');
+        if(separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor for sort by " + field.column() + ": " + cursor);
+        }
+
+        String key = cursor.substring(0, separator);
+        after.setId(Long.parseLong(cursor.substring(separator + 1)));
+        switch(field) {
+            case NAME -> after.setName(key);
+            case DURATION -> after.setDurationInMinutes(Long.parseLong(key));
+            case ID -> { }
+        }
+
+        return after;
+    }
+
+    public Comparator<Recipe> comparator() {
+        Comparator<Recipe> comparator = field == Field.ID ?
+                field.comparator :
+                field.comparator.thenComparing(Field.ID.comparator);
+
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    public Comparator<RecipeSummary> summaryComparator() {
+        Comparator<RecipeSummary> comparator = field == Field.ID ?
+                field.summaryComparator :
+                field.summaryComparator.thenComparing(Field.ID.summaryComparator);
+
+        return descending ? comparator.reversed() : comparator;
+    }
+}
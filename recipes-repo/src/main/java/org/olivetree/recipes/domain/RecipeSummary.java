@@ -0,0 +1,9 @@
+package org.olivetree.recipes.domain;
+
+// A recipe without its description, for listings that do not show it
+public record RecipeSummary(Long id, String name, Long durationInMinutes, Long version) {
+
+    public static RecipeSummary of(Recipe recipe) {
+        return new RecipeSummary(recipe.getId(), recipe.getName(), recipe.getDurationInMinutes(), recipe.getVersion());
+    }
+}
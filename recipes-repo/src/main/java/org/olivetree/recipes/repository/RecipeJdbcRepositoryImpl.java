@@ -2,59 +2,328 @@ package org.olivetree.recipes.repository;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
 import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
 import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.olivetree.recipes.repository.migration.SchemaMigrator;
+import org.olivetree.recipes.repository.pool.ConnectionPool;
+import org.olivetree.recipes.repository.pool.PoolConfig;
+import org.olivetree.recipes.repository.pool.PoolStats;
+import org.olivetree.recipes.repository.search.TextQuery;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RecipeJdbcRepositoryImpl implements RecipeRepository {
-    private static final String H2_DATABASE_URL = "jdbc:h2:file:%s;AUTO_SERVER=TRUE;INIT=RUNSCRIPT FROM './db-init.sql'";
+    // Connections do not run any DDL when opened, the schema is managed by SchemaMigrator
+    private static final String H2_DATABASE_URL = "jdbc:h2:file:%s;AUTO_SERVER=TRUE";
 
     private static final String INSERT_RECIPE = """
-        INSERT INTO Recipes(name, description, duration)
-        VALUES (?, ?, ?)
+        INSERT INTO Recipes(name, description, duration, change_sequence)
+        VALUES (?, ?, ?, ?)
     """;
 
     private static final String UPDATE_RECIPE = """
         UPDATE Recipes
-        SET name = ?, description = ?, duration = ?
+        SET name = ?, description = ?, duration = ?, version = version + 1, change_sequence = ?
         WHERE id = ?
     """;
-    private static final String GET_RECIPES = "SELECT * FROM Recipes";
+
+    // FINAL TABLE returns the rows as the update left them, so the write and reading back its result are a
+    // single statement
+    private static final String UPDATE_RECIPE_RETURNING = """
+        SELECT * FROM FINAL TABLE (
+            UPDATE Recipes
+            SET name = ?, description = ?, duration = ?, version = version + 1, change_sequence = ?
+            WHERE id = ?
+        )
+    """;
+
+    private static final String PATCH_RECIPE_RETURNING = """
+        SELECT * FROM FINAL TABLE (
+            UPDATE Recipes
+            SET name = COALESCE(?, name), description = COALESCE(?, description), duration = COALESCE(?, duration),
+                version = version + 1, change_sequence = ?
+            WHERE id = ?
+        )
+    """;
+    private static final String GET_RECIPES = "SELECT * FROM Recipes ORDER BY id";
+
+    private static final String GET_RECIPES_AFTER = "SELECT * FROM Recipes WHERE id > ? ORDER BY id LIMIT ?";
 
     private static final String GET_RECIPE_BY_ID = "SELECT * FROM Recipes WHERE id = ?";
 
+    private static final String GET_RECIPE_VERSION = "SELECT version FROM Recipes WHERE id = ?";
+
+    private static final String GET_CHANGE_COUNT = "SELECT change_count FROM Recipes_Changes WHERE id = 1";
+
+    private static final String GET_WRITTEN_CHANGE_COUNT = "SELECT change_count - skipped_count FROM Recipes_Changes WHERE id = 1";
+
+    private static final String GET_PRUNED_SEQUENCE = "SELECT pruned_sequence FROM Recipes_Changes WHERE id = 1";
+
+    // Returns the latest change sequence of the tombstones it removed, NULL when there were none
+    private static final String PRUNE_TOMBSTONES = """
+        SELECT MAX(change_sequence) FROM OLD TABLE (DELETE FROM Recipe_Tombstones WHERE change_sequence <= ?)
+    """;
+
+    private static final String ADVANCE_PRUNED_SEQUENCE = "UPDATE Recipes_Changes SET pruned_sequence = GREATEST(pruned_sequence, ?) WHERE id = 1";
+
+    // Waits for the writers holding the row, so every sequence up to the new count is committed once it returns.
+    // The sequences skipped are counted apart, the right-hand sides read the values before the update.
+    private static final String ADVANCE_CHANGE_COUNT = """
+        UPDATE Recipes_Changes SET skipped_count = skipped_count + ? - change_count, change_count = ?
+        WHERE id = 1 AND change_count < ?
+    """;
+
+    private static final String GET_ID_ALLOCATION = """
+        SELECT identity_base, identity_increment FROM Information_Schema.Columns
+        WHERE table_name = 'RECIPES' AND column_name = 'ID'
+    """;
+
+    private static final String COUNT_IDS_OUTSIDE_ALLOCATION = "SELECT COUNT(*) FROM Recipes WHERE MOD(id, ?) <> ?";
+
+    // DDL takes no parameters, both values are numbers formatted in
+    private static final String ALTER_ID_ALLOCATION = "ALTER TABLE Recipes ALTER COLUMN id RESTART WITH %d SET INCREMENT BY %d";
+
+    // Runs last in the transaction of every write and reserves a change sequence for each row it wrote. The row
+    // stays locked until the commit, so writers take their sequences in the order they commit and readers of
+    // getChangesSince never see a later sequence before an earlier one. Writers only wait for each other for
+    // the few statements between this and the commit, not for their whole writes.
+    private static final String RESERVE_CHANGES = """
+        SELECT change_count FROM FINAL TABLE (
+            UPDATE Recipes_Changes SET change_count = change_count + ? WHERE id = 1
+        )
+    """;
+
+    // Writes leave their offset among the reserved sequences in change_sequence, which only their own transaction
+    // sees. These move the rows written onto the sequences reserved, starting at the first parameter.
+    private static final String SET_RECIPE_CHANGE_SEQUENCES = "UPDATE Recipes SET change_sequence = ? + change_sequence WHERE id = ANY(?)";
+
+    private static final String SET_TOMBSTONE_CHANGE_SEQUENCES = "UPDATE Recipe_Tombstones SET change_sequence = ? + change_sequence WHERE id = ANY(?)";
+
+    // Both sides read their change_sequence index in order and stop at the limit
+    private static final String GET_CHANGES_SINCE = """
+        SELECT * FROM (
+            (SELECT id, name, description, duration, version, change_sequence, FALSE AS deleted FROM Recipes
+             WHERE change_sequence > ? AND change_sequence <= ? ORDER BY change_sequence LIMIT ?)
+            UNION ALL
+            (SELECT id, NULL, NULL, NULL, NULL, change_sequence, TRUE FROM Recipe_Tombstones
+             WHERE change_sequence > ? AND change_sequence <= ? ORDER BY change_sequence LIMIT ?)
+        ) ORDER BY change_sequence LIMIT ?
+    """;
+
     private static final String SEARCH_RECIPES = "SELECT * FROM Recipes WHERE duration >= ? AND duration <= ?";
 
-    private static final String DELETE_RECIPE = "DELETE FROM Recipes WHERE id = ?";
+    private static final String SEARCH_RECIPES_AFTER = """
+        SELECT * FROM Recipes
+        WHERE duration >= ? AND duration <= ? AND id > ?
+        ORDER BY id LIMIT ?
+    """;
+
+    // Text searches filter the rows in Java, so the page limit can only be applied after that filter
+    private static final String SEARCH_RECIPES_ORDERED_AFTER = """
+        SELECT * FROM Recipes
+        WHERE duration >= ? AND duration <= ? AND id > ?
+        ORDER BY id
+    """;
+
+    // Sorted searches are generated from these, see sortedQuery
+    private static final String RECIPE_COLUMNS = "*";
+
+    private static final String SUMMARY_COLUMNS = "id, name, duration, version";
+
+    private static final String GET_RECIPES_BY_IDS = "SELECT * FROM Recipes WHERE id = ANY(?) ORDER BY id";
+
+    // Leaves a tombstone with the change sequence of the delete, only when there was a row to delete
+    private static final String DELETE_RECIPE = """
+        INSERT INTO Recipe_Tombstones(id, change_sequence)
+        SELECT id, ? FROM OLD TABLE (DELETE FROM Recipes WHERE id = ?)
+    """;
+
+    // Rows are only computed as they are fetched instead of materializing the whole result first
+    private static final String ENABLE_LAZY_QUERY_EXECUTION = "SET LAZY_QUERY_EXECUTION TRUE";
+
+    private static final String DISABLE_LAZY_QUERY_EXECUTION = "SET LAZY_QUERY_EXECUTION FALSE";
+
+    private static final int STREAM_FETCH_SIZE = 256;
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
 
     private final DataSource dataSource;
+    private final ConnectionPool connectionPool;
+    private final int batchSize;
+    private final long tombstoneRetention;
 
     public RecipeJdbcRepositoryImpl(String databaseFile) {
+        this(databaseFile, null, DEFAULT_BATCH_SIZE);
+    }
+
+    public RecipeJdbcRepositoryImpl(String databaseFile, PoolConfig poolConfig) {
+        this(databaseFile, poolConfig, DEFAULT_BATCH_SIZE);
+    }
+
+    public RecipeJdbcRepositoryImpl(String databaseFile, PoolConfig poolConfig, int batchSize) {
+        this(databaseFile, poolConfig, batchSize, DEFAULT_TOMBSTONE_RETENTION);
+    }
+
+    // poolConfig may be null to open a new connection per call, batchSize is the number of rows
+    // committed per transaction by the batch operations. Deletes prune the tombstones that are more than
+    // tombstoneRetention changes old.
+    public RecipeJdbcRepositoryImpl(String databaseFile, PoolConfig poolConfig, int batchSize, long tombstoneRetention) {
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        if(tombstoneRetention < 1) {
+            throw new IllegalArgumentException("Invalid tombstone retention: " + tombstoneRetention);
+        }
+
+        DataSource physicalDataSource = createDataSource(databaseFile);
+
+        this.connectionPool = poolConfig == null ? null : new ConnectionPool(physicalDataSource, poolConfig);
+        this.dataSource = connectionPool == null ? physicalDataSource : connectionPool;
+        this.batchSize = batchSize;
+        this.tombstoneRetention = tombstoneRetention;
+
+        // Migrating takes two connections, which a pool of one could never hand out
+        new SchemaMigrator(physicalDataSource).migrate();
+    }
+
+    // Makes the database generate only ids with id % modulus == residue from now on, so that several databases
+    // can share one id space. Recipes created before must already follow the allocation, and a database that was
+    // given another modulus before cannot change it.
+    public void allocateIds(int residue, int modulus) {
+        if(modulus < 1 || residue < 0 || residue >= modulus) {
+            throw new IllegalArgumentException("Invalid id allocation: " + residue + " of " + modulus);
+        }
+
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()) {
+            long nextId;
+            long increment;
+            try(ResultSet rs = statement.executeQuery(GET_ID_ALLOCATION)) {
+                if(!rs.next()) {
+                    throw new SQLException("Missing id column");
+                }
+                nextId = rs.getLong(1);
+                increment = rs.getLong(2);
+            }
+
+            if(increment == modulus && Math.floorMod(nextId, modulus) == residue) {
+                return;
+            }
+            if(increment != 1) {
+                throw new IllegalStateException("Ids are already allocated by " + increment + ", not as " + residue + " of " + modulus);
+            }
+
+            try(PreparedStatement count = connection.prepareStatement(COUNT_IDS_OUTSIDE_ALLOCATION)) {
+                count.setInt(1, modulus);
+                count.setInt(2, residue);
+                try(ResultSet rs = count.executeQuery()) {
+                    if(rs.next() && rs.getLong(1) > 0) {
+                        throw new IllegalStateException(rs.getLong(1) + " recipes have ids outside of " + residue + " of " + modulus);
+                    }
+                }
+            }
+
+            // The next id is past every id ever generated, deleted ones included
+            long startWith = nextId + Math.floorMod(residue - nextId, modulus);
+            statement.execute(ALTER_ID_ALLOCATION.formatted(startWith, modulus));
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to allocate ids", e);
+        }
+    }
+
+    // Raises the change count to at least changeCount, so the writes from now on take later change sequences.
+    // Returns once the writes that took a sequence up to changeCount are committed.
+    public void advanceChangeCount(long changeCount) {
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(ADVANCE_CHANGE_COUNT)) {
+            statement.setLong(1, changeCount);
+            statement.setLong(2, changeCount);
+            statement.setLong(3, changeCount);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to advance the change count", e);
+        }
+    }
+
+    // The change count without the sequences advanceChangeCount skipped, so it only grows with writes
+    public long getWrittenChangeCount() {
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(GET_WRITTEN_CHANGE_COUNT)) {
+
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to get the written change count", e);
+        }
+    }
+
+    public Optional<PoolStats> getPoolStats() {
+        return Optional.ofNullable(connectionPool).map(ConnectionPool::getStats);
+    }
+
+    @Override
+    public void close() {
+        if(connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    private static DataSource createDataSource(String databaseFile) {
         JdbcDataSource jdbcDataSource = new JdbcDataSource();
         jdbcDataSource.setURL(H2_DATABASE_URL.formatted(databaseFile));
 
-        this.dataSource = jdbcDataSource;
+        return jdbcDataSource;
     }
 
     @Override
     public Recipe createRecipe(Recipe recipe) {
-        try(Connection connection = dataSource.getConnection();
-            PreparedStatement statement = connection.prepareStatement(INSERT_RECIPE, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, recipe.getName());
-            statement.setString(2, recipe.getDescription());
-            statement.setLong(3, recipe.getDurationInMinutes());
-            statement.executeUpdate();
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try(PreparedStatement statement = connection.prepareStatement(INSERT_RECIPE, Statement.RETURN_GENERATED_KEYS)) {
+                statement.setString(1, recipe.getName());
+                statement.setString(2, recipe.getDescription());
+                statement.setLong(3, recipe.getDurationInMinutes());
+                statement.setLong(4, 0);
+                statement.executeUpdate();
 
-            try(ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if(generatedKeys.next()) {
-                    recipe.setId(generatedKeys.getLong(1));
+                Long id = null;
+                try(ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if(generatedKeys.next()) {
+                        id = generatedKeys.getLong(1);
+                    }
                 }
+
+                if(id != null) {
+                    assignChangeSequences(connection, SET_RECIPE_CHANGE_SEQUENCES, List.of(id), 1);
+                }
+                connection.commit();
+                if(id != null) {
+                    recipe.setId(id);
+                    recipe.setVersion(1L);
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
 
             return recipe;
@@ -63,11 +332,279 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
         }
     }
 
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try(PreparedStatement statement = connection.prepareStatement(INSERT_RECIPE, Statement.RETURN_GENERATED_KEYS)) {
+                for(List<Recipe> chunk : chunks(recipes)) {
+                    for(int i = 0; i < chunk.size(); i++) {
+                        Recipe recipe = chunk.get(i);
+                        statement.setString(1, recipe.getName());
+                        statement.setString(2, recipe.getDescription());
+                        statement.setLong(3, recipe.getDurationInMinutes());
+                        statement.setLong(4, i);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    List<Long> ids = new ArrayList<>(chunk.size());
+                    try(ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        while(ids.size() < chunk.size() && generatedKeys.next()) {
+                            ids.add(generatedKeys.getLong(1));
+                        }
+                    }
+
+                    assignChangeSequences(connection, SET_RECIPE_CHANGE_SEQUENCES, ids, chunk.size());
+                    connection.commit();
+                    // Only once committed, a failing chunk leaves its recipes without an id
+                    for(int i = 0; i < ids.size(); i++) {
+                        chunk.get(i).setId(ids.get(i));
+                        chunk.get(i).setVersion(1L);
+                    }
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            return recipes;
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to save recipes", e);
+        }
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        List<Map.Entry<Long, Recipe>> entries = new ArrayList<>(recipes.entrySet());
+
+        try {
+            return executeBatch(UPDATE_RECIPE, SET_RECIPE_CHANGE_SEQUENCES, entries, Map.Entry::getKey, (statement, entry, sequenceOffset) -> {
+                Recipe recipe = entry.getValue();
+                statement.setString(1, recipe.getName());
+                statement.setString(2, recipe.getDescription());
+                statement.setLong(3, recipe.getDurationInMinutes());
+                statement.setLong(4, sequenceOffset);
+                statement.setLong(5, entry.getKey());
+            }).size();
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to update recipes", e);
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        try {
+            return executeBatch(DELETE_RECIPE, SET_TOMBSTONE_CHANGE_SEQUENCES, new ArrayList<>(ids), id -> id, (statement, id, sequenceOffset) -> {
+                statement.setLong(1, sequenceOffset);
+                statement.setLong(2, id);
+            }, this::pruneTombstones);
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to delete recipes", e);
+        }
+    }
+
+    private <T> List<T> executeBatch(String sql, String sequenceSql, List<T> items, Function<T, Long> idOf,
+                                     BatchBinder<T> binder) throws SQLException {
+        return executeBatch(sql, sequenceSql, items, idOf, binder, null);
+    }
+
+    // Runs the statement once per item with JDBC batching, committing every batchSize items. Each item gets its
+    // own change sequence, moved onto the rows of idOf with sequenceSql, a chunk that changed nothing is rolled
+    // back. Returns the items that affected a row, in the order given.
+    //
+    // Writers only serialize on the change count row at their end, so the rows of a chunk are written in id
+    // order: two chunks sharing rows then lock them in the same order and cannot deadlock.
+    private <T> List<T> executeBatch(String sql, String sequenceSql, List<T> items, Function<T, Long> idOf,
+                                     BatchBinder<T> binder, AfterWrite afterWrite) throws SQLException {
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            List<T> affectedItems = new ArrayList<>();
+            try(PreparedStatement statement = connection.prepareStatement(sql)) {
+                for(List<T> chunk : chunks(items)) {
+                    int[] order = IntStream.range(0, chunk.size()).boxed()
+                            .sorted(Comparator.comparing(i -> idOf.apply(chunk.get(i))))
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+                    for(int i : order) {
+                        binder.bind(statement, chunk.get(i), i);
+                        statement.addBatch();
+                    }
+
+                    int[] updateCounts = statement.executeBatch();
+                    boolean[] affected = new boolean[chunk.size()];
+                    for(int k = 0; k < updateCounts.length; k++) {
+                        affected[order[k]] = updateCounts[k] > 0 || updateCounts[k] == Statement.SUCCESS_NO_INFO;
+                    }
+
+                    int chunkStart = affectedItems.size();
+                    List<Long> affectedIds = new ArrayList<>();
+                    for(int i = 0; i < chunk.size(); i++) {
+                        if(affected[i]) {
+                            affectedItems.add(chunk.get(i));
+                            affectedIds.add(idOf.apply(chunk.get(i)));
+                        }
+                    }
+
+                    if(affectedItems.size() > chunkStart) {
+                        long changeSequence = assignChangeSequences(connection, sequenceSql, affectedIds, chunk.size());
+                        if(afterWrite != null) {
+                            afterWrite.run(connection, changeSequence + chunk.size() - 1);
+                        }
+                        connection.commit();
+                    } else {
+                        connection.rollback();
+                    }
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            return affectedItems;
+        }
+    }
+
+    // Runs a single write statement of the row with id, which only takes a change sequence when it affected the row
+    private int executeWrite(String sql, String sequenceSql, Long id, WriteBinder binder, AfterWrite afterWrite) throws SQLException {
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try(PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement, 0);
+                int affectedRows = statement.executeUpdate();
+
+                if(affectedRows > 0) {
+                    long changeSequence = assignChangeSequences(connection, sequenceSql, List.of(id), 1);
+                    if(afterWrite != null) {
+                        afterWrite.run(connection, changeSequence);
+                    }
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+
+                return affectedRows;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Same as executeWrite for an update of the recipe with id wrapped in FINAL TABLE, returns the updated recipe
+    private Optional<Recipe> executeUpdateReturning(String sql, Long id, WriteBinder binder) throws SQLException {
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try(PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement, 0);
+
+                Optional<Recipe> updatedRecipe;
+                try(ResultSet rs = statement.executeQuery()) {
+                    updatedRecipe = rs.next() ? Optional.of(getRecipe(rs)) : Optional.empty();
+                }
+
+                if(updatedRecipe.isPresent()) {
+                    assignChangeSequences(connection, SET_RECIPE_CHANGE_SEQUENCES, List.of(id), 1);
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+
+                return updatedRecipe;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Reserves count change sequences and moves the rows of ids, written with their offset among them, onto
+    // the sequences reserved. Returns the first of them.
+    private static long assignChangeSequences(Connection connection, String sequenceSql, List<Long> ids, int count) throws SQLException {
+        long changeSequence;
+        try(PreparedStatement statement = connection.prepareStatement(RESERVE_CHANGES)) {
+            statement.setInt(1, count);
+
+            try(ResultSet rs = statement.executeQuery()) {
+                if(!rs.next()) {
+                    throw new SQLException("Missing change count row");
+                }
+                changeSequence = rs.getLong(1) - count + 1;
+            }
+        }
+
+        try(PreparedStatement statement = connection.prepareStatement(sequenceSql)) {
+            statement.setLong(1, changeSequence);
+            statement.setArray(2, connection.createArrayOf("BIGINT", ids.toArray()));
+            statement.executeUpdate();
+        }
+
+        return changeSequence;
+    }
+
+    // Runs in the transaction of a delete, which already holds the change count row, so pruning takes no lock of
+    // its own. Only the oldest tombstones are in range, the index on their sequence finds them right away.
+    private void pruneTombstones(Connection connection, long changeSequence) throws SQLException {
+        long horizon = changeSequence - tombstoneRetention;
+        if(horizon <= 0) {
+            return;
+        }
+
+        long prunedSequence;
+        try(PreparedStatement statement = connection.prepareStatement(PRUNE_TOMBSTONES)) {
+            statement.setLong(1, horizon);
+
+            try(ResultSet rs = statement.executeQuery()) {
+                if(!rs.next()) {
+                    return;
+                }
+                prunedSequence = rs.getLong(1);
+                if(rs.wasNull()) {
+                    return;
+                }
+            }
+        }
+
+        try(PreparedStatement statement = connection.prepareStatement(ADVANCE_PRUNED_SEQUENCE)) {
+            statement.setLong(1, prunedSequence);
+            statement.executeUpdate();
+        }
+    }
+
+    private <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for(int from = 0; from < items.size(); from += batchSize) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + batchSize)));
+        }
+
+        return chunks;
+    }
+
+    @FunctionalInterface
+    private interface BatchBinder<T> {
+        void bind(PreparedStatement statement, T item, long sequenceOffset) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface WriteBinder {
+        void bind(PreparedStatement statement, long sequenceOffset) throws SQLException;
+    }
+
+    // Runs before a write that changed rows commits, with the last change sequence it took
+    @FunctionalInterface
+    private interface AfterWrite {
+        void run(Connection connection, long changeSequence) throws SQLException;
+    }
+
     @Override
     public List<Recipe> getAllRecipes() {
         try(Connection connection = dataSource.getConnection();
-            Statement statement = connection.createStatement()) {
-            ResultSet rs = statement.executeQuery(GET_RECIPES);
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(GET_RECIPES)) {
 
             return getRecipesFromResultSet(rs);
 
@@ -77,11 +614,27 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
     }
 
     @Override
-    public void deleteRecipe(Long id) {
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
         try(Connection connection = dataSource.getConnection();
-            PreparedStatement statement = connection.prepareStatement(DELETE_RECIPE)) {
-            statement.setLong(1, id);
-            statement.executeUpdate();
+            PreparedStatement statement = connection.prepareStatement(GET_RECIPES_AFTER)) {
+            statement.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            statement.setInt(2, limit);
+
+            try(ResultSet rs = statement.executeQuery()) {
+                return getRecipesFromResultSet(rs);
+            }
+        } catch(SQLException e) {
+            throw new RepositoryException("Failed to get recipes", e);
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        try {
+            return executeWrite(DELETE_RECIPE, SET_TOMBSTONE_CHANGE_SEQUENCES, id, (statement, sequenceOffset) -> {
+                statement.setLong(1, sequenceOffset);
+                statement.setLong(2, id);
+            }, this::pruneTombstones) > 0;
         } catch (SQLException e) {
             throw new RepositoryException("Failed to delete recipe", e);
         }
@@ -93,10 +646,10 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
             PreparedStatement statement = connection.prepareStatement(GET_RECIPE_BY_ID)) {
             statement.setLong(1, id);
 
-            ResultSet rs = statement.executeQuery();
-
-            if(rs.next()) {
-                return Optional.of(getRecipe(rs));
+            try(ResultSet rs = statement.executeQuery()) {
+                if(rs.next()) {
+                    return Optional.of(getRecipe(rs));
+                }
             }
 
             return Optional.empty();
@@ -106,23 +659,150 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
     }
 
     @Override
-    public void updateRecipe(Long id, Recipe recipe) {
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        try {
+            return executeUpdateReturning(UPDATE_RECIPE_RETURNING, id, (statement, sequenceOffset) -> {
+                statement.setString(1, recipe.getName());
+                statement.setString(2, recipe.getDescription());
+                statement.setLong(3, recipe.getDurationInMinutes());
+                statement.setLong(4, sequenceOffset);
+                statement.setLong(5, id);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to update recipe with id " + id, e);
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        try {
+            return executeUpdateReturning(PATCH_RECIPE_RETURNING, id, (statement, sequenceOffset) -> {
+                statement.setString(1, recipe.getName());
+                statement.setString(2, recipe.getDescription());
+                statement.setObject(3, recipe.getDurationInMinutes(), Types.BIGINT);
+                statement.setLong(4, sequenceOffset);
+                statement.setLong(5, id);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to patch recipe with id " + id, e);
+        }
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
         try(Connection connection = dataSource.getConnection();
-            PreparedStatement statement = connection.prepareStatement(UPDATE_RECIPE)) {
-            statement.setString(1, recipe.getName());
-            statement.setString(2, recipe.getDescription());
-            statement.setLong(3, recipe.getDurationInMinutes());
-            statement.setLong(4, id);
+            PreparedStatement statement = connection.prepareStatement(GET_RECIPE_VERSION)) {
+            statement.setLong(1, id);
 
-            statement.executeUpdate();
+            try(ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getLong(1)) : Optional.empty();
+            }
         } catch (SQLException e) {
-            throw new RepositoryException("Failed to update recipe with id " + recipe.getId(), e);
+            throw new RepositoryException("Failed to get version of recipe with id " + id, e);
+        }
+    }
+
+    @Override
+    public long getChangeCount() {
+        try(Connection connection = dataSource.getConnection()) {
+            return getChangeCount(connection);
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to get the change count", e);
+        }
+    }
+
+    private static long getChangeCount(Connection connection) throws SQLException {
+        try(Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(GET_CHANGE_COUNT)) {
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // A query reading committed rows sees the commits that happen while it scans, so it could see a change
+    // without the earlier one committed right before it. Writers commit their sequences in order and the
+    // committed change count only moves with their commits, so every sequence up to the count read first is
+    // committed and visible to the query, and only those are returned.
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(GET_CHANGES_SINCE)) {
+            long watermark = getChangeCount(connection);
+            statement.setLong(1, since);
+            statement.setLong(2, watermark);
+            statement.setInt(3, limit);
+            statement.setLong(4, since);
+            statement.setLong(5, watermark);
+            statement.setInt(6, limit);
+            statement.setInt(7, limit);
+
+            List<RecipeDelta> changes = new ArrayList<>();
+            try(ResultSet rs = statement.executeQuery()) {
+                while(rs.next()) {
+                    changes.add(rs.getBoolean(7) ?
+                            RecipeDelta.deleted(rs.getLong(6), rs.getLong(1)) :
+                            RecipeDelta.changed(rs.getLong(6), getRecipe(rs)));
+                }
+            }
+
+            // Checked after the changes were read: a prune that removed tombstones they needed committed before
+            // this, together with its pruned sequence
+            long prunedSequence = getPrunedSequence(connection);
+            if(since > 0 && since < prunedSequence) {
+                throw new ChangesPrunedException(since, prunedSequence);
+            }
+
+            return changes;
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to get the changes since " + since, e);
+        }
+    }
+
+    // Latest change sequence whose tombstone was pruned, the changes since an earlier one are incomplete
+    public long getPrunedSequence() {
+        try(Connection connection = dataSource.getConnection()) {
+            return getPrunedSequence(connection);
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to get the pruned sequence", e);
+        }
+    }
+
+    private static long getPrunedSequence(Connection connection) throws SQLException {
+        try(Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(GET_PRUNED_SEQUENCE)) {
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        if(ids.isEmpty()) {
+            return List.of();
+        }
+
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(GET_RECIPES_BY_IDS)) {
+
+            statement.setArray(1, connection.createArrayOf("BIGINT", ids.toArray()));
+
+            try(ResultSet rs = statement.executeQuery()) {
+                return getRecipesFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to get recipes by id", e);
         }
     }
 
     @Override
     public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
-        if(recipeSearch.durationFrom() == null || recipeSearch.durationTo() == null) {
+        if(recipeSearch.hasText()) {
+            try(Stream<Recipe> recipes = streamRecipes(recipeSearch)) {
+                return recipes.toList();
+            }
+        }
+
+        if(!recipeSearch.hasDurationRange()) {
             return getAllRecipes();
         }
 
@@ -132,15 +812,268 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
             statement.setLong(1, recipeSearch.durationFrom());
             statement.setLong(2, recipeSearch.durationTo());
 
-            ResultSet rs = statement.executeQuery();
+            try(ResultSet rs = statement.executeQuery()) {
+                return getRecipesFromResultSet(rs);
+            }
 
-            return getRecipesFromResultSet(rs);
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to search recipes", e);
+        }
+    }
 
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        if(recipeSearch.hasText()) {
+            return findRecipesByText(recipeSearch, afterId, limit);
+        }
+
+        if(!recipeSearch.hasDurationRange()) {
+            return getRecipesAfter(afterId, limit);
+        }
+
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(SEARCH_RECIPES_AFTER)) {
+
+            statement.setLong(1, recipeSearch.durationFrom());
+            statement.setLong(2, recipeSearch.durationTo());
+            statement.setLong(3, afterId == null ? Long.MIN_VALUE : afterId);
+            statement.setInt(4, limit);
+
+            try(ResultSet rs = statement.executeQuery()) {
+                return getRecipesFromResultSet(rs);
+            }
         } catch (SQLException e) {
             throw new RepositoryException("Failed to search recipes", e);
         }
     }
 
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        try(Stream<Recipe> recipes = streamSortedRecipes(recipeSearch, sort, after, limit)) {
+            return recipes.toList();
+        }
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        try(Stream<RecipeSummary> recipes = streamSortedSummaries(recipeSearch, sort, after, limit)) {
+            return recipes.toList();
+        }
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return streamSortedRecipes(recipeSearch, sort, null, 0);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return streamSortedSummaries(recipeSearch, sort, null, 0);
+    }
+
+    // limit 0 streams every match. Text searches filter the rows in Java, so their limit is applied after that.
+    private Stream<Recipe> streamSortedRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        if(!recipeSearch.hasText()) {
+            return streamSorted(RECIPE_COLUMNS, recipeSearch, sort, after, limit, RecipeJdbcRepositoryImpl::getRecipe);
+        }
+
+        Stream<Recipe> matches = streamSorted(RECIPE_COLUMNS, recipeSearch, sort, after, 0, RecipeJdbcRepositoryImpl::getRecipe)
+                .filter(TextQuery.parse(recipeSearch.text()));
+
+        return limit > 0 ? matches.limit(limit) : matches;
+    }
+
+    // Only text searches read the description, which they need to match
+    private Stream<RecipeSummary> streamSortedSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        if(recipeSearch.hasText()) {
+            return streamSortedRecipes(recipeSearch, sort, after, limit).map(RecipeSummary::of);
+        }
+
+        return streamSorted(SUMMARY_COLUMNS, recipeSearch, sort, after, limit, RecipeJdbcRepositoryImpl::getRecipeSummary);
+    }
+
+    private <T> Stream<T> streamSorted(String columns, RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit,
+                                       RowMapper<T> mapper) {
+        boolean hasDurationRange = recipeSearch.hasDurationRange();
+
+        return streamQuery(sortedQuery(columns, sort, after != null, limit > 0), statement -> {
+            int index = 1;
+            statement.setLong(index++, hasDurationRange ? recipeSearch.durationFrom() : Long.MIN_VALUE);
+            statement.setLong(index++, hasDurationRange ? recipeSearch.durationTo() : Long.MAX_VALUE);
+            if(after != null) {
+                switch(sort.field()) {
+                    case NAME -> statement.setString(index++, after.getName());
+                    case DURATION -> statement.setLong(index++, after.getDurationInMinutes());
+                    case ID -> { }
+                }
+                statement.setLong(index++, after.getId());
+            }
+            if(limit > 0) {
+                statement.setInt(index, limit);
+            }
+        }, mapper);
+    }
+
+    // Only column names of RecipeSort.Field end up in the SQL text, the search itself is bound as parameters.
+    // The page continues after the sort key and id of the cursor, compared together so recipes with the same
+    // value are neither skipped nor repeated.
+    private static String sortedQuery(String columns, RecipeSort sort, boolean hasCursor, boolean limit) {
+        String column = sort.field().column();
+        String direction = sort.descending() ? "DESC" : "ASC";
+        String comparison = sort.descending() ? "<" : ">";
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                .append(" FROM Recipes WHERE duration >= ? AND duration <= ?");
+
+        if(hasCursor && sort.field() == RecipeSort.Field.ID) {
+            sql.append(" AND id ").append(comparison).append(" ?");
+        } else if(hasCursor) {
+            sql.append(" AND (").append(column).append(", id) ").append(comparison).append(" (?, ?)");
+        }
+
+        sql.append(" ORDER BY ");
+        if(sort.field() != RecipeSort.Field.ID) {
+            sql.append(column).append(' ').append(direction).append(", ");
+        }
+        sql.append("id ").append(direction);
+
+        if(limit) {
+            sql.append(" LIMIT ?");
+        }
+
+        return sql.toString();
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return streamQuery(GET_RECIPES, statement -> {});
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        Stream<Recipe> recipes = recipeSearch.hasDurationRange()
+                ? streamQuery(SEARCH_RECIPES, statement -> {
+                    statement.setLong(1, recipeSearch.durationFrom());
+                    statement.setLong(2, recipeSearch.durationTo());
+                })
+                : streamAllRecipes();
+
+        return recipeSearch.hasText() ? recipes.filter(TextQuery.parse(recipeSearch.text())) : recipes;
+    }
+
+    // Scans the rows past afterId in id order and stops as soon as the page is full
+    private List<Recipe> findRecipesByText(RecipeSearch recipeSearch, Long afterId, int limit) {
+        boolean hasDurationRange = recipeSearch.hasDurationRange();
+
+        try(Stream<Recipe> recipes = streamQuery(SEARCH_RECIPES_ORDERED_AFTER, statement -> {
+            statement.setLong(1, hasDurationRange ? recipeSearch.durationFrom() : Long.MIN_VALUE);
+            statement.setLong(2, hasDurationRange ? recipeSearch.durationTo() : Long.MAX_VALUE);
+            statement.setLong(3, afterId == null ? Long.MIN_VALUE : afterId);
+        })) {
+            return recipes.filter(TextQuery.parse(recipeSearch.text())).limit(limit).toList();
+        }
+    }
+
+    private Stream<Recipe> streamQuery(String sql, StatementBinder binder) {
+        return streamQuery(sql, binder, RecipeJdbcRepositoryImpl::getRecipe);
+    }
+
+    private <T> Stream<T> streamQuery(String sql, StatementBinder binder, RowMapper<T> mapper) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try {
+            connection = dataSource.getConnection();
+            setLazyQueryExecution(connection, true);
+
+            statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            binder.bind(statement);
+            rs = statement.executeQuery();
+
+            ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(rs, mapper);
+            Cursor cursor = new Cursor(connection, statement, rs);
+
+            return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            new Cursor(connection, statement, rs).close();
+            throw new RepositoryException("Failed to stream recipes", e);
+        }
+    }
+
+    private static void setLazyQueryExecution(Connection connection, boolean enabled) throws SQLException {
+        try(Statement statement = connection.createStatement()) {
+            statement.execute(enabled ? ENABLE_LAZY_QUERY_EXECUTION : DISABLE_LAZY_QUERY_EXECUTION);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private static class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+
+        ResultSetSpliterator(ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if(!rs.next()) {
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new RepositoryException("Failed to read recipe", e);
+            }
+        }
+    }
+
+    // Resources backing an open stream, released when the stream is closed
+    private record Cursor(Connection connection, Statement statement, ResultSet rs) {
+        void close() {
+            try {
+                if(rs != null) {
+                    rs.close();
+                }
+                if(statement != null) {
+                    statement.close();
+                }
+                if(connection != null) {
+                    setLazyQueryExecution(connection, false);
+                }
+            } catch (SQLException e) {
+                throw new RepositoryException("Failed to close recipe stream", e);
+            } finally {
+                closeConnection();
+            }
+        }
+
+        private void closeConnection() {
+            if(connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new RepositoryException("Failed to close recipe stream", e);
+            }
+        }
+    }
+
     private static List<Recipe> getRecipesFromResultSet(ResultSet rs) throws SQLException {
         List<Recipe> recipes = new ArrayList<>();
         while(rs.next()) {
@@ -158,6 +1091,12 @@ public class RecipeJdbcRepositoryImpl implements RecipeRepository {
         recipe.setName(rs.getString(2));
         recipe.setDescription(rs.getString(3));
         recipe.setDurationInMinutes(rs.getLong(4));
+        recipe.setVersion(rs.getLong(5));
         return recipe;
     }
+
+    // Columns in the order of SUMMARY_COLUMNS
+    private static RecipeSummary getRecipeSummary(ResultSet rs) throws SQLException {
+        return new RecipeSummary(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getLong(4));
+    }
 }
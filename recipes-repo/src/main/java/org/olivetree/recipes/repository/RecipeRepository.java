@@ -1,27 +1,157 @@
 package org.olivetree.recipes.repository;
 
 import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
 import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.cache.CacheConfig;
+import org.olivetree.recipes.repository.cache.CachingRecipeRepository;
+import org.olivetree.recipes.repository.limit.ConcurrencyLimitConfig;
+import org.olivetree.recipes.repository.limit.ConcurrencyLimitedRecipeRepository;
+import org.olivetree.recipes.repository.log.LogConfig;
+import org.olivetree.recipes.repository.log.LogRecipeRepository;
+import org.olivetree.recipes.repository.memory.ColumnarRecipeRepository;
+import org.olivetree.recipes.repository.pool.PoolConfig;
+import org.olivetree.recipes.repository.search.FullTextIndexedRecipeRepository;
+import org.olivetree.recipes.repository.shard.ShardConfig;
+import org.olivetree.recipes.repository.shard.ShardedRecipeRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
 
-public interface RecipeRepository {
+public interface RecipeRepository extends AutoCloseable {
+
+    String BATCH_SIZE_PROPERTY = "recipes.batch.size";
+
+    String FULL_TEXT_INDEX_PROPERTY = "recipes.search.fulltext.enabled";
+
+    String TOMBSTONE_RETENTION_PROPERTY = "recipes.changes.tombstoneRetention";
+
+    // Tombstones are kept for this many changes after their delete
+    long DEFAULT_TOMBSTONE_RETENTION = 1_000_000;
 
     // Using this to avoid exposing the RecipeJdbcRepositoryImpl from the module itself.
     static RecipeRepository openRecipeRepository(String databaseFile) {
         return new RecipeJdbcRepositoryImpl(databaseFile);
     }
 
+    // Same as above, but lets the caller tune the repository through its configuration properties.
+    static RecipeRepository openRecipeRepository(String databaseFile, Properties properties) {
+        RepositoryEngine engine = RepositoryEngine.fromProperties(properties);
+        RecipeRepository recipeRepository;
+
+        if(engine == RepositoryEngine.LOG) {
+            if(ShardConfig.isEnabled(properties)) {
+                throw new IllegalArgumentException("The log engine cannot be sharded");
+            }
+            recipeRepository = new LogRecipeRepository(LogConfig.fromProperties(databaseFile, properties));
+        } else {
+            PoolConfig poolConfig = PoolConfig.isEnabled(properties) ? PoolConfig.fromProperties(properties) : null;
+            int batchSize = RepositoryProperties.getInt(properties, BATCH_SIZE_PROPERTY, RecipeJdbcRepositoryImpl.DEFAULT_BATCH_SIZE);
+            long tombstoneRetention = RepositoryProperties.getLong(properties, TOMBSTONE_RETENTION_PROPERTY, DEFAULT_TOMBSTONE_RETENTION);
+
+            recipeRepository = ShardConfig.isEnabled(properties) ?
+                    ShardedRecipeRepository.open(databaseFile, ShardConfig.fromProperties(properties), poolConfig, batchSize, tombstoneRetention) :
+                    new RecipeJdbcRepositoryImpl(databaseFile, poolConfig, batchSize, tombstoneRetention);
+        }
+
+        // Right above the storage, so reads answered from memory by the layers wrapping it never wait for a permit
+        if(ConcurrencyLimitConfig.isEnabled(properties)) {
+            recipeRepository = new ConcurrencyLimitedRecipeRepository(recipeRepository, ConcurrencyLimitConfig.fromProperties(properties));
+        }
+
+        if(engine == RepositoryEngine.COLUMNAR) {
+            recipeRepository = new ColumnarRecipeRepository(recipeRepository);
+        }
+
+        if(RepositoryProperties.getBoolean(properties, FULL_TEXT_INDEX_PROPERTY, false)) {
+            recipeRepository = new FullTextIndexedRecipeRepository(recipeRepository);
+        }
+
+        if(CacheConfig.isEnabled(properties)) {
+            recipeRepository = new CachingRecipeRepository(recipeRepository, CacheConfig.fromProperties(properties));
+        }
+
+        return recipeRepository;
+    }
+
     Recipe createRecipe(Recipe recipe);
 
+    // Batch variants of create/update/delete. Rows are written with JDBC batching and committed every
+    // recipes.batch.size rows, so a failure only rolls back the chunk it happened in. The created recipes get
+    // their id, also when a later chunk fails, so the caller can tell which ones were committed.
+    List<Recipe> createRecipes(List<Recipe> recipes);
+
+    // Returns the number of recipes updated
+    int updateRecipes(Map<Long, Recipe> recipes);
+
+    // Returns the ids of the recipes that existed and were deleted, in the order they were given
+    List<Long> deleteRecipes(Collection<Long> ids);
+
+    // Ordered by id
     List<Recipe> getAllRecipes();
 
+    // Keyset pagination: at most limit recipes with an id greater than afterId (null for the first page),
+    // ordered by id. The last id of a page is the afterId of the next one.
+    List<Recipe> getRecipesAfter(Long afterId, int limit);
+
     Optional<Recipe> getRecipeById(Long id);
 
-    void deleteRecipe(Long id);
+    // The recipes with the given ids that exist, ordered by id
+    List<Recipe> getRecipesByIds(Collection<Long> ids);
+
+    // Version of a recipe without loading it, bumped by every update of the recipe
+    Optional<Long> getRecipeVersion(Long id);
+
+    // Grows with every create, update and delete. Read it before the data it describes, so that it never
+    // claims a newer state than what was read.
+    long getChangeCount();
+
+    // Every written row takes the next value of the change count as its change sequence, deletes included.
+    // Returns at most limit of the recipes and deleted ids whose latest write came after since, in sequence
+    // order. The sequence of the last one is the since of the next call, 0 reads everything there is.
+    // Tombstones are pruned once they are older than the retention of the repository. Throws
+    // ChangesPrunedException when since is before a pruned one, the caller then has to start again from 0.
+    List<RecipeDelta> getChangesSince(long since, int limit);
 
-    void updateRecipe(Long id, Recipe recipe);
+    // Returns false when there was no recipe with the id
+    boolean deleteRecipe(Long id);
+
+    // Replaces name, description and duration of the recipe in a single write. Returns the recipe as stored,
+    // with its new version, or empty when there is no recipe with the id.
+    Optional<Recipe> updateRecipe(Long id, Recipe recipe);
+
+    // Same as updateRecipe, but null fields keep their stored value
+    Optional<Recipe> patchRecipe(Long id, Recipe recipe);
 
     List<Recipe> findRecipes(RecipeSearch recipeSearch);
+
+    List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit);
+
+    // Searches in the order of sort. A page continues after the sort key and id of after, see
+    // RecipeSort.parseCursor, which need not be a stored recipe. null for the first page. RecipeSearch.ALL
+    // lists every recipe.
+    List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit);
+
+    // Same as above without descriptions, which are not even read unless a text search needs to match them
+    List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit);
+
+    // Streaming variants of getAllRecipes and findRecipes. Rows are read from the database cursor as the
+    // stream is consumed, so the stream holds a connection and must be closed (try-with-resources).
+    Stream<Recipe> streamAllRecipes();
+
+    Stream<Recipe> streamRecipes(RecipeSearch recipeSearch);
+
+    Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort);
+
+    Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort);
+
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,20 @@
+package org.olivetree.recipes.repository;
+
+import java.util.Locale;
+import java.util.Properties;
+
+// Storage engine selected with the recipes.engine property
+public enum RepositoryEngine {
+    // Every call goes to the H2 database
+    JDBC,
+    // Whole dataset held in memory as primitive columns, loaded from and written through to H2
+    COLUMNAR,
+    // Append-only log of memory-mapped segment files, H2 is not used at all
+    LOG;
+
+    public static final String ENGINE_PROPERTY = "recipes.engine";
+
+    public static RepositoryEngine fromProperties(Properties properties) {
+        return valueOf(RepositoryProperties.getString(properties, ENGINE_PROPERTY, JDBC.name()).toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,40 @@
+package org.olivetree.recipes.repository;
+
+import java.util.Properties;
+
+// Typed access to the recipes.* configuration properties, falling back to a default when a key is missing
+public final class RepositoryProperties {
+
+    private RepositoryProperties() {
+    }
+
+    public static String getString(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key);
+
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(Properties properties, String key, int defaultValue) {
+        String value = getString(properties, key, null);
+
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static long getLong(Properties properties, String key, long defaultValue) {
+        String value = getString(properties, key, null);
+
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = getString(properties, key, null);
+
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public static boolean getBoolean(Properties properties, String key, boolean defaultValue) {
+        String value = getString(properties, key, null);
+
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,40 @@
+package org.olivetree.recipes.repository;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Sorted searches for the engines that answer searches from memory. They sort the results of the unsorted
+// search in Java, while the JDBC repository pushes the order, the page bound and the projection into SQL.
+public final class SortedQueries {
+
+    private SortedQueries() {
+    }
+
+    public static Stream<Recipe> stream(RecipeRepository recipeRepository, RecipeSearch recipeSearch, RecipeSort sort) {
+        Stream<Recipe> recipes = recipeRepository.streamRecipes(recipeSearch);
+
+        // Searches are already in id order
+        return sort.isById() ? recipes : recipes.sorted(sort.comparator());
+    }
+
+    public static List<Recipe> page(RecipeRepository recipeRepository, RecipeSearch recipeSearch, RecipeSort sort,
+                                    Recipe after, int limit) {
+        if(sort.isById()) {
+            return recipeRepository.findRecipes(recipeSearch, after == null ? null : after.getId(), limit);
+        }
+
+        Comparator<Recipe> comparator = sort.comparator();
+        try(Stream<Recipe> recipes = recipeRepository.streamRecipes(recipeSearch)) {
+            return recipes
+                    .filter(recipe -> after == null || comparator.compare(recipe, after) > 0)
+                    .sorted(comparator)
+                    .limit(limit)
+                    .toList();
+        }
+    }
+}
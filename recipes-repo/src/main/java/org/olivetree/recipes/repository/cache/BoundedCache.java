@@ -0,0 +1,199 @@
+package org.olivetree.recipes.repository.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Size-bounded concurrent cache. Keys are spread over independently locked segments, each one keeping its
+// entries in access order so the eldest entry is always the least recently used one.
+public class BoundedCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+    private static final int WINDOW_PERCENTAGE = 1;
+
+    private final Segment[] segments;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedCache(CacheConfig config) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, config.maximumSize() / MIN_SEGMENT_SIZE)));
+        int segmentSize = config.maximumSize() / segmentCount;
+
+        this.sketch = config.policy() == CachePolicy.TINY_LFU ? new FrequencySketch(config.maximumSize()) : null;
+        this.segments = (Segment[]) new BoundedCache.Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public V get(K key) {
+        if(sketch != null) {
+            sketch.increment(key);
+        }
+
+        V value = segmentFor(key).get(key);
+        if(value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return value;
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public void invalidate(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void invalidateAll() {
+        for(Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    private Segment segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+
+        return segments[h & (segments.length - 1)];
+    }
+
+    private class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Recently added entries, only used by TINY_LFU. Entries leaving the window compete with the
+        // eldest entry of main for a place in it.
+        private final LinkedHashMap<K, V> window;
+        private final LinkedHashMap<K, V> main;
+        private final int windowCapacity;
+        private final int mainCapacity;
+
+        Segment(int capacity) {
+            if(sketch == null) {
+                this.windowCapacity = 0;
+                this.window = null;
+            } else {
+                this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENTAGE / 100);
+                this.window = new LinkedHashMap<>(16, 0.75f, true);
+            }
+            this.mainCapacity = Math.max(0, capacity - windowCapacity);
+            this.main = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        V get(K key) {
+            lock.lock();
+            try {
+                V value = main.get(key);
+                if(value == null && window != null) {
+                    value = window.get(key);
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, V value) {
+            lock.lock();
+            try {
+                if(main.containsKey(key)) {
+                    main.put(key, value);
+                } else if(window == null) {
+                    main.put(key, value);
+                    if(main.size() > mainCapacity) {
+                        removeEldest(main);
+                        evictions.increment();
+                    }
+                } else {
+                    window.put(key, value);
+                    if(window.size() > windowCapacity) {
+                        admit(removeEldest(window));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void admit(Map.Entry<K, V> candidate) {
+            if(main.size() < mainCapacity) {
+                main.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+
+            evictions.increment();
+            if(mainCapacity == 0) {
+                return;
+            }
+
+            K victim = main.keySet().iterator().next();
+            if(sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+                main.remove(victim);
+                main.put(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        void remove(K key) {
+            lock.lock();
+            try {
+                main.remove(key);
+                if(window != null) {
+                    window.remove(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                main.clear();
+                if(window != null) {
+                    window.clear();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return main.size() + (window == null ? 0 : window.size());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> map) {
+            Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+            Map.Entry<K, V> eldest = iterator.next();
+            Map.Entry<K, V> removed = Map.entry(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.olivetree.recipes.repository.cache;
+
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+public record CacheConfig(int maximumSize, CachePolicy policy) {
+
+    public static final String ENABLED_PROPERTY = "recipes.cache.enabled";
+    public static final String MAXIMUM_SIZE_PROPERTY = "recipes.cache.maximumSize";
+    public static final String POLICY_PROPERTY = "recipes.cache.policy";
+
+    public CacheConfig {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + maximumSize);
+        }
+    }
+
+    public static CacheConfig defaults() {
+        return new CacheConfig(10_000, CachePolicy.TINY_LFU);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static CacheConfig fromProperties(Properties properties) {
+        CacheConfig defaults = defaults();
+
+        return new CacheConfig(
+                getInt(properties, MAXIMUM_SIZE_PROPERTY, defaults.maximumSize()),
+                CachePolicy.valueOf(getString(properties, POLICY_PROPERTY, defaults.policy().name()).toUpperCase(Locale.ROOT)));
+    }
+}
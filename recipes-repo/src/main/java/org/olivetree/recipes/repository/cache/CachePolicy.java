@@ -0,0 +1,9 @@
+package org.olivetree.recipes.repository.cache;
+
+public enum CachePolicy {
+    // Evicts the least recently used entry
+    LRU,
+    // Small LRU admission window in front of a main area where a newcomer only replaces the eviction
+    // victim if it has been requested more often, so one-off reads cannot flush out hot recipes
+    TINY_LFU
+}
@@ -0,0 +1,214 @@
+package org.olivetree.recipes.repository.cache;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Keeps recently read recipes in a bounded cache in front of another repository. Only lookups by id are
+// cached, every write invalidates the recipes it touched. Recipes are mutable, so they are copied on the
+// way in and out of the cache.
+public class CachingRecipeRepository implements RecipeRepository {
+    private final RecipeRepository recipeRepository;
+    private final BoundedCache<Long, Recipe> cache;
+
+    // Bumped after every write returns, together with its invalidation. A lookup only fills the cache if no
+    // write completed while it was loading, otherwise it could store a recipe read before that write committed.
+    // The check and the fill hold the same lock as the bump and the invalidation, so a fill can not land after
+    // the invalidation of a write that it did not see.
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private final Object fillLock = new Object();
+
+    public CachingRecipeRepository(RecipeRepository recipeRepository, CacheConfig cacheConfig) {
+        this.recipeRepository = recipeRepository;
+        this.cache = new BoundedCache<>(cacheConfig);
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        Recipe cachedRecipe = cache.get(id);
+        if(cachedRecipe != null) {
+            return Optional.of(copy(cachedRecipe));
+        }
+
+        long generation = writeGeneration.get();
+        Optional<Recipe> recipe = recipeRepository.getRecipeById(id);
+
+        if(recipe.isPresent()) {
+            synchronized(fillLock) {
+                if(generation == writeGeneration.get()) {
+                    cache.put(id, copy(recipe.get()));
+                }
+            }
+        }
+
+        return recipe;
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        return recipeRepository.createRecipe(recipe);
+    }
+
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        return recipeRepository.createRecipes(recipes);
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        try {
+            return recipeRepository.updateRecipe(id, recipe);
+        } finally {
+            invalidate(List.of(id));
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        try {
+            return recipeRepository.patchRecipe(id, recipe);
+        } finally {
+            invalidate(List.of(id));
+        }
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        try {
+            return recipeRepository.updateRecipes(recipes);
+        } finally {
+            invalidate(recipes.keySet());
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        try {
+            return recipeRepository.deleteRecipe(id);
+        } finally {
+            invalidate(List.of(id));
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        try {
+            return recipeRepository.deleteRecipes(ids);
+        } finally {
+            invalidate(ids);
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return recipeRepository.getAllRecipes();
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return recipeRepository.getRecipesAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        Recipe cachedRecipe = cache.get(id);
+        if(cachedRecipe != null) {
+            return Optional.ofNullable(cachedRecipe.getVersion());
+        }
+
+        return recipeRepository.getRecipeVersion(id);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return recipeRepository.getChangeCount();
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return recipeRepository.getChangesSince(since, limit);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return recipeRepository.getRecipesByIds(ids);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.findRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, afterId, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return recipeRepository.streamAllRecipes();
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.streamRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipes(recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        recipeRepository.close();
+    }
+
+    private void invalidate(Collection<Long> ids) {
+        synchronized(fillLock) {
+            writeGeneration.incrementAndGet();
+            ids.forEach(cache::invalidate);
+        }
+    }
+
+    private static Recipe copy(Recipe recipe) {
+        Recipe copy = new Recipe();
+        copy.setId(recipe.getId());
+        copy.setVersion(recipe.getVersion());
+        copy.setName(recipe.getName());
+        copy.setDescription(recipe.getDescription());
+        copy.setDurationInMinutes(recipe.getDurationInMinutes());
+
+        return copy;
+    }
+}
@@ -0,0 +1,73 @@
+package org.olivetree.recipes.repository.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count-min sketch estimating how often a key was requested recently. Counters saturate at 15 and are all
+// halved once enough increments happened, so the estimate follows the current popularity of a key.
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb8e1afed, 0x7f4a7c15, 0x2f2bb6e5};
+
+    private final AtomicIntegerArray counters;
+    private final int mask;
+    private final int sampleSize;
+    private final LongAdder additions = new LongAdder();
+
+    FrequencySketch(int maximumSize) {
+        // At least four counters per cached entry and row keeps collisions between keys low
+        int width = Integer.highestOneBit(Math.max(16, maximumSize) * 8 - 1);
+
+        this.counters = new AtomicIntegerArray(width * DEPTH);
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+
+        for(int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            counters.getAndUpdate(index, count -> count < MAX_COUNT ? count + 1 : count);
+        }
+
+        additions.increment();
+        if(additions.sum() >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+
+        int frequency = MAX_COUNT;
+        for(int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters.get(indexOf(hash, row)));
+        }
+
+        return frequency;
+    }
+
+    private synchronized void reset() {
+        // Another thread may have aged the counters while we waited for the lock
+        if(additions.sum() < sampleSize) {
+            return;
+        }
+
+        additions.reset();
+        for(int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        return row * (mask + 1) + ((h ^ (h >>> 16)) & mask);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
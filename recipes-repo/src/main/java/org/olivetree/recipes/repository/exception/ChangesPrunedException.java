@@ -0,0 +1,9 @@
+package org.olivetree.recipes.repository.exception;
+
+// The tombstones of some deletes after since were pruned, so the changes since then cannot be told anymore. The
+// caller has to copy every recipe again, from since 0.
+public class ChangesPrunedException extends RepositoryException {
+    public ChangesPrunedException(long since, long prunedSequence) {
+        super("Changes since " + since + " were pruned up to " + prunedSequence);
+    }
+}
@@ -1,9 +1,18 @@
 package org.olivetree.recipes.repository.exception;
 
+import java.io.IOException;
 import java.sql.SQLException;
 
 public class RepositoryException extends RuntimeException {
     public RepositoryException(String msg, SQLException e) {
         super(msg, e);
     }
+
+    public RepositoryException(String msg, IOException e) {
+        super(msg, e);
+    }
+
+    public RepositoryException(String msg) {
+        super(msg);
+    }
 }
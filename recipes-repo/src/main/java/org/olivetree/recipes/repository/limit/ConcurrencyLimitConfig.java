@@ -0,0 +1,35 @@
+package org.olivetree.recipes.repository.limit;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+public record ConcurrencyLimitConfig(int maxConcurrentCalls, Duration acquireTimeout) {
+
+    public static final String ENABLED_PROPERTY = "recipes.concurrency.enabled";
+    public static final String MAX_CONCURRENT_CALLS_PROPERTY = "recipes.concurrency.maxCalls";
+    public static final String ACQUIRE_TIMEOUT_PROPERTY = "recipes.concurrency.acquireTimeoutMillis";
+
+    public ConcurrencyLimitConfig {
+        if(maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("Invalid maximum of concurrent calls: " + maxConcurrentCalls);
+        }
+    }
+
+    public static ConcurrencyLimitConfig defaults() {
+        return new ConcurrencyLimitConfig(10, Duration.ofSeconds(5));
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static ConcurrencyLimitConfig fromProperties(Properties properties) {
+        ConcurrencyLimitConfig defaults = defaults();
+
+        return new ConcurrencyLimitConfig(
+                getInt(properties, MAX_CONCURRENT_CALLS_PROPERTY, defaults.maxConcurrentCalls()),
+                Duration.ofMillis(getLong(properties, ACQUIRE_TIMEOUT_PROPERTY, defaults.acquireTimeout().toMillis())));
+    }
+}
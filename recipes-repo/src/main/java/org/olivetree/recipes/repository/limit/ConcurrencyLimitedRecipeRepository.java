@@ -0,0 +1,190 @@
+package org.olivetree.recipes.repository.limit;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Lets at most maxConcurrentCalls callers into another repository at a time. With one virtual thread per
+// request there is no worker pool limiting how many requests reach the database, so this is what keeps
+// them from piling up on the connection pool and H2's locks. A stream holds its permit until it is closed,
+// just like it holds its connection.
+public class ConcurrencyLimitedRecipeRepository implements RecipeRepository {
+    private final RecipeRepository recipeRepository;
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    public ConcurrencyLimitedRecipeRepository(RecipeRepository recipeRepository, ConcurrencyLimitConfig config) {
+        this.recipeRepository = recipeRepository;
+        // Fair, so a burst of new callers cannot starve the ones already waiting
+        this.permits = new Semaphore(config.maxConcurrentCalls(), true);
+        this.acquireTimeoutNanos = config.acquireTimeout().toNanos();
+    }
+
+    // Callers currently waiting for a permit
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        return limit(() -> recipeRepository.createRecipe(recipe));
+    }
+
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        return limit(() -> recipeRepository.createRecipes(recipes));
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        return limit(() -> recipeRepository.updateRecipes(recipes));
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        return limit(() -> recipeRepository.deleteRecipes(ids));
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return limit(recipeRepository::getAllRecipes);
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return limit(() -> recipeRepository.getRecipesAfter(afterId, limit));
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return limit(() -> recipeRepository.getRecipeById(id));
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return limit(() -> recipeRepository.getRecipesByIds(ids));
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return limit(() -> recipeRepository.getRecipeVersion(id));
+    }
+
+    @Override
+    public long getChangeCount() {
+        return limit(recipeRepository::getChangeCount);
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return limit(() -> recipeRepository.getChangesSince(since, limit));
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        return limit(() -> recipeRepository.deleteRecipe(id));
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        return limit(() -> recipeRepository.updateRecipe(id, recipe));
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        return limit(() -> recipeRepository.patchRecipe(id, recipe));
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        return limit(() -> recipeRepository.findRecipes(recipeSearch));
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return limit(() -> recipeRepository.findRecipes(recipeSearch, afterId, limit));
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return limitStream(recipeRepository::streamAllRecipes);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return limitStream(() -> recipeRepository.streamRecipes(recipeSearch));
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return limit(() -> recipeRepository.findRecipes(recipeSearch, sort, after, limit));
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return limit(() -> recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit));
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return limitStream(() -> recipeRepository.streamRecipes(recipeSearch, sort));
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return limitStream(() -> recipeRepository.streamRecipeSummaries(recipeSearch, sort));
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+
+    private <T> T limit(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> Stream<T> limitStream(Supplier<Stream<T>> open) {
+        acquire();
+        try {
+            return open.get().onClose(permits::release);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() {
+        try {
+            if(!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new RepositoryException("Timed out waiting for the repository, "
+                        + permits.getQueueLength() + " callers waiting");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for the repository");
+        }
+    }
+}
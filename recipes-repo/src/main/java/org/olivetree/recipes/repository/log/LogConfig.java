@@ -0,0 +1,59 @@
+package org.olivetree.recipes.repository.log;
+
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.getBoolean;
+import static org.olivetree.recipes.repository.RepositoryProperties.getDouble;
+import static org.olivetree.recipes.repository.RepositoryProperties.getInt;
+import static org.olivetree.recipes.repository.RepositoryProperties.getLong;
+import static org.olivetree.recipes.repository.RepositoryProperties.getString;
+
+// segmentSize is the size in bytes of each mapped segment file. Compaction runs every compactionInterval
+// (zero disables it) once at least compactionRatio of the sealed segments is garbage. syncWrites forces
+// every write to disk before returning, otherwise the OS flushes the mapped pages on its own. Compaction drops
+// the tombstones of deletes more than tombstoneRetention changes old.
+public record LogConfig(String directory,
+                        int segmentSize,
+                        Duration compactionInterval,
+                        double compactionRatio,
+                        boolean syncWrites,
+                        long tombstoneRetention) {
+
+    public static final String DIRECTORY_PROPERTY = "recipes.log.directory";
+    public static final String SEGMENT_SIZE_PROPERTY = "recipes.log.segmentSize";
+    public static final String COMPACTION_INTERVAL_PROPERTY = "recipes.log.compactionIntervalMillis";
+    public static final String COMPACTION_RATIO_PROPERTY = "recipes.log.compactionRatio";
+    public static final String SYNC_WRITES_PROPERTY = "recipes.log.syncWrites";
+
+    public LogConfig {
+        if(segmentSize < 1024) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        if(compactionRatio <= 0 || compactionRatio > 1) {
+            throw new IllegalArgumentException("Invalid compaction ratio: " + compactionRatio);
+        }
+        if(tombstoneRetention < 1) {
+            throw new IllegalArgumentException("Invalid tombstone retention: " + tombstoneRetention);
+        }
+    }
+
+    public static LogConfig defaults(String directory) {
+        return new LogConfig(directory, 64 * 1024 * 1024, Duration.ofMinutes(1), 0.5, false, RecipeRepository.DEFAULT_TOMBSTONE_RETENTION);
+    }
+
+    // The log lives next to the H2 database file unless a directory is configured
+    public static LogConfig fromProperties(String databaseFile, Properties properties) {
+        LogConfig defaults = defaults(databaseFile + "-log");
+
+        return new LogConfig(
+                getString(properties, DIRECTORY_PROPERTY, defaults.directory()),
+                getInt(properties, SEGMENT_SIZE_PROPERTY, defaults.segmentSize()),
+                Duration.ofMillis(getLong(properties, COMPACTION_INTERVAL_PROPERTY, defaults.compactionInterval().toMillis())),
+                getDouble(properties, COMPACTION_RATIO_PROPERTY, defaults.compactionRatio()),
+                getBoolean(properties, SYNC_WRITES_PROPERTY, defaults.syncWrites()),
+                getLong(properties, RecipeRepository.TOMBSTONE_RETENTION_PROPERTY, defaults.tombstoneRetention()));
+    }
+}
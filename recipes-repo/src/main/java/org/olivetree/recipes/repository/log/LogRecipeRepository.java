@@ -0,0 +1,675 @@
+package org.olivetree.recipes.repository.log;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.SortedQueries;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.olivetree.recipes.repository.search.TextQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// RecipeRepository storing recipes in an append-only log of memory-mapped segment files instead of H2.
+// Every write appends a record to the active segment and points the in-memory id index at it, updates and
+// deletes included. Reads decode the record straight from the mapping without locking. Opening the
+// repository replays the segments to rebuild the index, and a background task compacts the sealed segments
+// once enough of them is garbage.
+//
+// Every write takes the next change count as the change sequence of the recipe. Sequences are not stored,
+// replaying the log numbers the records again in log order. A recipe moved by a compaction is numbered after
+// the records it was compacted with, so it can only come back with a later sequence, never an earlier one,
+// and readers of getChangesSince never miss it.
+public class LogRecipeRepository implements RecipeRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(LogRecipeRepository.class);
+
+    private final Path directory;
+    private final LogConfig config;
+
+    private final ConcurrentSkipListMap<Long, Location> index = new ConcurrentSkipListMap<>();
+    // DELETE record of every deleted recipe. They are live records like the latest PUT of the others, so
+    // compaction keeps them and deletes are still reported by getChangesSince after a restart, until they are
+    // older than the tombstone retention.
+    private final ConcurrentSkipListMap<Long, Location> tombstones = new ConcurrentSkipListMap<>();
+    // Change sequence of the latest write of each recipe and the other way round. Written under writeLock,
+    // changes is also read without it.
+    private final Map<Long, Long> changeSequences = new HashMap<>();
+    private final ConcurrentSkipListMap<Long, Long> changes = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicLong compactions = new AtomicLong();
+    private final ScheduledExecutorService compactor;
+
+    // Guarded by writeLock. Segments in replay order, the last one is the active segment.
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long nextId = 1;
+    // Written under writeLock, read without it
+    private volatile long changeCount;
+    // The changes since an earlier sequence may miss deletes whose tombstone compaction dropped
+    private volatile long prunedSequence;
+
+    public LogRecipeRepository(LogConfig config) {
+        this.directory = Path.of(config.directory());
+        this.config = config;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to open recipe log in " + directory, e);
+        }
+
+        if(config.compactionInterval().isZero()) {
+            this.compactor = null;
+        } else {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "recipe-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.compactionInterval().toMillis();
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        LOG.info("Recovered {} recipes from {} log segments in {}", index.size(), segments.size() - 1, directory);
+    }
+
+    private void recover() throws IOException {
+        List<Path> segmentFiles;
+        try(Stream<Path> files = Files.list(directory)) {
+            segmentFiles = files.toList();
+        }
+
+        // Leftovers of a compaction interrupted by a crash, the segments they were built from are still there
+        for(Path file : segmentFiles) {
+            if(file.getFileName().toString().endsWith(Segment.COMPACTING_SUFFIX)) {
+                Files.delete(file);
+            }
+        }
+
+        for(Path file : segmentFiles) {
+            if(Segment.isSegment(file)) {
+                segments.add(Segment.open(file));
+            }
+        }
+        segments.sort(null);
+
+        for(Segment segment : segments) {
+            segment.replay(this::replayRecord);
+        }
+
+        // Active segments of earlier runs that never got a write
+        for(Segment segment : List.copyOf(segments)) {
+            if(segment.writePosition() == 0) {
+                segment.delete();
+                segments.remove(segment);
+            }
+        }
+
+        // Recovered segments are never appended to, writes always start in a fresh segment
+        long base = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).base + 1;
+        active = Segment.create(directory, base, 0, config.segmentSize(), Segment.SUFFIX);
+        segments.add(active);
+    }
+
+    private void replayRecord(Segment segment, int offset, int size) {
+        long id = segment.id(offset);
+
+        switch(segment.type(offset)) {
+            case Segment.PUT -> {
+                release(index.put(id, new Location(segment, offset)));
+                segment.liveBytes += size;
+                nextId = Math.max(nextId, id + 1);
+                changeCount++;
+                recordChange(id);
+            }
+            case Segment.DELETE -> {
+                release(index.remove(id));
+                release(tombstones.put(id, new Location(segment, offset)));
+                segment.liveBytes += size;
+                nextId = Math.max(nextId, id + 1);
+                changeCount++;
+                recordChange(id);
+            }
+            case Segment.SEQUENCE -> {
+                nextId = Math.max(nextId, id);
+                changeCount = Math.max(changeCount, segment.version(offset));
+                // Written by a compaction, which pruned against this change count
+                prunedSequence = Math.max(prunedSequence, segment.version(offset) - config.tombstoneRetention());
+            }
+            default -> throw new RepositoryException("Unknown record type in " + segment.base + "-" + segment.part);
+        }
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        return createRecipes(List.of(recipe)).get(0);
+    }
+
+    // A batch is appended under a single lock acquisition and synced once
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        writeLock.lock();
+        try {
+            for(Recipe recipe : recipes) {
+                long id = nextId++;
+                put(id, 1, recipe);
+                recipe.setId(id);
+                recipe.setVersion(1L);
+            }
+            sync();
+
+            return recipes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        return updateRecipe(id, recipe, false);
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        return updateRecipe(id, recipe, true);
+    }
+
+    // The lookup and the write happen under the write lock, so the recipe cannot go away in between
+    private Optional<Recipe> updateRecipe(Long id, Recipe recipe, boolean partial) {
+        writeLock.lock();
+        try {
+            Location location = index.get(id);
+            if(location == null) {
+                return Optional.empty();
+            }
+
+            put(id, location.version() + 1, partial ? Recipe.merge(location.read(), recipe) : recipe);
+            sync();
+
+            return Optional.of(index.get(id).read());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        writeLock.lock();
+        try {
+            int updated = 0;
+            for(Map.Entry<Long, Recipe> entry : recipes.entrySet()) {
+                // Same as an UPDATE matching no row, unknown ids are ignored
+                Location location = index.get(entry.getKey());
+                if(location != null) {
+                    put(entry.getKey(), location.version() + 1, entry.getValue());
+                    updated++;
+                }
+            }
+            sync();
+
+            return updated;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        return !deleteRecipes(List.of(id)).isEmpty();
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        writeLock.lock();
+        try {
+            List<Long> deleted = new ArrayList<>();
+            for(Long id : ids) {
+                if(index.containsKey(id)) {
+                    ensureCapacity(Segment.markerSize());
+                    int offset = active.appendDelete(id);
+                    active.liveBytes += Segment.markerSize();
+                    release(index.remove(id));
+                    tombstones.put(id, new Location(active, offset));
+                    changeCount++;
+                    recordChange(id);
+                    deleted.add(id);
+                }
+            }
+            sync();
+
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void put(long id, long version, Recipe recipe) {
+        if(recipe.getName() == null || recipe.getDescription() == null || recipe.getDurationInMinutes() == null) {
+            throw new RepositoryException("Failed to save recipe, name, description and duration are required");
+        }
+
+        byte[] name = recipe.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = recipe.getDescription().getBytes(StandardCharsets.UTF_8);
+        int size = Segment.recordSize(name, description);
+
+        ensureCapacity(size);
+        int offset = active.appendPut(id, version, recipe.getDurationInMinutes(), name, description);
+        active.liveBytes += size;
+
+        release(index.put(id, new Location(active, offset)));
+        changeCount++;
+        recordChange(id);
+    }
+
+    // The latest write of the recipe happened at the current change count, its earlier one is superseded
+    private void recordChange(long id) {
+        changes.put(changeCount, id);
+        Long previous = changeSequences.put(id, changeCount);
+        if(previous != null) {
+            changes.remove(previous);
+        }
+    }
+
+    // The record a location pointed to is now garbage
+    private void release(Location location) {
+        if(location != null) {
+            location.segment().liveBytes -= location.size();
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if(active.remaining() >= size) {
+            return;
+        }
+
+        try {
+            active.force();
+            active = Segment.create(directory, active.base + 1, 0, Math.max(config.segmentSize(), size), Segment.SUFFIX);
+            segments.add(active);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to create a new log segment", e);
+        }
+    }
+
+    private void sync() {
+        if(config.syncWrites()) {
+            active.force();
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return index.values().stream().map(Location::read).toList();
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return after(afterId).values().stream().limit(limit).map(Location::read).toList();
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return Optional.ofNullable(index.get(id)).map(Location::read);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return Optional.ofNullable(index.get(id)).map(Location::version);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    // Recipes are read as they are now. One written again meanwhile comes back a second time with its newer
+    // sequence, a deleted one as a tombstone.
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        List<RecipeDelta> deltas = changes.tailMap(since, false).entrySet().stream()
+                .limit(limit)
+                .map(change -> {
+                    Location location = index.get(change.getValue());
+                    return location == null ?
+                            RecipeDelta.deleted(change.getKey(), change.getValue()) :
+                            RecipeDelta.changed(change.getKey(), location.read());
+                })
+                .toList();
+
+        // Compaction moves the pruned sequence before it drops tombstones, so a read that missed one sees it here
+        long pruned = prunedSequence;
+        if(since > 0 && since < pruned) {
+            throw new ChangesPrunedException(since, pruned);
+        }
+
+        return deltas;
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return ids.stream()
+                .distinct()
+                .sorted()
+                .map(index::get)
+                .filter(Objects::nonNull)
+                .map(Location::read)
+                .toList();
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        try(Stream<Recipe> recipes = streamRecipes(recipeSearch)) {
+            return recipes.toList();
+        }
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return search(after(afterId), recipeSearch).limit(limit).toList();
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return index.values().stream().map(Location::read);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return search(index, recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return SortedQueries.page(this, recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return SortedQueries.page(this, recipeSearch, sort, after, limit).stream().map(RecipeSummary::of).toList();
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return SortedQueries.stream(this, recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return SortedQueries.stream(this, recipeSearch, sort).map(RecipeSummary::of);
+    }
+
+    private NavigableMap<Long, Location> after(Long afterId) {
+        return afterId == null ? index : index.tailMap(afterId, false);
+    }
+
+    // The duration is checked on the mapped record before anything else is decoded
+    private static Stream<Recipe> search(NavigableMap<Long, Location> locations, RecipeSearch recipeSearch) {
+        Stream<Location> matching = locations.values().stream();
+        if(recipeSearch.hasDurationRange()) {
+            long from = recipeSearch.durationFrom();
+            long to = recipeSearch.durationTo();
+            matching = matching.filter(location -> {
+                long duration = location.segment().duration(location.offset());
+                return duration >= from && duration <= to;
+            });
+        }
+
+        Stream<Recipe> recipes = matching.map(Location::read);
+        if(recipeSearch.hasText()) {
+            Predicate<Recipe> textQuery = TextQuery.parse(recipeSearch.text());
+            recipes = recipes.filter(textQuery);
+        }
+
+        return recipes;
+    }
+
+    public LogStats getLogStats() {
+        writeLock.lock();
+        try {
+            long writtenBytes = 0;
+            long liveBytes = 0;
+            for(Segment segment : segments) {
+                writtenBytes += segment.writePosition();
+                liveBytes += segment.liveBytes;
+            }
+
+            return new LogStats(segments.size(), index.size(), writtenBytes, liveBytes, compactions.get());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if(sealedGarbageRatio() >= config.compactionRatio()) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to compact the recipe log", e);
+        }
+    }
+
+    private double sealedGarbageRatio() {
+        writeLock.lock();
+        try {
+            long writtenBytes = 0;
+            long liveBytes = 0;
+            for(Segment segment : segments) {
+                if(segment != active) {
+                    writtenBytes += segment.writePosition();
+                    liveBytes += segment.liveBytes;
+                }
+            }
+
+            return writtenBytes == 0 ? 0 : (double) (writtenBytes - liveBytes) / writtenBytes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Rewrites the live records of every sealed segment, tombstones included, into new segments and deletes the
+    // old ones. Writers keep appending to the active segment meanwhile, they are only held up while the index
+    // is switched over. Tombstones more than the retention of changes old are dropped instead.
+    public void compact() {
+        compactionLock.lock();
+        try {
+            List<Segment> sealed;
+            long sequence;
+            long compactedChangeCount;
+            writeLock.lock();
+            try {
+                sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+                sequence = nextId;
+                compactedChangeCount = changeCount;
+            } finally {
+                writeLock.unlock();
+            }
+
+            if(sealed.isEmpty()) {
+                return;
+            }
+
+            // Deleted ids are never written again, so these tombstones stay as they are until they are dropped
+            long horizon = compactedChangeCount - config.tombstoneRetention();
+            Set<Long> pruned = new HashSet<>();
+            if(horizon > 0) {
+                for(Long id : changes.headMap(horizon, true).values()) {
+                    Location tombstone = tombstones.get(id);
+                    if(tombstone != null && sealed.contains(tombstone.segment())) {
+                        pruned.add(id);
+                    }
+                }
+            }
+
+            Compaction compaction = new Compaction(sealed.get(sealed.size() - 1));
+            compaction.appendSequence(sequence, compactedChangeCount);
+            for(ConcurrentSkipListMap<Long, Location> locations : List.of(index, tombstones)) {
+                for(Map.Entry<Long, Location> entry : locations.entrySet()) {
+                    Location location = entry.getValue();
+                    if(sealed.contains(location.segment()) && !(locations == tombstones && pruned.contains(entry.getKey()))) {
+                        compaction.copy(locations, entry.getKey(), location);
+                    }
+                }
+            }
+            compaction.publish();
+
+            writeLock.lock();
+            try {
+                // Same horizon as a replay of the sequence record computes
+                prunedSequence = Math.max(prunedSequence, horizon);
+                for(Long id : pruned) {
+                    release(tombstones.remove(id));
+                    Long changeSequence = changeSequences.remove(id);
+                    if(changeSequence != null) {
+                        changes.remove(changeSequence);
+                    }
+                }
+                compaction.switchIndex();
+                segments.removeAll(sealed);
+                segments.addAll(0, compaction.outputs);
+            } finally {
+                writeLock.unlock();
+            }
+
+            // Oldest first: a crash halfway through must not leave a deleted recipe behind without the
+            // tombstone that follows it
+            for(Segment segment : sealed) {
+                segment.delete();
+            }
+
+            compactions.incrementAndGet();
+            LOG.info("Compacted {} log segments into {}", sealed.size(), compaction.outputs.size());
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to compact the recipe log", e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if(compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        writeLock.lock();
+        try {
+            active.force();
+            for(Segment segment : segments) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to close recipe log", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private record Location(Segment segment, int offset) {
+        Recipe read() {
+            return segment.readRecipe(offset);
+        }
+
+        int size() {
+            return segment.recordSize(offset);
+        }
+
+        long version() {
+            return segment.version(offset);
+        }
+    }
+
+    // Output of one compaction run, written to temporary files until it is complete
+    private class Compaction {
+        private final long base;
+        private final List<Segment> outputs = new ArrayList<>();
+        private final List<ConcurrentSkipListMap<Long, Location>> maps = new ArrayList<>();
+        private final List<Long> ids = new ArrayList<>();
+        private final List<Location> from = new ArrayList<>();
+        private final List<Location> to = new ArrayList<>();
+        private int nextPart;
+        private Segment output;
+
+        // Outputs sort right after the newest segment they replace and before the segments written since
+        Compaction(Segment newest) {
+            this.base = newest.base;
+            this.nextPart = newest.part + 1;
+        }
+
+        void appendSequence(long sequence, long changeCount) throws IOException {
+            ensureCapacity(Segment.sequenceSize());
+            output.appendSequence(sequence, changeCount);
+        }
+
+        void copy(ConcurrentSkipListMap<Long, Location> locations, long id, Location location) throws IOException {
+            int size = location.size();
+            ensureCapacity(size);
+
+            int offset = output.appendCopy(location.segment(), location.offset());
+            maps.add(locations);
+            ids.add(id);
+            from.add(location);
+            to.add(new Location(output, offset));
+        }
+
+        private void ensureCapacity(int size) throws IOException {
+            if(output != null && output.remaining() >= size) {
+                return;
+            }
+
+            output = Segment.create(directory, base, nextPart++, Math.max(config.segmentSize(), size), Segment.COMPACTING_SUFFIX);
+            outputs.add(output);
+        }
+
+        void publish() throws IOException {
+            for(Segment segment : outputs) {
+                segment.force();
+                segment.publish();
+            }
+        }
+
+        // Called with the write lock held. Recipes written or deleted since they were copied keep their
+        // newer location.
+        void switchIndex() {
+            for(int i = 0; i < ids.size(); i++) {
+                Location copy = to.get(i);
+                if(maps.get(i).replace(ids.get(i), from.get(i), copy)) {
+                    copy.segment().liveBytes += copy.size();
+                }
+            }
+        }
+    }
+}
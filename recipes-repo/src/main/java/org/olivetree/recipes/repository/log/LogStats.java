@@ -0,0 +1,10 @@
+package org.olivetree.recipes.repository.log;
+
+// liveBytes is the size of the records the index still points to, the rest of writtenBytes is garbage
+// waiting for compaction
+public record LogStats(int segments, long recipes, long writtenBytes, long liveBytes, long compactions) {
+
+    public double garbageRatio() {
+        return writtenBytes == 0 ? 0 : (double) (writtenBytes - liveBytes) / writtenBytes;
+    }
+}
@@ -0,0 +1,257 @@
+package org.olivetree.recipes.repository.log;
+
+import org.olivetree.recipes.domain.Recipe;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// One memory-mapped file of the log. Records are appended by a single writer and never modified, so readers
+// can decode any record the index points to straight from the mapping without locking.
+//
+// Record layout: [int payload length][int CRC32C of the payload][payload]
+// Payload: [byte type][long id] followed for PUT by [long version][long duration][int length][name][int length]
+// [description], and for SEQUENCE by [long change count]
+// Files are preallocated, so a zero length marks the end of the written records. A record with a bad
+// checksum is a write torn by a crash and ends the segment as well.
+final class Segment implements Comparable<Segment> {
+    static final String SUFFIX = ".segment";
+    static final String COMPACTING_SUFFIX = ".compacting";
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    // Written first in compacted segments so the id sequence and the change count survive dropping the
+    // records they were counted from
+    static final byte SEQUENCE = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int TYPE_OFFSET = HEADER_SIZE;
+    private static final int ID_OFFSET = TYPE_OFFSET + 1;
+    private static final int VERSION_OFFSET = ID_OFFSET + 8;
+    private static final int DURATION_OFFSET = VERSION_OFFSET + 8;
+    private static final int NAME_OFFSET = DURATION_OFFSET + 8;
+
+    // Segments replay in (base, part) order. New active segments get the next base, compaction outputs keep
+    // the base of the newest segment they replace and the following parts.
+    final long base;
+    final int part;
+    private Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Guarded by the repository write lock
+    private int writePosition;
+    long liveBytes;
+
+    private Segment(long base, int part, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.base = base;
+        this.part = part;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Segment create(Path directory, long base, int part, int capacity, String suffix) throws IOException {
+        Path path = directory.resolve(fileName(base, part) + suffix);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        return new Segment(base, part, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    static Segment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int separator = name.indexOf('-');
+        long base = Long.parseLong(name.substring(0, separator));
+        int part = Integer.parseInt(name.substring(separator + 1, name.length() - SUFFIX.length()));
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(base, part, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    private static String fileName(long base, int part) {
+        return String.format("%016d-%04d", base, part);
+    }
+
+    static int recordSize(byte[] name, byte[] description) {
+        return NAME_OFFSET + 4 + name.length + 4 + description.length;
+    }
+
+    static int markerSize() {
+        return VERSION_OFFSET;
+    }
+
+    static int sequenceSize() {
+        return VERSION_OFFSET + 8;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    int remaining() {
+        return buffer.capacity() - writePosition;
+    }
+
+    // Returns the offset of the record, the caller checked that it fits
+    int appendPut(long id, long version, long duration, byte[] name, byte[] description) {
+        int offset = writePosition;
+        int position = offset + NAME_OFFSET;
+
+        buffer.putLong(offset + VERSION_OFFSET, version);
+        buffer.putLong(offset + DURATION_OFFSET, duration);
+        buffer.putInt(position, name.length);
+        buffer.put(position + 4, name);
+        position += 4 + name.length;
+        buffer.putInt(position, description.length);
+        buffer.put(position + 4, description);
+
+        return commit(offset, PUT, id, recordSize(name, description));
+    }
+
+    // DELETE records only carry the id
+    int appendDelete(long id) {
+        return commit(writePosition, DELETE, id, markerSize());
+    }
+
+    int appendSequence(long nextId, long changeCount) {
+        buffer.putLong(writePosition + VERSION_OFFSET, changeCount);
+        return commit(writePosition, SEQUENCE, nextId, sequenceSize());
+    }
+
+    // Copies a whole record from another segment, checksum included
+    int appendCopy(Segment source, int sourceOffset) {
+        int offset = writePosition;
+        int size = source.recordSize(sourceOffset);
+
+        buffer.put(offset, source.buffer, sourceOffset, size);
+        writePosition += size;
+
+        return offset;
+    }
+
+    // The length goes in last, so a record only becomes visible to recovery once it is complete
+    private int commit(int offset, byte type, long id, int size) {
+        buffer.put(offset + TYPE_OFFSET, type);
+        buffer.putLong(offset + ID_OFFSET, id);
+        buffer.putInt(offset + 4, checksum(offset, size - HEADER_SIZE));
+        buffer.putInt(offset, size - HEADER_SIZE);
+        writePosition += size;
+
+        return offset;
+    }
+
+    int recordSize(int offset) {
+        return HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    byte type(int offset) {
+        return buffer.get(offset + TYPE_OFFSET);
+    }
+
+    long id(int offset) {
+        return buffer.getLong(offset + ID_OFFSET);
+    }
+
+    // Also the change count of SEQUENCE records
+    long version(int offset) {
+        return buffer.getLong(offset + VERSION_OFFSET);
+    }
+
+    long duration(int offset) {
+        return buffer.getLong(offset + DURATION_OFFSET);
+    }
+
+    Recipe readRecipe(int offset) {
+        int position = offset + NAME_OFFSET;
+        String name = readString(position);
+        String description = readString(position + 4 + buffer.getInt(position));
+
+        Recipe recipe = new Recipe();
+        recipe.setId(id(offset));
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration(offset));
+        recipe.setVersion(version(offset));
+
+        return recipe;
+    }
+
+    private String readString(int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Calls the visitor for every intact record and leaves the write position after the last one
+    void replay(RecordVisitor visitor) {
+        int position = 0;
+
+        while(position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if(length < markerSize() - HEADER_SIZE || position + HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getInt(position + 4) != checksum(position, length)) {
+                break;
+            }
+
+            visitor.visit(this, position, HEADER_SIZE + length);
+            position += HEADER_SIZE + length;
+        }
+
+        writePosition = position;
+    }
+
+    private int checksum(int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + HEADER_SIZE, length));
+
+        return (int) crc.getValue();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    // Moves a compaction output to its final name
+    void publish() throws IOException {
+        Path published = path.resolveSibling(fileName(base, part) + SUFFIX);
+        Files.move(path, published, StandardCopyOption.ATOMIC_MOVE);
+        path = published;
+    }
+
+    // The mapping stays valid for readers still holding a location in this segment until it is garbage
+    // collected, even after the file is gone
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public int compareTo(Segment other) {
+        int byBase = Long.compare(base, other.base);
+        return byBase != 0 ? byBase : Integer.compare(part, other.part);
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(Segment segment, int offset, int size);
+    }
+}
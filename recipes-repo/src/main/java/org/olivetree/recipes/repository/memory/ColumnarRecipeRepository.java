@@ -0,0 +1,300 @@
+package org.olivetree.recipes.repository.memory;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.SortedQueries;
+import org.olivetree.recipes.repository.search.TextQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Read-optimized repository keeping every recipe in memory as primitive columns (see ColumnarSnapshot).
+// The backing repository stays the source of truth: the columns are loaded from it when opened and every
+// write goes to it first. Reads never touch the backing repository and never lock, they work on whatever
+// snapshot was current when they started.
+public class ColumnarRecipeRepository implements RecipeRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarRecipeRepository.class);
+
+    private final RecipeRepository recipeRepository;
+    // A ReentrantLock rather than a monitor, so a virtual thread waiting on the backing write does not pin its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile ColumnarSnapshot snapshot;
+    // Advanced by the rows each write changed after its snapshot swap, so it never runs ahead of the snapshot and
+    // costs no query. The backing repository's count advances by at least as much, so after reopening it is never
+    // below a value handed out before.
+    private volatile long changeCount;
+
+    public ColumnarRecipeRepository(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+        this.changeCount = recipeRepository.getChangeCount();
+        this.snapshot = load(recipeRepository);
+    }
+
+    private static ColumnarSnapshot load(RecipeRepository recipeRepository) {
+        List<Recipe> recipes = new ArrayList<>();
+        try(Stream<Recipe> stream = recipeRepository.streamAllRecipes()) {
+            stream.forEach(recipes::add);
+        }
+
+        LOG.info("Loaded {} recipes into the columnar store", recipes.size());
+
+        return ColumnarSnapshot.EMPTY.withRecipes(recipes.toArray(Recipe[]::new));
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        writeLock.lock();
+        try {
+            Recipe createdRecipe = recipeRepository.createRecipe(recipe);
+            snapshot = snapshot.withRecipes(createdRecipe);
+            changeCount++;
+            return createdRecipe;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The recipes committed before a failing chunk have an id and are added all the same
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        writeLock.lock();
+        try {
+            return recipeRepository.createRecipes(recipes);
+        } finally {
+            Recipe[] createdRecipes = recipes.stream().filter(recipe -> recipe.getId() != null).toArray(Recipe[]::new);
+            snapshot = snapshot.withRecipes(createdRecipes);
+            changeCount += createdRecipes.length;
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        writeLock.lock();
+        try {
+            return apply(recipeRepository.updateRecipe(id, recipe));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        writeLock.lock();
+        try {
+            return apply(recipeRepository.patchRecipe(id, recipe));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Writes return the stored recipe, so the snapshot is updated without reading it back
+    private Optional<Recipe> apply(Optional<Recipe> updatedRecipe) {
+        if(updatedRecipe.isPresent()) {
+            snapshot = snapshot.withRecipes(updatedRecipe.get());
+            changeCount++;
+        }
+        return updatedRecipe;
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        writeLock.lock();
+        try {
+            int updatedRecipes = recipeRepository.updateRecipes(recipes);
+            if(updatedRecipes > 0) {
+                refresh(recipes.keySet());
+                changeCount += updatedRecipes;
+            }
+            return updatedRecipes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        writeLock.lock();
+        try {
+            boolean deleted = recipeRepository.deleteRecipe(id);
+            if(deleted) {
+                snapshot = snapshot.withoutIds(id);
+                changeCount++;
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        writeLock.lock();
+        try {
+            List<Long> deletedIds = recipeRepository.deleteRecipes(ids);
+            if(!deletedIds.isEmpty()) {
+                snapshot = snapshot.withoutIds(deletedIds.stream().mapToLong(Long::longValue).toArray());
+                changeCount += deletedIds.size();
+            }
+            return deletedIds;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Reloads the given rows from the backing repository in one read, ids that do not exist there are left out
+    private void refresh(Collection<Long> ids) {
+        snapshot = snapshot.withRecipes(recipeRepository.getRecipesByIds(ids).toArray(Recipe[]::new));
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        ColumnarSnapshot current = snapshot;
+        return toRecipes(current, IntStream.range(0, current.size()));
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        ColumnarSnapshot current = snapshot;
+        int start = afterId == null ? 0 : current.firstRowAfter(afterId);
+        int end = (int) Math.min(current.size(), (long) start + limit);
+
+        return toRecipes(current, IntStream.range(start, Math.max(start, end)));
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        ColumnarSnapshot current = snapshot;
+        int row = current.rowOf(id);
+
+        return row < 0 ? Optional.empty() : Optional.of(current.toRecipe(row));
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        ColumnarSnapshot current = snapshot;
+        int row = current.rowOf(id);
+
+        return row < 0 ? Optional.empty() : Optional.of(current.versions[row]);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    // The snapshot holds no change sequences, they are read from the backing repository
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return recipeRepository.getChangesSince(since, limit);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        ColumnarSnapshot current = snapshot;
+        return toRecipes(current, ids.stream()
+                .mapToInt(current::rowOf)
+                .filter(row -> row >= 0)
+                .sorted()
+                .distinct());
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        ColumnarSnapshot current = snapshot;
+        return toRecipes(current, IntStream.of(matchingRows(current, recipeSearch)));
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        ColumnarSnapshot current = snapshot;
+        int[] rows = matchingRows(current, recipeSearch);
+
+        // Rows are in id order, so the page starts at the first row past afterId
+        int start = 0;
+        if(afterId != null) {
+            int low = 0;
+            int high = rows.length;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(current.ids[rows[mid]] <= afterId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            start = low;
+        }
+
+        return toRecipes(current, IntStream.of(rows).skip(start).limit(limit));
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        ColumnarSnapshot current = snapshot;
+        return IntStream.range(0, current.size()).mapToObj(current::toRecipe);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        ColumnarSnapshot current = snapshot;
+        return IntStream.of(matchingRows(current, recipeSearch)).mapToObj(current::toRecipe);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return SortedQueries.page(this, recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return SortedQueries.page(this, recipeSearch, sort, after, limit).stream().map(RecipeSummary::of).toList();
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return SortedQueries.stream(this, recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return SortedQueries.stream(this, recipeSearch, sort).map(RecipeSummary::of);
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+
+    private static int[] matchingRows(ColumnarSnapshot current, RecipeSearch recipeSearch) {
+        int[] rows = recipeSearch.hasDurationRange()
+                ? current.rowsWithDurationBetween(recipeSearch.durationFrom(), recipeSearch.durationTo())
+                : IntStream.range(0, current.size()).toArray();
+
+        if(!recipeSearch.hasText()) {
+            return rows;
+        }
+
+        // Without an inverted index the text has to be checked row by row, after the cheaper duration filter
+        TextQuery textQuery = TextQuery.parse(recipeSearch.text());
+        return IntStream.of(rows)
+                .filter(row -> textQuery.matches(current.names[row], current.descriptions[row]))
+                .toArray();
+    }
+
+    private static List<Recipe> toRecipes(ColumnarSnapshot current, IntStream rows) {
+        return rows.mapToObj(current::toRecipe).toList();
+    }
+}
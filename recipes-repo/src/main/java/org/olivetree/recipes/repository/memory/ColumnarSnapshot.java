@@ -0,0 +1,247 @@
+package org.olivetree.recipes.repository.memory;
+
+import org.olivetree.recipes.domain.Recipe;
+
+import java.util.Arrays;
+
+// Immutable column store of all recipes. Rows are kept in id order, one array per column, plus a duration
+// index listing the row positions ordered by (duration, id). A new snapshot is built for every write, so
+// readers never need a lock.
+final class ColumnarSnapshot {
+    // Above this range of durations the index is built with a comparison sort instead of counting sort
+    private static final int MAX_COUNTING_SORT_RANGE = 1 << 16;
+
+    static final ColumnarSnapshot EMPTY = new ColumnarSnapshot(new long[0], new int[0], new String[0], new String[0], new long[0]);
+
+    final long[] ids;
+    final int[] durations;
+    final String[] names;
+    final String[] descriptions;
+    final long[] versions;
+
+    // durationIndex[i] is the row with the i-th smallest duration, sortedDurations[i] its duration
+    final int[] durationIndex;
+    final int[] sortedDurations;
+
+    ColumnarSnapshot(long[] ids, int[] durations, String[] names, String[] descriptions, long[] versions) {
+        this.ids = ids;
+        this.durations = durations;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.versions = versions;
+        this.durationIndex = buildDurationIndex(durations);
+        this.sortedDurations = new int[durationIndex.length];
+        for(int i = 0; i < durationIndex.length; i++) {
+            sortedDurations[i] = durations[durationIndex[i]];
+        }
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    // Row of the recipe with the given id, or -1
+    int rowOf(long id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row < 0 ? -1 : row;
+    }
+
+    // First row with an id greater than afterId
+    int firstRowAfter(long afterId) {
+        int row = Arrays.binarySearch(ids, afterId);
+        return row < 0 ? -row - 1 : row + 1;
+    }
+
+    // Rows whose duration is within [from, to], in id order. Two binary searches over the duration index
+    // give a contiguous slice, which is then put back in row (id) order.
+    int[] rowsWithDurationBetween(long from, long to) {
+        int start = lowerBound(sortedDurations, clamp(from));
+        int end = upperBound(sortedDurations, clamp(to));
+
+        if(from > to || start >= end) {
+            return new int[0];
+        }
+
+        int[] rows = Arrays.copyOfRange(durationIndex, start, end);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    Recipe toRecipe(int row) {
+        Recipe recipe = new Recipe();
+        recipe.setId(ids[row]);
+        recipe.setName(names[row]);
+        recipe.setDescription(descriptions[row]);
+        recipe.setDurationInMinutes((long) durations[row]);
+        recipe.setVersion(versions[row]);
+
+        return recipe;
+    }
+
+    // Copy of this snapshot with the given recipes inserted or replaced
+    ColumnarSnapshot withRecipes(Recipe... recipes) {
+        Recipe[] sorted = recipes.clone();
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.getId(), b.getId()));
+
+        int capacity = ids.length + sorted.length;
+        long[] newIds = new long[capacity];
+        int[] newDurations = new int[capacity];
+        String[] newNames = new String[capacity];
+        String[] newDescriptions = new String[capacity];
+        long[] newVersions = new long[capacity];
+
+        // Merge of two id ordered inputs, a recipe with an existing id replaces the old row
+        int size = 0;
+        int row = 0;
+        for(Recipe recipe : sorted) {
+            while(row < ids.length && ids[row] < recipe.getId()) {
+                copyRow(row++, newIds, newDurations, newNames, newDescriptions, newVersions, size++);
+            }
+            if(row < ids.length && ids[row] == recipe.getId()) {
+                row++;
+            }
+            if(size > 0 && newIds[size - 1] == recipe.getId()) {
+                size--;
+            }
+
+            newIds[size] = recipe.getId();
+            newDurations[size] = Math.toIntExact(recipe.getDurationInMinutes());
+            newNames[size] = recipe.getName();
+            newDescriptions[size] = recipe.getDescription();
+            newVersions[size] = recipe.getVersion() == null ? 0 : recipe.getVersion();
+            size++;
+        }
+        while(row < ids.length) {
+            copyRow(row++, newIds, newDurations, newNames, newDescriptions, newVersions, size++);
+        }
+
+        return new ColumnarSnapshot(
+                Arrays.copyOf(newIds, size),
+                Arrays.copyOf(newDurations, size),
+                Arrays.copyOf(newNames, size),
+                Arrays.copyOf(newDescriptions, size),
+                Arrays.copyOf(newVersions, size));
+    }
+
+    // Copy of this snapshot without the given ids
+    ColumnarSnapshot withoutIds(long... removedIds) {
+        long[] sortedRemovedIds = removedIds.clone();
+        Arrays.sort(sortedRemovedIds);
+
+        long[] newIds = new long[ids.length];
+        int[] newDurations = new int[ids.length];
+        String[] newNames = new String[ids.length];
+        String[] newDescriptions = new String[ids.length];
+        long[] newVersions = new long[ids.length];
+
+        int size = 0;
+        for(int row = 0; row < ids.length; row++) {
+            if(Arrays.binarySearch(sortedRemovedIds, ids[row]) < 0) {
+                copyRow(row, newIds, newDurations, newNames, newDescriptions, newVersions, size++);
+            }
+        }
+
+        if(size == ids.length) {
+            return this;
+        }
+
+        return new ColumnarSnapshot(
+                Arrays.copyOf(newIds, size),
+                Arrays.copyOf(newDurations, size),
+                Arrays.copyOf(newNames, size),
+                Arrays.copyOf(newDescriptions, size),
+                Arrays.copyOf(newVersions, size));
+    }
+
+    private void copyRow(int row, long[] newIds, int[] newDurations, String[] newNames, String[] newDescriptions,
+                         long[] newVersions, int target) {
+        newIds[target] = ids[row];
+        newDurations[target] = durations[row];
+        newNames[target] = names[row];
+        newDescriptions[target] = descriptions[row];
+        newVersions[target] = versions[row];
+    }
+
+    private static int[] buildDurationIndex(int[] durations) {
+        if(durations.length == 0) {
+            return new int[0];
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for(int duration : durations) {
+            min = Math.min(min, duration);
+            max = Math.max(max, duration);
+        }
+
+        if((long) max - min < MAX_COUNTING_SORT_RANGE) {
+            return countingSort(durations, min, max);
+        }
+
+        // Sort (duration, row) pairs packed in a long, rows are in id order so ties stay in id order
+        long[] keys = new long[durations.length];
+        for(int row = 0; row < durations.length; row++) {
+            keys[row] = ((long) durations[row] << 32) | row;
+        }
+        Arrays.sort(keys);
+
+        int[] index = new int[durations.length];
+        for(int i = 0; i < keys.length; i++) {
+            index[i] = (int) keys[i];
+        }
+        return index;
+    }
+
+    // One bucket per minute between min and max, built in linear time. Recipe.isValidRecipe caps durations at
+    // 1439 minutes, which makes 1440 buckets from 0, but lets negative ones through, so the range is only bounded
+    // by MAX_COUNTING_SORT_RANGE.
+    private static int[] countingSort(int[] durations, int min, int max) {
+        int[] bucketStarts = new int[max - min + 2];
+        for(int duration : durations) {
+            bucketStarts[duration - min + 1]++;
+        }
+        for(int bucket = 1; bucket < bucketStarts.length; bucket++) {
+            bucketStarts[bucket] += bucketStarts[bucket - 1];
+        }
+
+        int[] index = new int[durations.length];
+        for(int row = 0; row < durations.length; row++) {
+            index[bucketStarts[durations[row] - min]++] = row;
+        }
+        return index;
+    }
+
+    private static int clamp(long duration) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, duration));
+    }
+
+    // First position whose value is >= key
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position whose value is > key
+    private static int upperBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,10 @@
+package org.olivetree.recipes.repository.migration;
+
+public record Migration(int version, String description) {
+
+    private static final String SCRIPT_LOCATION = "/db/migration/V%d__%s.sql";
+
+    public String scriptLocation() {
+        return SCRIPT_LOCATION.formatted(version, description);
+    }
+}
@@ -0,0 +1,173 @@
+package org.olivetree.recipes.repository.migration;
+
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Brings the schema up to date once, when the repository is opened. Every applied migration is recorded
+// in SCHEMA_VERSION so later runs only apply what is new. The CLI and the server may open the same database
+// at the same time, so migrating takes a row lock in SCHEMA_LOCK first and the other waits for it.
+public class SchemaMigrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    // Keep in version order, scripts live in src/main/resources/db/migration
+    public static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "create_recipes_table"),
+            new Migration(2, "add_duration_index"),
+            new Migration(3, "add_recipe_versions"),
+            new Migration(4, "add_name_index"),
+            new Migration(5, "add_change_sequences"),
+            new Migration(6, "add_pruned_sequence"),
+            new Migration(7, "add_skipped_count")
+    );
+
+    private static final String CREATE_SCHEMA_VERSION = """
+        CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(VERSION INT PRIMARY KEY NOT NULL,
+            DESCRIPTION VARCHAR NOT NULL,
+            INSTALLED_ON TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)
+    """;
+
+    // Waiting for another process to finish migrating
+    private static final int LOCK_TIMEOUT_MILLIS = 60_000;
+
+    private static final String CREATE_SCHEMA_LOCK = "CREATE TABLE IF NOT EXISTS SCHEMA_LOCK(ID INT PRIMARY KEY NOT NULL)";
+
+    private static final String INSERT_SCHEMA_LOCK = "MERGE INTO SCHEMA_LOCK KEY(ID) VALUES (1)";
+
+    private static final String SET_LOCK_TIMEOUT = "SET LOCK_TIMEOUT " + LOCK_TIMEOUT_MILLIS;
+
+    private static final String LOCK_SCHEMA = "SELECT ID FROM SCHEMA_LOCK WHERE ID = 1 FOR UPDATE";
+
+    private static final String GET_CURRENT_VERSION = "SELECT COALESCE(MAX(version), 0) FROM SCHEMA_VERSION";
+
+    private static final String INSERT_VERSION = "INSERT INTO SCHEMA_VERSION(version, description) VALUES (?, ?)";
+
+    private final DataSource dataSource;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this(dataSource, MIGRATIONS);
+    }
+
+    public SchemaMigrator(DataSource dataSource, List<Migration> migrations) {
+        this.dataSource = dataSource;
+        this.migrations = migrations;
+    }
+
+    // Returns the schema version after migrating. The lock is held by a connection of its own, since H2 commits
+    // the open transaction, and with it the lock, on every DDL statement of a migration.
+    public int migrate() {
+        try(Connection lockConnection = dataSource.getConnection();
+            Connection connection = dataSource.getConnection()) {
+            lock(lockConnection);
+            try {
+                try(Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_SCHEMA_VERSION);
+                }
+
+                int currentVersion = getCurrentVersion(connection);
+
+                for(Migration migration : migrations) {
+                    if(migration.version() > currentVersion) {
+                        apply(connection, migration);
+                        currentVersion = migration.version();
+                    }
+                }
+
+                return currentVersion;
+            } finally {
+                lockConnection.rollback();
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to migrate database schema", e);
+        }
+    }
+
+    private static void lock(Connection connection) throws SQLException {
+        try(Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_SCHEMA_LOCK);
+            statement.execute(INSERT_SCHEMA_LOCK);
+            statement.execute(SET_LOCK_TIMEOUT);
+        }
+
+        connection.setAutoCommit(false);
+        try(Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(LOCK_SCHEMA)) {
+            rs.next();
+        }
+    }
+
+    private static int getCurrentVersion(Connection connection) throws SQLException {
+        try(Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(GET_CURRENT_VERSION)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        LOG.info("Applying schema migration {} ({})", migration.version(), migration.description());
+
+        connection.setAutoCommit(false);
+        try {
+            try(Statement statement = connection.createStatement()) {
+                for(String sql : readStatements(migration)) {
+                    statement.execute(sql);
+                }
+            }
+
+            try(PreparedStatement statement = connection.prepareStatement(INSERT_VERSION)) {
+                statement.setInt(1, migration.version());
+                statement.setString(2, migration.description());
+                statement.executeUpdate();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Scripts are plain statements separated by ';', lines starting with '--' are comments
+    static List<String> readStatements(Migration migration) {
+        String script;
+        try(InputStream scriptStream = SchemaMigrator.class.getResourceAsStream(migration.scriptLocation())) {
+            if(scriptStream == null) {
+                throw new IllegalStateException("Missing migration script " + migration.scriptLocation());
+            }
+            script = new String(scriptStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read migration script " + migration.scriptLocation(), e);
+        }
+
+        StringBuilder withoutComments = new StringBuilder();
+        script.lines()
+                .filter(line -> !line.trim().startsWith("--"))
+                .forEach(line -> withoutComments.append(line).append('\n'));
+
+        List<String> statements = new ArrayList<>();
+        for(String sql : withoutComments.toString().split(";")) {
+            if(!sql.isBlank()) {
+                statements.add(sql.trim());
+            }
+        }
+
+        return statements;
+    }
+}
@@ -0,0 +1,497 @@
+package org.olivetree.recipes.repository.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded pool of physical connections. Connections handed out are proxies: closing one returns the
+// physical connection to the pool, and prepareStatement goes through a per-connection statement cache.
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long MIN_EVICTION_INTERVAL_MILLIS = 1000;
+
+    private final DataSource physicalDataSource;
+    private final PoolConfig config;
+
+    private final Semaphore permits;
+    // Used as a stack so the most recently used connections are handed out first and the least
+    // recently used ones drift to the tail where the evictor finds them.
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    private final LongAdder totalAcquired = new LongAdder();
+    private final LongAdder totalTimeouts = new LongAdder();
+    private final LongAdder totalCreated = new LongAdder();
+    private final LongAdder totalEvicted = new LongAdder();
+    private final LongAdder totalAcquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(DataSource physicalDataSource, PoolConfig config) {
+        this.physicalDataSource = physicalDataSource;
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+
+        fillToMinimum();
+
+        long evictionInterval = Math.max(MIN_EVICTION_INTERVAL_MILLIS, config.idleTimeout().toMillis() / 2);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recipes-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            if(!permits.tryAcquire(config.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                totalTimeouts.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + config.acquireTimeout().toMillis() + "ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooledConnection = takeIdleOrCreate();
+            activeConnections.incrementAndGet();
+
+            long elapsed = System.nanoTime() - start;
+            totalAcquired.increment();
+            totalAcquireNanos.add(elapsed);
+            maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+
+            return pooledConnection.checkout();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public PoolStats getStats() {
+        long acquired = totalAcquired.sum();
+
+        return new PoolStats(
+                activeConnections.get(),
+                idleConnections.size(),
+                permits.getQueueLength(),
+                acquired,
+                totalTimeouts.sum(),
+                totalCreated.sum(),
+                totalEvicted.sum(),
+                acquired == 0 ? 0 : totalAcquireNanos.sum() / acquired,
+                maxAcquireNanos.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+
+        PooledConnection pooledConnection;
+        while((pooledConnection = idleConnections.pollFirst()) != null) {
+            destroy(pooledConnection);
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooledConnection;
+        while((pooledConnection = idleConnections.pollFirst()) != null) {
+            if(pooledConnection.isUsable()) {
+                return pooledConnection;
+            }
+            destroy(pooledConnection);
+        }
+
+        return create();
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = physicalDataSource.getConnection();
+        openConnections.incrementAndGet();
+        totalCreated.increment();
+
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        activeConnections.decrementAndGet();
+
+        try {
+            if(closed || !pooledConnection.reset()) {
+                destroy(pooledConnection);
+            } else {
+                pooledConnection.lastUsedNanos = System.nanoTime();
+                idleConnections.offerFirst(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooledConnection) {
+        openConnections.decrementAndGet();
+        pooledConnection.closePhysical();
+    }
+
+    private void evictIdleConnections() {
+        long idleTimeoutNanos = config.idleTimeout().toNanos();
+        long now = System.nanoTime();
+
+        Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+        while(oldestFirst.hasNext() && openConnections.get() > config.minSize()) {
+            PooledConnection pooledConnection = oldestFirst.next();
+
+            if(now - pooledConnection.lastUsedNanos < idleTimeoutNanos) {
+                break;
+            }
+
+            // Another thread may have checked it out in the meantime, only evict if we won the removal.
+            if(idleConnections.removeLastOccurrence(pooledConnection)) {
+                totalEvicted.increment();
+                destroy(pooledConnection);
+            }
+        }
+
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while(!closed && openConnections.get() < config.minSize()) {
+            try {
+                PooledConnection pooledConnection = create();
+                pooledConnection.lastUsedNanos = System.nanoTime();
+                idleConnections.offerLast(pooledConnection);
+            } catch (SQLException e) {
+                LOG.warn("Could not open pooled connection", e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the credentials of the underlying data source");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return physicalDataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        physicalDataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        physicalDataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return physicalDataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return physicalDataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || physicalDataSource.isWrapperFor(iface);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsedNanos;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(config.statementCacheSize());
+        }
+
+        Connection checkout() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConnectionHandle(this));
+        }
+
+        boolean isUsable() {
+            try {
+                return !physical.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Undo whatever state the borrower left behind, returns false if the connection should not be reused.
+        boolean reset() {
+            try {
+                if(physical.isClosed()) {
+                    return false;
+                }
+                if(!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                LOG.warn("Discarding pooled connection that could not be reset", e);
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            statementCache.closeAll();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOG.warn("Failed to close pooled connection", e);
+            }
+        }
+    }
+
+    private class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private boolean closed;
+
+        ConnectionHandle(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            switch (name) {
+                case "close" -> {
+                    if(!closed) {
+                        closed = true;
+                        release(pooledConnection);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || pooledConnection.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pooledConnection.physical + "]";
+                }
+            }
+
+            if(closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            if(name.equals("prepareStatement") && args != null && args[0] instanceof String sql) {
+                if(args.length == 1) {
+                    return pooledConnection.statementCache.prepare((Connection) proxy, new StatementKey(sql, -1),
+                            () -> pooledConnection.physical.prepareStatement(sql));
+                }
+                if(args.length == 2 && args[1] instanceof Integer autoGeneratedKeys) {
+                    return pooledConnection.statementCache.prepare((Connection) proxy, new StatementKey(sql, autoGeneratedKeys),
+                            () -> pooledConnection.physical.prepareStatement(sql, autoGeneratedKeys));
+                }
+            }
+
+            return ConnectionPool.invoke(pooledConnection.physical, method, args);
+        }
+    }
+
+    record StatementKey(String sql, int autoGeneratedKeys) {}
+
+    @FunctionalInterface
+    interface StatementFactory {
+        PreparedStatement create() throws SQLException;
+    }
+
+    // LRU cache of prepared statements for a single physical connection. A statement is removed from the
+    // cache while it is in use and put back when the borrower closes it, so nested use of the same SQL
+    // simply prepares a second statement.
+    private static class StatementCache {
+        private final int maxSize;
+        private final LinkedHashMap<StatementKey, PreparedStatement> statements;
+
+        StatementCache(int maxSize) {
+            this.maxSize = maxSize;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest) {
+                    if(size() > StatementCache.this.maxSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized PreparedStatement take(StatementKey key) {
+            return statements.remove(key);
+        }
+
+        synchronized void giveBack(StatementKey key, PreparedStatement statement) {
+            if(maxSize == 0) {
+                closeQuietly(statement);
+                return;
+            }
+
+            PreparedStatement previous = statements.put(key, statement);
+            if(previous != null && previous != statement) {
+                closeQuietly(previous);
+            }
+        }
+
+        synchronized void closeAll() {
+            statements.values().forEach(StatementCache::closeQuietly);
+            statements.clear();
+        }
+
+        PreparedStatement prepare(Connection connectionProxy, StatementKey key, StatementFactory factory) throws SQLException {
+            PreparedStatement statement = take(key);
+            if(statement == null || statement.isClosed()) {
+                statement = factory.create();
+            }
+
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandle(this, key, statement, connectionProxy));
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.debug("Failed to close cached statement", e);
+            }
+        }
+    }
+
+    private static class StatementHandle implements InvocationHandler {
+        private final StatementCache cache;
+        private final StatementKey key;
+        private final PreparedStatement statement;
+        private final Connection connectionProxy;
+        private boolean closed;
+
+        StatementHandle(StatementCache cache, StatementKey key, PreparedStatement statement, Connection connectionProxy) {
+            this.cache = cache;
+            this.key = key;
+            this.statement = statement;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if(!closed) {
+                        closed = true;
+                        recycle();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || statement.isClosed();
+                }
+                case "getConnection" -> {
+                    return connectionProxy;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "CachedStatement[" + statement + "]";
+                }
+            }
+
+            if(closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            return ConnectionPool.invoke(statement, method, args);
+        }
+
+        private void recycle() {
+            try {
+                if(statement.isClosed()) {
+                    return;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                cache.giveBack(key, statement);
+            } catch (SQLException e) {
+                StatementCache.closeQuietly(statement);
+            }
+        }
+    }
+}
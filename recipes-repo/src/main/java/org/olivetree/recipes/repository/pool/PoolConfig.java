@@ -0,0 +1,48 @@
+package org.olivetree.recipes.repository.pool;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+public record PoolConfig(int minSize,
+                         int maxSize,
+                         Duration acquireTimeout,
+                         Duration idleTimeout,
+                         int statementCacheSize) {
+
+    public static final String ENABLED_PROPERTY = "recipes.pool.enabled";
+    public static final String MIN_SIZE_PROPERTY = "recipes.pool.minSize";
+    public static final String MAX_SIZE_PROPERTY = "recipes.pool.maxSize";
+    public static final String ACQUIRE_TIMEOUT_PROPERTY = "recipes.pool.acquireTimeoutMillis";
+    public static final String IDLE_TIMEOUT_PROPERTY = "recipes.pool.idleTimeoutMillis";
+    public static final String STATEMENT_CACHE_SIZE_PROPERTY = "recipes.pool.statementCacheSize";
+
+    public PoolConfig {
+        if(minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        if(statementCacheSize < 0) {
+            throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+        }
+    }
+
+    public static PoolConfig defaults() {
+        return new PoolConfig(1, 10, Duration.ofSeconds(5), Duration.ofMinutes(5), 32);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static PoolConfig fromProperties(Properties properties) {
+        PoolConfig defaults = defaults();
+
+        return new PoolConfig(
+                getInt(properties, MIN_SIZE_PROPERTY, defaults.minSize()),
+                getInt(properties, MAX_SIZE_PROPERTY, defaults.maxSize()),
+                Duration.ofMillis(getLong(properties, ACQUIRE_TIMEOUT_PROPERTY, defaults.acquireTimeout().toMillis())),
+                Duration.ofMillis(getLong(properties, IDLE_TIMEOUT_PROPERTY, defaults.idleTimeout().toMillis())),
+                getInt(properties, STATEMENT_CACHE_SIZE_PROPERTY, defaults.statementCacheSize()));
+    }
+}
@@ -0,0 +1,11 @@
+package org.olivetree.recipes.repository.pool;
+
+public record PoolStats(int active,
+                        int idle,
+                        int waiters,
+                        long totalAcquired,
+                        long totalTimeouts,
+                        long totalCreated,
+                        long totalEvicted,
+                        long averageAcquireNanos,
+                        long maxAcquireNanos) {}
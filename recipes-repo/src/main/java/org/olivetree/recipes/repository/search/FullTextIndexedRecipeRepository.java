@@ -0,0 +1,223 @@
+package org.olivetree.recipes.repository.search;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.SortedQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// Answers text searches from an InvertedIndex and only loads the matching recipes from the repository it
+// wraps. The index is built when opened and kept up to date by the writes going through this repository, so
+// it misses the writes of other processes sharing the database.
+public class FullTextIndexedRecipeRepository implements RecipeRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(FullTextIndexedRecipeRepository.class);
+
+    // Matching recipes are loaded and streamed in chunks of this many ids
+    private static final int FETCH_SIZE = 256;
+
+    private final RecipeRepository recipeRepository;
+    private final InvertedIndex index = new InvertedIndex();
+
+    public FullTextIndexedRecipeRepository(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+
+        try(Stream<Recipe> recipes = recipeRepository.streamAllRecipes()) {
+            recipes.forEach(index::index);
+        }
+
+        LOG.info("Indexed the text of {} recipes", index.size());
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        if(!recipeSearch.hasText()) {
+            return recipeRepository.findRecipes(recipeSearch);
+        }
+
+        return getRecipesByIds(index.search(recipeSearch));
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        if(!recipeSearch.hasText()) {
+            return recipeRepository.findRecipes(recipeSearch, afterId, limit);
+        }
+
+        long[] ids = index.search(recipeSearch);
+        int start = afterId == null ? 0 : firstIndexAfter(ids, afterId);
+
+        return getRecipesByIds(Arrays.copyOfRange(ids, start, (int) Math.min(ids.length, (long) start + limit)));
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        if(!recipeSearch.hasText()) {
+            return recipeRepository.streamRecipes(recipeSearch);
+        }
+
+        long[] ids = index.search(recipeSearch);
+
+        return IntStream.iterate(0, from -> from < ids.length, from -> from + FETCH_SIZE)
+                .mapToObj(from -> getRecipesByIds(Arrays.copyOfRange(ids, from, Math.min(ids.length, from + FETCH_SIZE))))
+                .flatMap(List::stream);
+    }
+
+    // Text searches come from the index and are sorted in Java, the others are left to the wrapped repository
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeSearch.hasText() ?
+                SortedQueries.page(this, recipeSearch, sort, after, limit) :
+                recipeRepository.findRecipes(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeSearch.hasText() ?
+                SortedQueries.page(this, recipeSearch, sort, after, limit).stream().map(RecipeSummary::of).toList() :
+                recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeSearch.hasText() ?
+                SortedQueries.stream(this, recipeSearch, sort) :
+                recipeRepository.streamRecipes(recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeSearch.hasText() ?
+                SortedQueries.stream(this, recipeSearch, sort).map(RecipeSummary::of) :
+                recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        Recipe createdRecipe = recipeRepository.createRecipe(recipe);
+        index.index(createdRecipe);
+        return createdRecipe;
+    }
+
+    // The recipes committed before a failing chunk have an id and are indexed all the same
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        try {
+            return recipeRepository.createRecipes(recipes);
+        } finally {
+            recipes.stream().filter(recipe -> recipe.getId() != null).forEach(index::index);
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        Optional<Recipe> updatedRecipe = recipeRepository.updateRecipe(id, recipe);
+        updatedRecipe.ifPresent(index::index);
+        return updatedRecipe;
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        Optional<Recipe> updatedRecipe = recipeRepository.patchRecipe(id, recipe);
+        updatedRecipe.ifPresent(index::index);
+        return updatedRecipe;
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        int updatedRecipes = recipeRepository.updateRecipes(recipes);
+        recipes.keySet().forEach(this::reindex);
+        return updatedRecipes;
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        boolean deleted = recipeRepository.deleteRecipe(id);
+        if(deleted) {
+            index.remove(id);
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        List<Long> deletedIds = recipeRepository.deleteRecipes(ids);
+        deletedIds.forEach(index::remove);
+        return deletedIds;
+    }
+
+    // Indexes the stored state of the recipe, an update of an unknown id leaves the index untouched
+    private void reindex(Long id) {
+        recipeRepository.getRecipeById(id).ifPresent(index::index);
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return recipeRepository.getAllRecipes();
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return recipeRepository.getRecipesAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return recipeRepository.getRecipeById(id);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return recipeRepository.getRecipeVersion(id);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return recipeRepository.getChangeCount();
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return recipeRepository.getChangesSince(since, limit);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return recipeRepository.getRecipesByIds(ids);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return recipeRepository.streamAllRecipes();
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+
+    private List<Recipe> getRecipesByIds(long[] ids) {
+        if(ids.length == 0) {
+            return List.of();
+        }
+
+        return recipeRepository.getRecipesByIds(LongStream.of(ids).boxed().toList());
+    }
+
+    private static int firstIndexAfter(long[] ids, long afterId) {
+        int position = Arrays.binarySearch(ids, afterId);
+        return position < 0 ? -position - 1 : position + 1;
+    }
+}
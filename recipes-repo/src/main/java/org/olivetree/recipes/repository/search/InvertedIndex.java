@@ -0,0 +1,159 @@
+package org.olivetree.recipes.repository.search;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Maps every word of a recipe's name and description to the sorted ids of the recipes containing it.
+// A text query intersects the posting lists of its words, starting from the shortest one, so its cost
+// depends on how many recipes contain the words and not on how many recipes there are.
+//
+// Writes are indexed after they return from the repository, so concurrent writes of a recipe can reach the
+// index in another order than they committed. Each recipe keeps the version it was indexed at and older
+// versions are ignored, and a removed recipe leaves a marker for REMOVAL_MARKER_NANOS so that a write that
+// committed before the delete does not index it again.
+public class InvertedIndex {
+    static final long REMOVAL_MARKER_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    // What was indexed for each recipe, to remove it again and to filter by duration without a lookup
+    private final Map<Long, IndexedRecipe> indexedRecipes = new HashMap<>();
+    // Removed ids and when, oldest first. Ids are never reused, so a marker is only there for late writes.
+    private final LinkedHashMap<Long, Long> removedAt = new LinkedHashMap<>();
+
+    private record IndexedRecipe(String[] terms, long duration, Long version) {}
+
+    public void index(Recipe recipe) {
+        Set<String> terms = Tokenizer.tokenize(recipe.getName());
+        terms.addAll(Tokenizer.tokenize(recipe.getDescription()));
+
+        lock.writeLock().lock();
+        try {
+            if(removedAt.containsKey(recipe.getId()) || isOlderThanIndexed(recipe)) {
+                return;
+            }
+
+            removeUnlocked(recipe.getId());
+
+            for(String term : terms) {
+                postings.computeIfAbsent(term, t -> new PostingList()).add(recipe.getId());
+            }
+            indexedRecipes.put(recipe.getId(), new IndexedRecipe(terms.toArray(String[]::new), recipe.getDurationInMinutes(), recipe.getVersion()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Only for recipes that were deleted, the id is then refused until its marker expires
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+
+            long now = System.nanoTime();
+            removedAt.remove(id);
+            removedAt.put(id, now);
+            Iterator<Long> removedTimes = removedAt.values().iterator();
+            while(removedTimes.hasNext() && now - removedTimes.next() > REMOVAL_MARKER_NANOS) {
+                removedTimes.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedRecipes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of the recipes matching the text and, when given, the duration range of the search, in id order
+    public long[] search(RecipeSearch recipeSearch) {
+        Set<String> tokens = Tokenizer.tokenize(recipeSearch.text());
+
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>();
+            for(String token : tokens) {
+                PostingList postingList = postings.get(token);
+                if(postingList == null) {
+                    return new long[0];
+                }
+                lists.add(postingList);
+            }
+
+            if(lists.isEmpty()) {
+                return new long[0];
+            }
+
+            lists.sort(Comparator.comparingInt(PostingList::size));
+
+            // Only the shortest list is decoded, the others are probed for its ids
+            long[] ids = lists.get(0).toArray();
+            for(int i = 1; i < lists.size() && ids.length > 0; i++) {
+                ids = lists.get(i).retainAll(ids);
+            }
+
+            if(recipeSearch.hasDurationRange()) {
+                ids = filterByDuration(ids, recipeSearch.durationFrom(), recipeSearch.durationTo());
+            }
+
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Without versions, as for recipes written by an engine that does not keep them, the latest write wins
+    private boolean isOlderThanIndexed(Recipe recipe) {
+        IndexedRecipe indexedRecipe = indexedRecipes.get(recipe.getId());
+
+        return indexedRecipe != null && indexedRecipe.version() != null && recipe.getVersion() != null
+                && recipe.getVersion() < indexedRecipe.version();
+    }
+
+    private void removeUnlocked(long id) {
+        IndexedRecipe indexedRecipe = indexedRecipes.remove(id);
+        if(indexedRecipe == null) {
+            return;
+        }
+
+        for(String term : indexedRecipe.terms()) {
+            PostingList postingList = postings.get(term);
+            postingList.remove(id);
+            if(postingList.size() == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private long[] filterByDuration(long[] ids, long from, long to) {
+        long[] matching = new long[ids.length];
+        int size = 0;
+        for(long id : ids) {
+            long duration = indexedRecipes.get(id).duration();
+            if(duration >= from && duration <= to) {
+                matching[size++] = id;
+            }
+        }
+
+        return Arrays.copyOf(matching, size);
+    }
+}
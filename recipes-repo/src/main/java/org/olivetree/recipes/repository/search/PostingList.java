@@ -0,0 +1,200 @@
+package org.olivetree.recipes.repository.search;
+
+import java.util.Arrays;
+
+// Sorted set of recipe ids split in blocks of up to BLOCK_SIZE ids. Each block is compressed as variable-length
+// gaps to its first id, consecutive ids usually differ by a small amount so most take a single byte, and the
+// first ids are kept uncompressed as skip pointers. Adding or removing an id re-encodes only its block, and an
+// intersection jumps to the blocks that can hold its candidates instead of decoding the whole list. Not
+// thread-safe, guarded by the owning index.
+final class PostingList {
+    static final int BLOCK_SIZE = 128;
+
+    private long[] firstIds = new long[1];
+    private byte[][] blocks = new byte[1][];
+    private int[] counts = new int[1];
+    private int blockCount;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(long id) {
+        if(blockCount == 0) {
+            insertBlock(0, new long[]{id}, 1);
+            size++;
+            return;
+        }
+
+        int block = Math.max(blockFor(id), 0);
+        long[] ids = decode(block);
+        int position = Arrays.binarySearch(ids, id);
+        if(position >= 0) {
+            return;
+        }
+
+        position = -position - 1;
+        if(ids.length < BLOCK_SIZE) {
+            long[] newIds = new long[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, position);
+            newIds[position] = id;
+            System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+            encode(block, newIds, newIds.length);
+        } else if(position == ids.length && block == blockCount - 1) {
+            // Ids mostly arrive in increasing order, so a full last block is followed by a new one
+            insertBlock(blockCount, new long[]{id}, 1);
+        } else {
+            long[] newIds = new long[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, position);
+            newIds[position] = id;
+            System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+
+            int half = newIds.length / 2;
+            encode(block, newIds, half);
+            insertBlock(block + 1, Arrays.copyOfRange(newIds, half, newIds.length), newIds.length - half);
+        }
+        size++;
+    }
+
+    void remove(long id) {
+        int block = blockFor(id);
+        if(block < 0) {
+            return;
+        }
+
+        long[] ids = decode(block);
+        int position = Arrays.binarySearch(ids, id);
+        if(position < 0) {
+            return;
+        }
+
+        if(ids.length == 1) {
+            removeBlock(block);
+        } else {
+            long[] newIds = new long[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, position);
+            System.arraycopy(ids, position + 1, newIds, position, ids.length - position - 1);
+            encode(block, newIds, newIds.length);
+        }
+        size--;
+    }
+
+    long[] toArray() {
+        long[] ids = new long[size];
+        int offset = 0;
+        for(int block = 0; block < blockCount; block++) {
+            decodeInto(block, ids, offset);
+            offset += counts[block];
+        }
+
+        return ids;
+    }
+
+    // The candidates, in increasing order, that are in this list. Only the blocks a candidate falls into are
+    // decoded, so the cost follows the number of candidates and not the length of the list.
+    long[] retainAll(long[] candidates) {
+        long[] result = new long[Math.min(candidates.length, size)];
+        int resultSize = 0;
+
+        long[] ids = new long[BLOCK_SIZE];
+        int decodedBlock = -1;
+        int from = 0;
+        for(long candidate : candidates) {
+            int block = blockFor(candidate, from);
+            if(block < 0) {
+                continue;
+            }
+
+            if(block != decodedBlock) {
+                decodeInto(block, ids, 0);
+                decodedBlock = block;
+                from = block;
+            }
+
+            if(Arrays.binarySearch(ids, 0, counts[block], candidate) >= 0) {
+                result[resultSize++] = candidate;
+            }
+        }
+
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    // Index of the last block whose first id is not greater than the id, -1 when the id is before every block
+    private int blockFor(long id) {
+        return blockFor(id, 0);
+    }
+
+    private int blockFor(long id, int from) {
+        int position = Arrays.binarySearch(firstIds, from, blockCount, id);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    private long[] decode(int block) {
+        long[] ids = new long[counts[block]];
+        decodeInto(block, ids, 0);
+
+        return ids;
+    }
+
+    private void decodeInto(int block, long[] ids, int offset) {
+        byte[] data = blocks[block];
+        long id = firstIds[block];
+        ids[offset] = id;
+
+        int position = 0;
+        for(int i = 1; i < counts[block]; i++) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+
+            id += gap;
+            ids[offset + i] = id;
+        }
+    }
+
+    private void encode(int block, long[] ids, int count) {
+        byte[] data = new byte[(count - 1) * 10];
+        int length = 0;
+        for(int i = 1; i < count; i++) {
+            long gap = ids[i] - ids[i - 1];
+            while((gap & ~0x7fL) != 0) {
+                data[length++] = (byte) ((gap & 0x7f) | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+        }
+
+        firstIds[block] = ids[0];
+        blocks[block] = Arrays.copyOf(data, length);
+        counts[block] = count;
+    }
+
+    private void insertBlock(int block, long[] ids, int count) {
+        if(blockCount == firstIds.length) {
+            int capacity = blockCount * 2;
+            firstIds = Arrays.copyOf(firstIds, capacity);
+            blocks = Arrays.copyOf(blocks, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        System.arraycopy(firstIds, block, firstIds, block + 1, blockCount - block);
+        System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+        System.arraycopy(counts, block, counts, block + 1, blockCount - block);
+        blockCount++;
+        encode(block, ids, count);
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(firstIds, block + 1, firstIds, block, blockCount - block - 1);
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(counts, block + 1, counts, block, blockCount - block - 1);
+        blockCount--;
+        blocks[blockCount] = null;
+    }
+}
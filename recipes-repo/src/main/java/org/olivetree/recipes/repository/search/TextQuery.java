@@ -0,0 +1,40 @@
+package org.olivetree.recipes.repository.search;
+
+import org.olivetree.recipes.domain.Recipe;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Matches recipes whose name or description contain every word of the query. Used by the engines without
+// an inverted index, which have to check the text of each candidate row.
+public final class TextQuery implements Predicate<Recipe> {
+    private final Set<String> tokens;
+
+    private TextQuery(Set<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    public static TextQuery parse(String text) {
+        return new TextQuery(Tokenizer.tokenize(text));
+    }
+
+    public Set<String> tokens() {
+        return tokens;
+    }
+
+    @Override
+    public boolean test(Recipe recipe) {
+        return matches(recipe.getName(), recipe.getDescription());
+    }
+
+    public boolean matches(String name, String description) {
+        if(tokens.isEmpty()) {
+            return true;
+        }
+
+        Set<String> recipeTokens = Tokenizer.tokenize(name);
+        recipeTokens.addAll(Tokenizer.tokenize(description));
+
+        return recipeTokens.containsAll(tokens);
+    }
+}
@@ -0,0 +1,33 @@
+package org.olivetree.recipes.repository.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Splits text into lower-case words made of letters and digits
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if(text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if(wordCharacter && start < 0) {
+                start = i;
+            } else if(!wordCharacter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+}
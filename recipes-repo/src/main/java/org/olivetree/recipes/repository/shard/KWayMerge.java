@@ -0,0 +1,115 @@
+package org.olivetree.recipes.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Merges inputs that are each sorted by the same comparator into one sorted sequence. A heap holds the next
+// element of every input, so each element costs log(inputs) comparisons. Equal elements come in the order
+// of their inputs.
+final class KWayMerge {
+
+    private KWayMerge() {
+    }
+
+    // limit 0 merges everything
+    static <T> List<T> merge(List<List<T>> inputs, Comparator<? super T> comparator, int limit) {
+        List<Iterator<T>> iterators = new ArrayList<>(inputs.size());
+        int size = 0;
+        for(List<T> input : inputs) {
+            iterators.add(input.iterator());
+            size += input.size();
+        }
+
+        int count = limit > 0 ? Math.min(limit, size) : size;
+        List<T> merged = new ArrayList<>(count);
+        Iterator<T> iterator = new MergingIterator<>(iterators, comparator);
+        while(merged.size() < count && iterator.hasNext()) {
+            merged.add(iterator.next());
+        }
+
+        return merged;
+    }
+
+    // Reads the inputs lazily, closing the merged stream closes all of them
+    static <T> Stream<T> merge(List<Stream<T>> inputs, Comparator<? super T> comparator) {
+        List<Iterator<T>> iterators = inputs.stream().map(Stream::iterator).toList();
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+                new MergingIterator<>(iterators, comparator), Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> closeAll(inputs));
+    }
+
+    static void closeAll(List<? extends Stream<?>> streams) {
+        RuntimeException failure = null;
+        for(Stream<?> stream : streams) {
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if(failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    private record Head<T>(T element, int input) {
+    }
+
+    private static class MergingIterator<T> implements Iterator<T> {
+        private final List<Iterator<T>> inputs;
+        private final PriorityQueue<Head<T>> heads;
+        private boolean started;
+
+        MergingIterator(List<Iterator<T>> inputs, Comparator<? super T> comparator) {
+            this.inputs = inputs;
+            Comparator<Head<T>> byElement = Comparator.comparing(Head::element, comparator);
+            this.heads = new PriorityQueue<>(Math.max(1, inputs.size()), byElement.thenComparingInt(Head::input));
+        }
+
+        @Override
+        public boolean hasNext() {
+            // The first element of every input is only read once the merge is consumed
+            if(!started) {
+                started = true;
+                for(int input = 0; input < inputs.size(); input++) {
+                    advance(input);
+                }
+            }
+
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Head<T> head = heads.poll();
+            advance(head.input());
+
+            return head.element();
+        }
+
+        private void advance(int input) {
+            Iterator<T> iterator = inputs.get(input);
+            if(iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), input));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.olivetree.recipes.repository.shard;
+
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+// shards is the number of H2 databases the recipes are spread over. It cannot change once recipes were
+// created, the ids of the existing recipes decide which database they live in.
+public record ShardConfig(int shards) {
+
+    public static final String ENABLED_PROPERTY = "recipes.shards.enabled";
+    public static final String SHARDS_PROPERTY = "recipes.shards.count";
+
+    public ShardConfig {
+        if(shards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shards);
+        }
+    }
+
+    public static ShardConfig defaults() {
+        return new ShardConfig(4);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static ShardConfig fromProperties(Properties properties) {
+        return new ShardConfig(getInt(properties, SHARDS_PROPERTY, defaults().shards()));
+    }
+
+    // Every shard is a database file next to the unsharded one
+    public String shardFile(String databaseFile, int shard) {
+        return databaseFile + "-shard" + shard;
+    }
+}
@@ -0,0 +1,495 @@
+package org.olivetree.recipes.repository.shard;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeJdbcRepositoryImpl;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
+import org.olivetree.recipes.repository.pool.PoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Spreads the recipes over several H2 databases, each with its own file, lock and connection pool, so writes
+// to different shards never wait for each other. The recipe with id lives in shard id % shards: every shard
+// generates only the ids of its own residue, so ids stay unique without asking the other shards.
+//
+// Calls for one recipe go to its shard. Batches are split by shard and the shards are written in parallel.
+// Listings and searches ask every shard in parallel and merge the pages, each already in the requested
+// order, with a k-way merge. Sorted pages continue after the sort key of their last recipe, which every shard
+// can compare against, instead of after its id, which only its own shard knows.
+public class ShardedRecipeRepository implements RecipeRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedRecipeRepository.class);
+
+    private static final Comparator<Recipe> BY_ID = RecipeSort.BY_ID.comparator();
+
+    private final List<RecipeJdbcRepositoryImpl> shards;
+    private final ExecutorService executor;
+    // Shard taking the next created recipe
+    private final AtomicInteger nextShard = new AtomicInteger();
+    // Set while a catch-up of the change counts is waiting to run, so writes in a burst schedule only one
+    private final AtomicBoolean catchUpScheduled = new AtomicBoolean();
+    // The last catch-up scheduled, each one runs after the one before
+    private CompletableFuture<Void> catchUp = CompletableFuture.completedFuture(null);
+    // Set by close under the lock of catchUp, no catch-up is scheduled after it
+    private volatile boolean closed;
+
+    public ShardedRecipeRepository(List<RecipeJdbcRepositoryImpl> shards) {
+        if(shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards");
+        }
+
+        this.shards = List.copyOf(shards);
+        for(int shard = 0; shard < shards.size(); shard++) {
+            shards.get(shard).allocateIds(shard, shards.size());
+        }
+        this.executor = createExecutor();
+        // The shards may have been left apart by the last run
+        scheduleCatchUp();
+    }
+
+    public static ShardedRecipeRepository open(String databaseFile, ShardConfig config, PoolConfig poolConfig, int batchSize) {
+        return open(databaseFile, config, poolConfig, batchSize, DEFAULT_TOMBSTONE_RETENTION);
+    }
+
+    // Each shard gets its own connection pool with the bounds of poolConfig, and keeps its tombstones for
+    // tombstoneRetention of its own changes
+    public static ShardedRecipeRepository open(String databaseFile, ShardConfig config, PoolConfig poolConfig, int batchSize,
+                                               long tombstoneRetention) {
+        List<RecipeJdbcRepositoryImpl> shards = new ArrayList<>(config.shards());
+        try {
+            for(int shard = 0; shard < config.shards(); shard++) {
+                shards.add(new RecipeJdbcRepositoryImpl(config.shardFile(databaseFile, shard), poolConfig, batchSize, tombstoneRetention));
+            }
+
+            return new ShardedRecipeRepository(shards);
+        } catch (RuntimeException e) {
+            shards.forEach(RecipeJdbcRepositoryImpl::close);
+            throw e;
+        }
+    }
+
+    // The queries of a fan-out mostly wait on H2, so they run on virtual threads when available. The build
+    // targets Java 17, so those are looked up at runtime, falling back to a pool of platform threads.
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "recipes-shard-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        try {
+            return shards.get(nextShard()).createRecipe(recipe);
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    // Every shard writes a contiguous slice of the recipes, starting with the next shard in turn
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        int sliceSize = (recipes.size() + shards.size() - 1) / shards.size();
+        int shard = nextShard();
+
+        List<Supplier<List<Recipe>>> calls = new ArrayList<>();
+        for(int from = 0; from < recipes.size(); from += sliceSize) {
+            RecipeJdbcRepositoryImpl target = shards.get(shard);
+            List<Recipe> slice = recipes.subList(from, Math.min(recipes.size(), from + sliceSize));
+            calls.add(() -> target.createRecipes(slice));
+            shard = (shard + 1) % shards.size();
+        }
+        try {
+            fanOut(calls);
+        } finally {
+            scheduleCatchUp();
+        }
+
+        return recipes;
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        List<Map<Long, Recipe>> byShard = new ArrayList<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            byShard.add(new HashMap<>());
+        }
+        recipes.forEach((id, recipe) -> byShard.get(shardOf(id)).put(id, recipe));
+
+        List<Supplier<Integer>> calls = new ArrayList<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            RecipeJdbcRepositoryImpl target = shards.get(shard);
+            Map<Long, Recipe> shardRecipes = byShard.get(shard);
+            if(!shardRecipes.isEmpty()) {
+                calls.add(() -> target.updateRecipes(shardRecipes));
+            }
+        }
+
+        try {
+            return fanOut(calls).stream().mapToInt(Integer::intValue).sum();
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    // The deleted ids come back grouped by shard
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        try {
+            return forIdsByShard(ids, RecipeRepository::deleteRecipes).stream().flatMap(List::stream).toList();
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return KWayMerge.merge(fanOut(RecipeRepository::getAllRecipes), BY_ID, 0);
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return KWayMerge.merge(fanOut(shard -> shard.getRecipesAfter(afterId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return shards.get(shardOf(id)).getRecipeById(id);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return KWayMerge.merge(forIdsByShard(ids, RecipeRepository::getRecipesByIds), BY_ID, 0);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return shards.get(shardOf(id)).getRecipeVersion(id);
+    }
+
+    // Grows with the writes to any shard. The catch-ups raise the shards' change counts without a write, so the
+    // sequences they skipped are left out and the listing ETags built on this stay valid across them.
+    @Override
+    public long getChangeCount() {
+        return fanOut(RecipeJdbcRepositoryImpl::getWrittenChangeCount).stream().mapToLong(Long::longValue).sum();
+    }
+
+    // The change sequences of the shards are independent, so a change is numbered sequence * shards + shard
+    // and the shards' changes are merged in that order. A sync must never be handed a change numbered after
+    // one that is still to be committed on another shard. A shard commits its sequences in order, so every
+    // sequence up to the lowest committed change count of all shards is final, and only the changes up to it are
+    // returned. Reading the counts takes no lock, writers are never held up by a sync.
+    //
+    // A shard that is not written would hold that watermark back, so writes have the other shards' change counts
+    // caught up in the background, see catchUpChangeCounts.
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        int count = shards.size();
+        long watermark = fanOut(RecipeRepository::getChangeCount).stream().mapToLong(Long::longValue).min().orElse(0);
+
+        List<Supplier<List<RecipeDelta>>> calls = new ArrayList<>(count);
+        for(int shard = 0; shard < count; shard++) {
+            RecipeJdbcRepositoryImpl target = shards.get(shard);
+            int index = shard;
+            long shardSince = shardSince(since, shard);
+            calls.add(() -> target.getChangesSince(shardSince, limit).stream()
+                    .filter(change -> change.sequence() <= watermark)
+                    .map(change -> new RecipeDelta(change.sequence() * count + index, change.id(), change.deleted(), change.recipe()))
+                    .toList());
+        }
+        List<List<RecipeDelta>> changes = fanOut(calls);
+
+        // A shard takes a since of 0 for a full copy, but its since is also 0 when the client only saw changes of
+        // the others. So every shard's pruned sequence is checked here, after its changes were read.
+        if(since > 0) {
+            List<Long> prunedSequences = fanOut(RecipeJdbcRepositoryImpl::getPrunedSequence);
+            for(int shard = 0; shard < count; shard++) {
+                long prunedSequence = prunedSequences.get(shard);
+                if(prunedSequence > 0 && shardSince(since, shard) < prunedSequence) {
+                    throw new ChangesPrunedException(since, prunedSequence * count + shard);
+                }
+            }
+        }
+
+        return KWayMerge.merge(changes, Comparator.comparingLong(RecipeDelta::sequence), limit);
+    }
+
+    // The since of one shard for the since of all of them. The shards after the one of since still have the
+    // change numbered with its sequence itself to return.
+    private long shardSince(long since, int shard) {
+        long sequence = Math.floorDiv(since, shards.size());
+        int lastShard = (int) Math.floorMod(since, shards.size());
+
+        return shard > lastShard ? sequence - 1 : sequence;
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        try {
+            return shards.get(shardOf(id)).deleteRecipe(id);
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        try {
+            return shards.get(shardOf(id)).updateRecipe(id, recipe);
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        try {
+            return shards.get(shardOf(id)).patchRecipe(id, recipe);
+        } finally {
+            scheduleCatchUp();
+        }
+    }
+
+    // Unsorted searches of a shard are not in id order, so the shards are asked for it
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        return KWayMerge.merge(fanOut(shard -> {
+            try(Stream<Recipe> recipes = shard.streamRecipes(recipeSearch, RecipeSort.BY_ID)) {
+                return recipes.toList();
+            }
+        }), BY_ID, 0);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return KWayMerge.merge(fanOut(shard -> shard.findRecipes(recipeSearch, afterId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return KWayMerge.merge(fanOut(shard -> shard.findRecipes(recipeSearch, sort, after, limit)), sort.comparator(), limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return KWayMerge.merge(fanOut(shard -> shard.findRecipeSummaries(recipeSearch, sort, after, limit)),
+                sort.summaryComparator(), limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return mergeStreams(RecipeRepository::streamAllRecipes, BY_ID);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return mergeStreams(shard -> shard.streamRecipes(recipeSearch, RecipeSort.BY_ID), BY_ID);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return mergeStreams(shard -> shard.streamRecipes(recipeSearch, sort), sort.comparator());
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return mergeStreams(shard -> shard.streamRecipeSummaries(recipeSearch, sort), sort.summaryComparator());
+    }
+
+    // Raises the change count of every shard behind the furthest one to it, so the watermark of getChangesSince
+    // moves on when some shards are not written. Waits for the writes in flight on those shards.
+    public void catchUpChangeCounts() {
+        List<Long> changeCounts = fanOut(RecipeRepository::getChangeCount);
+        long furthest = changeCounts.stream().mapToLong(Long::longValue).max().orElse(0);
+
+        List<Supplier<Void>> advances = new ArrayList<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            RecipeJdbcRepositoryImpl target = shards.get(shard);
+            if(changeCounts.get(shard) < furthest) {
+                advances.add(() -> {
+                    target.advanceChangeCount(furthest);
+                    return null;
+                });
+            }
+        }
+        fanOut(advances);
+    }
+
+    // Off the caller's thread, so neither writes nor syncs wait for the counter rows of the other shards
+    private void scheduleCatchUp() {
+        if(shards.size() < 2 || !catchUpScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        synchronized(this) {
+            if(closed) {
+                catchUpScheduled.set(false);
+                return;
+            }
+
+            catchUp = catchUp.thenRunAsync(() -> {
+                // Cleared first, a write committed while this runs schedules the next catch-up
+                catchUpScheduled.set(false);
+                try {
+                    catchUpChangeCounts();
+                } catch (RejectedExecutionException e) {
+                    // Only once shut down, the next open catches the shards up instead
+                    LOG.debug("Stopped catching up the change counts of the shards on close", e);
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to catch up the change counts of the shards", e);
+                }
+            }, executor);
+        }
+    }
+
+    // For tests, waits for the catch-ups scheduled so far
+    void awaitCatchUp() {
+        CompletableFuture<Void> scheduled;
+        synchronized(this) {
+            scheduled = catchUp;
+        }
+        scheduled.join();
+    }
+
+    // Lets the last catch-up finish and the fan-outs in flight end before the shards' pools are closed
+    @Override
+    public void close() {
+        CompletableFuture<Void> scheduled;
+        synchronized(this) {
+            closed = true;
+            scheduled = catchUp;
+        }
+        scheduled.join();
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        shards.forEach(RecipeJdbcRepositoryImpl::close);
+    }
+
+    private int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shards.size());
+    }
+
+    private int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    private <T> List<T> forIdsByShard(Collection<Long> ids, BiFunction<RecipeJdbcRepositoryImpl, Collection<Long>, T> call) {
+        List<List<Long>> byShard = new ArrayList<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        ids.forEach(id -> byShard.get(shardOf(id)).add(id));
+
+        List<Supplier<T>> calls = new ArrayList<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            RecipeJdbcRepositoryImpl target = shards.get(shard);
+            List<Long> shardIds = byShard.get(shard);
+            if(!shardIds.isEmpty()) {
+                calls.add(() -> call.apply(target, shardIds));
+            }
+        }
+
+        return fanOut(calls);
+    }
+
+    private <T> List<T> fanOut(Function<RecipeJdbcRepositoryImpl, T> call) {
+        List<Supplier<T>> calls = new ArrayList<>(shards.size());
+        for(RecipeJdbcRepositoryImpl shard : shards) {
+            calls.add(() -> call.apply(shard));
+        }
+
+        return fanOut(calls);
+    }
+
+    // Runs the calls in parallel, the last one on the calling thread, and returns their results in order
+    private <T> List<T> fanOut(List<Supplier<T>> calls) {
+        if(calls.isEmpty()) {
+            return List.of();
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(calls.size() - 1);
+        for(Supplier<T> call : calls.subList(0, calls.size() - 1)) {
+            futures.add(CompletableFuture.supplyAsync(call, executor));
+        }
+
+        // Every call runs to its end before a failure is thrown, so the caller sees all the writes that went through
+        RuntimeException failure = null;
+        T last = null;
+        try {
+            last = calls.get(calls.size() - 1).get();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        List<T> results = new ArrayList<>(calls.size());
+        for(CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if(failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+        results.add(last);
+
+        return results;
+    }
+
+    // Streams are opened one after another, their rows are only computed as the merge reads them
+    private <T> Stream<T> mergeStreams(Function<RecipeJdbcRepositoryImpl, Stream<T>> open, Comparator<? super T> comparator) {
+        List<Stream<T>> streams = new ArrayList<>(shards.size());
+        try {
+            for(RecipeJdbcRepositoryImpl shard : shards) {
+                streams.add(open.apply(shard));
+            }
+        } catch (RuntimeException e) {
+            KWayMerge.closeAll(streams);
+            throw e;
+        }
+
+        return KWayMerge.merge(streams, comparator);
+    }
+}
@@ -1,4 +1,4 @@
 CREATE TABLE IF NOT EXISTS RECIPES(ID BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
     NAME VARCHAR NOT NULL,
     DESCRIPTION VARCHAR NOT NULL,
-    DURATION INT NOT NULL);
\ No newline at end of file
+    DURATION INT NOT NULL);
@@ -0,0 +1,2 @@
+-- Duration range searches become an index seek instead of a full table scan
+CREATE INDEX IF NOT EXISTS IDX_RECIPES_DURATION ON RECIPES(DURATION);
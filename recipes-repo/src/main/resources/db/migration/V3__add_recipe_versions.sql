@@ -0,0 +1,6 @@
+-- Bumped by every update of the recipe, used as its ETag
+ALTER TABLE RECIPES ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 1 NOT NULL;
+-- Single row counting the transactions that changed RECIPES, incremented by the repository in the same transaction
+CREATE TABLE IF NOT EXISTS RECIPES_CHANGES(ID INT PRIMARY KEY NOT NULL,
+    CHANGE_COUNT BIGINT NOT NULL);
+MERGE INTO RECIPES_CHANGES KEY(ID) VALUES (1, 0);
@@ -0,0 +1,2 @@
+-- Listings sorted by name read the index in order instead of sorting the whole table
+CREATE INDEX IF NOT EXISTS IDX_RECIPES_NAME ON RECIPES(NAME);
@@ -0,0 +1,11 @@
+-- Position of the last write of each row in the change sequence, which is RECIPES_CHANGES.CHANGE_COUNT.
+-- Existing rows are numbered by id and the count moved past them.
+ALTER TABLE RECIPES ADD COLUMN IF NOT EXISTS CHANGE_SEQUENCE BIGINT;
+UPDATE RECIPES SET CHANGE_SEQUENCE = ID WHERE CHANGE_SEQUENCE IS NULL;
+UPDATE RECIPES_CHANGES SET CHANGE_COUNT = GREATEST(CHANGE_COUNT, COALESCE((SELECT MAX(ID) FROM RECIPES), 0)) WHERE ID = 1;
+ALTER TABLE RECIPES ALTER COLUMN CHANGE_SEQUENCE SET NOT NULL;
+CREATE INDEX IF NOT EXISTS IDX_RECIPES_CHANGE_SEQUENCE ON RECIPES(CHANGE_SEQUENCE);
+-- Deleted recipes, so that readers of the changes learn about deletes
+CREATE TABLE IF NOT EXISTS RECIPE_TOMBSTONES(ID BIGINT PRIMARY KEY NOT NULL,
+    CHANGE_SEQUENCE BIGINT NOT NULL);
+CREATE INDEX IF NOT EXISTS IDX_RECIPE_TOMBSTONES_CHANGE_SEQUENCE ON RECIPE_TOMBSTONES(CHANGE_SEQUENCE);
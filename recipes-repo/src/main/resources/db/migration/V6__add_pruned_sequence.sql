@@ -0,0 +1,2 @@
+-- Latest change sequence whose tombstone was pruned, the changes since an earlier sequence are incomplete
+ALTER TABLE RECIPES_CHANGES ADD COLUMN IF NOT EXISTS PRUNED_SEQUENCE BIGINT DEFAULT 0 NOT NULL;
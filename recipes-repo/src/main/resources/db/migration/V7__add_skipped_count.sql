@@ -0,0 +1,2 @@
+-- Part of CHANGE_COUNT that was skipped to catch up with other shards rather than taken by writes
+ALTER TABLE RECIPES_CHANGES ADD COLUMN IF NOT EXISTS SKIPPED_COUNT BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,488 @@
+package org.olivetree.recipes.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.olivetree.recipes.repository.pool.PoolConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecipeJdbcRepositoryImplTest {
+
+    @TempDir
+    private Path databaseDirectory;
+
+    private RecipeJdbcRepositoryImpl recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository = new RecipeJdbcRepositoryImpl(databaseDirectory.resolve("recipes").toString(), PoolConfig.defaults(), 500);
+
+        for(long duration = 10; duration <= 100; duration += 10) {
+            recipeRepository.createRecipe(getRecipe("Recipe " + duration, "Recipe " + duration + " description", duration));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeRepository.close();
+    }
+
+    @Nested
+    @DisplayName("Stream recipes should")
+    public class StreamRecipesTests {
+        @Test
+        @DisplayName("return all recipes")
+        public void shouldStreamAllRecipes() {
+            try(Stream<Recipe> recipes = recipeRepository.streamAllRecipes()) {
+                assertEquals(10, recipes.count());
+            }
+        }
+
+        @Test
+        @DisplayName("return recipes within the duration range")
+        public void shouldStreamMatchingRecipes() {
+            try(Stream<Recipe> recipes = recipeRepository.streamRecipes(new RecipeSearch(20L, 40L))) {
+                List<Long> durations = recipes.map(Recipe::getDurationInMinutes).sorted().toList();
+
+                assertEquals(List.of(20L, 30L, 40L), durations);
+            }
+        }
+
+        @Test
+        @DisplayName("release the connection when closed")
+        public void shouldReleaseConnectionWhenClosed() {
+            Stream<Recipe> recipes = recipeRepository.streamAllRecipes();
+            recipes.findFirst();
+            assertEquals(1, recipeRepository.getPoolStats().orElseThrow().active());
+
+            recipes.close();
+            assertEquals(0, recipeRepository.getPoolStats().orElseThrow().active());
+        }
+    }
+
+    @Nested
+    @DisplayName("Paginate recipes should")
+    public class PaginateRecipesTests {
+        @Test
+        @DisplayName("return pages ordered by id")
+        public void shouldReturnPagesOrderedById() {
+            List<Recipe> firstPage = recipeRepository.getRecipesAfter(null, 4);
+            List<Recipe> secondPage = recipeRepository.getRecipesAfter(firstPage.get(3).getId(), 4);
+            List<Recipe> lastPage = recipeRepository.getRecipesAfter(secondPage.get(3).getId(), 4);
+
+            assertEquals(4, firstPage.size());
+            assertEquals(4, secondPage.size());
+            assertEquals(2, lastPage.size());
+            assertTrue(firstPage.get(3).getId() < secondPage.get(0).getId());
+        }
+
+        @Test
+        @DisplayName("return search pages within the duration range")
+        public void shouldReturnSearchPages() {
+            RecipeSearch search = new RecipeSearch(30L, 70L);
+
+            List<Recipe> firstPage = recipeRepository.findRecipes(search, null, 3);
+            List<Recipe> lastPage = recipeRepository.findRecipes(search, firstPage.get(2).getId(), 3);
+
+            assertEquals(List.of(30L, 40L, 50L), firstPage.stream().map(Recipe::getDurationInMinutes).toList());
+            assertEquals(List.of(60L, 70L), lastPage.stream().map(Recipe::getDurationInMinutes).toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch operations should")
+    public class BatchTests {
+        @Test
+        @DisplayName("create recipes across several chunks and assign their ids")
+        public void shouldCreateRecipes() {
+            List<Recipe> recipes = IntStream.range(0, 1234)
+                    .mapToObj(i -> getRecipe("Batch " + i, "Batch " + i + " description", (long) i % 1000))
+                    .toList();
+
+            recipeRepository.createRecipes(recipes);
+
+            assertTrue(recipes.stream().allMatch(recipe -> recipe.getId() != null));
+            assertEquals(1234, recipes.stream().map(Recipe::getId).distinct().count());
+            assertEquals(1244, recipeRepository.getAllRecipes().size());
+            assertEquals("Batch 1233", recipeRepository.getRecipeById(recipes.get(1233).getId()).orElseThrow().getName());
+        }
+
+        @Test
+        @DisplayName("leave the ids of the chunks committed before a failure")
+        public void shouldKeepIdsOfCommittedChunks() {
+            RecipeJdbcRepositoryImpl smallBatches = new RecipeJdbcRepositoryImpl(databaseDirectory.resolve("recipes").toString(), null, 2);
+            List<Recipe> recipes = List.of(
+                    getRecipe("Batch 1", "Batch 1 description", 10L),
+                    getRecipe("Batch 2", "Batch 2 description", 10L),
+                    getRecipe("Batch 3", "Batch 3 description", 10L),
+                    getRecipe(null, "Batch 4 description", 10L));
+
+            assertThrows(RepositoryException.class, () -> smallBatches.createRecipes(recipes));
+
+            assertNotNull(recipes.get(1).getId());
+            assertNull(recipes.get(2).getId());
+            assertEquals(12, recipeRepository.getAllRecipes().size());
+        }
+
+        @Test
+        @DisplayName("update recipes and report the affected rows")
+        public void shouldUpdateRecipes() {
+            Map<Long, Recipe> updates = new HashMap<>();
+            for(Recipe recipe : recipeRepository.getRecipesAfter(null, 3)) {
+                updates.put(recipe.getId(), getRecipe("Updated", "Updated description", 5L));
+            }
+            updates.put(-1L, getRecipe("Missing", "Missing description", 5L));
+
+            assertEquals(3, recipeRepository.updateRecipes(updates));
+            assertEquals(3, recipeRepository.findRecipes(new RecipeSearch(5L, 5L)).size());
+        }
+
+        @Test
+        @DisplayName("delete recipes and report the ids that existed")
+        public void shouldDeleteRecipes() {
+            List<Long> ids = recipeRepository.getRecipesAfter(null, 4).stream().map(Recipe::getId).toList();
+            List<Long> idsWithMissing = new ArrayList<>(ids);
+            idsWithMissing.add(1, -1L);
+
+            assertEquals(ids, recipeRepository.deleteRecipes(idsWithMissing));
+            assertEquals(6, recipeRepository.getAllRecipes().size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Versions should")
+    public class VersionTests {
+        @Test
+        @DisplayName("start at one and grow with every update")
+        public void shouldIncrementVersionOnUpdate() {
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+            assertEquals(1L, recipe.getVersion());
+
+            recipeRepository.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.updateRecipes(Map.of(recipe.getId(), getRecipe("Stew", "Lamb stew", 120L)));
+
+            assertEquals(3L, recipeRepository.getRecipeVersion(recipe.getId()).orElseThrow());
+            assertEquals(3L, recipeRepository.getRecipeById(recipe.getId()).orElseThrow().getVersion());
+            assertTrue(recipeRepository.getRecipeVersion(-1L).isEmpty());
+        }
+
+        @Test
+        @DisplayName("change the change count with every write")
+        public void shouldIncrementChangeCount() {
+            long created = recipeRepository.getChangeCount();
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+            long updated = recipeRepository.getChangeCount();
+            recipeRepository.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            long deleted = recipeRepository.getChangeCount();
+            recipeRepository.deleteRecipe(recipe.getId());
+
+            assertTrue(created < updated);
+            assertTrue(updated < deleted);
+            assertTrue(deleted < recipeRepository.getChangeCount());
+
+            long unchanged = recipeRepository.getChangeCount();
+            recipeRepository.getAllRecipes();
+            assertEquals(unchanged, recipeRepository.getChangeCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Sorted searches should")
+    public class SortedSearchTests {
+        @Test
+        @DisplayName("page through recipes in the requested order")
+        public void shouldPageInSortOrder() {
+            RecipeSort sort = new RecipeSort(RecipeSort.Field.DURATION, true);
+
+            List<Long> durations = new ArrayList<>();
+            Recipe after = null;
+            List<Recipe> page;
+            while(!(page = recipeRepository.findRecipes(RecipeSearch.ALL, sort, after, 3)).isEmpty()) {
+                page.forEach(recipe -> durations.add(recipe.getDurationInMinutes()));
+                after = page.get(page.size() - 1);
+            }
+
+            assertEquals(List.of(100L, 90L, 80L, 70L, 60L, 50L, 40L, 30L, 20L, 10L), durations);
+        }
+
+        @Test
+        @DisplayName("neither skip nor repeat recipes with the same sort value")
+        public void shouldPageThroughTies() {
+            recipeRepository.createRecipe(getRecipe("Recipe 10", "Another description", 15L));
+            recipeRepository.createRecipe(getRecipe("Recipe 10", "Yet another description", 25L));
+
+            List<Long> ids = new ArrayList<>();
+            Recipe after = null;
+            List<Recipe> page;
+            while(!(page = recipeRepository.findRecipes(RecipeSearch.ALL, RecipeSort.parse("name"), after, 1)).isEmpty()) {
+                ids.add(page.get(0).getId());
+                after = page.get(0);
+            }
+
+            try(Stream<Recipe> recipes = recipeRepository.streamRecipes(RecipeSearch.ALL, RecipeSort.parse("name"))) {
+                assertEquals(recipes.map(Recipe::getId).toList(), ids);
+            }
+            assertEquals(12, ids.size());
+            assertEquals(ids.size(), Set.copyOf(ids).size());
+        }
+
+        @Test
+        @DisplayName("continue after the sort key of a recipe that is not stored")
+        public void shouldContinueAfterSortKey() {
+            Recipe after = getRecipe("Recipe 45", "Not stored", 40L);
+            after.setId(-1L);
+
+            List<Recipe> page = recipeRepository.findRecipes(RecipeSearch.ALL, new RecipeSort(RecipeSort.Field.DURATION, false), after, 2);
+
+            assertEquals(List.of(40L, 50L), page.stream().map(Recipe::getDurationInMinutes).toList());
+        }
+
+        @Test
+        @DisplayName("continue from a cursor whose recipe was deleted between pages")
+        public void shouldContinueAfterDeletedRecipe() {
+            RecipeSort sort = new RecipeSort(RecipeSort.Field.DURATION, false);
+            List<Recipe> first = recipeRepository.findRecipes(RecipeSearch.ALL, sort, null, 3);
+            String cursor = sort.cursorOf(first.get(2));
+
+            recipeRepository.deleteRecipe(first.get(2).getId());
+            List<Recipe> second = recipeRepository.findRecipes(RecipeSearch.ALL, sort, sort.parseCursor(cursor), 3);
+
+            assertEquals(List.of(40L, 50L, 60L), second.stream().map(Recipe::getDurationInMinutes).toList());
+        }
+
+        @Test
+        @DisplayName("return summaries of the matching recipes")
+        public void shouldReturnSummaries() {
+            List<RecipeSummary> summaries = recipeRepository.findRecipeSummaries(new RecipeSearch(20L, 40L),
+                    RecipeSort.parse("duration,desc"), null, 2);
+
+            assertEquals(List.of("Recipe 40", "Recipe 30"), summaries.stream().map(RecipeSummary::name).toList());
+            assertEquals(1L, summaries.get(0).version());
+
+            try(Stream<RecipeSummary> matches = recipeRepository.streamRecipeSummaries(new RecipeSearch(null, null, "100 description"),
+                    RecipeSort.BY_ID)) {
+                assertEquals(List.of(100L), matches.map(RecipeSummary::durationInMinutes).toList());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Single recipe writes should")
+    public class SingleWriteTests {
+        @Test
+        @DisplayName("return the updated recipe with its new version")
+        public void shouldReturnUpdatedRecipe() {
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+
+            Recipe updated = recipeRepository.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L)).orElseThrow();
+
+            assertEquals(recipe.getId(), updated.getId());
+            assertEquals("Stew", updated.getName());
+            assertEquals(120L, updated.getDurationInMinutes());
+            assertEquals(2L, updated.getVersion());
+        }
+
+        @Test
+        @DisplayName("keep the stored value of fields a patch leaves out")
+        public void shouldKeepFieldsMissingFromPatch() {
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+
+            Recipe patched = recipeRepository.patchRecipe(recipe.getId(), getRecipe(null, "Onion soup", null)).orElseThrow();
+
+            assertEquals("Soup", patched.getName());
+            assertEquals("Onion soup", patched.getDescription());
+            assertEquals(30L, patched.getDurationInMinutes());
+            assertEquals(2L, patched.getVersion());
+            assertEquals("Onion soup", recipeRepository.getRecipeById(recipe.getId()).orElseThrow().getDescription());
+        }
+
+        @Test
+        @DisplayName("report missing recipes without changing anything")
+        public void shouldReportMissingRecipes() {
+            long changeCount = recipeRepository.getChangeCount();
+
+            assertTrue(recipeRepository.updateRecipe(-1L, getRecipe("Stew", "Beef stew", 120L)).isEmpty());
+            assertTrue(recipeRepository.patchRecipe(-1L, getRecipe("Stew", null, null)).isEmpty());
+            assertFalse(recipeRepository.deleteRecipe(-1L));
+            assertEquals(changeCount, recipeRepository.getChangeCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Changes since should")
+    public class ChangesSinceTests {
+        @Test
+        @DisplayName("return the writes after a sequence in order with tombstones for deletes")
+        public void shouldReturnChangesInOrder() {
+            long since = recipeRepository.getChangeCount();
+            Recipe created = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+            recipeRepository.updateRecipe(1L, getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.deleteRecipe(2L);
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(since, 10);
+
+            assertEquals(List.of(created.getId(), 1L, 2L), changes.stream().map(RecipeDelta::id).toList());
+            assertEquals(List.of(false, false, true), changes.stream().map(RecipeDelta::deleted).toList());
+            assertEquals(List.of(since + 1, since + 2, since + 3), changes.stream().map(RecipeDelta::sequence).toList());
+            assertEquals("Stew", changes.get(1).recipe().getName());
+            assertNull(changes.get(2).recipe());
+        }
+
+        @Test
+        @DisplayName("only return the latest write of each recipe")
+        public void shouldReturnLatestWrite() {
+            long since = recipeRepository.getChangeCount();
+            recipeRepository.updateRecipe(1L, getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.patchRecipe(1L, getRecipe(null, "Lamb stew", null));
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(since, 10);
+
+            assertEquals(1, changes.size());
+            assertEquals(since + 2, changes.get(0).sequence());
+            assertEquals("Lamb stew", changes.get(0).recipe().getDescription());
+        }
+
+        @Test
+        @DisplayName("page through every recipe from the start")
+        public void shouldPageFromStart() {
+            recipeRepository.deleteRecipes(List.of(3L, 4L));
+
+            List<Long> ids = new ArrayList<>();
+            long since = 0;
+            List<RecipeDelta> page;
+            while(!(page = recipeRepository.getChangesSince(since, 3)).isEmpty()) {
+                assertTrue(page.size() <= 3);
+                page.forEach(change -> ids.add(change.id()));
+                since = page.get(page.size() - 1).sequence();
+            }
+
+            assertEquals(List.of(1L, 2L, 5L, 6L, 7L, 8L, 9L, 10L, 3L, 4L), ids);
+            assertEquals(recipeRepository.getChangeCount(), since);
+        }
+
+        @Test
+        @DisplayName("hand a syncing reader every write of concurrent writers")
+        public void shouldReturnWritesOfConcurrentWriters() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<List<Long>>> writers = new ArrayList<>();
+                for(int writer = 0; writer < 4; writer++) {
+                    // Every writer also updates the first recipes, each listing them in another order
+                    Map<Long, Recipe> shared = new LinkedHashMap<>();
+                    for(int i = 0; i < 10; i++) {
+                        long id = (i * (writer + 1) + writer) % 10 + 1;
+                        shared.put(id, getRecipe("Shared " + writer, "Shared description", 20L));
+                    }
+                    writers.add(executor.submit(() -> {
+                        List<Long> ids = new ArrayList<>();
+                        for(int i = 0; i < 20; i++) {
+                            recipeRepository.updateRecipes(shared);
+                            List<Recipe> created = recipeRepository.createRecipes(Stream.generate(() -> getRecipe("Soup", "Tomato soup", 30L))
+                                    .limit(5).toList());
+                            Recipe first = created.get(0);
+                            recipeRepository.updateRecipes(Map.of(first.getId(), getRecipe("Stew", "Beef stew", 120L)));
+                            recipeRepository.deleteRecipes(List.of(created.get(1).getId()));
+                            created.forEach(recipe -> ids.add(recipe.getId()));
+                        }
+                        return ids;
+                    }));
+                }
+
+                // Syncs while the writers run, a sequence handed out before an earlier one committed would be missed
+                Map<Long, RecipeDelta> replica = new HashMap<>();
+                long since = 0;
+                while(!writers.stream().allMatch(Future::isDone)) {
+                    since = sync(since, replica);
+                }
+                for(Future<List<Long>> writer : writers) {
+                    writer.get(30, TimeUnit.SECONDS);
+                }
+                since = sync(since, replica);
+
+                assertEquals(recipeRepository.getChangeCount(), since);
+                Map<Long, RecipeDelta> expected = new HashMap<>();
+                recipeRepository.getChangesSince(0, Integer.MAX_VALUE).forEach(change -> expected.put(change.id(), change));
+                assertEquals(10 + 4 * 20 * 5, expected.size());
+                assertEquals(expected.keySet(), replica.keySet());
+                expected.forEach((id, change) -> assertEquals(change.sequence(), replica.get(id).sequence(), "recipe " + id));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private long sync(long since, Map<Long, RecipeDelta> replica) {
+            List<RecipeDelta> page;
+            while(!(page = recipeRepository.getChangesSince(since, 50)).isEmpty()) {
+                for(RecipeDelta change : page) {
+                    assertTrue(change.sequence() > since);
+                    replica.put(change.id(), change);
+                    since = change.sequence();
+                }
+            }
+
+            return since;
+        }
+
+        @Test
+        @DisplayName("return nothing for writes to missing recipes")
+        public void shouldIgnoreMissingRecipes() {
+            long since = recipeRepository.getChangeCount();
+
+            recipeRepository.updateRecipe(-1L, getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.deleteRecipe(-1L);
+
+            assertEquals(List.of(), recipeRepository.getChangesSince(since, 10));
+        }
+
+        @Test
+        @DisplayName("prune tombstones older than the retention and refuse a since before them")
+        public void shouldPruneTombstones() {
+            long since = recipeRepository.getChangeCount();
+            RecipeJdbcRepositoryImpl shortRetention = new RecipeJdbcRepositoryImpl(databaseDirectory.resolve("recipes").toString(), null, 500, 2);
+            shortRetention.deleteRecipe(1L);
+            shortRetention.updateRecipe(3L, getRecipe("Stew", "Beef stew", 120L));
+            shortRetention.updateRecipe(4L, getRecipe("Soup", "Tomato soup", 30L));
+            shortRetention.deleteRecipe(2L);
+
+            assertEquals(since + 1, recipeRepository.getPrunedSequence());
+            assertThrows(ChangesPrunedException.class, () -> recipeRepository.getChangesSince(since, 10));
+            assertEquals(List.of(3L, 4L, 2L), recipeRepository.getChangesSince(since + 1, 10).stream().map(RecipeDelta::id).toList());
+            assertEquals(List.of(5L, 6L, 7L, 8L, 9L, 10L, 3L, 4L, 2L),
+                    recipeRepository.getChangesSince(0, 20).stream().map(RecipeDelta::id).toList());
+        }
+    }
+
+    private Recipe getRecipe(String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
@@ -0,0 +1,177 @@
+package org.olivetree.recipes.repository.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingRecipeRepositoryTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    private CachingRecipeRepository cachingRecipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        cachingRecipeRepository = new CachingRecipeRepository(recipeRepository, new CacheConfig(100, CachePolicy.LRU));
+    }
+
+    @Nested
+    @DisplayName("Get recipe by id should")
+    public class GetRecipeByIdTests {
+        @Test
+        @DisplayName("only hit the repository on a cache miss")
+        public void shouldServeRepeatedReadsFromCache() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L)));
+
+            assertEquals("Recipe 1", cachingRecipeRepository.getRecipeById(1L).orElseThrow().getName());
+            assertEquals("Recipe 1", cachingRecipeRepository.getRecipeById(1L).orElseThrow().getName());
+
+            verify(recipeRepository, times(1)).getRecipeById(1L);
+
+            CacheStats stats = cachingRecipeRepository.getCacheStats();
+            assertEquals(1, stats.hits());
+            assertEquals(1, stats.misses());
+        }
+
+        @Test
+        @DisplayName("not expose the cached instance")
+        public void shouldReturnCopies() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L)));
+
+            cachingRecipeRepository.getRecipeById(1L).orElseThrow().setName("Changed by caller");
+
+            assertEquals("Recipe 1", cachingRecipeRepository.getRecipeById(1L).orElseThrow().getName());
+        }
+
+        @Test
+        @DisplayName("not cache missing recipes")
+        public void shouldNotCacheMissingRecipes() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.empty());
+
+            assertTrue(cachingRecipeRepository.getRecipeById(1L).isEmpty());
+            assertTrue(cachingRecipeRepository.getRecipeById(1L).isEmpty());
+
+            verify(recipeRepository, times(2)).getRecipeById(1L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Writes should")
+    public class WriteTests {
+        @Test
+        @DisplayName("invalidate updated recipes")
+        public void shouldInvalidateOnUpdate() {
+            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(recipe));
+
+            cachingRecipeRepository.getRecipeById(1L);
+            cachingRecipeRepository.updateRecipe(1L, recipe);
+            cachingRecipeRepository.getRecipeById(1L);
+
+            verify(recipeRepository, times(2)).getRecipeById(1L);
+        }
+
+        @Test
+        @DisplayName("invalidate deleted recipes")
+        public void shouldInvalidateOnDelete() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L)));
+
+            cachingRecipeRepository.getRecipeById(1L);
+            cachingRecipeRepository.deleteRecipes(List.of(1L));
+            cachingRecipeRepository.getRecipeById(1L);
+
+            verify(recipeRepository, times(2)).getRecipeById(1L);
+        }
+
+        @Test
+        @DisplayName("not let a lookup that read before the write commit cache the old recipe")
+        public void shouldNotCacheRecipeReadDuringWrite() {
+            Recipe oldRecipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
+            Recipe newRecipe = getRecipe(1L, "Stew", "Beef stew", 120L);
+            // The lookup reads the old row, then the update commits and returns before the lookup fills the cache
+            when(recipeRepository.getRecipeById(1L)).thenAnswer(invocation -> {
+                cachingRecipeRepository.updateRecipe(1L, newRecipe);
+                return Optional.of(oldRecipe);
+            }).thenReturn(Optional.of(newRecipe));
+
+            assertEquals("Recipe 1", cachingRecipeRepository.getRecipeById(1L).orElseThrow().getName());
+            assertEquals("Stew", cachingRecipeRepository.getRecipeById(1L).orElseThrow().getName());
+        }
+    }
+
+    @Nested
+    @DisplayName("Bounded cache should")
+    public class BoundedCacheTests {
+        @Test
+        @DisplayName("evict the least recently used entry")
+        public void shouldEvictLeastRecentlyUsed() {
+            BoundedCache<Long, String> cache = new BoundedCache<>(new CacheConfig(2, CachePolicy.LRU));
+            cache.put(1L, "one");
+            cache.put(2L, "two");
+            cache.get(1L);
+            cache.put(3L, "three");
+
+            assertEquals("one", cache.get(1L));
+            assertNull(cache.get(2L));
+            assertEquals(1, cache.getStats().evictions());
+        }
+
+        @Test
+        @DisplayName("keep frequently used entries over one-off ones")
+        public void shouldKeepFrequentlyUsedEntries() {
+            BoundedCache<Long, String> cache = new BoundedCache<>(new CacheConfig(50, CachePolicy.TINY_LFU));
+            for(long hot = 0; hot < 40; hot++) {
+                cache.put(hot, "hot");
+                for(int i = 0; i < 5; i++) {
+                    cache.get(hot);
+                }
+            }
+
+            // The hot recipes keep being read while a scan reads each other recipe exactly once
+            for(long scan = 1000; scan < 2000; scan++) {
+                cache.get(scan % 40);
+                if(cache.get(scan) == null) {
+                    cache.put(scan, "scan");
+                }
+            }
+
+            long hotEntries = 0;
+            for(long hot = 0; hot < 40; hot++) {
+                if(cache.get(hot) != null) {
+                    hotEntries++;
+                }
+            }
+            assertEquals(40, hotEntries);
+            assertTrue(cache.size() <= 50);
+        }
+    }
+
+    private Recipe getRecipe(Long id, String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
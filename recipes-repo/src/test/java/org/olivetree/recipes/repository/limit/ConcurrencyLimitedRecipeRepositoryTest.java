@@ -0,0 +1,117 @@
+package org.olivetree.recipes.repository.limit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConcurrencyLimitedRecipeRepositoryTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    private ConcurrencyLimitedRecipeRepository limitedRecipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        limitedRecipeRepository = new ConcurrencyLimitedRecipeRepository(recipeRepository,
+                new ConcurrencyLimitConfig(2, Duration.ofMillis(200)));
+    }
+
+    @Nested
+    @DisplayName("Calls should")
+    public class CallTests {
+        @Test
+        @DisplayName("never run more than the maximum at a time")
+        public void shouldBoundConcurrentCalls() throws Exception {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            when(recipeRepository.getRecipeById(anyLong())).thenAnswer(invocation -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return Optional.empty();
+            });
+            limitedRecipeRepository = new ConcurrencyLimitedRecipeRepository(recipeRepository,
+                    new ConcurrencyLimitConfig(2, Duration.ofSeconds(10)));
+
+            List<Callable<Optional<Recipe>>> calls = Collections.nCopies(16, () -> limitedRecipeRepository.getRecipeById(1L));
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                for(Future<Optional<Recipe>> call : executor.invokeAll(calls)) {
+                    call.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(2, maxRunning.get());
+            assertEquals(2, limitedRecipeRepository.getAvailablePermits());
+        }
+
+        @Test
+        @DisplayName("fail when no permit frees up in time")
+        public void shouldTimeOutWaitingForPermit() throws Exception {
+            CountDownLatch blocked = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            when(recipeRepository.getRecipeById(1L)).thenAnswer(invocation -> {
+                blocked.countDown();
+                release.await();
+                return Optional.empty();
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                executor.submit(() -> limitedRecipeRepository.getRecipeById(1L));
+                executor.submit(() -> limitedRecipeRepository.getRecipeById(1L));
+                assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+                assertThrows(RepositoryException.class, () -> limitedRecipeRepository.getRecipeById(2L));
+            } finally {
+                release.countDown();
+                executor.shutdown();
+            }
+            verify(recipeRepository, never()).getRecipeById(2L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Streams should")
+    public class StreamTests {
+        @Test
+        @DisplayName("hold their permit until closed")
+        public void shouldReleasePermitWhenClosed() {
+            when(recipeRepository.streamAllRecipes()).thenAnswer(invocation -> Stream.of(new Recipe()));
+
+            Stream<Recipe> recipes = limitedRecipeRepository.streamAllRecipes();
+            assertEquals(1, limitedRecipeRepository.getAvailablePermits());
+
+            recipes.close();
+            assertEquals(2, limitedRecipeRepository.getAvailablePermits());
+        }
+    }
+}
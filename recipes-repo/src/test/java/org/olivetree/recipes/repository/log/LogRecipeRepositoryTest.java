@@ -0,0 +1,319 @@
+package org.olivetree.recipes.repository.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogRecipeRepositoryTest {
+
+    @TempDir
+    private Path logDirectory;
+
+    private LogRecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository = open();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeRepository.close();
+    }
+
+    // Small segments so a few hundred recipes span several of them, compaction only runs when asked
+    private LogRecipeRepository open() {
+        return open(RecipeRepository.DEFAULT_TOMBSTONE_RETENTION);
+    }
+
+    private LogRecipeRepository open(long tombstoneRetention) {
+        return new LogRecipeRepository(new LogConfig(logDirectory.toString(), 4096, Duration.ZERO, 0.5, false, tombstoneRetention));
+    }
+
+    private LogRecipeRepository reopen() {
+        recipeRepository.close();
+        recipeRepository = open();
+        return recipeRepository;
+    }
+
+    @Nested
+    @DisplayName("Reads and writes should")
+    public class CrudTests {
+        @Test
+        @DisplayName("create, update, patch and delete recipes")
+        public void shouldCreateUpdateAndDelete() {
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+
+            recipeRepository.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            assertEquals("Stew", recipeRepository.getRecipeById(recipe.getId()).orElseThrow().getName());
+
+            Recipe patched = recipeRepository.patchRecipe(recipe.getId(), getRecipe(null, "Lamb stew", null)).orElseThrow();
+            assertEquals("Stew", patched.getName());
+            assertEquals("Lamb stew", patched.getDescription());
+            assertEquals(3L, patched.getVersion());
+
+            assertTrue(recipeRepository.deleteRecipe(recipe.getId()));
+            assertFalse(recipeRepository.deleteRecipe(recipe.getId()));
+            assertTrue(recipeRepository.getRecipeById(recipe.getId()).isEmpty());
+            assertTrue(recipeRepository.patchRecipe(recipe.getId(), getRecipe("Stew", null, null)).isEmpty());
+            assertEquals(0, recipeRepository.updateRecipes(Map.of(recipe.getId(), getRecipe("Stew", "Beef stew", 120L))));
+        }
+
+        @Test
+        @DisplayName("list, page and search recipes in id order across segments")
+        public void shouldListPageAndSearch() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(200)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i % 10))
+                    .toList());
+
+            assertTrue(recipeRepository.getLogStats().segments() > 1);
+            assertEquals(recipes.stream().map(Recipe::getId).toList(),
+                    recipeRepository.getAllRecipes().stream().map(Recipe::getId).toList());
+
+            List<Recipe> page = recipeRepository.getRecipesAfter(recipes.get(9).getId(), 5);
+            assertEquals(recipes.subList(10, 15).stream().map(Recipe::getId).toList(), page.stream().map(Recipe::getId).toList());
+
+            assertEquals(40, recipeRepository.findRecipes(new RecipeSearch(2L, 3L)).size());
+            assertEquals(List.of("Recipe 13"), recipeRepository.findRecipes(new RecipeSearch(2L, 3L, "description 13"))
+                    .stream().map(Recipe::getName).toList());
+        }
+
+        @Test
+        @DisplayName("sort and page searches in memory")
+        public void shouldSortAndPage() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(20)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i % 5))
+                    .toList());
+            RecipeSort sort = RecipeSort.parse("duration,desc");
+
+            List<Recipe> first = recipeRepository.findRecipes(RecipeSearch.ALL, sort, null, 3);
+            List<Recipe> second = recipeRepository.findRecipes(RecipeSearch.ALL, sort, first.get(2), 3);
+
+            // Duration 4 in descending id order, then duration 3
+            assertEquals(List.of(19L, 14L, 9L), first.stream().map(Recipe::getId).toList());
+            assertEquals(List.of(4L, 18L, 13L), second.stream().map(Recipe::getId).toList());
+            assertEquals(recipes.size(), recipeRepository.streamRecipeSummaries(RecipeSearch.ALL, sort).count());
+        }
+    }
+
+    @Nested
+    @DisplayName("Recovery should")
+    public class RecoveryTests {
+        @Test
+        @DisplayName("replay the log when reopened")
+        public void shouldReplayLog() {
+            List<Recipe> recipes = recipeRepository.createRecipes(List.of(
+                    getRecipe("Soup", "Tomato soup", 30L),
+                    getRecipe("Salad", "Green salad", 10L),
+                    getRecipe("Bread", "Garlic bread", 15L)));
+            recipeRepository.updateRecipe(recipes.get(0).getId(), getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.deleteRecipe(recipes.get(1).getId());
+
+            reopen();
+
+            assertEquals(List.of("Stew", "Bread"), recipeRepository.getAllRecipes().stream().map(Recipe::getName).toList());
+            assertEquals(recipes.get(2).getId() + 1, recipeRepository.createRecipe(getRecipe("Pie", "Apple pie", 60L)).getId());
+        }
+
+        @Test
+        @DisplayName("ignore a record torn by a crash")
+        public void shouldIgnoreTornRecord() throws IOException {
+            recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+            Recipe torn = recipeRepository.createRecipe(getRecipe("Salad", "Green salad", 10L));
+            recipeRepository.close();
+
+            // Flip a byte in the payload of the last record of the newest segment
+            Path newest = segmentFiles().get(segmentFiles().size() - 1);
+            try(RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+                long position = findLastNonZeroByte(file);
+                file.seek(position);
+                int flipped = file.read() ^ 0xFF;
+                file.seek(position);
+                file.write(flipped);
+            }
+
+            recipeRepository = open();
+
+            assertEquals(List.of("Soup"), recipeRepository.getAllRecipes().stream().map(Recipe::getName).toList());
+            assertTrue(recipeRepository.getRecipeById(torn.getId()).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Compaction should")
+    public class CompactionTests {
+        @Test
+        @DisplayName("reclaim the space of overwritten and deleted recipes")
+        public void shouldReclaimGarbage() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(100)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            for(int round = 0; round < 3; round++) {
+                for(Recipe recipe : recipes.subList(0, 50)) {
+                    recipeRepository.updateRecipe(recipe.getId(), getRecipe("Updated " + round, "Description", recipe.getDurationInMinutes()));
+                }
+            }
+            recipeRepository.deleteRecipes(recipes.subList(50, 100).stream().map(Recipe::getId).toList());
+
+            LogStats before = recipeRepository.getLogStats();
+            recipeRepository.compact();
+            LogStats after = recipeRepository.getLogStats();
+
+            assertEquals(1, after.compactions());
+            assertTrue(after.writtenBytes() < before.writtenBytes());
+            assertTrue(after.segments() < before.segments());
+            assertEquals(50, after.recipes());
+            assertEquals("Updated 2", recipeRepository.getRecipeById(recipes.get(0).getId()).orElseThrow().getName());
+        }
+
+        @Test
+        @DisplayName("keep the compacted state and the id sequence after reopening")
+        public void shouldSurviveReopen() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(100)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            Long lastId = recipes.get(99).getId();
+            recipeRepository.deleteRecipes(recipes.subList(10, 100).stream().map(Recipe::getId).toList());
+
+            // Reopening seals every segment, so compaction drops all the tombstones including the last id's
+            reopen().compact();
+            reopen();
+
+            assertEquals(recipes.subList(0, 10).stream().map(Recipe::getId).toList(),
+                    recipeRepository.getAllRecipes().stream().map(Recipe::getId).toList());
+            assertEquals(lastId + 1, recipeRepository.createRecipe(getRecipe("Pie", "Apple pie", 60L)).getId());
+        }
+
+        @Test
+        @DisplayName("keep versions and never move the change count backwards")
+        public void shouldKeepVersionsAndChangeCount() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(20)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            recipeRepository.updateRecipe(recipes.get(0).getId(), getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.deleteRecipes(recipes.subList(1, 20).stream().map(Recipe::getId).toList());
+            long changeCount = recipeRepository.getChangeCount();
+
+            reopen().compact();
+            reopen();
+
+            assertEquals(2L, recipeRepository.getRecipeVersion(recipes.get(0).getId()).orElseThrow());
+            assertEquals(2L, recipeRepository.getRecipeById(recipes.get(0).getId()).orElseThrow().getVersion());
+            assertTrue(recipeRepository.getChangeCount() >= changeCount);
+        }
+    }
+
+    @Nested
+    @DisplayName("Changes since should")
+    public class ChangesSinceTests {
+        @Test
+        @DisplayName("return the writes after a sequence in order with tombstones for deletes")
+        public void shouldReturnChangesInOrder() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(3)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            long since = recipeRepository.getChangeCount();
+            recipeRepository.updateRecipe(recipes.get(0).getId(), getRecipe("Stew", "Beef stew", 120L));
+            recipeRepository.deleteRecipe(recipes.get(1).getId());
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(since, 10);
+
+            assertEquals(List.of(recipes.get(0).getId(), recipes.get(1).getId()), changes.stream().map(RecipeDelta::id).toList());
+            assertEquals(List.of(false, true), changes.stream().map(RecipeDelta::deleted).toList());
+            assertEquals("Stew", changes.get(0).recipe().getName());
+            assertEquals(3, recipeRepository.getChangesSince(0, 10).size());
+            assertEquals(1, recipeRepository.getChangesSince(0, 1).size());
+        }
+
+        @Test
+        @DisplayName("keep the tombstones of deleted recipes through reopening and compaction")
+        public void shouldKeepTombstones() {
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(20)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            recipeRepository.deleteRecipes(recipes.subList(10, 20).stream().map(Recipe::getId).toList());
+
+            reopen().compact();
+            reopen();
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(0, 100);
+            assertEquals(20, changes.size());
+            assertEquals(recipes.subList(10, 20).stream().map(Recipe::getId).toList(),
+                    changes.stream().filter(RecipeDelta::deleted).map(RecipeDelta::id).toList());
+            assertTrue(changes.get(changes.size() - 1).sequence() <= recipeRepository.getChangeCount());
+        }
+
+        @Test
+        @DisplayName("drop tombstones older than the retention on compaction and refuse a since before them")
+        public void shouldPruneTombstones() {
+            recipeRepository.close();
+            recipeRepository = open(5);
+            List<Recipe> recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(20)
+                    .map(i -> getRecipe("Recipe " + i, "Description " + i, i))
+                    .toList());
+            recipeRepository.deleteRecipes(recipes.subList(10, 20).stream().map(Recipe::getId).toList());
+
+            recipeRepository.close();
+            recipeRepository = open(5);
+            recipeRepository.compact();
+            long changeCount = recipeRepository.getChangeCount();
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(0, 100);
+            assertTrue(changes.stream().filter(RecipeDelta::deleted).count() < 10);
+            assertThrows(ChangesPrunedException.class, () -> recipeRepository.getChangesSince(1, 100));
+            assertTrue(recipeRepository.getChangesSince(changeCount - 1, 100).size() <= 1);
+
+            recipeRepository.close();
+            recipeRepository = open(5);
+            assertThrows(ChangesPrunedException.class, () -> recipeRepository.getChangesSince(1, 100));
+            assertEquals(changes.size(), recipeRepository.getChangesSince(0, 100).size());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try(Stream<Path> files = Files.list(logDirectory)) {
+            return files.filter(Segment::isSegment).sorted(Comparator.comparing(Path::toString)).toList();
+        }
+    }
+
+    private static long findLastNonZeroByte(RandomAccessFile file) throws IOException {
+        for(long position = file.length() - 1; position >= 0; position--) {
+            file.seek(position);
+            if(file.read() != 0) {
+                return position;
+            }
+        }
+
+        throw new IllegalStateException("Segment is empty");
+    }
+
+    private Recipe getRecipe(String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
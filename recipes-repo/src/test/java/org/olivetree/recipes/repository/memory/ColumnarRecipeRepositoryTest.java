@@ -0,0 +1,144 @@
+package org.olivetree.recipes.repository.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeJdbcRepositoryImpl;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarRecipeRepositoryTest {
+
+    @TempDir
+    private Path databaseDirectory;
+
+    private RecipeJdbcRepositoryImpl jdbcRepository;
+    private ColumnarRecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcRepository = new RecipeJdbcRepositoryImpl(databaseDirectory.resolve("recipes").toString());
+
+        // Loaded from the database when the columnar repository is opened
+        for(long duration : new long[]{30, 10, 20, 10, 40}) {
+            jdbcRepository.createRecipe(getRecipe("Recipe " + duration, "Recipe " + duration + " description", duration));
+        }
+
+        recipeRepository = new ColumnarRecipeRepository(jdbcRepository);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeRepository.close();
+    }
+
+    @Nested
+    @DisplayName("Reads should")
+    public class ReadTests {
+        @Test
+        @DisplayName("return the recipes loaded from the database in id order")
+        public void shouldLoadRecipesFromDatabase() {
+            List<Recipe> recipes = recipeRepository.getAllRecipes();
+
+            assertEquals(jdbcRepository.getAllRecipes().stream().map(Recipe::getId).toList(),
+                    recipes.stream().map(Recipe::getId).toList());
+        }
+
+        @Test
+        @DisplayName("find recipes within the duration range in id order")
+        public void shouldFindRecipesByDuration() {
+            List<Recipe> recipes = recipeRepository.findRecipes(new RecipeSearch(10L, 20L));
+
+            assertEquals(List.of(10L, 20L, 10L), recipes.stream().map(Recipe::getDurationInMinutes).toList());
+            assertTrue(recipeRepository.findRecipes(new RecipeSearch(50L, 60L)).isEmpty());
+        }
+
+        @Test
+        @DisplayName("page through search results")
+        public void shouldPageSearchResults() {
+            List<Recipe> firstPage = recipeRepository.findRecipes(new RecipeSearch(10L, 30L), null, 2);
+            List<Recipe> lastPage = recipeRepository.findRecipes(new RecipeSearch(10L, 30L), firstPage.get(1).getId(), 2);
+
+            assertEquals(List.of(30L, 10L), firstPage.stream().map(Recipe::getDurationInMinutes).toList());
+            assertEquals(List.of(20L, 10L), lastPage.stream().map(Recipe::getDurationInMinutes).toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Writes should")
+    public class WriteTests {
+        @Test
+        @DisplayName("be visible in memory and in the database")
+        public void shouldWriteThrough() {
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("New", "New description", 15L));
+
+            assertEquals("New", recipeRepository.getRecipeById(recipe.getId()).orElseThrow().getName());
+            assertEquals(1, recipeRepository.findRecipes(new RecipeSearch(15L, 15L)).size());
+            assertTrue(jdbcRepository.getRecipeById(recipe.getId()).isPresent());
+        }
+
+        @Test
+        @DisplayName("move updated recipes in the duration index")
+        public void shouldReindexUpdatedRecipes() {
+            Recipe recipe = recipeRepository.findRecipes(new RecipeSearch(40L, 40L)).get(0);
+
+            recipeRepository.updateRecipe(recipe.getId(), getRecipe("Updated", "Updated description", 5L));
+
+            assertTrue(recipeRepository.findRecipes(new RecipeSearch(40L, 40L)).isEmpty());
+            assertEquals("Updated", recipeRepository.findRecipes(new RecipeSearch(5L, 5L)).get(0).getName());
+        }
+
+        @Test
+        @DisplayName("remove deleted recipes")
+        public void shouldRemoveDeletedRecipes() {
+            List<Long> ids = recipeRepository.findRecipes(new RecipeSearch(10L, 10L)).stream().map(Recipe::getId).toList();
+
+            recipeRepository.deleteRecipes(ids);
+
+            assertEquals(3, recipeRepository.getAllRecipes().size());
+            assertTrue(recipeRepository.getRecipeById(ids.get(0)).isEmpty());
+        }
+
+        @Test
+        @DisplayName("advance the change count by the rows they changed, never past the database")
+        public void shouldAdvanceChangeCount() {
+            long changeCount = recipeRepository.getChangeCount();
+            Recipe recipe = recipeRepository.createRecipe(getRecipe("New", "New description", 15L));
+            assertEquals(jdbcRepository.getChangeCount(), recipeRepository.getChangeCount());
+
+            // The database also counts the missing ids of a batch
+            recipeRepository.updateRecipes(Map.of(recipe.getId(), getRecipe("Updated", "Updated description", 5L), -1L, recipe));
+            recipeRepository.deleteRecipes(List.of(recipe.getId(), -1L));
+
+            assertEquals(changeCount + 3, recipeRepository.getChangeCount());
+            assertTrue(recipeRepository.getChangeCount() <= jdbcRepository.getChangeCount());
+        }
+
+        @Test
+        @DisplayName("find recipes with negative durations")
+        public void shouldFindNegativeDurations() {
+            recipeRepository.createRecipe(getRecipe("Negative", "Negative description", -5L));
+
+            assertEquals(List.of("Recipe 10", "Recipe 10", "Negative"), recipeRepository.findRecipes(new RecipeSearch(-10L, 10L)).stream().map(Recipe::getName).toList());
+            assertEquals(List.of("Negative"), recipeRepository.findRecipes(new RecipeSearch(-5L, -5L)).stream().map(Recipe::getName).toList());
+        }
+    }
+
+    private Recipe getRecipe(String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
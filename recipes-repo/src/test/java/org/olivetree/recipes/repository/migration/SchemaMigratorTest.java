@@ -0,0 +1,97 @@
+package org.olivetree.recipes.repository.migration;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    }
+
+    @Test
+    @DisplayName("Migrator should record the applied version")
+    public void shouldRecordAppliedVersion() throws SQLException {
+        int version = new SchemaMigrator(dataSource).migrate();
+
+        int latestVersion = SchemaMigrator.MIGRATIONS.get(SchemaMigrator.MIGRATIONS.size() - 1).version();
+        assertEquals(latestVersion, version);
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), queryInt("SELECT COUNT(*) FROM SCHEMA_VERSION"));
+    }
+
+    @Test
+    @DisplayName("Migrator should not reapply migrations")
+    public void shouldNotReapplyMigrations() throws SQLException {
+        new SchemaMigrator(dataSource).migrate();
+        new SchemaMigrator(dataSource).migrate();
+
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), queryInt("SELECT COUNT(*) FROM SCHEMA_VERSION"));
+    }
+
+    @Test
+    @DisplayName("Migrators started at the same time should apply every migration once")
+    public void shouldMigrateConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CyclicBarrier start = new CyclicBarrier(4);
+            List<Future<Integer>> versions = new ArrayList<>();
+            for(int i = 0; i < 4; i++) {
+                versions.add(executor.submit(() -> {
+                    start.await();
+                    return new SchemaMigrator(dataSource).migrate();
+                }));
+            }
+
+            int latestVersion = SchemaMigrator.MIGRATIONS.get(SchemaMigrator.MIGRATIONS.size() - 1).version();
+            for(Future<Integer> version : versions) {
+                assertEquals(latestVersion, version.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), queryInt("SELECT COUNT(*) FROM SCHEMA_VERSION"));
+    }
+
+    @Test
+    @DisplayName("Duration range searches should use the duration index")
+    public void shouldUseDurationIndexForRangeSearch() throws SQLException {
+        new SchemaMigrator(dataSource).migrate();
+
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery("EXPLAIN SELECT * FROM Recipes WHERE duration >= 10 AND duration <= 30")) {
+            rs.next();
+            assertTrue(rs.getString(1).contains("IDX_RECIPES_DURATION"), rs.getString(1));
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
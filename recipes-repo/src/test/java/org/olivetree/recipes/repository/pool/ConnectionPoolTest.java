@@ -0,0 +1,88 @@
+package org.olivetree.recipes.repository.pool;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pool-test;DB_CLOSE_DELAY=-1");
+
+        connectionPool = new ConnectionPool(dataSource,
+                new PoolConfig(1, 2, Duration.ofMillis(100), Duration.ofMinutes(1), 8));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    @DisplayName("Pool should reuse physical connections")
+    public void shouldReusePhysicalConnections() throws SQLException {
+        for(int i = 0; i < 10; i++) {
+            try(Connection connection = connectionPool.getConnection()) {
+                assertFalse(connection.isClosed());
+            }
+        }
+
+        PoolStats stats = connectionPool.getStats();
+        assertEquals(1, stats.totalCreated());
+        assertEquals(10, stats.totalAcquired());
+        assertEquals(0, stats.active());
+        assertEquals(1, stats.idle());
+    }
+
+    @Test
+    @DisplayName("Pool should time out when all connections are in use")
+    public void shouldTimeOutWhenExhausted() throws SQLException {
+        try(Connection first = connectionPool.getConnection();
+            Connection second = connectionPool.getConnection()) {
+            assertEquals(2, connectionPool.getStats().active());
+
+            assertThrows(SQLTransientConnectionException.class, () -> connectionPool.getConnection());
+            assertEquals(1, connectionPool.getStats().totalTimeouts());
+        }
+
+        assertEquals(0, connectionPool.getStats().active());
+    }
+
+    @Test
+    @DisplayName("Pool should cache prepared statements per connection")
+    public void shouldCachePreparedStatements() throws SQLException {
+        PreparedStatement first;
+        try(Connection connection = connectionPool.getConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            first = statement.unwrap(PreparedStatement.class);
+        }
+
+        try(Connection connection = connectionPool.getConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertSame(first, statement.unwrap(PreparedStatement.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Closed connection handles should not be usable")
+    public void shouldRejectUseAfterClose() throws SQLException {
+        Connection connection = connectionPool.getConnection();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+    }
+}
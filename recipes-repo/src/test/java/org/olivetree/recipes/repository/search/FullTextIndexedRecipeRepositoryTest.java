@@ -0,0 +1,204 @@
+package org.olivetree.recipes.repository.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeJdbcRepositoryImpl;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FullTextIndexedRecipeRepositoryTest {
+
+    @TempDir
+    private Path databaseDirectory;
+
+    private RecipeJdbcRepositoryImpl jdbcRepository;
+    private FullTextIndexedRecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcRepository = new RecipeJdbcRepositoryImpl(databaseDirectory.resolve("recipes").toString());
+
+        // Indexed when the full-text repository is opened
+        jdbcRepository.createRecipe(getRecipe("Tomato Soup", "Slow cooked tomatoes and basil", 40L));
+        jdbcRepository.createRecipe(getRecipe("Basil Pesto", "Pine nuts, basil and olive oil", 10L));
+        jdbcRepository.createRecipe(getRecipe("Garlic Bread", "Bread with garlic butter", 15L));
+        jdbcRepository.createRecipe(getRecipe("Tomato Salad", "Tomatoes, basil, olive oil", 5L));
+
+        recipeRepository = new FullTextIndexedRecipeRepository(jdbcRepository);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeRepository.close();
+    }
+
+    @Nested
+    @DisplayName("Text searches should")
+    public class SearchTests {
+        @Test
+        @DisplayName("match every word in the name or description ignoring case")
+        public void shouldMatchEveryWord() {
+            assertEquals(List.of("Basil Pesto", "Tomato Salad"), names(recipeRepository.findRecipes(search(null, null, "OLIVE basil"))));
+            assertEquals(List.of("Tomato Soup", "Tomato Salad"), names(recipeRepository.findRecipes(search(null, null, "tomato"))));
+            assertTrue(recipeRepository.findRecipes(search(null, null, "tomato garlic")).isEmpty());
+        }
+
+        @Test
+        @DisplayName("combine the text with the duration range")
+        public void shouldCombineTextAndDuration() {
+            assertEquals(List.of("Tomato Soup"), names(recipeRepository.findRecipes(search(20L, 60L, "basil"))));
+        }
+
+        @Test
+        @DisplayName("return the same recipes as the unindexed search")
+        public void shouldMatchUnindexedSearch() {
+            for(String text : List.of("basil", "olive oil", "bread", "tomatoes basil", "nothing")) {
+                RecipeSearch recipeSearch = search(null, null, text);
+
+                assertEquals(names(jdbcRepository.findRecipes(recipeSearch)), names(recipeRepository.findRecipes(recipeSearch)));
+                assertEquals(names(jdbcRepository.findRecipes(recipeSearch, null, 2)), names(recipeRepository.findRecipes(recipeSearch, null, 2)));
+            }
+        }
+
+        @Test
+        @DisplayName("filter nothing by a text without words, with the index enabled or not")
+        public void shouldIgnoreTextWithoutWords() {
+            RecipeSearch recipeSearch = search(5L, 15L, "!!! ?");
+            recipeRepository.close();
+
+            for(boolean indexed : List.of(false, true)) {
+                Properties properties = new Properties();
+                properties.setProperty(RecipeRepository.FULL_TEXT_INDEX_PROPERTY, String.valueOf(indexed));
+
+                try(RecipeRepository opened = RecipeRepository.openRecipeRepository(databaseDirectory.resolve("recipes").toString(), properties)) {
+                    assertEquals(List.of("Basil Pesto", "Garlic Bread", "Tomato Salad"), names(opened.findRecipes(recipeSearch)).stream().sorted().toList(), "indexed " + indexed);
+                    assertEquals(List.of("Basil Pesto", "Garlic Bread"), names(opened.findRecipes(recipeSearch, null, 2)), "indexed " + indexed);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("page through the matching recipes in id order")
+        public void shouldPageResults() {
+            List<Recipe> firstPage = recipeRepository.findRecipes(search(null, null, "basil"), null, 2);
+            List<Recipe> lastPage = recipeRepository.findRecipes(search(null, null, "basil"), firstPage.get(1).getId(), 2);
+
+            assertEquals(List.of("Tomato Soup", "Basil Pesto"), names(firstPage));
+            assertEquals(List.of("Tomato Salad"), names(lastPage));
+        }
+
+        @Test
+        @DisplayName("stream the matching recipes")
+        public void shouldStreamResults() {
+            try(Stream<Recipe> recipes = recipeRepository.streamRecipes(search(null, null, "garlic"))) {
+                assertEquals(List.of("Garlic Bread"), names(recipes.toList()));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Writes should")
+    public class WriteTests {
+        @Test
+        @DisplayName("make created recipes searchable")
+        public void shouldIndexCreatedRecipes() {
+            recipeRepository.createRecipes(List.of(getRecipe("Garlic Soup", "Roasted garlic", 30L)));
+
+            assertEquals(List.of("Garlic Bread", "Garlic Soup"), names(recipeRepository.findRecipes(search(null, null, "garlic"))));
+        }
+
+        @Test
+        @DisplayName("replace the words of updated recipes")
+        public void shouldReindexUpdatedRecipes() {
+            Recipe recipe = recipeRepository.findRecipes(search(null, null, "pesto")).get(0);
+
+            recipeRepository.updateRecipe(recipe.getId(), getRecipe("Mint Sauce", "Mint and vinegar", 10L));
+
+            assertTrue(recipeRepository.findRecipes(search(null, null, "pesto")).isEmpty());
+            assertEquals(List.of("Mint Sauce"), names(recipeRepository.findRecipes(search(null, null, "mint"))));
+        }
+
+        @Test
+        @DisplayName("remove deleted recipes")
+        public void shouldRemoveDeletedRecipes() {
+            List<Long> ids = recipeRepository.findRecipes(search(null, null, "tomato")).stream().map(Recipe::getId).toList();
+
+            recipeRepository.deleteRecipes(ids);
+
+            assertEquals(List.of("Basil Pesto"), names(recipeRepository.findRecipes(search(null, null, "basil"))));
+        }
+    }
+
+    @Nested
+    @DisplayName("Inverted index should")
+    public class InvertedIndexTests {
+        @Test
+        @DisplayName("ignore writes that reach it after a newer version or a delete")
+        public void shouldIgnoreLateWrites() {
+            InvertedIndex index = new InvertedIndex();
+            index.index(getIndexedRecipe(1L, 3L, "Mint Sauce"));
+            index.index(getIndexedRecipe(1L, 2L, "Basil Pesto"));
+            index.index(getIndexedRecipe(2L, 1L, "Basil Pesto"));
+            index.remove(2L);
+            index.index(getIndexedRecipe(2L, 2L, "Basil Pesto"));
+
+            assertArrayEquals(new long[]{1L}, index.search(search(null, null, "mint")));
+            assertArrayEquals(new long[0], index.search(search(null, null, "pesto")));
+        }
+
+        @Test
+        @DisplayName("intersect and update posting lists spanning many blocks")
+        public void shouldIntersectLongPostingLists() {
+            InvertedIndex index = new InvertedIndex();
+            // Every recipe is a soup, every third one has tomato, added out of order to split blocks
+            for(long id = 1000; id >= 1; id--) {
+                index.index(getIndexedRecipe(id, 1L, id % 3 == 0 ? "Tomato soup" : "Soup"));
+            }
+            for(long id = 3; id <= 1000; id += 6) {
+                index.remove(id);
+            }
+
+            long[] expected = LongStream.rangeClosed(1, 1000).filter(id -> id % 6 == 0).toArray();
+            assertArrayEquals(expected, index.search(search(null, null, "soup tomato")));
+            assertEquals(1000 - 167, index.search(search(null, null, "soup")).length);
+        }
+
+        private Recipe getIndexedRecipe(Long id, Long version, String name) {
+            Recipe recipe = getRecipe(name, name, 10L);
+            recipe.setId(id);
+            recipe.setVersion(version);
+
+            return recipe;
+        }
+    }
+
+    private static RecipeSearch search(Long durationFrom, Long durationTo, String text) {
+        return new RecipeSearch(durationFrom, durationTo, text);
+    }
+
+    private static List<String> names(List<Recipe> recipes) {
+        return recipes.stream().map(Recipe::getName).toList();
+    }
+
+    private Recipe getRecipe(String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
@@ -0,0 +1,264 @@
+package org.olivetree.recipes.repository.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeJdbcRepositoryImpl;
+import org.olivetree.recipes.repository.pool.PoolConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedRecipeRepositoryTest {
+
+    @TempDir
+    private Path databaseDirectory;
+
+    private ShardedRecipeRepository recipeRepository;
+
+    private List<Recipe> recipes;
+
+    @BeforeEach
+    public void setUp() {
+        recipeRepository = open(3);
+
+        // Durations repeat, so sorted pages have to order recipes with the same value by id across shards
+        recipes = recipeRepository.createRecipes(Stream.iterate(1L, i -> i + 1).limit(20)
+                .map(i -> getRecipe("Recipe " + i, "Description " + i, i % 5 * 10))
+                .toList());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeRepository.close();
+    }
+
+    private ShardedRecipeRepository open(int shards) {
+        return ShardedRecipeRepository.open(databaseDirectory.resolve("recipes").toString(), new ShardConfig(shards), PoolConfig.defaults(), 4);
+    }
+
+    @Nested
+    @DisplayName("Writes should")
+    public class WriteTests {
+        @Test
+        @DisplayName("spread new recipes over the shards with unique ids")
+        public void shouldSpreadRecipesWithUniqueIds() {
+            recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L));
+
+            List<Long> ids = recipeRepository.getAllRecipes().stream().map(Recipe::getId).toList();
+            Set<Long> shards = new HashSet<>();
+            ids.forEach(id -> shards.add(id % 3));
+
+            assertEquals(21, new HashSet<>(ids).size());
+            assertEquals(Set.of(0L, 1L, 2L), shards);
+        }
+
+        @Test
+        @DisplayName("update and delete recipes of several shards in one batch")
+        public void shouldWriteBatchesAcrossShards() {
+            Map<Long, Recipe> updates = new HashMap<>();
+            recipes.subList(0, 6).forEach(recipe -> updates.put(recipe.getId(), getRecipe("Stew", "Beef stew", 120L)));
+            updates.put(-1L, getRecipe("Stew", "Beef stew", 120L));
+
+            assertEquals(6, recipeRepository.updateRecipes(updates));
+            assertEquals("Stew", recipeRepository.getRecipeById(recipes.get(5).getId()).orElseThrow().getName());
+
+            List<Long> ids = recipes.subList(0, 6).stream().map(Recipe::getId).toList();
+            assertEquals(Set.copyOf(ids), Set.copyOf(recipeRepository.deleteRecipes(ids)));
+            assertEquals(14, recipeRepository.getAllRecipes().size());
+        }
+
+        @Test
+        @DisplayName("keep allocating unique ids after reopening and refuse another number of shards")
+        public void shouldKeepIdAllocationAfterReopening() {
+            Set<Long> ids = new HashSet<>(recipes.stream().map(Recipe::getId).toList());
+            recipeRepository.deleteRecipe(recipes.get(19).getId());
+            recipeRepository.close();
+
+            recipeRepository = open(3);
+            for(int i = 0; i < 6; i++) {
+                assertTrue(ids.add(recipeRepository.createRecipe(getRecipe("Soup", "Tomato soup", 30L)).getId()));
+            }
+
+            recipeRepository.close();
+            assertThrows(IllegalStateException.class, () -> open(2));
+            recipeRepository = open(3);
+        }
+    }
+
+    @Nested
+    @DisplayName("Reads should")
+    public class ReadTests {
+        @Test
+        @DisplayName("merge the recipes of all shards in id order")
+        public void shouldMergeInIdOrder() {
+            List<Long> expected = recipes.stream().map(Recipe::getId).sorted().toList();
+
+            assertEquals(expected, recipeRepository.getAllRecipes().stream().map(Recipe::getId).toList());
+            try(Stream<Recipe> stream = recipeRepository.streamRecipes(new RecipeSearch(10L, 30L))) {
+                assertEquals(recipes.stream()
+                        .filter(recipe -> recipe.getDurationInMinutes() >= 10 && recipe.getDurationInMinutes() <= 30)
+                        .map(Recipe::getId).sorted().toList(), stream.map(Recipe::getId).toList());
+            }
+        }
+
+        @Test
+        @DisplayName("page through recipes by id across shards")
+        public void shouldPageById() {
+            List<Long> ids = new ArrayList<>();
+            List<Recipe> page = recipeRepository.getRecipesAfter(null, 7);
+            while(!page.isEmpty()) {
+                assertTrue(page.size() <= 7);
+                page.forEach(recipe -> ids.add(recipe.getId()));
+                page = recipeRepository.getRecipesAfter(ids.get(ids.size() - 1), 7);
+            }
+
+            assertEquals(recipes.stream().map(Recipe::getId).sorted().toList(), ids);
+        }
+
+        @Test
+        @DisplayName("page through sorted recipes without skipping or repeating any")
+        public void shouldPageSortedRecipes() {
+            RecipeSort sort = new RecipeSort(RecipeSort.Field.DURATION, true);
+
+            List<Recipe> sorted = new ArrayList<>();
+            List<Recipe> page = recipeRepository.findRecipes(RecipeSearch.ALL, sort, null, 6);
+            while(!page.isEmpty()) {
+                sorted.addAll(page);
+                page = recipeRepository.findRecipes(RecipeSearch.ALL, sort, sorted.get(sorted.size() - 1), 6);
+            }
+
+            assertEquals(recipes.stream().sorted(sort.comparator()).map(Recipe::getId).toList(),
+                    sorted.stream().map(Recipe::getId).toList());
+        }
+
+        @Test
+        @DisplayName("merge summaries in the requested order")
+        public void shouldMergeSortedSummaries() {
+            RecipeSort sort = new RecipeSort(RecipeSort.Field.NAME, false);
+
+            List<RecipeSummary> summaries = recipeRepository.findRecipeSummaries(RecipeSearch.ALL, sort, null, 5);
+            try(Stream<RecipeSummary> stream = recipeRepository.streamRecipeSummaries(RecipeSearch.ALL, sort)) {
+                List<RecipeSummary> all = stream.toList();
+
+                assertEquals(all.subList(0, 5), summaries);
+                assertEquals(all.stream().map(RecipeSummary::name).sorted().toList(), all.stream().map(RecipeSummary::name).toList());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Changes since should")
+    public class ChangesSinceTests {
+        @Test
+        @DisplayName("page through the changes of all shards in sequence order")
+        public void shouldPageThroughChanges() {
+            recipeRepository.deleteRecipe(recipes.get(0).getId());
+            recipeRepository.catchUpChangeCounts();
+
+            Map<Long, Boolean> replica = new HashMap<>();
+            long since = sync(0, replica);
+
+            assertEquals(20, replica.size());
+            assertTrue(replica.get(recipes.get(0).getId()));
+            assertEquals(19, replica.values().stream().filter(deleted -> !deleted).count());
+            assertEquals(List.of(), recipeRepository.getChangesSince(since, 10));
+        }
+
+        @Test
+        @DisplayName("return the writes to any shard after the last sync")
+        public void shouldReturnLaterWritesToAnyShard() {
+            recipeRepository.catchUpChangeCounts();
+            Map<Long, Boolean> replica = new HashMap<>();
+            long since = sync(0, replica);
+
+            // Whichever shard these land on, they are numbered after everything synced so far
+            for(Recipe recipe : recipes.subList(0, 3)) {
+                recipeRepository.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            }
+            recipeRepository.catchUpChangeCounts();
+
+            List<RecipeDelta> changes = recipeRepository.getChangesSince(since, 10);
+            assertEquals(recipes.subList(0, 3).stream().map(Recipe::getId).sorted().toList(),
+                    changes.stream().map(RecipeDelta::id).sorted().toList());
+            assertTrue(changes.stream().allMatch(change -> change.sequence() > since));
+        }
+
+        @Test
+        @DisplayName("hold back the changes of a shard ahead of the others until their change counts caught up")
+        public void shouldHoldBackChangesAheadOfOtherShards() {
+            recipeRepository.awaitCatchUp();
+            long since = sync(0, new HashMap<>());
+
+            // Written by another process, which this repository does not catch up after
+            Recipe recipe = recipes.stream().filter(r -> r.getId() % 3 == 0).findFirst().orElseThrow();
+            try(RecipeJdbcRepositoryImpl shard = new RecipeJdbcRepositoryImpl(new ShardConfig(3).shardFile(databaseDirectory.resolve("recipes").toString(), 0))) {
+                shard.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            }
+
+            assertEquals(List.of(), recipeRepository.getChangesSince(since, 10));
+
+            recipeRepository.catchUpChangeCounts();
+            assertEquals(List.of(recipe.getId()), recipeRepository.getChangesSince(since, 10).stream().map(RecipeDelta::id).toList());
+        }
+
+        @Test
+        @DisplayName("leave the change count as it is when the change counts of the shards catch up")
+        public void shouldKeepChangeCountThroughCatchUp() {
+            recipeRepository.awaitCatchUp();
+            long since = sync(0, new HashMap<>());
+            long changeCount = recipeRepository.getChangeCount();
+
+            Recipe recipe = recipes.stream().filter(r -> r.getId() % 3 == 0).findFirst().orElseThrow();
+            // Written by another process, so no catch-up runs before the one below
+            try(RecipeJdbcRepositoryImpl shard = new RecipeJdbcRepositoryImpl(new ShardConfig(3).shardFile(databaseDirectory.resolve("recipes").toString(), 0))) {
+                shard.updateRecipe(recipe.getId(), getRecipe("Stew", "Beef stew", 120L));
+            }
+            assertEquals(changeCount + 1, recipeRepository.getChangeCount());
+
+            // The other shards skip ahead to the updated one, which releases its change
+            recipeRepository.catchUpChangeCounts();
+            assertEquals(List.of(recipe.getId()), recipeRepository.getChangesSince(since, 10).stream().map(RecipeDelta::id).toList());
+            assertEquals(changeCount + 1, recipeRepository.getChangeCount());
+        }
+
+        // Applies the changes after since to a map of id to deleted, returns the sequence to sync from next
+        private long sync(long since, Map<Long, Boolean> replica) {
+            List<RecipeDelta> page;
+            while(!(page = recipeRepository.getChangesSince(since, 3)).isEmpty()) {
+                for(RecipeDelta change : page) {
+                    assertTrue(change.sequence() > since);
+                    replica.put(change.id(), change.deleted());
+                    since = change.sequence();
+                }
+            }
+
+            return since;
+        }
+    }
+
+    private Recipe getRecipe(String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
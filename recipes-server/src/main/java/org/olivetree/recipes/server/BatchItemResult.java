@@ -0,0 +1,13 @@
+package org.olivetree.recipes.server;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Outcome of one item of a batch request, in the order the items were sent. status is the status code the
+// item would have gotten as a single request, id the id of the recipe when there is one.
+public record BatchItemResult(int index, int status, Long id) {
+
+    @JsonIgnore
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+}
@@ -0,0 +1,68 @@
+package org.olivetree.recipes.server;
+
+import org.olivetree.recipes.repository.RepositoryProperties;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Threads running the resource methods, selected with the recipes.server.executionMode property
+public enum ExecutionMode {
+    // Grizzly's default worker pool of platform threads
+    PLATFORM,
+    // A new virtual thread per request, so a request blocked on JDBC does not hold an OS thread. There is no
+    // pool bounding the requests in flight anymore, recipes.concurrency.* should be enabled to protect the
+    // database.
+    VIRTUAL;
+
+    public static final String EXECUTION_MODE_PROPERTY = "recipes.server.executionMode";
+
+    public static ExecutionMode fromProperties(Properties properties) {
+        return valueOf(RepositoryProperties.getString(properties, EXECUTION_MODE_PROPERTY, PLATFORM.name()).toUpperCase(Locale.ROOT));
+    }
+
+    // Worker pool replacing Grizzly's, or null to keep it. The build targets Java 17, so the virtual thread
+    // executor is looked up at runtime and only available when running on Java 21 or later.
+    ExecutorService createWorkerPool() {
+        if(this == PLATFORM) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + Runtime.version());
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+
+    // Threads of a bounded pool. In virtual mode the pool still bounds the work, but a thread blocked on
+    // JDBC does not hold a carrier thread.
+    ThreadFactory createThreadFactory(String namePrefix) {
+        if(this == PLATFORM) {
+            AtomicInteger count = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + Runtime.version());
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create the virtual thread factory", e);
+        }
+    }
+}
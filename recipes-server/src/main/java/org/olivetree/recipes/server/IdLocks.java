@@ -0,0 +1,63 @@
+package org.olivetree.recipes.server;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Locks recipes by id for the repository decorators that have to keep a write and their own bookkeeping of it
+// together. Ids are spread over a fixed number of locks, a batch takes the locks of all its ids in index order so
+// two batches sharing ids cannot wait on each other. Only writes made through this process are covered.
+//
+// Locks instead of synchronized, so writers waiting on virtual threads do not pin their carrier.
+public class IdLocks {
+    private static final int LOCK_COUNT = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_COUNT];
+
+    public IdLocks() {
+        for(int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Held lock(long id) {
+        ReentrantLock lock = locks[Math.floorMod(id, LOCK_COUNT)];
+        lock.lock();
+
+        return new Held(List.of(lock));
+    }
+
+    public Held lockAll(Collection<Long> ids) {
+        BitSet indexes = new BitSet(LOCK_COUNT);
+        for(Long id : ids) {
+            if(id != null) {
+                indexes.set(Math.floorMod(id, LOCK_COUNT));
+            }
+        }
+
+        List<ReentrantLock> held = new ArrayList<>(indexes.cardinality());
+        for(int index = indexes.nextSetBit(0); index >= 0; index = indexes.nextSetBit(index + 1)) {
+            locks[index].lock();
+            held.add(locks[index]);
+        }
+
+        return new Held(held);
+    }
+
+    public static final class Held implements AutoCloseable {
+        private final List<ReentrantLock> locks;
+
+        private Held(List<ReentrantLock> locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            for(int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+}
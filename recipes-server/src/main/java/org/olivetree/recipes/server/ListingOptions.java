@@ -0,0 +1,117 @@
+package org.olivetree.recipes.server;
+
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// The sort= and fields= options of the listing and search endpoints, e.g. sort=duration,desc&fields=id,name.
+// Both are left to the repository: the order goes into its query, and a field list without description asks
+// for RecipeSummary rows, so descriptions are neither read nor written.
+final class ListingOptions {
+    static final String SORT_PARAM = "sort";
+    static final String FIELDS_PARAM = "fields";
+
+    static final ListingOptions DEFAULTS = new ListingOptions(RecipeSort.BY_ID, null);
+
+    // Names accepted by fields= and the JSON properties they select
+    private static final Map<String, String> PROPERTIES = Map.of(
+            "id", "id",
+            "name", "name",
+            "description", "description",
+            "duration", "durationInMinutes",
+            "version", "version");
+
+    private final RecipeSort sort;
+    // null for every property
+    private final Set<String> properties;
+
+    private ListingOptions(RecipeSort sort, Set<String> properties) {
+        this.sort = sort;
+        this.properties = properties;
+    }
+
+    static ListingOptions parse(String sort, String fields) {
+        try {
+            return new ListingOptions(RecipeSort.parse(sort), parseFields(fields));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    private static Set<String> parseFields(String fields) {
+        if(fields == null || fields.isBlank()) {
+            return null;
+        }
+
+        Set<String> properties = new LinkedHashSet<>();
+        for(String field : fields.split(",")) {
+            String property = PROPERTIES.get(field.trim());
+            if(property == null) {
+                throw new IllegalArgumentException("Unknown field: " + field.trim());
+            }
+            properties.add(property);
+        }
+
+        return properties;
+    }
+
+    // The endpoints answer these from their own, cacheable, paths
+    boolean isDefault() {
+        return sort.isById() && properties == null;
+    }
+
+    RecipeJsonStream stream(RecipeRepository recipeRepository, RecipeSearch recipeSearch, MediaType mediaType) {
+        Stream<?> recipes = includesDescription() ?
+                recipeRepository.streamRecipes(recipeSearch, sort) :
+                recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+
+        return RecipeJsonStream.of(recipes, mediaType, properties);
+    }
+
+    // The after= cursor of a page in this order, null for the first page. Throws BadRequestException when it was
+    // not made for this sort.
+    Recipe parseCursor(String after) {
+        if(after == null) {
+            return null;
+        }
+
+        try {
+            return sort.parseCursor(after);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    // Recipes or summaries, depending on the fields
+    List<?> find(RecipeRepository recipeRepository, RecipeSearch recipeSearch, Recipe after, int limit) {
+        return includesDescription() ?
+                recipeRepository.findRecipes(recipeSearch, sort, after, limit) :
+                recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+    }
+
+    Response.ResponseBuilder toPage(List<?> recipes, int pageSize, UriInfo uriInfo, MediaType mediaType) {
+        return Pagination.toPage(recipes, this::cursorOf, pageSize, uriInfo,
+                        page -> RecipeJsonStream.of(page.stream(), mediaType, properties))
+                .type(mediaType);
+    }
+
+    private boolean includesDescription() {
+        return properties == null || properties.contains("description");
+    }
+
+    private String cursorOf(Object recipe) {
+        return recipe instanceof RecipeSummary summary ? sort.cursorOf(summary) : sort.cursorOf((Recipe) recipe);
+    }
+}
@@ -0,0 +1,73 @@
+package org.olivetree.recipes.server;
+
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.olivetree.recipes.domain.Recipe;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Keyset pagination shared by the listing and search endpoints. Pages are requested with limit/after and the
+// cursor to continue from, the id or for sorted pages the sort key and id of the last item, is returned in the
+// X-Next-Cursor header and as a rel="next" link. Pages of changes
+// continue from a change sequence passed as since instead.
+final class Pagination {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static final String LIMIT_PARAM = "limit";
+    static final String AFTER_PARAM = "after";
+    static final String SINCE_PARAM = "since";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private Pagination() {
+    }
+
+    static boolean isPaged(Integer limit, Object after) {
+        return limit != null || after != null;
+    }
+
+    static int getPageSize(Integer limit) {
+        if(limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException();
+        }
+
+        return limit;
+    }
+
+    // Expects the repository to have been asked for one recipe more than the page size,
+    // which tells whether there is a next page without another query.
+    static Response.ResponseBuilder toPage(List<Recipe> recipes, int pageSize, UriInfo uriInfo) {
+        return toPage(recipes, Recipe::getId, pageSize, uriInfo, page -> new GenericEntity<>(page) {});
+    }
+
+    // Same for any kind of item, toEntity turns the page into the response body
+    static <T> Response.ResponseBuilder toPage(List<T> items, Function<T, ?> idOf, int pageSize, UriInfo uriInfo,
+                                               Function<List<T>, Object> toEntity) {
+        return toPage(items, idOf, AFTER_PARAM, pageSize, uriInfo, toEntity);
+    }
+
+    // cursorOf gives the value of cursorParam that continues after an item
+    static <T> Response.ResponseBuilder toPage(List<T> items, Function<T, ?> cursorOf, String cursorParam, int pageSize,
+                                               UriInfo uriInfo, Function<List<T>, Object> toEntity) {
+        if(items.size() <= pageSize) {
+            return Response.ok(toEntity.apply(items));
+        }
+
+        List<T> page = items.subList(0, pageSize);
+        Object nextCursor = cursorOf.apply(page.get(page.size() - 1));
+
+        return Response.ok(toEntity.apply(page))
+                .header(NEXT_CURSOR_HEADER, nextCursor)
+                .link(uriInfo.getRequestUriBuilder()
+                        .replaceQueryParam(LIMIT_PARAM, pageSize)
+                        .replaceQueryParam(cursorParam, nextCursor)
+                        .build(), "next");
+    }
+}
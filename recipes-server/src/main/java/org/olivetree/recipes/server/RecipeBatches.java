@@ -0,0 +1,158 @@
+package org.olivetree.recipes.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.core.Response;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Batch create and delete shared by the /recipes/batch endpoints. The valid items are written with a single
+// repository call, which commits them in transactions of recipes.batch.size, and every item is reported with
+// the outcome the repository reported for it.
+final class RecipeBatches {
+    static final String NDJSON = "application/x-ndjson";
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecipeBatches.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader RECIPE_READER = OBJECT_MAPPER.readerFor(Recipe.class);
+    private static final ObjectReader ID_READER = OBJECT_MAPPER.readerFor(Long.class);
+
+    private RecipeBatches() {
+    }
+
+    // One JSON document per line, blank lines are skipped
+    static List<Recipe> readRecipes(InputStream lines) {
+        return read(RECIPE_READER, lines);
+    }
+
+    static List<Long> readIds(InputStream lines) {
+        return read(ID_READER, lines);
+    }
+
+    private static <T> List<T> read(ObjectReader reader, InputStream lines) {
+        try {
+            return checkSize(reader.<T>readValues(lines).readAll());
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(e);
+        } catch (IOException e) {
+            throw new BadRequestException("Could not read the request body", e);
+        }
+    }
+
+    static <T> List<T> checkSize(List<T> items) {
+        if(items == null) {
+            throw new BadRequestException();
+        }
+
+        if(items.size() > MAX_BATCH_SIZE) {
+            throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+
+        return items;
+    }
+
+    // The ids of the recipes committed before a failure are set, so those are reported as created and a client
+    // retrying the failed items does not create them twice
+    static List<BatchItemResult> create(RecipeRepository recipeRepository, List<Recipe> recipes) {
+        BatchItemResult[] results = new BatchItemResult[recipes.size()];
+
+        List<Integer> indexes = new ArrayList<>(recipes.size());
+        List<Recipe> valid = new ArrayList<>(recipes.size());
+        for(int index = 0; index < recipes.size(); index++) {
+            Recipe recipe = recipes.get(index);
+
+            if(!Recipe.isValidRecipe(recipe)) {
+                results[index] = new BatchItemResult(index, Response.Status.BAD_REQUEST.getStatusCode(), null);
+                continue;
+            }
+
+            recipe.setId(null);
+            indexes.add(index);
+            valid.add(recipe);
+        }
+
+        if(valid.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        try {
+            recipeRepository.createRecipes(valid);
+        } catch (RepositoryException e) {
+            LOG.error("Batch of {} recipes failed", valid.size(), e);
+        }
+
+        for(int i = 0; i < indexes.size(); i++) {
+            Long id = valid.get(i).getId();
+            Response.Status status = id != null ? Response.Status.CREATED : Response.Status.INTERNAL_SERVER_ERROR;
+            results[indexes.get(i)] = new BatchItemResult(indexes.get(i), status.getStatusCode(), id);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    // The repository reports the ids it deleted, which is the only way to tell them from the ids that did not exist
+    // without a racy read first. A repeated id is only reported as deleted the first time. When the delete fails,
+    // every id is reported as failed, including those of the transactions committed before; deleting them again
+    // answers 404.
+    static List<BatchItemResult> delete(RecipeRepository recipeRepository, List<Long> ids) {
+        BatchItemResult[] results = new BatchItemResult[ids.size()];
+
+        Set<Long> requested = new LinkedHashSet<>();
+        for(int index = 0; index < ids.size(); index++) {
+            if(ids.get(index) == null) {
+                results[index] = new BatchItemResult(index, Response.Status.BAD_REQUEST.getStatusCode(), null);
+            } else {
+                requested.add(ids.get(index));
+            }
+        }
+
+        if(requested.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        Set<Long> deleted;
+        try {
+            deleted = new HashSet<>(recipeRepository.deleteRecipes(List.copyOf(requested)));
+        } catch (RepositoryException e) {
+            LOG.error("Batch of {} deletes failed", requested.size(), e);
+            fail(ids, results);
+            return Arrays.asList(results);
+        }
+
+        for(int index = 0; index < ids.size(); index++) {
+            Long id = ids.get(index);
+            if(id != null) {
+                Response.Status status = deleted.remove(id) ? Response.Status.NO_CONTENT : Response.Status.NOT_FOUND;
+                results[index] = new BatchItemResult(index, status.getStatusCode(), id);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static void fail(List<Long> ids, BatchItemResult[] results) {
+        for(int index = 0; index < ids.size(); index++) {
+            if(results[index] == null) {
+                results[index] = new BatchItemResult(index, Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), ids.get(index));
+            }
+        }
+    }
+}
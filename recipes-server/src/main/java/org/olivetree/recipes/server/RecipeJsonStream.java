@@ -0,0 +1,113 @@
+package org.olivetree.recipes.server;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSummary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Writes a JSON array of recipes while they are read from a repository cursor, so the whole result never
+// sits in memory. Once more than Jersey's content length buffer (8 KiB) has been written the response goes
+// out with chunked transfer encoding. The cursor is closed when writing ends, even if the client went away.
+// Smile responses are written the same way with Jackson's binary generator.
+final class RecipeJsonStream implements StreamingOutput {
+    // Recipes written between two flushes of the response
+    private static final int FLUSH_INTERVAL = 128;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectWriter RECIPE_WRITER = OBJECT_MAPPER.writerFor(Recipe.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private static final ObjectMapper SMILE_MAPPER = new SmileMapper();
+    private static final ObjectWriter SMILE_RECIPE_WRITER = SMILE_MAPPER.writerFor(Recipe.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    // Only used for responses limited to some properties with fields=, so every other serialization of recipes
+    // stays unfiltered
+    private static final String PROPERTY_FILTER = "properties";
+    private static final ObjectMapper FILTERED_MAPPER = new ObjectMapper()
+            .addMixIn(Recipe.class, PropertyFilterMixin.class)
+            .addMixIn(RecipeSummary.class, PropertyFilterMixin.class);
+    private static final ObjectMapper FILTERED_SMILE_MAPPER = new SmileMapper()
+            .addMixIn(Recipe.class, PropertyFilterMixin.class)
+            .addMixIn(RecipeSummary.class, PropertyFilterMixin.class);
+
+    private final Stream<?> recipes;
+    private final Iterator<?> iterator;
+    private final ObjectMapper mapper;
+    private final ObjectWriter recipeWriter;
+
+    private RecipeJsonStream(Stream<?> recipes, ObjectMapper mapper, ObjectWriter recipeWriter) {
+        this.recipes = recipes;
+        this.iterator = recipes.iterator();
+        this.mapper = mapper;
+        this.recipeWriter = recipeWriter;
+    }
+
+    static RecipeJsonStream of(Stream<Recipe> recipes) {
+        return new RecipeJsonStream(recipes, OBJECT_MAPPER, RECIPE_WRITER);
+    }
+
+    static RecipeJsonStream of(Stream<Recipe> recipes, MediaType mediaType) {
+        return RecipeMediaTypes.isSmile(mediaType) ?
+                new RecipeJsonStream(recipes, SMILE_MAPPER, SMILE_RECIPE_WRITER) :
+                of(recipes);
+    }
+
+    // Writes recipes or recipe summaries with only the given JSON properties, all of them when null
+    static RecipeJsonStream of(Stream<?> recipes, MediaType mediaType, Set<String> properties) {
+        ObjectMapper mapper = RecipeMediaTypes.isSmile(mediaType) ? FILTERED_SMILE_MAPPER : FILTERED_MAPPER;
+        SimpleBeanPropertyFilter filter = properties == null ?
+                SimpleBeanPropertyFilter.serializeAll() :
+                SimpleBeanPropertyFilter.filterOutAllExcept(properties);
+
+        ObjectWriter writer = mapper.writer(new SimpleFilterProvider().addFilter(PROPERTY_FILTER, filter))
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return new RecipeJsonStream(recipes, mapper, writer);
+    }
+
+    // Reads the first recipe, which lets the search endpoint answer 404 before anything is written
+    boolean isEmpty() {
+        return !iterator.hasNext();
+    }
+
+    void close() {
+        recipes.close();
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try(recipes; JsonGenerator generator = mapper.createGenerator(output)) {
+            generator.writeStartArray();
+
+            int written = 0;
+            while(iterator.hasNext()) {
+                recipeWriter.writeValue(generator, iterator.next());
+
+                if(++written % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+        }
+    }
+
+    @JsonFilter(PROPERTY_FILTER)
+    private static final class PropertyFilterMixin {
+    }
+}
@@ -0,0 +1,31 @@
+package org.olivetree.recipes.server;
+
+import com.fasterxml.jackson.jakarta.rs.smile.SmileMediaTypes;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Variant;
+
+import java.util.List;
+
+// Representations of recipes, chosen with Accept. Smile is Jackson's binary form of JSON: the same documents,
+// with length-prefixed strings and back references to repeated field names, so bodies are smaller and parse
+// without scanning for quotes and escapes.
+public final class RecipeMediaTypes {
+    public static final String SMILE = SmileMediaTypes.APPLICATION_JACKSON_SMILE;
+    public static final MediaType SMILE_TYPE = SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE;
+
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, SMILE_TYPE).build();
+
+    private RecipeMediaTypes() {
+    }
+
+    // Only needed for bodies Jersey does not serialize itself, it adds Vary: Accept to the response
+    static MediaType select(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant == null ? MediaType.APPLICATION_JSON_TYPE : variant.getMediaType();
+    }
+
+    static boolean isSmile(MediaType mediaType) {
+        return SMILE_TYPE.isCompatible(mediaType);
+    }
+}
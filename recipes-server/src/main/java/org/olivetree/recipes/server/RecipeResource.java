@@ -1,114 +1,270 @@
 package org.olivetree.recipes.server;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
 import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Comparator;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+// Requests are suspended and their repository work runs on the RepositoryExecutor, which frees the HTTP
+// worker and answers 503 when the repository cannot keep up
 @Path("/recipes")
 public class RecipeResource {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecipeResource.class);
 
     private final RecipeRepository recipeRepository;
+    private final RepositoryExecutor repositoryExecutor;
 
-    public RecipeResource(RecipeRepository recipeRepository) {
+    public RecipeResource(RecipeRepository recipeRepository, RepositoryExecutor repositoryExecutor) {
         this.recipeRepository = recipeRepository;
+        this.repositoryExecutor = repositoryExecutor;
     }
 
+    // With since, answers the changes after that change sequence instead of the recipes, see listChanges
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<Recipe> getRecipes() {
-        return recipeRepository
-                .getAllRecipes()
-                .stream()
-                .sorted(Comparator.comparing(Recipe::getId))
-                .toList();
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void getRecipes(@QueryParam(Pagination.LIMIT_PARAM) Integer limit,
+                           @QueryParam(Pagination.AFTER_PARAM) String after,
+                           @QueryParam(Pagination.SINCE_PARAM) Long since,
+                           @QueryParam(ListingOptions.SORT_PARAM) String sort,
+                           @QueryParam(ListingOptions.FIELDS_PARAM) String fields,
+                           @Context UriInfo uriInfo,
+                           @Context Request request,
+                           @Suspended AsyncResponse asyncResponse) {
+        if(since != null) {
+            // Changes come in sequence order with every field
+            if(since < 0 || after != null || sort != null || fields != null) {
+                throw new BadRequestException();
+            }
+            int pageSize = Pagination.getPageSize(limit);
+
+            repositoryExecutor.submit(asyncResponse, () -> listChanges(since, pageSize, uriInfo));
+            return;
+        }
+
+        ListingOptions options = ListingOptions.parse(sort, fields);
+        Recipe cursor = options.parseCursor(after);
+
+        repositoryExecutor.submit(asyncResponse, () -> listRecipes(limit, cursor, options, uriInfo, request));
     }
 
+    // A conditional GET is answered from the version alone, the recipe is only loaded when it changed
     @GET
     @Path("{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Recipe getRecipe(@PathParam("id") Long id) {
-        Optional<Recipe> recipeById = recipeRepository.getRecipeById(id);
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void getRecipe(@PathParam("id") Long id,
+                          @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                          @Context Request request,
+                          @Suspended AsyncResponse asyncResponse) {
+        repositoryExecutor.submit(asyncResponse, () -> readRecipe(id, ifNoneMatch, request));
+    }
 
-        if(recipeById.isEmpty()) {
-            throw new NotFoundException();
-        }
+    // Missing or blank fields keep their stored value. The merge happens in the repository's single write, so
+    // nothing is read first.
+    @PUT
+    @Path("{id}")
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void updateRecipe(@PathParam("id") Long id, Recipe recipe, @Suspended AsyncResponse asyncResponse) {
+        Recipe patch = toValidPatch(recipe);
 
-        return recipeById.get();
+        repositoryExecutor.submit(asyncResponse, () -> {
+            applyPatch(id, patch);
+            return Response.noContent().build();
+        });
     }
 
-    @PUT
+    // Same as PUT, but answers with the recipe as stored, so the client does not need to read it back
+    @PATCH
     @Path("{id}")
-    @Consumes(MediaType.APPLICATION_JSON)
-    public Response updateRecipe(@PathParam("id") Long id, Recipe recipe) {
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void patchRecipe(@PathParam("id") Long id, Recipe recipe, @Context Request request,
+                            @Suspended AsyncResponse asyncResponse) {
+        Recipe patch = toValidPatch(recipe);
+        MediaType mediaType = RecipeMediaTypes.select(request);
 
-        Recipe existingRecipe = getRecipe(id);
+        repositoryExecutor.submit(asyncResponse, () -> toResponse(applyPatch(id, patch), mediaType));
+    }
 
-        Recipe updatedRecipe = getUpdatedRecipe(existingRecipe, recipe);
+    @DELETE
+    @Path("{id}")
+    public void deleteRecipe(@PathParam("id") Long id, @Suspended AsyncResponse asyncResponse) {
+        repositoryExecutor.submit(asyncResponse, () -> removeRecipe(id));
+    }
 
-        if(!Recipe.isValidRecipe(updatedRecipe)) {
+    @POST
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void createRecipe(Recipe recipe, @Suspended AsyncResponse asyncResponse) {
+        // Invalid recipes are refused without taking a repository thread
+        if(!Recipe.isValidRecipe(recipe)) {
             throw new BadRequestException();
         }
 
-        recipeRepository.updateRecipe(id, updatedRecipe);
+        repositoryExecutor.submit(asyncResponse, () -> Response.ok(recipeRepository.createRecipe(recipe)).build());
+    }
 
-        return Response.noContent().build();
+    // Batch endpoints take a JSON (or Smile) array or one item per line, and answer with the outcome of every
+    // item. Lines are read on the HTTP worker, the request body is not available once the method returned.
+    @POST
+    @Path("batch")
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void createRecipes(List<Recipe> recipes, @Suspended AsyncResponse asyncResponse) {
+        submitBatch(asyncResponse, () -> RecipeBatches.create(recipeRepository, RecipeBatches.checkSize(recipes)));
+    }
+
+    @POST
+    @Path("batch")
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes(RecipeBatches.NDJSON)
+    public void createRecipesFromLines(InputStream lines, @Suspended AsyncResponse asyncResponse) {
+        List<Recipe> recipes = RecipeBatches.readRecipes(lines);
+        submitBatch(asyncResponse, () -> RecipeBatches.create(recipeRepository, recipes));
     }
 
     @DELETE
-    @Path("{id}")
-    public Response deleteRecipe(@PathParam("id") Long id) {
+    @Path("batch")
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void deleteRecipes(List<Long> ids, @Suspended AsyncResponse asyncResponse) {
+        submitBatch(asyncResponse, () -> RecipeBatches.delete(recipeRepository, RecipeBatches.checkSize(ids)));
+    }
 
-        // Ensure recipe with id exists
-        getRecipe(id);
+    @DELETE
+    @Path("batch")
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes(RecipeBatches.NDJSON)
+    public void deleteRecipesFromLines(InputStream lines, @Suspended AsyncResponse asyncResponse) {
+        List<Long> ids = RecipeBatches.readIds(lines);
+        submitBatch(asyncResponse, () -> RecipeBatches.delete(recipeRepository, ids));
+    }
 
-        recipeRepository.deleteRecipe(id);
-        return Response.noContent().build();
+    private void submitBatch(AsyncResponse asyncResponse, Supplier<List<BatchItemResult>> batch) {
+        repositoryExecutor.submit(asyncResponse, () -> Response.ok(new GenericEntity<>(batch.get()) {}).build());
     }
 
-    @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
-    public Response createRecipe(Recipe recipe) {
-        if(!Recipe.isValidRecipe(recipe)) {
-            throw new BadRequestException();
+    private Response listRecipes(Integer limit, Recipe after, ListingOptions options, UriInfo uriInfo, Request request) {
+        MediaType mediaType = RecipeMediaTypes.select(request);
+        // Read before the recipes, so the tag never claims a newer state than the body
+        EntityTag etag = toEntityTag("c" + recipeRepository.getChangeCount(), mediaType);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if(notModified != null) {
+            return notModified.tag(etag).build();
         }
 
-        return Response.ok(recipeRepository.createRecipe(recipe)).build();
+        if(!Pagination.isPaged(limit, after)) {
+            RecipeJsonStream recipes = options.isDefault() ?
+                    RecipeJsonStream.of(recipeRepository.streamAllRecipes(), mediaType) :
+                    options.stream(recipeRepository, RecipeSearch.ALL, mediaType);
+            return Response.ok(recipes, mediaType).tag(etag).build();
+        }
+
+        int pageSize = Pagination.getPageSize(limit);
+        if(!options.isDefault()) {
+            List<?> recipes = options.find(recipeRepository, RecipeSearch.ALL, after, pageSize + 1);
+            return options.toPage(recipes, pageSize, uriInfo, mediaType).tag(etag).build();
+        }
+
+        List<Recipe> recipes = recipeRepository.getRecipesAfter(after == null ? null : after.getId(), pageSize + 1);
+
+        return Pagination.toPage(recipes, pageSize, uriInfo).tag(etag).build();
+    }
+
+    // A page of created and updated recipes and deleted ids, continued with the sequence of its last change.
+    // An empty page means the client is up to date, and keeps its since for the next call. A since older than the
+    // pruned tombstones gets 410 Gone, the client has to copy everything again from 0.
+    private Response listChanges(long since, int pageSize, UriInfo uriInfo) {
+        List<RecipeDelta> changes;
+        try {
+            changes = recipeRepository.getChangesSince(since, pageSize + 1);
+        } catch (ChangesPrunedException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.GONE);
+        }
+
+        return Pagination.toPage(changes, RecipeDelta::sequence, Pagination.SINCE_PARAM, pageSize, uriInfo,
+                page -> new GenericEntity<>(page) {}).build();
     }
 
-    private boolean isNotNullAndNotBlank(String str) {
-        return str != null && !str.isBlank();
+    private Response readRecipe(Long id, String ifNoneMatch, Request request) {
+        MediaType mediaType = RecipeMediaTypes.select(request);
+        if(ifNoneMatch != null) {
+            EntityTag etag = toEntityTag(String.valueOf(recipeRepository.getRecipeVersion(id).orElseThrow(NotFoundException::new)), mediaType);
+
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if(notModified != null) {
+                return notModified.tag(etag).build();
+            }
+        }
+
+        return toResponse(findRecipe(id), mediaType);
+    }
+
+    private Recipe applyPatch(Long id, Recipe patch) {
+        return recipeRepository.patchRecipe(id, patch).orElseThrow(NotFoundException::new);
+    }
+
+    private Response removeRecipe(Long id) {
+        if(!recipeRepository.deleteRecipe(id)) {
+            throw new NotFoundException();
+        }
+
+        return Response.noContent().build();
     }
 
-    private Recipe getUpdatedRecipe(Recipe existingRecipe, Recipe recipe) {
-        Recipe r = new Recipe();
+    private Recipe findRecipe(Long id) {
+        Optional<Recipe> recipeById = recipeRepository.getRecipeById(id);
 
-        String recipeName = isNotNullAndNotBlank(recipe.getName()) ?
-                recipe.getName() :
-                existingRecipe.getName();
+        if(recipeById.isEmpty()) {
+            throw new NotFoundException();
+        }
 
-        String recipeDescription = isNotNullAndNotBlank(recipe.getDescription()) ?
-                recipe.getDescription() :
-                existingRecipe.getDescription();
+        return recipeById.get();
+    }
 
-        Long durationInMinutes = recipe.getDurationInMinutes() != null ?
-                recipe.getDurationInMinutes() :
-                existingRecipe.getDurationInMinutes();
+    private static Response toResponse(Recipe recipe, MediaType mediaType) {
+        Response.ResponseBuilder response = Response.ok(recipe, mediaType);
+        if(recipe.getVersion() != null) {
+            response.tag(toEntityTag(String.valueOf(recipe.getVersion()), mediaType));
+        }
+        return response.build();
+    }
+
+    private static Recipe toValidPatch(Recipe recipe) {
+        if(recipe == null) {
+            throw new BadRequestException();
+        }
 
-        r.setName(recipeName);
-        r.setDescription(recipeDescription);
-        r.setDurationInMinutes(durationInMinutes);
+        Recipe patch = Recipe.asPatch(recipe);
+        if(!Recipe.isValidPatch(patch)) {
+            throw new BadRequestException();
+        }
+        return patch;
+    }
 
-        return r;
+    // Strong tags have to differ between representations, so Smile bodies get their own. CompressionFilter
+    // weakens the tag of the bodies it compresses.
+    private static EntityTag toEntityTag(String value, MediaType mediaType) {
+        return new EntityTag(RecipeMediaTypes.isSmile(mediaType) ? value + "-smile" : value);
     }
 }
@@ -4,35 +4,118 @@ import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
-import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import org.olivetree.recipes.domain.Recipe;
 import org.olivetree.recipes.domain.RecipeSearch;
 import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.search.SearchResultCache;
 
 import java.util.List;
+import java.util.stream.LongStream;
 
 @Path("search/recipe")
 public class RecipeSearchResource {
     private final RecipeRepository recipeRepository;
+    private final RepositoryExecutor repositoryExecutor;
+    private final SearchResultCache searchCache;
 
-    public RecipeSearchResource(RecipeRepository recipeRepository) {
+    // searchCache may be null, unpaged searches are then always run against the repository
+    public RecipeSearchResource(RecipeRepository recipeRepository, RepositoryExecutor repositoryExecutor,
+                                SearchResultCache searchCache) {
         this.recipeRepository = recipeRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.searchCache = searchCache;
     }
 
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
-    public Response searchForRecipes(RecipeSearch recipeSearch) {
-        List<Recipe> recipes = recipeRepository.findRecipes(recipeSearch);
+    @Produces({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, RecipeMediaTypes.SMILE})
+    public void searchForRecipes(RecipeSearch recipeSearch,
+                                 @QueryParam(Pagination.LIMIT_PARAM) Integer limit,
+                                 @QueryParam(Pagination.AFTER_PARAM) String after,
+                                 @QueryParam(ListingOptions.SORT_PARAM) String sort,
+                                 @QueryParam(ListingOptions.FIELDS_PARAM) String fields,
+                                 @Context UriInfo uriInfo,
+                                 @Context Request request,
+                                 @Suspended AsyncResponse asyncResponse) {
+        MediaType mediaType = RecipeMediaTypes.select(request);
+        ListingOptions options = ListingOptions.parse(sort, fields);
+        Recipe cursor = options.parseCursor(after);
+
+        // Only JSON responses in the default order and shape are cached. Cached results do not need the
+        // repository, so they are answered on the HTTP worker.
+        boolean cacheable = searchCache != null && !Pagination.isPaged(limit, after) && options.isDefault()
+                && !RecipeMediaTypes.isSmile(mediaType);
+        byte[] cached = cacheable ? searchCache.get(recipeSearch) : null;
+        if(cached != null) {
+            asyncResponse.resume(cached.length == 0 ? notFound() : Response.ok(cached, mediaType).build());
+            return;
+        }
+
+        repositoryExecutor.submit(asyncResponse, () -> findRecipes(recipeSearch, limit, cursor, options, uriInfo, mediaType, cacheable));
+    }
+
+    private Response findRecipes(RecipeSearch recipeSearch, Integer limit, Recipe after, ListingOptions options,
+                                 UriInfo uriInfo, MediaType mediaType, boolean cacheable) {
+        if(!Pagination.isPaged(limit, after)) {
+            return cacheable ? searchCached(recipeSearch, mediaType) : search(recipeSearch, options, mediaType);
+        }
+
+        int pageSize = Pagination.getPageSize(limit);
+        if(!options.isDefault()) {
+            List<?> recipes = options.find(recipeRepository, recipeSearch, after, pageSize + 1);
+            return recipes.isEmpty() ? notFound() : options.toPage(recipes, pageSize, uriInfo, mediaType).build();
+        }
+
+        List<Recipe> recipes = recipeRepository.findRecipes(recipeSearch, after == null ? null : after.getId(), pageSize + 1);
 
         if(recipes == null || recipes.isEmpty()) {
-            return Response
-                    .status(Response.Status.NOT_FOUND)
-                    .build();
+            return notFound();
         }
 
-        return Response.ok().entity(new GenericEntity<>(recipes) {}).build();
+        return Pagination.toPage(recipes, pageSize, uriInfo).build();
+    }
+
+    private Response search(RecipeSearch recipeSearch, ListingOptions options, MediaType mediaType) {
+        RecipeJsonStream recipes = options.isDefault() ?
+                RecipeJsonStream.of(recipeRepository.streamRecipes(recipeSearch), mediaType) :
+                options.stream(recipeRepository, recipeSearch, mediaType);
+
+        if(recipes.isEmpty()) {
+            recipes.close();
+            return notFound();
+        }
+
+        return Response.ok(recipes, mediaType).build();
+    }
+
+    // Runs a search that missed the cache and fills it with the response
+    private Response searchCached(RecipeSearch recipeSearch, MediaType mediaType) {
+        long generation = searchCache.generation();
+        // Collected while the response is written, so writes can evict the entry by recipe id
+        LongStream.Builder ids = LongStream.builder();
+        RecipeJsonStream recipes = RecipeJsonStream.of(recipeRepository.streamRecipes(recipeSearch)
+                .peek(recipe -> ids.add(recipe.getId())));
+
+        if(recipes.isEmpty()) {
+            recipes.close();
+            searchCache.put(recipeSearch, SearchResultCache.NO_RESULTS, new long[0], generation);
+            return notFound();
+        }
+
+        return Response.ok(searchCache.fillWhileWriting(recipeSearch, generation, recipes, () -> ids.build().toArray()), mediaType).build();
+    }
+
+    private static Response notFound() {
+        return Response
+                .status(Response.Status.NOT_FOUND)
+                .build();
     }
 }
@@ -1,9 +1,26 @@
 package org.olivetree.recipes.server;
 
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.filter.HttpMethodOverrideFilter;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
 import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.changes.ChangeFeed;
+import org.olivetree.recipes.server.changes.ChangeFeedConfig;
+import org.olivetree.recipes.server.changes.ChangePublishingRecipeRepository;
+import org.olivetree.recipes.server.changes.ChangeSubscribers;
+import org.olivetree.recipes.server.changes.RecipeChangesResource;
+import org.olivetree.recipes.server.compression.CompressionFilter;
+import org.olivetree.recipes.server.metrics.MetricsFeature;
+import org.olivetree.recipes.server.metrics.MetricsRegistry;
+import org.olivetree.recipes.server.metrics.MetricsResource;
+import org.olivetree.recipes.server.metrics.TimedRecipeRepository;
+import org.olivetree.recipes.server.search.SearchCacheInvalidatingRecipeRepository;
+import org.olivetree.recipes.server.search.SearchResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
@@ -12,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.LogManager;
 
 public class RecipeServer {
@@ -23,32 +41,145 @@ public class RecipeServer {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecipeServer.class);
     public static final String BASE_URI = "http://localhost:8080";
+    // Header read by HttpMethodOverrideFilter
+    public static final String METHOD_OVERRIDE_HEADER = "X-HTTP-Method-Override";
 
     public static void main(String[] args) throws IOException {
-        String databaseFilename = loadDatabaseFilename();
+        Properties properties = loadProperties();
+        String databaseFilename = properties.getProperty("recipes.database");
+        ServerConfig serverConfig = ServerConfig.fromProperties(properties);
 
-        LOG.info("Starting HTTP server with database {}", databaseFilename);
+        LOG.info("Starting HTTP server with database {} on {} threads", databaseFilename, serverConfig.executionMode());
 
-        RecipeRepository recipeRepository = RecipeRepository.openRecipeRepository(databaseFilename);
+        RecipeRepository recipeRepository = RecipeRepository.openRecipeRepository(databaseFilename, properties);
 
-        createHttpServer(recipeRepository);
+        createHttpServer(recipeRepository, serverConfig);
     }
 
     // Also used for test purposes
     public static HttpServer createHttpServer(RecipeRepository recipeRepository) {
+        return createHttpServer(recipeRepository, ServerConfig.defaults());
+    }
+
+    public static HttpServer createHttpServer(RecipeRepository recipeRepository, ExecutionMode executionMode) {
+        return createHttpServer(recipeRepository, new ServerConfig(executionMode, RepositoryExecutorConfig.defaults(), null, null,
+                ChangeFeedConfig.defaults()));
+    }
+
+    public static HttpServer createHttpServer(RecipeRepository recipeRepository, ServerConfig serverConfig) {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        RecipeRepository resourceRepository = new TimedRecipeRepository(recipeRepository, metricsRegistry);
+
+        SearchResultCache searchCache = null;
+        if(serverConfig.searchCache() != null) {
+            searchCache = new SearchResultCache(serverConfig.searchCache());
+            resourceRepository = new SearchCacheInvalidatingRecipeRepository(resourceRepository, searchCache);
+            registerSearchCacheMetrics(metricsRegistry, searchCache);
+        }
+
+        ChangeFeed changeFeed = serverConfig.changeFeed() != null ? new ChangeFeed(serverConfig.changeFeed().capacity()) : null;
+        ChangeSubscribers changeSubscribers = changeFeed != null ? new ChangeSubscribers(changeFeed, serverConfig.changeFeed(),
+                serverConfig.executionMode().createThreadFactory("recipes-changes-")) : null;
+        if(changeFeed != null) {
+            // Outermost, so changes are published after the search cache dropped what they affected
+            resourceRepository = new ChangePublishingRecipeRepository(resourceRepository, changeFeed);
+            registerChangeFeedMetrics(metricsRegistry, changeFeed, changeSubscribers);
+        }
+
+        RepositoryExecutor repositoryExecutor = new RepositoryExecutor(serverConfig.repositoryExecutor(), serverConfig.executionMode());
+        registerRepositoryExecutorMetrics(metricsRegistry, repositoryExecutor);
+
         ResourceConfig config = new ResourceConfig()
-                .register(new RecipeResource(recipeRepository))
-                .register(new RecipeSearchResource(recipeRepository));
+                .register(new RecipeResource(resourceRepository, repositoryExecutor))
+                .register(new RecipeSearchResource(resourceRepository, repositoryExecutor, searchCache))
+                .register(new MetricsResource(metricsRegistry))
+                .register(new MetricsFeature(metricsRegistry))
+                .register(RepositoryExceptionMapper.class)
+                .register(JacksonSmileProvider.class)
+                // Lets clients whose HTTP stack has no PATCH send it as a POST with X-HTTP-Method-Override
+                .register(HttpMethodOverrideFilter.class)
+                .register(new AbstractContainerLifecycleListener() {
+                    @Override
+                    public void onShutdown(Container container) {
+                        repositoryExecutor.close();
+                        if(changeSubscribers != null) {
+                            changeSubscribers.close();
+                        }
+                    }
+                });
+
+        if(changeSubscribers != null) {
+            config.register(new RecipeChangesResource(changeSubscribers));
+        }
+
+        if(serverConfig.compression() != null) {
+            config.register(new CompressionFilter(serverConfig.compression()));
+        }
+
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), config, false);
+        // DELETE /recipes/batch carries the ids in its body, which Grizzly refuses for DELETE by default
+        server.getServerConfiguration().setAllowPayloadForUndefinedHttpMethods(true);
+
+        // Grizzly runs the Jersey container on the transport worker pool
+        ExecutorService workerPool = serverConfig.executionMode().createWorkerPool();
+        if(workerPool != null) {
+            for(NetworkListener listener : server.getListeners()) {
+                listener.getTransport().setWorkerThreadPool(workerPool);
+            }
+        }
+
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the HTTP server on " + BASE_URI, e);
+        }
+
+        return server;
+    }
+
+    private static void registerRepositoryExecutorMetrics(MetricsRegistry metricsRegistry, RepositoryExecutor repositoryExecutor) {
+        metricsRegistry.registerSummary("recipes_repository_queue_wait_seconds", "Time requests waited for a repository thread",
+                repositoryExecutor.getQueueWait());
+        metricsRegistry.registerGauge("recipes_repository_queue_depth", "Requests waiting for a repository thread",
+                repositoryExecutor::getQueueDepth);
+        metricsRegistry.registerGauge("recipes_repository_active_threads", "Repository threads running a request",
+                repositoryExecutor::getActiveThreads);
+        metricsRegistry.registerCounter("recipes_repository_rejected_total", "Requests refused because the queue was full",
+                repositoryExecutor::getRejected);
+        metricsRegistry.registerCounter("recipes_repository_expired_total", "Requests refused after waiting too long in the queue",
+                repositoryExecutor::getExpired);
+    }
+
+    private static void registerChangeFeedMetrics(MetricsRegistry metricsRegistry, ChangeFeed changeFeed, ChangeSubscribers changeSubscribers) {
+        metricsRegistry.registerCounter("recipes_changes_published_total", "Recipe changes published to the change feed",
+                changeFeed::getLastSequence);
+        metricsRegistry.registerGauge("recipes_changes_subscribers", "Open change streams",
+                changeSubscribers::getSubscribers);
+        metricsRegistry.registerCounter("recipes_changes_disconnected_total", "Change streams closed because they fell behind the feed",
+                changeSubscribers::getDisconnected);
+    }
 
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), config);
+    private static void registerSearchCacheMetrics(MetricsRegistry metricsRegistry, SearchResultCache searchCache) {
+        metricsRegistry.registerCounter("recipes_search_cache_hits_total", "Searches answered from the cache",
+                () -> searchCache.getStats().hits());
+        metricsRegistry.registerCounter("recipes_search_cache_misses_total", "Searches that ran against the repository",
+                () -> searchCache.getStats().misses());
+        metricsRegistry.registerCounter("recipes_search_cache_evictions_total", "Results evicted by the memory bound",
+                () -> searchCache.getStats().evictions());
+        metricsRegistry.registerCounter("recipes_search_cache_invalidations_total", "Results evicted by writes",
+                () -> searchCache.getStats().invalidations());
+        metricsRegistry.registerGauge("recipes_search_cache_bytes", "Size of the cached responses",
+                () -> searchCache.getStats().bytes());
+        metricsRegistry.registerGauge("recipes_search_cache_hit_ratio", "Share of searches answered from the cache",
+                () -> searchCache.getStats().hitRate());
     }
 
-    private static String loadDatabaseFilename() {
+    private static Properties loadProperties() {
         try(InputStream propertiesStream = RecipeServer.class.getResourceAsStream("/server.properties")) {
             Properties properties = new Properties();
             properties.load(propertiesStream);
 
-            return properties.getProperty("recipes.database");
+            return properties;
         } catch (IOException e) {
             throw new IllegalStateException("Could not load database file");
         }
@@ -0,0 +1,21 @@
+package org.olivetree.recipes.server;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Repository failures become a plain 500. Mapping them, instead of letting them escape to Grizzly, keeps
+// them inside Jersey so response filters (metrics) still see the request.
+public class RepositoryExceptionMapper implements ExceptionMapper<RepositoryException> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepositoryExceptionMapper.class);
+
+    @Override
+    public Response toResponse(RepositoryException exception) {
+        LOG.error("Repository call failed", exception);
+
+        return Response.serverError().build();
+    }
+}
@@ -0,0 +1,99 @@
+package org.olivetree.recipes.server;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.olivetree.recipes.server.metrics.LatencyHistogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Runs the repository work of suspended requests on a bounded pool, so a slow query ties up one of these
+// threads instead of an HTTP worker. Under overload requests are shed instead of piling up: when the queue
+// is full they are refused right away, and when they waited in the queue longer than maxQueueWait their
+// client has likely given up, so they are refused instead of run. Both answer 503 with Retry-After.
+//
+// The response is written by the pool thread that resumed it, which keeps streamed results on the thread
+// holding their database cursor.
+public class RepositoryExecutor implements AutoCloseable {
+    private final RepositoryExecutorConfig config;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public RepositoryExecutor(RepositoryExecutorConfig config, ExecutionMode executionMode) {
+        this.config = config;
+        this.executor = new ThreadPoolExecutor(config.threads(), config.threads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.queueCapacity()), executionMode.createThreadFactory("recipes-repository-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueWaitNanos = config.maxQueueWait().toNanos();
+    }
+
+    // Resumes asyncResponse with the response built by work, or with whatever it threw so that it goes through
+    // the exception mappers. Errors are caught too, no suspend timeout is set and the client would wait forever.
+    public void submit(AsyncResponse asyncResponse, Supplier<Response> work) {
+        long queuedAt = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                queueWait.record(waited);
+
+                if(waited > maxQueueWaitNanos) {
+                    expired.increment();
+                    asyncResponse.resume(unavailable());
+                    return;
+                }
+
+                try {
+                    asyncResponse.resume(work.get());
+                } catch (Throwable e) {
+                    asyncResponse.resume(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            asyncResponse.resume(unavailable());
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    // Refused because the queue was full
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // Refused because they waited longer than maxQueueWait
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private Response unavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, config.retryAfterSeconds())
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package org.olivetree.recipes.server;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+// threads run repository work, at most queueCapacity requests wait for them. Requests that waited longer
+// than maxQueueWait are answered 503 without running, and every 503 asks clients to retry after
+// retryAfterSeconds.
+public record RepositoryExecutorConfig(int threads, int queueCapacity, Duration maxQueueWait, int retryAfterSeconds) {
+
+    public static final String THREADS_PROPERTY = "recipes.server.executor.threads";
+    public static final String QUEUE_CAPACITY_PROPERTY = "recipes.server.executor.queueCapacity";
+    public static final String MAX_QUEUE_WAIT_PROPERTY = "recipes.server.executor.maxQueueWaitMillis";
+    public static final String RETRY_AFTER_PROPERTY = "recipes.server.executor.retryAfterSeconds";
+
+    public RepositoryExecutorConfig {
+        if(threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid repository executor: threads=" + threads + ", queueCapacity=" + queueCapacity);
+        }
+        if(retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("Invalid Retry-After: " + retryAfterSeconds);
+        }
+    }
+
+    public static RepositoryExecutorConfig defaults() {
+        return new RepositoryExecutorConfig(16, 256, Duration.ofSeconds(5), 1);
+    }
+
+    public static RepositoryExecutorConfig fromProperties(Properties properties) {
+        RepositoryExecutorConfig defaults = defaults();
+
+        return new RepositoryExecutorConfig(
+                getInt(properties, THREADS_PROPERTY, defaults.threads()),
+                getInt(properties, QUEUE_CAPACITY_PROPERTY, defaults.queueCapacity()),
+                Duration.ofMillis(getLong(properties, MAX_QUEUE_WAIT_PROPERTY, defaults.maxQueueWait().toMillis())),
+                getInt(properties, RETRY_AFTER_PROPERTY, defaults.retryAfterSeconds()));
+    }
+}
@@ -0,0 +1,26 @@
+package org.olivetree.recipes.server;
+
+import org.olivetree.recipes.server.changes.ChangeFeedConfig;
+import org.olivetree.recipes.server.compression.CompressionConfig;
+import org.olivetree.recipes.server.search.SearchCacheConfig;
+
+import java.util.Properties;
+
+// searchCache, compression and changeFeed are null when the search result cache, response compression and
+// the change feed are disabled
+public record ServerConfig(ExecutionMode executionMode, RepositoryExecutorConfig repositoryExecutor,
+                           SearchCacheConfig searchCache, CompressionConfig compression, ChangeFeedConfig changeFeed) {
+
+    public static ServerConfig defaults() {
+        return new ServerConfig(ExecutionMode.PLATFORM, RepositoryExecutorConfig.defaults(), null, null, ChangeFeedConfig.defaults());
+    }
+
+    public static ServerConfig fromProperties(Properties properties) {
+        return new ServerConfig(
+                ExecutionMode.fromProperties(properties),
+                RepositoryExecutorConfig.fromProperties(properties),
+                SearchCacheConfig.isEnabled(properties) ? SearchCacheConfig.fromProperties(properties) : null,
+                CompressionConfig.isEnabled(properties) ? CompressionConfig.fromProperties(properties) : null,
+                ChangeFeedConfig.isEnabled(properties) ? ChangeFeedConfig.fromProperties(properties) : null);
+    }
+}
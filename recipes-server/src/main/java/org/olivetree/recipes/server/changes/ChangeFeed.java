@@ -0,0 +1,82 @@
+package org.olivetree.recipes.server.changes;
+
+import org.olivetree.recipes.domain.Recipe;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ring buffer of the latest recipe changes. Every change gets the next sequence number and overwrites the
+// oldest one once the ring is full, so publishing never waits for subscribers. Each subscriber keeps its own
+// position and reads the changes after it; a subscriber whose next change was already overwritten has
+// missed changes and has to reload.
+//
+// A lock instead of synchronized, so subscribers waiting on virtual threads do not pin their carrier.
+public class ChangeFeed {
+    private final RecipeChange[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    // Sequence of the latest change, the first one is 1
+    private long lastSequence;
+
+    public ChangeFeed(int capacity) {
+        this.ring = new RecipeChange[capacity];
+    }
+
+    public void publish(RecipeChange.Type type, long recipeId, Recipe recipe) {
+        lock.lock();
+        try {
+            lastSequence++;
+            ring[(int) (lastSequence % ring.length)] = new RecipeChange(lastSequence, type, recipeId, recipe);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Whether the changes after sequence are all still in the ring
+    public boolean isAvailable(long sequence) {
+        lock.lock();
+        try {
+            return sequence >= 0 && sequence <= lastSequence && lastSequence - sequence <= ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The changes after sequence, waiting up to timeout for one to be published. Empty when none was, null
+    // when some of them were already overwritten.
+    public List<RecipeChange> awaitAfter(long sequence, Duration timeout) throws InterruptedException {
+        long remainingNanos = timeout.toNanos();
+
+        lock.lock();
+        try {
+            while(lastSequence == sequence && remainingNanos > 0) {
+                remainingNanos = published.awaitNanos(remainingNanos);
+            }
+            if(lastSequence - sequence > ring.length) {
+                return null;
+            }
+
+            List<RecipeChange> changes = new ArrayList<>((int) (lastSequence - sequence));
+            for(long next = sequence + 1; next <= lastSequence; next++) {
+                changes.add(ring[(int) (next % ring.length)]);
+            }
+
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
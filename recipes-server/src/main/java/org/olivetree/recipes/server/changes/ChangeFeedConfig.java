@@ -0,0 +1,43 @@
+package org.olivetree.recipes.server.changes;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+// capacity is how many of the latest changes are kept for subscribers that fall behind or resume with
+// Last-Event-ID, at most maxSubscribers streams are open at a time, and idle streams get a comment every
+// heartbeatInterval so proxies keep them open and dead clients are noticed.
+public record ChangeFeedConfig(int capacity, int maxSubscribers, Duration heartbeatInterval) {
+
+    public static final String ENABLED_PROPERTY = "recipes.server.changes.enabled";
+    public static final String CAPACITY_PROPERTY = "recipes.server.changes.capacity";
+    public static final String MAX_SUBSCRIBERS_PROPERTY = "recipes.server.changes.maxSubscribers";
+    public static final String HEARTBEAT_INTERVAL_PROPERTY = "recipes.server.changes.heartbeatIntervalMillis";
+
+    public ChangeFeedConfig {
+        if(capacity < 1 || maxSubscribers < 1) {
+            throw new IllegalArgumentException("Invalid change feed: capacity=" + capacity + ", maxSubscribers=" + maxSubscribers);
+        }
+        if(heartbeatInterval.isNegative() || heartbeatInterval.isZero()) {
+            throw new IllegalArgumentException("Invalid change feed heartbeat: " + heartbeatInterval);
+        }
+    }
+
+    public static ChangeFeedConfig defaults() {
+        return new ChangeFeedConfig(4096, 64, Duration.ofSeconds(15));
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, true);
+    }
+
+    public static ChangeFeedConfig fromProperties(Properties properties) {
+        ChangeFeedConfig defaults = defaults();
+
+        return new ChangeFeedConfig(
+                getInt(properties, CAPACITY_PROPERTY, defaults.capacity()),
+                getInt(properties, MAX_SUBSCRIBERS_PROPERTY, defaults.maxSubscribers()),
+                Duration.ofMillis(getLong(properties, HEARTBEAT_INTERVAL_PROPERTY, defaults.heartbeatInterval().toMillis())));
+    }
+}
@@ -0,0 +1,192 @@
+package org.olivetree.recipes.server.changes;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.IdLocks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.olivetree.recipes.server.changes.RecipeChange.Type.*;
+
+// Publishes the writes that went through to the change feed before they return. Writes to a recipe and
+// publishing them happen under the lock of its id, so the changes of one recipe are published in the order they
+// were applied. Writes made by other processes are not published.
+public class ChangePublishingRecipeRepository implements RecipeRepository {
+    private final RecipeRepository recipeRepository;
+    private final ChangeFeed feed;
+    private final IdLocks idLocks = new IdLocks();
+
+    public ChangePublishingRecipeRepository(RecipeRepository recipeRepository, ChangeFeed feed) {
+        this.recipeRepository = recipeRepository;
+        this.feed = feed;
+    }
+
+    // The id of a new recipe is unknown until it is created, and nothing else can write it before then
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        Recipe created = recipeRepository.createRecipe(recipe);
+        feed.publish(CREATED, created.getId(), created);
+
+        return created;
+    }
+
+    // The recipes committed before a failing chunk have an id and are published all the same
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        try {
+            return recipeRepository.createRecipes(recipes);
+        } finally {
+            for(Recipe recipe : recipes) {
+                if(recipe.getId() != null) {
+                    feed.publish(CREATED, recipe.getId(), recipe);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        try(IdLocks.Held held = idLocks.lock(id)) {
+            Optional<Recipe> updated = recipeRepository.updateRecipe(id, recipe);
+            updated.ifPresent(stored -> feed.publish(UPDATED, id, stored));
+
+            return updated;
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        try(IdLocks.Held held = idLocks.lock(id)) {
+            Optional<Recipe> patched = recipeRepository.patchRecipe(id, recipe);
+            patched.ifPresent(stored -> feed.publish(UPDATED, id, stored));
+
+            return patched;
+        }
+    }
+
+    // Only the number of updated rows is reported, so they are read back, still under their locks, to
+    // publish them as stored
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        try(IdLocks.Held held = idLocks.lockAll(recipes.keySet())) {
+            int updated = recipeRepository.updateRecipes(recipes);
+            if(updated > 0) {
+                for(Recipe recipe : recipeRepository.getRecipesByIds(recipes.keySet())) {
+                    feed.publish(UPDATED, recipe.getId(), recipe);
+                }
+            }
+
+            return updated;
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        try(IdLocks.Held held = idLocks.lock(id)) {
+            boolean deleted = recipeRepository.deleteRecipe(id);
+            if(deleted) {
+                feed.publish(DELETED, id, null);
+            }
+
+            return deleted;
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        try(IdLocks.Held held = idLocks.lockAll(ids)) {
+            List<Long> deletedIds = recipeRepository.deleteRecipes(ids);
+            deletedIds.forEach(id -> feed.publish(DELETED, id, null));
+
+            return deletedIds;
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return recipeRepository.getAllRecipes();
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return recipeRepository.getRecipesAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return recipeRepository.getRecipeById(id);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return recipeRepository.getRecipesByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return recipeRepository.getRecipeVersion(id);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return recipeRepository.getChangeCount();
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return recipeRepository.getChangesSince(since, limit);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.findRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, afterId, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return recipeRepository.streamAllRecipes();
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.streamRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipes(recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+}
@@ -0,0 +1,159 @@
+package org.olivetree.recipes.server.changes;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.olivetree.recipes.domain.Recipe;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Streams the change feed to SSE subscribers, each on its own thread that reads the ring from its position
+// and writes the events with blocking writes. A client that reads slowly therefore only slows down its own
+// thread, which catches up from the ring once the writes go through. A client that falls further behind than
+// the ring holds gets a reset event and is disconnected.
+//
+// Event ids are the feed's start time and the change sequence, so that an id kept across a server restart
+// is not mistaken for a position in the new feed. A reset event carries the id to resume from after
+// reloading the recipes, which is also the id EventSource clients reconnect with.
+public class ChangeSubscribers implements AutoCloseable {
+    public static final String RESET_EVENT = "reset";
+
+    private final ChangeFeed feed;
+    private final ChangeFeedConfig config;
+    private final ExecutorService executor;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final LongAdder disconnected = new LongAdder();
+    private volatile boolean closed;
+
+    public ChangeSubscribers(ChangeFeed feed, ChangeFeedConfig config, ThreadFactory threadFactory) {
+        this.feed = feed;
+        this.config = config;
+        // Bounded by maxSubscribers
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    // Starts streaming the changes after lastEventId, or the ones from now on without it. Returns false when
+    // maxSubscribers streams are already open.
+    public boolean subscribe(String lastEventId, SseEventSink sink, Sse sse) {
+        if(closed || subscribers.incrementAndGet() > config.maxSubscribers()) {
+            subscribers.decrementAndGet();
+            return false;
+        }
+
+        long lastSequence = feed.getLastSequence();
+        long resumed = lastEventId == null ? lastSequence : sequenceOf(lastEventId);
+        boolean available = feed.isAvailable(resumed);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    stream(available ? resumed : lastSequence, !available, sink, sse);
+                } finally {
+                    subscribers.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            subscribers.decrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    public int getSubscribers() {
+        return subscribers.get();
+    }
+
+    // Subscribers that fell behind the ring
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    private void stream(long position, boolean reset, SseEventSink sink, Sse sse) {
+        try(sink) {
+            if(reset) {
+                send(sink, resetEvent(sse, position));
+            }
+
+            while(!closed && !sink.isClosed()) {
+                List<RecipeChange> changes = feed.awaitAfter(position, config.heartbeatInterval());
+                if(changes == null) {
+                    disconnected.increment();
+                    send(sink, resetEvent(sse, feed.getLastSequence()));
+                    return;
+                }
+                if(changes.isEmpty()) {
+                    send(sink, sse.newEventBuilder().comment("heartbeat").build());
+                }
+
+                for(RecipeChange change : changes) {
+                    send(sink, toEvent(sse, change));
+                    position = change.sequence();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException | IllegalStateException e) {
+            // The client went away
+        }
+    }
+
+    private static void send(SseEventSink sink, OutboundSseEvent event) {
+        sink.send(event).toCompletableFuture().join();
+    }
+
+    private OutboundSseEvent toEvent(Sse sse, RecipeChange change) {
+        OutboundSseEvent.Builder event = sse.newEventBuilder()
+                .id(eventId(change.sequence()))
+                .name(change.type().name().toLowerCase(Locale.ROOT))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE);
+
+        return change.recipe() != null ?
+                event.data(Recipe.class, change.recipe()).build() :
+                event.data(Map.class, Map.of("id", change.recipeId())).build();
+    }
+
+    private OutboundSseEvent resetEvent(Sse sse, long position) {
+        return sse.newEventBuilder()
+                .id(eventId(position))
+                .name(RESET_EVENT)
+                .data("Changes were missed, reload the recipes")
+                .build();
+    }
+
+    private String eventId(long sequence) {
+        return epoch + ":" + sequence;
+    }
+
+    // -1 for ids of another feed or malformed ones, which the feed never has
+    private long sequenceOf(String eventId) {
+        int separator = eventId.indexOf(':');
+        if(separator < 0 || !eventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
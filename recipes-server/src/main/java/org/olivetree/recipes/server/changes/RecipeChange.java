@@ -0,0 +1,11 @@
+package org.olivetree.recipes.server.changes;
+
+import org.olivetree.recipes.domain.Recipe;
+
+// recipe is the recipe as stored after the write, null for deletes
+public record RecipeChange(long sequence, Type type, long recipeId, Recipe recipe) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
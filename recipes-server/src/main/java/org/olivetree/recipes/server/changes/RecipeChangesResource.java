@@ -0,0 +1,33 @@
+package org.olivetree.recipes.server.changes;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+// Server-sent events of every recipe created, updated or deleted through the REST API. Clients resume with
+// Last-Event-ID after a disconnect, which EventSource does on its own.
+@Path("/recipes/changes")
+public class RecipeChangesResource {
+    private final ChangeSubscribers changeSubscribers;
+
+    public RecipeChangesResource(ChangeSubscribers changeSubscribers) {
+        this.changeSubscribers = changeSubscribers;
+    }
+
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamChanges(@HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+                              @Context SseEventSink sink,
+                              @Context Sse sse) {
+        if(!changeSubscribers.subscribe(lastEventId, sink, sse)) {
+            throw new ServiceUnavailableException("Too many change subscribers");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.olivetree.recipes.server.compression;
+
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+// Response bodies shorter than minimumBytes are sent uncompressed, the encoding overhead is not worth it
+public record CompressionConfig(int minimumBytes) {
+
+    public static final String ENABLED_PROPERTY = "recipes.server.compression.enabled";
+    public static final String MINIMUM_BYTES_PROPERTY = "recipes.server.compression.minimumBytes";
+
+    public CompressionConfig {
+        if(minimumBytes < 0) {
+            throw new IllegalArgumentException("Invalid compression threshold: " + minimumBytes);
+        }
+    }
+
+    public static CompressionConfig defaults() {
+        return new CompressionConfig(1024);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static CompressionConfig fromProperties(Properties properties) {
+        return new CompressionConfig(getInt(properties, MINIMUM_BYTES_PROPERTY, defaults().minimumBytes()));
+    }
+}
@@ -0,0 +1,232 @@
+package org.olivetree.recipes.server.compression;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Negotiates gzip or deflate from Accept-Encoding and compresses response bodies of at least minimumBytes.
+// Most bodies are streamed, so their size is not known up front: the first minimumBytes are held back, a
+// body that ends within them goes out as is, and a longer one switches to the compressed encoding before
+// anything reached the connection, which is when the headers are still open.
+//
+// Jersey's EncodingFilter compresses every body regardless of its size, which makes small responses
+// larger than they were.
+//
+// A strong ETag must not be shared by the identity and the compressed body, so a compressed body gets the
+// weak form of its tag. Conditional GETs compare tags weakly and still match it.
+//
+// Event streams and other chunked outputs are left alone: each chunk is written after the headers went out,
+// so a stream that grows past minimumBytes could no longer announce its Content-Encoding.
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionFilter implements ContainerResponseFilter, WriterInterceptor {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final String ENCODING_PROPERTY = CompressionFilter.class.getName() + ".encoding";
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final int minimumBytes;
+
+    public CompressionFilter(CompressionConfig config) {
+        this.minimumBytes = config.minimumBytes();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if(!responseContext.hasEntity() || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+                || isStreamed(responseContext)) {
+            return;
+        }
+
+        responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        String encoding = negotiate(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if(encoding != null) {
+            requestContext.setProperty(ENCODING_PROPERTY, encoding);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object encoding = context.getProperty(ENCODING_PROPERTY);
+        if(encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        CompressingOutputStream output = new CompressingOutputStream(context.getOutputStream(), (String) encoding,
+                context.getHeaders(), minimumBytes);
+        context.setOutputStream(output);
+
+        context.proceed();
+        output.finish();
+    }
+
+    private static boolean isStreamed(ContainerResponseContext responseContext) {
+        MediaType mediaType = responseContext.getMediaType();
+        return responseContext.getEntity() instanceof ChunkedOutput
+                || mediaType != null && mediaType.isCompatible(MediaType.SERVER_SENT_EVENTS_TYPE);
+    }
+
+    // The supported coding with the highest quality, gzip on a tie, or null when the client accepts neither
+    static String negotiate(String acceptEncoding) {
+        if(acceptEncoding == null) {
+            return null;
+        }
+
+        double gzip = 0;
+        double deflate = 0;
+        double any = 0;
+        boolean gzipListed = false;
+        boolean deflateListed = false;
+
+        for(String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = qualityOf(parts);
+
+            switch(name) {
+                case GZIP, "x-gzip" -> {
+                    gzip = quality;
+                    gzipListed = true;
+                }
+                case DEFLATE -> {
+                    deflate = quality;
+                    deflateListed = true;
+                }
+                case "*" -> any = quality;
+                default -> {
+                }
+            }
+        }
+
+        // Codings that are not listed get the quality of *
+        gzip = gzipListed ? gzip : any;
+        deflate = deflateListed ? deflate : any;
+
+        if(gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static double qualityOf(String[] parameters) {
+        for(int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if(parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static final class CompressingOutputStream extends OutputStream {
+        private final OutputStream output;
+        private final String encoding;
+        private final MultivaluedMap<String, Object> headers;
+
+        private byte[] held;
+        private int heldCount;
+        private OutputStream compressed;
+        private boolean finished;
+
+        CompressingOutputStream(OutputStream output, String encoding, MultivaluedMap<String, Object> headers, int minimumBytes) {
+            this.output = output;
+            this.encoding = encoding;
+            this.headers = headers;
+            this.held = new byte[minimumBytes];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if(compressed == null) {
+                if(heldCount + length < held.length) {
+                    System.arraycopy(bytes, offset, held, heldCount, length);
+                    heldCount += length;
+                    return;
+                }
+                startCompressing();
+            }
+
+            compressed.write(bytes, offset, length);
+        }
+
+        // Held back bytes are not flushed, they may still end up uncompressed
+        @Override
+        public void flush() throws IOException {
+            if(compressed != null) {
+                compressed.flush();
+            }
+        }
+
+        // Entity writers may close the stream before the interceptor finishes it
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void finish() throws IOException {
+            if(finished) {
+                return;
+            }
+            finished = true;
+
+            if(compressed == null) {
+                output.write(held, 0, heldCount);
+            } else {
+                compressed.close();
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            weakenEntityTag();
+
+            // Sync flushes keep streamed responses moving
+            compressed = GZIP.equals(encoding) ?
+                    new GZIPOutputStream(output, GZIP_BUFFER_SIZE, true) :
+                    new DeflaterOutputStream(output, true);
+            compressed.write(held, 0, heldCount);
+            held = null;
+        }
+
+        private void weakenEntityTag() {
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if(etag == null) {
+                return;
+            }
+
+            EntityTag entityTag = etag instanceof EntityTag tag ? tag :
+                    RuntimeDelegate.getInstance().createHeaderDelegate(EntityTag.class).fromString(etag.toString());
+            if(!entityTag.isWeak()) {
+                headers.putSingle(HttpHeaders.ETAG, new EntityTag(entityTag.getValue(), true));
+            }
+        }
+    }
+}
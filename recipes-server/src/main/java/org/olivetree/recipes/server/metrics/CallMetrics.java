@@ -0,0 +1,28 @@
+package org.olivetree.recipes.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency, call count and error count of one endpoint or repository operation
+public final class CallMetrics {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    public void record(long nanos, boolean error) {
+        latency.record(nanos);
+        if(error) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,69 @@
+package org.olivetree.recipes.server.metrics;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+
+// Times the requests of one resource method, registered by MetricsFeature with the CallMetrics of that
+// method. Responses with an entity are only recorded once the entity was written, so serialization and
+// streamed bodies are part of the latency. Server errors (5xx) are counted as errors.
+final class EndpointMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    private static final String TIMING_PROPERTY = EndpointMetricsFilter.class.getName() + ".timing";
+
+    private final CallMetrics metrics;
+
+    EndpointMetricsFilter(CallMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(TIMING_PROPERTY, new Timing(System.nanoTime()));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if(!(requestContext.getProperty(TIMING_PROPERTY) instanceof Timing timing)) {
+            return;
+        }
+
+        timing.serverError = responseContext.getStatus() >= 500;
+        if(!responseContext.hasEntity()) {
+            record(timing, false);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        boolean failed = true;
+        try {
+            context.proceed();
+            failed = false;
+        } finally {
+            if(context.getProperty(TIMING_PROPERTY) instanceof Timing timing) {
+                record(timing, failed);
+            }
+        }
+    }
+
+    private void record(Timing timing, boolean failed) {
+        metrics.record(System.nanoTime() - timing.startNanos, failed || timing.serverError);
+    }
+
+    // One small holder allocated per request. Request properties only hold objects, so a boxed start time would
+    // allocate as well, and a per-thread holder does not work because an async response is finished on a
+    // repository thread. Recording into CallMetrics allocates nothing.
+    private static final class Timing {
+        private final long startNanos;
+        private boolean serverError;
+
+        private Timing(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
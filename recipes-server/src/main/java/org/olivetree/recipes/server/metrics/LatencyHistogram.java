@@ -0,0 +1,77 @@
+package org.olivetree.recipes.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// HDR-style histogram of durations in nanoseconds. Values below 64 get a bucket each, above that every power
+// of two is split in 32 linear sub-buckets, so any recorded value is reported within ~3% while the whole
+// range of a long fits in under 2000 counters. The bucket is computed with a few bit operations and the
+// counters are preallocated, so record() never allocates and never locks.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    // Highest value of the bucket holding the given quantile (0 to 1), or 0 if nothing was recorded. Counts
+    // keep moving while this runs, so the result is only as consistent as a scrape needs it to be.
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++) {
+            total += counts.get(bucket);
+        }
+        if(total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if(seen >= rank) {
+                return highestValueOf(bucket);
+            }
+        }
+
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    static int bucketOf(long value) {
+        if(value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int bucket) {
+        if(bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) ((bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,63 @@
+package org.olivetree.recipes.server.metrics;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.DynamicFeature;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.FeatureContext;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+
+// Binds an EndpointMetricsFilter to every resource method when the application starts, each with the
+// CallMetrics of its "METHOD /path", so a request never has to look its metrics up
+public class MetricsFeature implements DynamicFeature {
+    private final MetricsRegistry registry;
+
+    public MetricsFeature(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        String httpMethod = httpMethodOf(method);
+        if(httpMethod == null) {
+            return;
+        }
+
+        String path = join(pathOf(resourceInfo.getResourceClass()), pathOf(method));
+        context.register(new EndpointMetricsFilter(registry.endpoint(httpMethod, path)));
+    }
+
+    private static String httpMethodOf(Method method) {
+        for(Annotation annotation : method.getAnnotations()) {
+            HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if(httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+
+        return null;
+    }
+
+    private static String pathOf(AnnotatedElement element) {
+        Path path = element.getAnnotation(Path.class);
+        return path == null ? "" : path.value();
+    }
+
+    private static String join(String classPath, String methodPath) {
+        String path = "/" + strip(classPath);
+        String suffix = strip(methodPath);
+
+        return suffix.isEmpty() ? path : path + "/" + suffix;
+    }
+
+    private static String strip(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") && path.length() > start ? path.length() - 1 : path.length();
+
+        return path.substring(start, end);
+    }
+}
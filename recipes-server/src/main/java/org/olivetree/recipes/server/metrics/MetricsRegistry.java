@@ -0,0 +1,60 @@
+package org.olivetree.recipes.server.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+// All the metrics of one server. Endpoints and repository operations are registered once when the server
+// starts, and the recording side keeps a reference to its CallMetrics, so nothing is looked up per call.
+public final class MetricsRegistry {
+    // Sorted so the scrape output is stable, endpoints are keyed by "METHOD /path"
+    private final Map<String, CallMetrics> endpoints = new ConcurrentSkipListMap<>();
+    private final Map<String, CallMetrics> repositoryOperations = new ConcurrentSkipListMap<>();
+    private final Map<String, Value> values = new ConcurrentSkipListMap<>();
+    private final Map<String, Summary> summaries = new ConcurrentSkipListMap<>();
+
+    public CallMetrics endpoint(String httpMethod, String path) {
+        return endpoints.computeIfAbsent(httpMethod + " " + path, key -> new CallMetrics());
+    }
+
+    public CallMetrics repositoryOperation(String operation) {
+        return repositoryOperations.computeIfAbsent(operation, key -> new CallMetrics());
+    }
+
+    // Counters and gauges kept by other components, read when the metrics are scraped
+    public void registerCounter(String name, String help, LongSupplier counter) {
+        values.put(name, new Value(name, help, "counter", counter::getAsLong));
+    }
+
+    public void registerGauge(String name, String help, DoubleSupplier gauge) {
+        values.put(name, new Value(name, help, "gauge", gauge));
+    }
+
+    // Durations recorded by other components, exposed as a summary in seconds
+    public void registerSummary(String name, String help, LatencyHistogram histogram) {
+        summaries.put(name, new Summary(name, help, histogram));
+    }
+
+    Map<String, CallMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    Map<String, CallMetrics> getRepositoryOperations() {
+        return repositoryOperations;
+    }
+
+    Iterable<Value> getValues() {
+        return values.values();
+    }
+
+    Iterable<Summary> getSummaries() {
+        return summaries.values();
+    }
+
+    record Summary(String name, String help, LatencyHistogram histogram) {
+    }
+
+    record Value(String name, String help, String type, DoubleSupplier value) {
+    }
+}
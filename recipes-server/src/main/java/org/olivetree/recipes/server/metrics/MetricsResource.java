@@ -0,0 +1,113 @@
+package org.olivetree.recipes.server.metrics;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+
+import java.util.Locale;
+import java.util.Map;
+
+// Scrape endpoint in the Prometheus text exposition format. Latencies are exposed as summaries with
+// precomputed quantiles, in seconds, accumulated since the server started.
+@Path("/metrics")
+public class MetricsResource {
+    public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MetricsRegistry registry;
+
+    public MetricsResource(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public String getMetrics() {
+        StringBuilder out = new StringBuilder();
+
+        writeCalls(out, registry.getEndpoints(), "recipes_http_request", "recipes_http_requests_total",
+                "recipes_http_errors_total", "REST requests by resource method, latency includes writing the body",
+                "REST requests answered with a server error");
+        writeCalls(out, registry.getRepositoryOperations(), "recipes_repository_call", "recipes_repository_calls_total",
+                "recipes_repository_errors_total", "Calls to the recipe repository by operation",
+                "Calls to the recipe repository that threw");
+
+        for(MetricsRegistry.Summary summary : registry.getSummaries()) {
+            LatencyHistogram histogram = summary.histogram();
+
+            header(out, summary.name(), summary.help(), "summary");
+            for(double quantile : QUANTILES) {
+                sample(out, summary.name(), "quantile=\"" + quantile + "\"", seconds(histogram.getValueAtQuantile(quantile)));
+            }
+            out.append(summary.name()).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+            out.append(summary.name()).append("_count ").append(histogram.getCount()).append('\n');
+        }
+
+        for(MetricsRegistry.Value value : registry.getValues()) {
+            header(out, value.name(), value.help(), value.type());
+            out.append(value.name()).append(' ').append(format(value.value().getAsDouble())).append('\n');
+        }
+
+        return out.toString();
+    }
+
+    private static void writeCalls(StringBuilder out, Map<String, CallMetrics> calls, String prefix, String total,
+                                   String errors, String help, String errorHelp) {
+        String duration = prefix + "_duration_seconds";
+
+        header(out, duration, help, "summary");
+        for(Map.Entry<String, CallMetrics> call : calls.entrySet()) {
+            String labels = labelsOf(call.getKey());
+            LatencyHistogram latency = call.getValue().getLatency();
+
+            for(double quantile : QUANTILES) {
+                sample(out, duration, labels + ",quantile=\"" + quantile + "\"", seconds(latency.getValueAtQuantile(quantile)));
+            }
+            sample(out, duration + "_sum", labels, seconds(latency.getSumNanos()));
+            sample(out, duration + "_count", labels, Long.toString(latency.getCount()));
+        }
+
+        header(out, total, help, "counter");
+        for(Map.Entry<String, CallMetrics> call : calls.entrySet()) {
+            sample(out, total, labelsOf(call.getKey()), Long.toString(call.getValue().getCalls()));
+        }
+
+        header(out, errors, errorHelp, "counter");
+        for(Map.Entry<String, CallMetrics> call : calls.entrySet()) {
+            sample(out, errors, labelsOf(call.getKey()), Long.toString(call.getValue().getErrors()));
+        }
+    }
+
+    // Endpoints are keyed by "METHOD /path", repository operations by their name
+    private static String labelsOf(String key) {
+        int separator = key.indexOf(' ');
+        if(separator < 0) {
+            return "operation=\"" + escape(key) + "\"";
+        }
+
+        return "method=\"" + escape(key.substring(0, separator)) + "\",path=\"" + escape(key.substring(separator + 1)) + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    // Whole numbers without a fraction, so counters read as counts
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
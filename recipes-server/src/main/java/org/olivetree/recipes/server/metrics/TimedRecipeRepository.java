@@ -0,0 +1,447 @@
+package org.olivetree.recipes.server.metrics;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Records the latency and failures of every call to another repository. Streams are timed from the call
+// until they are closed, which is how long they hold their connection, and fail when reading them threw.
+// Calls are timed inline, so timing them allocates nothing and boxes no result. Streams are the exception,
+// they are wrapped in a TimedSpliterator.
+public class TimedRecipeRepository implements RecipeRepository {
+    private final RecipeRepository recipeRepository;
+
+    private final CallMetrics createRecipe;
+    private final CallMetrics createRecipes;
+    private final CallMetrics updateRecipe;
+    private final CallMetrics patchRecipe;
+    private final CallMetrics updateRecipes;
+    private final CallMetrics deleteRecipe;
+    private final CallMetrics deleteRecipes;
+    private final CallMetrics getAllRecipes;
+    private final CallMetrics getRecipesAfter;
+    private final CallMetrics getRecipeById;
+    private final CallMetrics getRecipesByIds;
+    private final CallMetrics getRecipeVersion;
+    private final CallMetrics getChangeCount;
+    private final CallMetrics getChangesSince;
+    private final CallMetrics findRecipes;
+    private final CallMetrics findRecipesPage;
+    private final CallMetrics streamAllRecipes;
+    private final CallMetrics streamRecipes;
+    private final CallMetrics findSortedRecipes;
+    private final CallMetrics findRecipeSummaries;
+    private final CallMetrics streamSortedRecipes;
+    private final CallMetrics streamRecipeSummaries;
+
+    public TimedRecipeRepository(RecipeRepository recipeRepository, MetricsRegistry registry) {
+        this.recipeRepository = recipeRepository;
+        this.createRecipe = registry.repositoryOperation("createRecipe");
+        this.createRecipes = registry.repositoryOperation("createRecipes");
+        this.updateRecipe = registry.repositoryOperation("updateRecipe");
+        this.patchRecipe = registry.repositoryOperation("patchRecipe");
+        this.updateRecipes = registry.repositoryOperation("updateRecipes");
+        this.deleteRecipe = registry.repositoryOperation("deleteRecipe");
+        this.deleteRecipes = registry.repositoryOperation("deleteRecipes");
+        this.getAllRecipes = registry.repositoryOperation("getAllRecipes");
+        this.getRecipesAfter = registry.repositoryOperation("getRecipesAfter");
+        this.getRecipeById = registry.repositoryOperation("getRecipeById");
+        this.getRecipesByIds = registry.repositoryOperation("getRecipesByIds");
+        this.getRecipeVersion = registry.repositoryOperation("getRecipeVersion");
+        this.getChangeCount = registry.repositoryOperation("getChangeCount");
+        this.getChangesSince = registry.repositoryOperation("getChangesSince");
+        this.findRecipes = registry.repositoryOperation("findRecipes");
+        this.findRecipesPage = registry.repositoryOperation("findRecipesPage");
+        this.streamAllRecipes = registry.repositoryOperation("streamAllRecipes");
+        this.streamRecipes = registry.repositoryOperation("streamRecipes");
+        this.findSortedRecipes = registry.repositoryOperation("findSortedRecipes");
+        this.findRecipeSummaries = registry.repositoryOperation("findRecipeSummaries");
+        this.streamSortedRecipes = registry.repositoryOperation("streamSortedRecipes");
+        this.streamRecipeSummaries = registry.repositoryOperation("streamRecipeSummaries");
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Recipe result = recipeRepository.createRecipe(recipe);
+            failed = false;
+            return result;
+        } finally {
+            createRecipe.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.createRecipes(recipes);
+            failed = false;
+            return result;
+        } finally {
+            createRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int result = recipeRepository.updateRecipes(recipes);
+            failed = false;
+            return result;
+        } finally {
+            updateRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Long> result = recipeRepository.deleteRecipes(ids);
+            failed = false;
+            return result;
+        } finally {
+            deleteRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.getAllRecipes();
+            failed = false;
+            return result;
+        } finally {
+            getAllRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.getRecipesAfter(afterId, limit);
+            failed = false;
+            return result;
+        } finally {
+            getRecipesAfter.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<Recipe> result = recipeRepository.getRecipeById(id);
+            failed = false;
+            return result;
+        } finally {
+            getRecipeById.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.getRecipesByIds(ids);
+            failed = false;
+            return result;
+        } finally {
+            getRecipesByIds.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<Long> result = recipeRepository.getRecipeVersion(id);
+            failed = false;
+            return result;
+        } finally {
+            getRecipeVersion.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long getChangeCount() {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = recipeRepository.getChangeCount();
+            failed = false;
+            return result;
+        } finally {
+            getChangeCount.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<RecipeDelta> result = recipeRepository.getChangesSince(since, limit);
+            failed = false;
+            return result;
+        } finally {
+            getChangesSince.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean result = recipeRepository.deleteRecipe(id);
+            failed = false;
+            return result;
+        } finally {
+            deleteRecipe.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<Recipe> result = recipeRepository.updateRecipe(id, recipe);
+            failed = false;
+            return result;
+        } finally {
+            updateRecipe.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<Recipe> result = recipeRepository.patchRecipe(id, recipe);
+            failed = false;
+            return result;
+        } finally {
+            patchRecipe.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.findRecipes(recipeSearch);
+            failed = false;
+            return result;
+        } finally {
+            findRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.findRecipes(recipeSearch, afterId, limit);
+            failed = false;
+            return result;
+        } finally {
+            findRecipesPage.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        long start = System.nanoTime();
+        Stream<Recipe> stream;
+        try {
+            stream = recipeRepository.streamAllRecipes();
+        } catch(RuntimeException e) {
+            streamAllRecipes.record(System.nanoTime() - start, true);
+            throw e;
+        }
+        return TimedSpliterator.timed(stream, streamAllRecipes, start);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        long start = System.nanoTime();
+        Stream<Recipe> stream;
+        try {
+            stream = recipeRepository.streamRecipes(recipeSearch);
+        } catch(RuntimeException e) {
+            streamRecipes.record(System.nanoTime() - start, true);
+            throw e;
+        }
+        return TimedSpliterator.timed(stream, streamRecipes, start);
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Recipe> result = recipeRepository.findRecipes(recipeSearch, sort, after, limit);
+            failed = false;
+            return result;
+        } finally {
+            findSortedRecipes.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<RecipeSummary> result = recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+            failed = false;
+            return result;
+        } finally {
+            findRecipeSummaries.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        long start = System.nanoTime();
+        Stream<Recipe> stream;
+        try {
+            stream = recipeRepository.streamRecipes(recipeSearch, sort);
+        } catch(RuntimeException e) {
+            streamSortedRecipes.record(System.nanoTime() - start, true);
+            throw e;
+        }
+        return TimedSpliterator.timed(stream, streamSortedRecipes, start);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        long start = System.nanoTime();
+        Stream<RecipeSummary> stream;
+        try {
+            stream = recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+        } catch(RuntimeException e) {
+            streamRecipeSummaries.record(System.nanoTime() - start, true);
+            throw e;
+        }
+        return TimedSpliterator.timed(stream, streamRecipeSummaries, start);
+    }
+
+    // Records a stream when it is closed, as failed when the repository threw while it was read. Failures of the
+    // code consuming the stream are not the repository's. Holds the start time and outcome itself, so timing a
+    // stream boxes nothing and allocates no capturing lambdas.
+    private static final class TimedSpliterator<T> implements Spliterator<T>, Consumer<T>, Runnable {
+        private final Stream<T> stream;
+        private final Spliterator<T> spliterator;
+        private final CallMetrics metrics;
+        private final long start;
+        private Consumer<? super T> action;
+        private boolean reading;
+        private boolean failed;
+
+        private TimedSpliterator(Stream<T> stream, CallMetrics metrics, long start) {
+            this.stream = stream;
+            this.spliterator = stream.spliterator();
+            this.metrics = metrics;
+            this.start = start;
+        }
+
+        static <T> Stream<T> timed(Stream<T> stream, CallMetrics metrics, long start) {
+            TimedSpliterator<T> timed = new TimedSpliterator<>(stream, metrics, start);
+            return StreamSupport.stream(timed, false).onClose(timed);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            this.action = action;
+            reading = true;
+            try {
+                return spliterator.tryAdvance(this);
+            } catch(RuntimeException | Error e) {
+                failed |= reading;
+                throw e;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            this.action = action;
+            reading = true;
+            try {
+                spliterator.forEachRemaining(this);
+            } catch(RuntimeException | Error e) {
+                failed |= reading;
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(T value) {
+            reading = false;
+            action.accept(value);
+            reading = true;
+        }
+
+        // Read by one thread, so not split
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return spliterator.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return spliterator.characteristics();
+        }
+
+        // Closes the repository stream first, so its connection is released before the call is recorded
+        @Override
+        public void run() {
+            try {
+                stream.close();
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        }
+    }
+}
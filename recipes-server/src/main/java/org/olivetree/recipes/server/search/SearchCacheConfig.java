@@ -0,0 +1,37 @@
+package org.olivetree.recipes.server.search;
+
+import java.util.Properties;
+
+import static org.olivetree.recipes.repository.RepositoryProperties.*;
+
+// maximumBytes bounds the serialized responses held by the cache, larger responses than maximumEntryBytes
+// are streamed without being cached
+public record SearchCacheConfig(long maximumBytes, int maximumEntryBytes) {
+
+    public static final String ENABLED_PROPERTY = "recipes.search.cache.enabled";
+    public static final String MAXIMUM_BYTES_PROPERTY = "recipes.search.cache.maximumBytes";
+    public static final String MAXIMUM_ENTRY_BYTES_PROPERTY = "recipes.search.cache.maximumEntryBytes";
+
+    public SearchCacheConfig {
+        if(maximumBytes < 1 || maximumEntryBytes < 1 || maximumEntryBytes > maximumBytes) {
+            throw new IllegalArgumentException("Invalid search cache bounds: maximumBytes=" + maximumBytes
+                    + ", maximumEntryBytes=" + maximumEntryBytes);
+        }
+    }
+
+    public static SearchCacheConfig defaults() {
+        return new SearchCacheConfig(32L * 1024 * 1024, 1024 * 1024);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return getBoolean(properties, ENABLED_PROPERTY, false);
+    }
+
+    public static SearchCacheConfig fromProperties(Properties properties) {
+        SearchCacheConfig defaults = defaults();
+
+        return new SearchCacheConfig(
+                getLong(properties, MAXIMUM_BYTES_PROPERTY, defaults.maximumBytes()),
+                getInt(properties, MAXIMUM_ENTRY_BYTES_PROPERTY, defaults.maximumEntryBytes()));
+    }
+}
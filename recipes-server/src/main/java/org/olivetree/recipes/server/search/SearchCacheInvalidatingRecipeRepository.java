@@ -0,0 +1,186 @@
+package org.olivetree.recipes.server.search;
+
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Evicts the cached searches a write may have changed: those whose range contains the duration of a created
+// recipe, and for updates and deletes those that contain the recipe, wherever its old duration put it, or
+// whose range contains its new duration. Nothing is read before the write. The eviction runs after the write,
+// so a search that read the old rows while it was happening is rejected by the generation check instead of
+// being cached. Writes of other processes are not seen at all.
+public class SearchCacheInvalidatingRecipeRepository implements RecipeRepository {
+    private final RecipeRepository recipeRepository;
+    private final SearchResultCache cache;
+
+    public SearchCacheInvalidatingRecipeRepository(RecipeRepository recipeRepository, SearchResultCache cache) {
+        this.recipeRepository = recipeRepository;
+        this.cache = cache;
+    }
+
+    @Override
+    public Recipe createRecipe(Recipe recipe) {
+        try {
+            return recipeRepository.createRecipe(recipe);
+        } finally {
+            cache.invalidate(durationsOf(Stream.of(recipe)));
+        }
+    }
+
+    @Override
+    public List<Recipe> createRecipes(List<Recipe> recipes) {
+        try {
+            return recipeRepository.createRecipes(recipes);
+        } finally {
+            cache.invalidate(durationsOf(recipes.stream()));
+        }
+    }
+
+    @Override
+    public Optional<Recipe> updateRecipe(Long id, Recipe recipe) {
+        try {
+            return recipeRepository.updateRecipe(id, recipe);
+        } finally {
+            cache.invalidate(new long[]{id}, durationsOf(Stream.of(recipe)));
+        }
+    }
+
+    // A patch without a duration keeps the old one, which the patched recipe returned by the write has
+    @Override
+    public Optional<Recipe> patchRecipe(Long id, Recipe recipe) {
+        Optional<Recipe> patched = Optional.empty();
+        try {
+            patched = recipeRepository.patchRecipe(id, recipe);
+            return patched;
+        } finally {
+            cache.invalidate(new long[]{id}, durationsOf(Stream.concat(Stream.of(recipe), patched.stream())));
+        }
+    }
+
+    @Override
+    public int updateRecipes(Map<Long, Recipe> recipes) {
+        try {
+            return recipeRepository.updateRecipes(recipes);
+        } finally {
+            cache.invalidate(idsOf(recipes.keySet()), durationsOf(recipes.values().stream()));
+        }
+    }
+
+    @Override
+    public boolean deleteRecipe(Long id) {
+        try {
+            return recipeRepository.deleteRecipe(id);
+        } finally {
+            cache.invalidate(new long[]{id}, new long[0]);
+        }
+    }
+
+    @Override
+    public List<Long> deleteRecipes(Collection<Long> ids) {
+        try {
+            return recipeRepository.deleteRecipes(ids);
+        } finally {
+            cache.invalidate(idsOf(ids), new long[0]);
+        }
+    }
+
+    @Override
+    public List<Recipe> getAllRecipes() {
+        return recipeRepository.getAllRecipes();
+    }
+
+    @Override
+    public List<Recipe> getRecipesAfter(Long afterId, int limit) {
+        return recipeRepository.getRecipesAfter(afterId, limit);
+    }
+
+    @Override
+    public Optional<Recipe> getRecipeById(Long id) {
+        return recipeRepository.getRecipeById(id);
+    }
+
+    @Override
+    public List<Recipe> getRecipesByIds(Collection<Long> ids) {
+        return recipeRepository.getRecipesByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> getRecipeVersion(Long id) {
+        return recipeRepository.getRecipeVersion(id);
+    }
+
+    @Override
+    public long getChangeCount() {
+        return recipeRepository.getChangeCount();
+    }
+
+    @Override
+    public List<RecipeDelta> getChangesSince(long since, int limit) {
+        return recipeRepository.getChangesSince(since, limit);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.findRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, Long afterId, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, afterId, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllRecipes() {
+        return recipeRepository.streamAllRecipes();
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch) {
+        return recipeRepository.streamRecipes(recipeSearch);
+    }
+
+    @Override
+    public List<Recipe> findRecipes(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipes(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public List<RecipeSummary> findRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort, Recipe after, int limit) {
+        return recipeRepository.findRecipeSummaries(recipeSearch, sort, after, limit);
+    }
+
+    @Override
+    public Stream<Recipe> streamRecipes(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipes(recipeSearch, sort);
+    }
+
+    @Override
+    public Stream<RecipeSummary> streamRecipeSummaries(RecipeSearch recipeSearch, RecipeSort sort) {
+        return recipeRepository.streamRecipeSummaries(recipeSearch, sort);
+    }
+
+    @Override
+    public void close() {
+        recipeRepository.close();
+    }
+
+    private static long[] idsOf(Collection<Long> ids) {
+        return ids.stream().filter(id -> id != null).mapToLong(Long::longValue).toArray();
+    }
+
+    private static long[] durationsOf(Stream<Recipe> recipes) {
+        return recipes.map(Recipe::getDurationInMinutes)
+                .filter(duration -> duration != null)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+}
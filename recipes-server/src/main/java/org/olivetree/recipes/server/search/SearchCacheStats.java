@@ -0,0 +1,10 @@
+package org.olivetree.recipes.server.search;
+
+public record SearchCacheStats(long hits, long misses, long evictions, long invalidations, long entries, long bytes) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
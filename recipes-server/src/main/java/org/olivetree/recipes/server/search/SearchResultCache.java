@@ -0,0 +1,198 @@
+package org.olivetree.recipes.server.search;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import org.olivetree.recipes.domain.RecipeSearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Serialized responses of unpaged searches keyed by the RecipeSearch, so a hit skips both the query and the
+// JSON encoding. An empty body stands for a search without results (404). Entries are evicted in LRU order
+// once their total size goes over maximumBytes. Every entry also keeps the sorted ids of the recipes in it.
+//
+// A write only evicts the searches that contain one of the recipes it touched, or whose duration range contains
+// one of the durations it wrote, see SearchCacheInvalidatingRecipeRepository. Writes made by other processes on
+// the same database are not seen.
+public class SearchResultCache {
+    public static final byte[] NO_RESULTS = new byte[0];
+
+    private final SearchCacheConfig config;
+
+    // Access ordered, guarded by this
+    private final LinkedHashMap<RecipeSearch, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    // Bumped by every invalidation. A result is only stored if no write happened while it was being read,
+    // otherwise it could already be stale.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public SearchResultCache(SearchCacheConfig config) {
+        this.config = config;
+    }
+
+    // Read it before running the search whose result is then passed to put
+    public long generation() {
+        return generation.get();
+    }
+
+    // The cached body or null
+    public synchronized byte[] get(RecipeSearch search) {
+        Entry entry = entries.get(search);
+        if(entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.body();
+    }
+
+    // ids are the recipes in the body, sorted in place
+    public synchronized void put(RecipeSearch search, byte[] body, long[] ids, long readGeneration) {
+        if(body.length > config.maximumEntryBytes() || readGeneration != generation.get()) {
+            return;
+        }
+
+        Arrays.sort(ids);
+        Entry entry = new Entry(body, ids);
+        Entry previous = entries.put(search, entry);
+        bytes += entry.size() - (previous == null ? 0 : previous.size());
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while(bytes > config.maximumBytes() && eldest.hasNext()) {
+            bytes -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // Writes the body to the response and keeps a copy of it, which is cached together with the ids of the
+    // written recipes once the whole body was written if it stayed within maximumEntryBytes
+    public StreamingOutput fillWhileWriting(RecipeSearch search, long readGeneration, StreamingOutput body,
+                                            Supplier<long[]> ids) {
+        return output -> {
+            CopyingOutputStream copy = new CopyingOutputStream(output, config.maximumEntryBytes());
+            body.write(copy);
+
+            if(!copy.overflowed) {
+                put(search, copy.copy.toByteArray(), ids.get(), readGeneration);
+            }
+        };
+    }
+
+    // Evicts the searches that could contain a created recipe with one of the given durations
+    public void invalidate(long... durations) {
+        invalidate(new long[0], durations);
+    }
+
+    // Evicts the searches that contain one of the given recipes, which covers their old durations, or that
+    // could contain them with one of the given new durations
+    public synchronized void invalidate(long[] ids, long[] durations) {
+        generation.incrementAndGet();
+
+        Iterator<Map.Entry<RecipeSearch, Entry>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<RecipeSearch, Entry> entry = iterator.next();
+            if(entry.getValue().containsAny(ids) || containsAny(entry.getKey(), durations)) {
+                bytes -= entry.getValue().size();
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public synchronized SearchCacheStats getStats() {
+        return new SearchCacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), entries.size(), bytes);
+    }
+
+    // Text searches are only matched on their duration range, which may evict more than needed but never less
+    private static boolean containsAny(RecipeSearch search, long[] durations) {
+        if(!search.hasDurationRange()) {
+            return true;
+        }
+
+        for(long duration : durations) {
+            if(duration >= search.durationFrom() && duration <= search.durationTo()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private record Entry(byte[] body, long[] ids) {
+        long size() {
+            return body.length + (long) ids.length * Long.BYTES;
+        }
+
+        boolean containsAny(long[] recipeIds) {
+            for(long id : recipeIds) {
+                if(Arrays.binarySearch(ids, id) >= 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static final class CopyingOutputStream extends OutputStream {
+        private final OutputStream output;
+        private final int limit;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean overflowed;
+
+        CopyingOutputStream(OutputStream output, int limit) {
+            this.output = output;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            output.write(b);
+            if(keep(1)) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            output.write(b, off, len);
+            if(keep(len)) {
+                copy.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+
+        private boolean keep(int length) {
+            if(!overflowed && copy.size() + length > limit) {
+                overflowed = true;
+                copy.reset();
+            }
+
+            return !overflowed;
+        }
+    }
+}
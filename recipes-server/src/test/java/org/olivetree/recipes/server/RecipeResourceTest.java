@@ -1,9 +1,12 @@
 package org.olivetree.recipes.server;
 
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.grizzly.http.server.HttpServer;
@@ -11,15 +14,34 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.glassfish.jersey.client.ClientProperties;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeDelta;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
+import org.olivetree.recipes.domain.RecipeSummary;
 import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.ChangesPrunedException;
+import org.olivetree.recipes.repository.exception.RepositoryException;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,8 +71,8 @@ public class RecipeResourceTest {
         @Test
         @DisplayName("return recipes")
         public void shouldReturnExpectedRecipes() {
-            when(recipeRepository.getAllRecipes())
-                    .thenReturn(getMockedRecipes());
+            when(recipeRepository.streamAllRecipes())
+                    .thenReturn(getMockedRecipes().stream());
 
             List<Recipe> recipes = target
                     .path(RECIPES_RESOURCE_PATH)
@@ -68,6 +90,268 @@ public class RecipeResourceTest {
             assertEquals("Recipe 1 description", firstRecipe.getDescription());
             assertEquals(50L, firstRecipe.getDurationInMinutes());
         }
+
+        @Test
+        @DisplayName("stream a large list with chunked transfer encoding and close the cursor")
+        public void shouldStreamLargeListChunked() {
+            AtomicBoolean closed = new AtomicBoolean();
+            when(recipeRepository.streamAllRecipes())
+                    .thenReturn(LongStream.rangeClosed(1, 1000)
+                            .mapToObj(id -> getRecipe(id, "Recipe " + id, "Recipe " + id + " description", 50L))
+                            .onClose(() -> closed.set(true)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("chunked", response.getHeaderString("Transfer-Encoding"));
+
+            List<Recipe> recipes = response.readEntity(new GenericType<>() {
+            });
+            assertEquals(1000, recipes.size());
+            assertEquals(1000L, recipes.get(999).getId());
+            assertTrue(closed.get());
+        }
+
+        @Test
+        @DisplayName("stream recipes as Smile when the client prefers it")
+        public void shouldStreamRecipesAsSmile() {
+            when(recipeRepository.streamAllRecipes())
+                    .thenReturn(getMockedRecipes().stream());
+
+            Response response = ClientBuilder.newClient()
+                    .register(JacksonSmileProvider.class)
+                    .target(RecipeServer.BASE_URI)
+                    .path(RECIPES_RESOURCE_PATH)
+                    .request(RecipeMediaTypes.SMILE, "application/json;q=0.5")
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals(RecipeMediaTypes.SMILE_TYPE, response.getMediaType());
+
+            List<Recipe> recipes = response.readEntity(new GenericType<>() {
+            });
+            assertEquals(3, recipes.size());
+            assertEquals("Recipe 3 description", recipes.get(2).getDescription());
+        }
+
+        @Test
+        @DisplayName("return not modified without reading the recipes if nothing changed")
+        public void shouldReturnNotModifiedIfNothingChanged() {
+            when(recipeRepository.getChangeCount())
+                    .thenReturn(7L);
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"c7\"")
+                    .get();
+
+            assertEquals(304, response.getStatus());
+            verify(recipeRepository, never()).streamAllRecipes();
+        }
+
+        @Test
+        @DisplayName("return a page of recipes with the next cursor")
+        public void shouldReturnPageWithNextCursor() {
+            when(recipeRepository.getRecipesAfter(null, 3))
+                    .thenReturn(getMockedRecipes());
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 2)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("2", response.getHeaderString("X-Next-Cursor"));
+            assertNotNull(response.getLink("next"));
+
+            List<Recipe> recipes = response.readEntity(new GenericType<>() {
+            });
+            assertEquals(2, recipes.size());
+        }
+
+        @Test
+        @DisplayName("return the last page without a next cursor")
+        public void shouldReturnLastPageWithoutNextCursor() {
+            when(recipeRepository.getRecipesAfter(2L, 3))
+                    .thenReturn(List.of(getRecipe(3L, "Recipe 3", "Recipe 3 description", 50L)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 2)
+                    .queryParam("after", 2)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertNull(response.getHeaderString("X-Next-Cursor"));
+        }
+
+        @Test
+        @DisplayName("list summaries with only the requested fields in the requested order")
+        public void shouldListRequestedFieldsInOrder() {
+            when(recipeRepository.streamRecipeSummaries(RecipeSearch.ALL, new RecipeSort(RecipeSort.Field.DURATION, true)))
+                    .thenReturn(Stream.of(new RecipeSummary(2L, "Recipe 2", 90L, 1L), new RecipeSummary(1L, "Recipe 1", 50L, 1L)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("sort", "duration,desc")
+                    .queryParam("fields", "id,name")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("[{\"id\":2,\"name\":\"Recipe 2\"},{\"id\":1,\"name\":\"Recipe 1\"}]", response.readEntity(String.class));
+        }
+
+        @Test
+        @DisplayName("page through sorted recipes including descriptions when asked for")
+        public void shouldPageSortedRecipesWithDescription() {
+            when(recipeRepository.findRecipes(RecipeSearch.ALL, new RecipeSort(RecipeSort.Field.NAME, false), null, 3))
+                    .thenReturn(getMockedRecipes());
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 2)
+                    .queryParam("sort", "name")
+                    .queryParam("fields", "id,description")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("Recipe 2,2", response.getHeaderString("X-Next-Cursor"));
+
+            List<Recipe> recipes = response.readEntity(new GenericType<>() {
+            });
+            assertEquals(2, recipes.size());
+            assertEquals("Recipe 1 description", recipes.get(0).getDescription());
+            assertNull(recipes.get(0).getName());
+        }
+
+        @Test
+        @DisplayName("continue a sorted page from the sort key in the cursor")
+        public void shouldContinueSortedPageFromCursorKey() {
+            when(recipeRepository.findRecipeSummaries(eq(RecipeSearch.ALL), eq(new RecipeSort(RecipeSort.Field.NAME, false)),
+                    argThat(after -> after != null && "Recipe, 2".equals(after.getName()) && after.getId() == 2L), eq(3)))
+                    .thenReturn(List.of(new RecipeSummary(3L, "Recipe 3", 50L, 1L)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 2)
+                    .queryParam("sort", "name")
+                    .queryParam("fields", "id,name")
+                    .queryParam("after", "Recipe, 2,2")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("[{\"id\":3,\"name\":\"Recipe 3\"}]", response.readEntity(String.class));
+        }
+
+        @Test
+        @DisplayName("reject a cursor without the sort key of a sorted page")
+        public void shouldRejectCursorOfAnotherSort() {
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 2)
+                    .queryParam("sort", "duration")
+                    .queryParam("after", "2")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(400, response.getStatus());
+        }
+
+        @ParameterizedTest
+        @CsvSource(textBlock = """
+                description,
+                name;desc,
+                , title
+                """)
+        @DisplayName("reject unknown sort and fields options")
+        public void shouldRejectUnknownOptions(String sort, String fields) {
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("sort", sort == null ? "" : sort)
+                    .queryParam("fields", fields == null ? "" : fields)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(400, response.getStatus());
+        }
+
+        @Test
+        @DisplayName("return the changes since a sequence with the next cursor")
+        public void shouldReturnChangesSince() {
+            when(recipeRepository.getChangesSince(5L, 3))
+                    .thenReturn(List.of(
+                            RecipeDelta.changed(6L, getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L)),
+                            RecipeDelta.deleted(8L, 2L),
+                            RecipeDelta.deleted(9L, 3L)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("since", 5)
+                    .queryParam("limit", 2)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("8", response.getHeaderString("X-Next-Cursor"));
+            assertTrue(response.getLink("next").getUri().getQuery().contains("since=8"));
+
+            List<RecipeDelta> changes = response.readEntity(new GenericType<>() {
+            });
+            assertEquals(List.of(6L, 8L), changes.stream().map(RecipeDelta::sequence).toList());
+            assertEquals("Recipe 1", changes.get(0).recipe().getName());
+            assertTrue(changes.get(1).deleted());
+        }
+
+        @Test
+        @DisplayName("answer 410 for changes since a sequence older than the pruned tombstones")
+        public void shouldAnswerGoneForPrunedChanges() {
+            when(recipeRepository.getChangesSince(5L, 101))
+                    .thenThrow(new ChangesPrunedException(5L, 7L));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("since", 5)
+                    .queryParam("limit", 100)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(410, response.getStatus());
+        }
+
+        @Test
+        @DisplayName("reject changes since a sequence combined with other listing options")
+        public void shouldRejectChangesSinceWithListingOptions() {
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("since", 5)
+                    .queryParam("sort", "name")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(400, response.getStatus());
+            verify(recipeRepository, never()).getChangesSince(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("reject a page size out of bounds")
+        public void shouldRejectInvalidPageSize() {
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .queryParam("limit", 0)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(400, response.getStatus());
+        }
     }
 
     @Nested
@@ -107,6 +391,112 @@ public class RecipeResourceTest {
             recipe = response.readEntity(Recipe.class);
             assertEquals("Recipe 1", recipe.getName());
         }
+
+        @Test
+        @DisplayName("return recipe as Smile")
+        public void shouldReturnRecipeAsSmile() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L)));
+
+            Response response = ClientBuilder.newClient()
+                    .register(JacksonSmileProvider.class)
+                    .target(RecipeServer.BASE_URI)
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(RecipeMediaTypes.SMILE)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals(RecipeMediaTypes.SMILE_TYPE, response.getMediaType());
+            assertEquals("Recipe 1", response.readEntity(Recipe.class).getName());
+        }
+
+        @Test
+        @DisplayName("tag the recipe with its version")
+        public void shouldReturnVersionAsEntityTag() {
+            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
+            recipe.setVersion(3L);
+
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(recipe));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals(new EntityTag("3"), response.getEntityTag());
+        }
+
+        @Test
+        @DisplayName("tag the Smile representation apart from the JSON one")
+        public void shouldTagSmileRepresentation() {
+            when(recipeRepository.getRecipeVersion(1L))
+                    .thenReturn(Optional.of(3L));
+            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
+            recipe.setVersion(3L);
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(recipe));
+
+            Response smileForJsonTag = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(RecipeMediaTypes.SMILE_TYPE)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                    .get();
+            assertEquals(200, smileForJsonTag.getStatus());
+            assertEquals(new EntityTag("3-smile"), smileForJsonTag.getEntityTag());
+
+            Response smileForSmileTag = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(RecipeMediaTypes.SMILE_TYPE)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"3-smile\"")
+                    .get();
+            assertEquals(304, smileForSmileTag.getStatus());
+        }
+
+        @Test
+        @DisplayName("return not modified without loading the recipe if the version matches")
+        public void shouldReturnNotModifiedWithoutLoadingRecipe() {
+            when(recipeRepository.getRecipeVersion(1L))
+                    .thenReturn(Optional.of(3L));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                    .get();
+
+            assertEquals(304, response.getStatus());
+            assertEquals(new EntityTag("3"), response.getEntityTag());
+            verify(recipeRepository, never()).getRecipeById(1L);
+        }
+
+        @Test
+        @DisplayName("return the recipe if the version changed")
+        public void shouldReturnRecipeIfVersionChanged() {
+            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
+            recipe.setVersion(4L);
+
+            when(recipeRepository.getRecipeVersion(1L))
+                    .thenReturn(Optional.of(4L));
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(Optional.of(recipe));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals(new EntityTag("4"), response.getEntityTag());
+        }
     }
 
     @Nested
@@ -117,7 +507,7 @@ public class RecipeResourceTest {
         public void shouldThrowExceptionIfRecipeDoesNotExist() {
             Recipe recipe = getRecipe(null, "Recipe 1", "Recipe 1 description", 50L);
 
-            when(recipeRepository.getRecipeById(1L))
+            when(recipeRepository.patchRecipe(eq(1L), any()))
                     .thenReturn(Optional.empty());
 
             Response response = target
@@ -131,17 +521,14 @@ public class RecipeResourceTest {
 
         @ParameterizedTest
         @CsvSource(textBlock = """
-                , Recipe 1 description, 50
-                Recipe 1,, 50
+                , Recipe 1 description, 9950
+                Recipe 1,, 1440
                 Recipe 1, Recipe 1 description, 9950
                 """)
         @DisplayName("throw exception if recipe does not comply with constraints")
         public void shouldThrowConstraintsExceptionIfRecipeDoesNotComply(String name, String description, Long duration) {
             Recipe recipe = getRecipe(null, name, description, duration);
 
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.of(recipe));
-
             Response response = target
                     .path(RECIPES_RESOURCE_PATH)
                     .path(String.valueOf(1L))
@@ -156,7 +543,7 @@ public class RecipeResourceTest {
         public void shouldReturnNoContentStatusCode() {
             Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
 
-            when(recipeRepository.getRecipeById(1L))
+            when(recipeRepository.patchRecipe(eq(1L), any()))
                     .thenReturn(Optional.of(recipe));
 
             Response response = target
@@ -166,6 +553,73 @@ public class RecipeResourceTest {
                     .put(Entity.entity(recipe, MediaType.APPLICATION_JSON));
 
             assertEquals(204, response.getStatus());
+            verify(recipeRepository, never()).getRecipeById(1L);
+        }
+
+        @Test
+        @DisplayName("keep the stored value of blank fields")
+        public void shouldSendBlankFieldsAsUnchanged() {
+            when(recipeRepository.patchRecipe(eq(1L), any()))
+                    .thenReturn(Optional.of(getRecipe(1L, "Recipe 1", "Recipe 1 description", 90L)));
+
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(MediaType.APPLICATION_JSON)
+                    .put(Entity.entity(getRecipe(null, " ", null, 90L), MediaType.APPLICATION_JSON));
+
+            assertEquals(204, response.getStatus());
+            verify(recipeRepository).patchRecipe(eq(1L), argThat(patch ->
+                    patch.getName() == null && patch.getDescription() == null && patch.getDurationInMinutes() == 90L));
+        }
+    }
+
+    @Nested
+    @DisplayName("PATCH recipe should")
+    public class PatchRecipeEndpointTest {
+        @Test
+        @DisplayName("throw exception if recipe does not exist")
+        public void shouldThrowExceptionIfRecipeDoesNotExist() {
+            when(recipeRepository.patchRecipe(eq(1L), any()))
+                    .thenReturn(Optional.empty());
+
+            Response response = patch(getRecipe(null, "Recipe 1", null, null));
+
+            assertEquals(404, response.getStatus());
+        }
+
+        @Test
+        @DisplayName("throw exception if the duration is too long")
+        public void shouldThrowConstraintsExceptionIfDurationIsTooLong() {
+            Response response = patch(getRecipe(null, null, null, 9950L));
+
+            assertEquals(400, response.getStatus());
+            verify(recipeRepository, never()).patchRecipe(any(), any());
+        }
+
+        @Test
+        @DisplayName("return the recipe as stored with its new version")
+        public void shouldReturnStoredRecipe() {
+            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 90L);
+            recipe.setVersion(2L);
+
+            when(recipeRepository.patchRecipe(eq(1L), any()))
+                    .thenReturn(Optional.of(recipe));
+
+            Response response = patch(getRecipe(null, null, null, 90L));
+
+            assertEquals(200, response.getStatus());
+            assertEquals(new EntityTag("2"), response.getEntityTag());
+            assertEquals("Recipe 1 description", response.readEntity(Recipe.class).getDescription());
+        }
+
+        private Response patch(Recipe recipe) {
+            return target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path(String.valueOf(1L))
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(RecipeServer.METHOD_OVERRIDE_HEADER, "PATCH")
+                    .post(Entity.entity(recipe, MediaType.APPLICATION_JSON));
         }
     }
 
@@ -197,8 +651,8 @@ public class RecipeResourceTest {
         @Test
         @DisplayName("throw exception if recipe does not exist")
         public void shouldThrowExceptionIfRecipeDoesNotExist() {
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.empty());
+            when(recipeRepository.deleteRecipe(1L))
+                    .thenReturn(false);
 
             Response response = target
                     .path(RECIPES_RESOURCE_PATH)
@@ -212,10 +666,8 @@ public class RecipeResourceTest {
         @Test
         @DisplayName("return a 204 status code if recipe was deleted")
         public void shouldReturnNoContentStatusCode() {
-            Recipe recipe = getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L);
-
-            when(recipeRepository.getRecipeById(1L))
-                    .thenReturn(Optional.of(recipe));
+            when(recipeRepository.deleteRecipe(1L))
+                    .thenReturn(true);
 
             Response response = target
                     .path(RECIPES_RESOURCE_PATH)
@@ -227,11 +679,126 @@ public class RecipeResourceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Batch endpoints should")
+    public class BatchEndpointTest {
+        @Test
+        @DisplayName("create the valid recipes of a JSON array and report every item")
+        public void shouldCreateValidRecipesOfArray() {
+            when(recipeRepository.createRecipes(anyList())).thenAnswer(invocation -> {
+                List<Recipe> recipes = invocation.getArgument(0);
+                for(int i = 0; i < recipes.size(); i++) {
+                    recipes.get(i).setId(10L + i);
+                }
+                return recipes;
+            });
+
+            List<Recipe> recipes = List.of(
+                    getRecipe(null, "Recipe 1", "Recipe 1 description", 50L),
+                    getRecipe(null, "Recipe 2", null, 50L),
+                    getRecipe(null, "Recipe 3", "Recipe 3 description", 50L));
+
+            List<BatchItemResult> results = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path("batch")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(recipes, MediaType.APPLICATION_JSON), new GenericType<>() {
+                    });
+
+            assertEquals(List.of(
+                    new BatchItemResult(0, 201, 10L),
+                    new BatchItemResult(1, 400, null),
+                    new BatchItemResult(2, 201, 11L)), results);
+        }
+
+        @Test
+        @DisplayName("report the recipes committed before a failure as created")
+        public void shouldReportRecipesCommittedBeforeFailure() {
+            when(recipeRepository.createRecipes(anyList())).thenAnswer(invocation -> {
+                List<Recipe> recipes = invocation.getArgument(0);
+                recipes.get(0).setId(10L);
+                throw new RepositoryException("Failed to save recipes");
+            });
+
+            List<Recipe> recipes = List.of(
+                    getRecipe(null, "Recipe 1", "Recipe 1 description", 50L),
+                    getRecipe(7L, "Recipe 2", "Recipe 2 description", 50L));
+
+            List<BatchItemResult> results = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path("batch")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(recipes, MediaType.APPLICATION_JSON), new GenericType<>() {
+                    });
+
+            assertEquals(List.of(
+                    new BatchItemResult(0, 201, 10L),
+                    new BatchItemResult(1, 500, null)), results);
+        }
+
+        @Test
+        @DisplayName("create recipes sent as NDJSON")
+        public void shouldCreateRecipesOfLines() {
+            when(recipeRepository.createRecipes(anyList())).thenAnswer(invocation -> {
+                List<Recipe> recipes = invocation.getArgument(0);
+                recipes.forEach(recipe -> recipe.setId(1L));
+                return recipes;
+            });
+
+            String lines = """
+                    {"name":"Recipe 1","description":"Recipe 1 description","durationInMinutes":50}
+
+                    {"name":"Recipe 2","description":"Recipe 2 description","durationInMinutes":10}
+                    """;
+
+            List<BatchItemResult> results = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path("batch")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(lines, RecipeBatches.NDJSON), new GenericType<>() {
+                    });
+
+            assertEquals(2, results.size());
+            assertTrue(results.stream().allMatch(BatchItemResult::isSuccess));
+        }
+
+        @Test
+        @DisplayName("reject malformed NDJSON")
+        public void shouldRejectMalformedLines() {
+            Response response = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path("batch")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity("{\"name\":", RecipeBatches.NDJSON));
+
+            assertEquals(400, response.getStatus());
+        }
+
+        @Test
+        @DisplayName("delete the recipes that exist and report the others as not found")
+        public void shouldDeleteExistingRecipes() {
+            when(recipeRepository.deleteRecipes(anyCollection()))
+                    .thenReturn(List.of(1L));
+
+            List<BatchItemResult> results = target
+                    .path(RECIPES_RESOURCE_PATH)
+                    .path("batch")
+                    .property(ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, true)
+                    .request(MediaType.APPLICATION_JSON)
+                    .method("DELETE", Entity.entity(List.of(1L, 2L), MediaType.APPLICATION_JSON), new GenericType<>() {
+                    });
+
+            assertEquals(List.of(new BatchItemResult(0, 204, 1L), new BatchItemResult(1, 404, 2L)), results);
+            verify(recipeRepository).deleteRecipes(List.of(1L, 2L));
+            verify(recipeRepository, never()).getRecipesByIds(anyCollection());
+        }
+    }
+
     private List<Recipe> getMockedRecipes() {
         return List.of(
-                getRecipe(3L, "Recipe 3", "Recipe 3 description", 50L),
                 getRecipe(1L, "Recipe 1", "Recipe 1 description", 50L),
-                getRecipe(2L, "Recipe 2", "Recipe 2 description", 50L)
+                getRecipe(2L, "Recipe 2", "Recipe 2 description", 50L),
+                getRecipe(3L, "Recipe 3", "Recipe 3 description", 50L)
         );
     }
 
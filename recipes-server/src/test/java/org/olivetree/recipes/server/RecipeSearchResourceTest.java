@@ -3,6 +3,7 @@ package org.olivetree.recipes.server;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.GenericType;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.grizzly.http.server.HttpServer;
@@ -15,10 +16,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.olivetree.recipes.domain.Recipe;
 import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.domain.RecipeSort;
 import org.olivetree.recipes.repository.RecipeRepository;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -50,8 +52,8 @@ public class RecipeSearchResourceTest {
 
         RecipeSearch search = new RecipeSearch(10L, 30L);
 
-        when(recipeRepository.findRecipes(search))
-                .thenReturn(Collections.emptyList());
+        when(recipeRepository.streamRecipes(search))
+                .thenAnswer(invocation -> Stream.empty());
 
         Response response = target
                 .path(SEARCH_RECIPES_RESOURCE_PATH)
@@ -60,8 +62,8 @@ public class RecipeSearchResourceTest {
 
         assertEquals(404, response.getStatus());
 
-        when(recipeRepository.findRecipes(search))
-                .thenReturn(Collections.emptyList());
+        when(recipeRepository.streamRecipes(search))
+                .thenAnswer(invocation -> Stream.empty());
 
         response = target
                 .path(SEARCH_RECIPES_RESOURCE_PATH)
@@ -78,8 +80,8 @@ public class RecipeSearchResourceTest {
 
         Recipe recipe = getRecipe(1L, "Spaghetti", "How to make Spaghetti", 10L);
 
-        when(recipeRepository.findRecipes(search))
-                .thenReturn(List.of(recipe));
+        when(recipeRepository.streamRecipes(search))
+                .thenReturn(Stream.of(recipe));
 
         Response response = target
                 .path(SEARCH_RECIPES_RESOURCE_PATH)
@@ -87,6 +89,38 @@ public class RecipeSearchResourceTest {
                 .post(Entity.entity(search, MediaType.APPLICATION_JSON));
 
         assertEquals(200, response.getStatus());
+
+        List<Recipe> recipes = response.readEntity(new GenericType<>() {
+        });
+        assertEquals("Spaghetti", recipes.get(0).getName());
+    }
+
+    @Test
+    @DisplayName("POST recipe search should pass the sort to the repository and page in that order")
+    public void shouldPageSortedSearch() {
+        RecipeSearch search = new RecipeSearch(10L, 30L);
+        RecipeSort sort = new RecipeSort(RecipeSort.Field.NAME, false);
+
+        when(recipeRepository.findRecipes(search, sort, null, 2))
+                .thenReturn(List.of(
+                        getRecipe(2L, "Lasagne", "How to make Lasagne", 30L),
+                        getRecipe(1L, "Spaghetti", "How to make Spaghetti", 10L)));
+
+        Response response = target
+                .path(SEARCH_RECIPES_RESOURCE_PATH)
+                .queryParam("limit", 1)
+                .queryParam("sort", "name")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(search, MediaType.APPLICATION_JSON));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("Lasagne,2", response.getHeaderString("X-Next-Cursor"));
+        assertTrue(response.getLink("next").getUri().getQuery().contains("sort=name"));
+        assertTrue(response.getLink("next").getUri().getQuery().contains("after=Lasagne,2"));
+
+        List<Recipe> recipes = response.readEntity(new GenericType<>() {
+        });
+        assertEquals(List.of("Lasagne"), recipes.stream().map(Recipe::getName).toList());
     }
 
     private Recipe getRecipe(Long id, String name, String description, Long duration) {
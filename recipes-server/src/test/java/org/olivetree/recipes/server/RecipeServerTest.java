@@ -0,0 +1,165 @@
+package org.olivetree.recipes.server;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.when;
+import static org.olivetree.recipes.server.metrics.MetricsResource.PROMETHEUS_TEXT;
+
+@ExtendWith(MockitoExtension.class)
+public class RecipeServerTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Nested
+    @DisplayName("Repository executor should")
+    public class RepositoryExecutorTest {
+        @Test
+        @DisplayName("run repository work off the HTTP worker threads")
+        public void shouldRunRepositoryWorkOnExecutor() {
+            AtomicReference<String> thread = new AtomicReference<>();
+            when(recipeRepository.getRecipeById(1L)).thenAnswer(invocation -> {
+                thread.set(Thread.currentThread().getName());
+                return Optional.empty();
+            });
+
+            HttpServer server = RecipeServer.createHttpServer(recipeRepository);
+            try {
+                assertEquals(404, get("recipes/1").getStatus());
+                assertTrue(thread.get().startsWith("recipes-repository-"), thread.get());
+            } finally {
+                server.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("answer 503 with Retry-After when the queue is full")
+        public void shouldRejectWhenQueueIsFull() throws Exception {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            when(recipeRepository.getRecipeById(1L)).thenAnswer(invocation -> {
+                started.countDown();
+                release.await();
+                return Optional.empty();
+            });
+
+            ServerConfig serverConfig = new ServerConfig(ExecutionMode.PLATFORM,
+                    new RepositoryExecutorConfig(1, 1, Duration.ofMinutes(1), 2), null, null, null);
+            HttpServer server = RecipeServer.createHttpServer(recipeRepository, serverConfig);
+            try {
+                Future<Response> running = getAsync("recipes/1");
+                assertTrue(started.await(5, TimeUnit.SECONDS));
+                Future<Response> queued = getAsync("recipes/1");
+                awaitMetric("recipes_repository_queue_depth 1");
+
+                Response rejected = get("recipes/1");
+                assertEquals(503, rejected.getStatus());
+                assertEquals("2", rejected.getHeaderString("Retry-After"));
+
+                release.countDown();
+                assertEquals(404, running.get(5, TimeUnit.SECONDS).getStatus());
+                assertEquals(404, queued.get(5, TimeUnit.SECONDS).getStatus());
+                awaitMetric("recipes_repository_rejected_total 1");
+            } finally {
+                release.countDown();
+                server.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("answer 500 when the repository work throws an error")
+        public void shouldAnswerErrors() throws Exception {
+            when(recipeRepository.getRecipeById(1L)).thenThrow(new AssertionError("Broken"));
+
+            HttpServer server = RecipeServer.createHttpServer(recipeRepository);
+            try {
+                // A request left suspended would never answer
+                assertEquals(500, getAsync("recipes/1").get(5, TimeUnit.SECONDS).getStatus());
+            } finally {
+                server.shutdownNow();
+            }
+        }
+
+        private void awaitMetric(String sample) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(!get("metrics").readEntity(String.class).contains(sample + "\n")) {
+                assertTrue(System.nanoTime() < deadline, "Metric never reached " + sample);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Virtual execution mode should")
+    public class VirtualExecutionModeTest {
+        @Test
+        @DisplayName("run resource methods on virtual threads")
+        public void shouldRunResourcesOnVirtualThreads() {
+            assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21");
+
+            AtomicReference<String> thread = new AtomicReference<>();
+            when(recipeRepository.getRecipeById(1L)).thenAnswer(invocation -> {
+                thread.set(Thread.currentThread().toString());
+                return Optional.empty();
+            });
+
+            HttpServer server = RecipeServer.createHttpServer(recipeRepository, ExecutionMode.VIRTUAL);
+            try {
+                Response response = ClientBuilder.newClient()
+                        .target(RecipeServer.BASE_URI)
+                        .path("recipes/1")
+                        .request(MediaType.APPLICATION_JSON)
+                        .get();
+
+                assertEquals(404, response.getStatus());
+                assertTrue(thread.get().startsWith("VirtualThread"), thread.get());
+            } finally {
+                server.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("refuse to start without virtual thread support")
+        public void shouldFailWithoutVirtualThreads() {
+            assumeTrue(Runtime.version().feature() < 21, "Virtual threads are supported");
+
+            assertThrows(IllegalStateException.class, () -> RecipeServer.createHttpServer(recipeRepository, ExecutionMode.VIRTUAL));
+        }
+    }
+
+    private static Response get(String path) {
+        return ClientBuilder.newClient()
+                .target(RecipeServer.BASE_URI)
+                .path(path)
+                .request(MediaType.APPLICATION_JSON, PROMETHEUS_TEXT)
+                .get();
+    }
+
+    private static Future<Response> getAsync(String path) {
+        return ClientBuilder.newClient()
+                .target(RecipeServer.BASE_URI)
+                .path(path)
+                .request(MediaType.APPLICATION_JSON)
+                .async()
+                .get();
+    }
+}
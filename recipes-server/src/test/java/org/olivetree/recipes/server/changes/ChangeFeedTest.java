@@ -0,0 +1,72 @@
+package org.olivetree.recipes.server.changes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.olivetree.recipes.server.changes.RecipeChange.Type.*;
+
+public class ChangeFeedTest {
+
+    private ChangeFeed feed;
+
+    @BeforeEach
+    public void setUp() {
+        feed = new ChangeFeed(3);
+    }
+
+    @Test
+    @DisplayName("Change feed should return the changes after a sequence in order")
+    public void shouldReturnChangesAfterSequence() throws InterruptedException {
+        feed.publish(CREATED, 1L, null);
+        feed.publish(UPDATED, 1L, null);
+        feed.publish(DELETED, 1L, null);
+
+        List<RecipeChange> changes = feed.awaitAfter(1, Duration.ZERO);
+
+        assertEquals(List.of(2L, 3L), changes.stream().map(RecipeChange::sequence).toList());
+        assertEquals(List.of(UPDATED, DELETED), changes.stream().map(RecipeChange::type).toList());
+    }
+
+    @Test
+    @DisplayName("Change feed should report a position that was overwritten")
+    public void shouldReportOverwrittenPosition() throws InterruptedException {
+        for(long id = 1; id <= 5; id++) {
+            feed.publish(CREATED, id, null);
+        }
+
+        assertNull(feed.awaitAfter(1, Duration.ZERO));
+        assertFalse(feed.isAvailable(1));
+        assertTrue(feed.isAvailable(2));
+        assertEquals(3, feed.awaitAfter(2, Duration.ZERO).size());
+        assertFalse(feed.isAvailable(6));
+    }
+
+    @Test
+    @DisplayName("Change feed should wake up readers waiting for a change")
+    public void shouldWakeUpWaitingReaders() throws Exception {
+        CompletableFuture<List<RecipeChange>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return feed.awaitAfter(0, Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        feed.publish(CREATED, 7L, null);
+
+        assertEquals(7L, waiting.get(5, TimeUnit.SECONDS).get(0).recipeId());
+    }
+
+    @Test
+    @DisplayName("Change feed should return nothing when no change came in time")
+    public void shouldReturnNothingAfterTimeout() throws InterruptedException {
+        assertEquals(List.of(), feed.awaitAfter(0, Duration.ofMillis(10)));
+    }
+}
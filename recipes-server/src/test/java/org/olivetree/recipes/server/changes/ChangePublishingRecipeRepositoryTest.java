@@ -0,0 +1,81 @@
+package org.olivetree.recipes.server.changes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.olivetree.recipes.server.changes.RecipeChange.Type.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChangePublishingRecipeRepositoryTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    private ChangeFeed feed;
+    private ChangePublishingRecipeRepository publishingRepository;
+
+    @BeforeEach
+    public void setUp() {
+        feed = new ChangeFeed(16);
+        publishingRepository = new ChangePublishingRecipeRepository(recipeRepository, feed);
+    }
+
+    @Test
+    @DisplayName("Batch deletes should only publish the recipes that were deleted")
+    public void shouldPublishDeletedIdsOnly() throws InterruptedException {
+        when(recipeRepository.deleteRecipes(List.of(1L, 2L, 3L))).thenReturn(List.of(1L, 3L));
+
+        assertEquals(List.of(1L, 3L), publishingRepository.deleteRecipes(List.of(1L, 2L, 3L)));
+
+        List<RecipeChange> changes = feed.awaitAfter(0, Duration.ZERO);
+        assertEquals(List.of(1L, 3L), changes.stream().map(RecipeChange::recipeId).toList());
+        assertEquals(List.of(DELETED, DELETED), changes.stream().map(RecipeChange::type).toList());
+    }
+
+    @Test
+    @DisplayName("Writes should publish the changes of a recipe in the order they were applied")
+    public void shouldPublishInWriteOrder() throws Exception {
+        AtomicReference<CompletableFuture<Optional<Recipe>>> concurrentUpdate = new AtomicReference<>();
+        // The second update starts while the first one is writing, and must not overtake it
+        when(recipeRepository.updateRecipe(eq(1L), any(Recipe.class))).thenAnswer(invocation -> {
+            concurrentUpdate.set(CompletableFuture.supplyAsync(() -> publishingRepository.updateRecipe(1L, getRecipe(1L, 3L))));
+            Thread.sleep(100);
+            return Optional.of(getRecipe(1L, 2L));
+        }).thenReturn(Optional.of(getRecipe(1L, 3L)));
+
+        publishingRepository.updateRecipe(1L, getRecipe(1L, null));
+        concurrentUpdate.get().get(5, TimeUnit.SECONDS);
+
+        List<RecipeChange> changes = feed.awaitAfter(0, Duration.ZERO);
+        assertEquals(List.of(2L, 3L), changes.stream().map(change -> change.recipe().getVersion()).toList());
+        verify(recipeRepository, times(2)).updateRecipe(eq(1L), any(Recipe.class));
+    }
+
+    private static Recipe getRecipe(Long id, Long version) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName("Recipe " + id);
+        recipe.setDescription("Recipe " + id + " description");
+        recipe.setDurationInMinutes(10L);
+        recipe.setVersion(version);
+
+        return recipe;
+    }
+}
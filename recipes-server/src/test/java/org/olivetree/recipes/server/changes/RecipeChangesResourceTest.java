@@ -0,0 +1,232 @@
+package org.olivetree.recipes.server.changes;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.ExecutionMode;
+import org.olivetree.recipes.server.RecipeServer;
+import org.olivetree.recipes.server.RepositoryExecutorConfig;
+import org.olivetree.recipes.server.ServerConfig;
+import org.olivetree.recipes.server.compression.CompressionConfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RecipeChangesResourceTest {
+    private static final String CHANGES_RESOURCE_PATH = "recipes/changes";
+
+    private HttpServer server;
+    private WebTarget target;
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        start(null);
+        target = ClientBuilder.newClient().target(RecipeServer.BASE_URI);
+
+        AtomicLong ids = new AtomicLong();
+        lenient().when(recipeRepository.createRecipe(any(Recipe.class))).thenAnswer(invocation -> {
+            Recipe recipe = invocation.getArgument(0);
+            recipe.setId(ids.incrementAndGet());
+            return recipe;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.shutdownNow();
+    }
+
+    private void start(CompressionConfig compressionConfig) {
+        server = RecipeServer.createHttpServer(recipeRepository, new ServerConfig(ExecutionMode.PLATFORM,
+                RepositoryExecutorConfig.defaults(), null, compressionConfig, new ChangeFeedConfig(4, 2, Duration.ofSeconds(15))));
+    }
+
+    @Test
+    @DisplayName("GET changes should stream the recipes created after subscribing")
+    public void shouldStreamCreatedRecipes() throws IOException {
+        try(Events events = new Events(subscribe(null))) {
+            post(getRecipe("Recipe 1"));
+
+            Map<String, String> event = events.next();
+            assertEquals("created", event.get("event"));
+            assertTrue(event.get("id").endsWith(":1"), event.get("id"));
+            assertTrue(event.get("data").contains("\"name\":\"Recipe 1\""), event.get("data"));
+        }
+    }
+
+    @Test
+    @DisplayName("GET changes should stream deletes with the id of the recipe")
+    public void shouldStreamDeletes() throws IOException {
+        when(recipeRepository.deleteRecipe(5L)).thenReturn(true);
+
+        try(Events events = new Events(subscribe(null))) {
+            assertEquals(204, target.path("recipes/5").request().delete().getStatus());
+
+            Map<String, String> event = events.next();
+            assertEquals("deleted", event.get("event"));
+            assertEquals("{\"id\":5}", event.get("data"));
+        }
+    }
+
+    @Test
+    @DisplayName("GET changes should resume after Last-Event-ID")
+    public void shouldResumeAfterLastEventId() throws IOException {
+        String lastEventId;
+        try(Events events = new Events(subscribe(null))) {
+            post(getRecipe("Recipe 1"));
+            lastEventId = events.next().get("id");
+        }
+
+        post(getRecipe("Recipe 2"));
+        post(getRecipe("Recipe 3"));
+
+        try(Events events = new Events(subscribe(lastEventId))) {
+            assertTrue(events.next().get("data").contains("\"name\":\"Recipe 2\""));
+            assertTrue(events.next().get("data").contains("\"name\":\"Recipe 3\""));
+        }
+    }
+
+    @Test
+    @DisplayName("GET changes should send a reset when Last-Event-ID is no longer in the feed")
+    public void shouldResetUnknownLastEventId() throws IOException {
+        post(getRecipe("Recipe 1"));
+
+        try(Events events = new Events(subscribe("lmn0p:1"))) {
+            Map<String, String> event = events.next();
+            assertEquals(ChangeSubscribers.RESET_EVENT, event.get("event"));
+            assertTrue(event.get("id").endsWith(":1"), event.get("id"));
+
+            post(getRecipe("Recipe 2"));
+            assertTrue(events.next().get("id").endsWith(":2"));
+        }
+    }
+
+    @Test
+    @DisplayName("GET changes should not compress events over the compression threshold")
+    public void shouldNotCompressEvents() throws IOException {
+        server.shutdownNow();
+        start(new CompressionConfig(1024));
+        Recipe recipe = getRecipe("Recipe 1");
+        recipe.setDescription("a".repeat(3000));
+
+        Response response = target
+                .path(CHANGES_RESOURCE_PATH)
+                .request(MediaType.SERVER_SENT_EVENTS)
+                .acceptEncoding("gzip")
+                // Compressed events would hold back their line ends, fail instead of waiting for them
+                .property(ClientProperties.READ_TIMEOUT, 5000)
+                .get();
+        try(Events events = new Events(response)) {
+            post(recipe);
+
+            Map<String, String> event = events.next();
+            assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertEquals("created", event.get("event"));
+            assertTrue(event.get("data").contains(recipe.getDescription()));
+        }
+    }
+
+    @Test
+    @DisplayName("GET changes should refuse subscribers above the limit")
+    public void shouldRefuseSubscribersAboveLimit() {
+        try(Response first = subscribe(null); Response second = subscribe(null)) {
+            assertEquals(200, first.getStatus());
+            assertEquals(200, second.getStatus());
+            assertEquals(503, subscribe(null).getStatus());
+        }
+    }
+
+    private Response subscribe(String lastEventId) {
+        return target
+                .path(CHANGES_RESOURCE_PATH)
+                .request(MediaType.SERVER_SENT_EVENTS)
+                .header(HttpHeaders.LAST_EVENT_ID_HEADER, lastEventId)
+                .get();
+    }
+
+    private void post(Recipe recipe) {
+        Response response = target
+                .path("recipes")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(recipe, MediaType.APPLICATION_JSON));
+
+        assertEquals(200, response.getStatus());
+    }
+
+    private Recipe getRecipe(String name) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setDescription(name + " description");
+        recipe.setDurationInMinutes(50L);
+
+        return recipe;
+    }
+
+    // Reads the events of a change stream
+    private static class Events implements AutoCloseable {
+        private final Response response;
+        private final BufferedReader reader;
+
+        Events(Response response) {
+            assertEquals(200, response.getStatus());
+            assertTrue(response.getMediaType().isCompatible(MediaType.SERVER_SENT_EVENTS_TYPE));
+
+            this.response = response;
+            this.reader = new BufferedReader(new InputStreamReader(response.readEntity(InputStream.class), StandardCharsets.UTF_8));
+        }
+
+        // The fields of the next event, skipping comments
+        Map<String, String> next() throws IOException {
+            Map<String, String> event = new HashMap<>();
+
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.isEmpty()) {
+                    if(!event.isEmpty()) {
+                        return event;
+                    }
+                } else if(!line.startsWith(":")) {
+                    int separator = line.indexOf(':');
+                    event.put(line.substring(0, separator), line.substring(separator + 1).trim());
+                }
+            }
+
+            throw new IOException("The stream ended before the next event");
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
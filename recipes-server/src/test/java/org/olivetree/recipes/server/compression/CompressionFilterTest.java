@@ -0,0 +1,193 @@
+package org.olivetree.recipes.server.compression;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.ExecutionMode;
+import org.olivetree.recipes.server.RecipeServer;
+import org.olivetree.recipes.server.RepositoryExecutorConfig;
+import org.olivetree.recipes.server.ServerConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CompressionFilterTest {
+
+    @Nested
+    @DisplayName("Accept-Encoding negotiation should")
+    public class NegotiationTests {
+        @ParameterizedTest(name = "{0} -> {1}")
+        @CsvSource(delimiter = '|', nullValues = "none", value = {
+                "gzip                    | gzip",
+                "deflate                 | deflate",
+                "deflate, gzip           | gzip",
+                "gzip;q=0.5, deflate     | deflate",
+                "gzip;q=0, deflate;q=0   | none",
+                "br, *;q=0.1             | gzip",
+                "identity                | none",
+                "*;q=0                   | none"
+        })
+        @DisplayName("pick the preferred supported coding")
+        public void shouldPickPreferredCoding(String acceptEncoding, String expected) {
+            assertEquals(expected, CompressionFilter.negotiate(acceptEncoding));
+        }
+    }
+
+    @Nested
+    @DisplayName("Compressed responses should")
+    public class ResponseTests {
+        private HttpServer server;
+        private WebTarget target;
+
+        @Mock
+        private RecipeRepository recipeRepository;
+
+        @BeforeEach
+        public void setUp() {
+            server = RecipeServer.createHttpServer(recipeRepository, new ServerConfig(ExecutionMode.PLATFORM,
+                    RepositoryExecutorConfig.defaults(), null, new CompressionConfig(512), null));
+            target = ClientBuilder.newClient().target(RecipeServer.BASE_URI);
+        }
+
+        @AfterEach
+        public void tearDown() {
+            server.shutdown();
+        }
+
+        @Test
+        @DisplayName("gzip a streamed list above the threshold")
+        public void shouldCompressLargeList() throws IOException {
+            when(recipeRepository.streamAllRecipes())
+                    .thenAnswer(invocation -> getRecipes(1000));
+
+            Response response = target
+                    .path("recipes")
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertEquals("gzip", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertTrue(response.getHeaderString(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+            // The identity body has the strong tag
+            assertEquals(new EntityTag("c0", true), response.getEntityTag());
+
+            byte[] compressed = response.readEntity(byte[].class);
+            try(GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                String json = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(json.endsWith("\"Recipe 1000 description\",\"durationInMinutes\":50,\"version\":null}]"));
+                assertTrue(compressed.length < json.length() / 4);
+            }
+        }
+
+        @Test
+        @DisplayName("send a response below the threshold as is")
+        public void shouldNotCompressSmallResponse() {
+            when(recipeRepository.getRecipeById(1L))
+                    .thenReturn(getRecipes(1).findFirst());
+
+            Response response = target
+                    .path("recipes/1")
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .get();
+
+            assertEquals(200, response.getStatus());
+            assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertEquals("Recipe 1", response.readEntity(Recipe.class).getName());
+        }
+
+        @Test
+        @DisplayName("not compress for clients that did not ask for it")
+        public void shouldNotCompressWithoutAcceptEncoding() {
+            when(recipeRepository.streamAllRecipes())
+                    .thenAnswer(invocation -> getRecipes(1000));
+
+            Response response = target
+                    .path("recipes")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+
+            assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(new EntityTag("c0"), response.getEntityTag());
+            assertEquals(1000, response.readEntity(new GenericType<List<Recipe>>() {
+            }).size());
+        }
+
+        @Test
+        @DisplayName("answer a conditional request with the weak tag of a compressed body")
+        public void shouldMatchWeakTagOfCompressedBody() {
+            Response response = target
+                    .path("recipes")
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .header(HttpHeaders.IF_NONE_MATCH, "W/\"c0\"")
+                    .get();
+
+            assertEquals(304, response.getStatus());
+        }
+
+        @Test
+        @DisplayName("be decoded by a client with Jersey's encoders")
+        public void shouldBeDecodedByClient() {
+            when(recipeRepository.streamAllRecipes())
+                    .thenAnswer(invocation -> getRecipes(1000));
+
+            Response response = ClientBuilder.newClient()
+                    .register(EncodingFilter.class)
+                    .register(DeflateEncoder.class)
+                    .target(RecipeServer.BASE_URI)
+                    .path("recipes")
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "deflate")
+                    .get();
+
+            assertEquals("deflate", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(1000, response.readEntity(new GenericType<List<Recipe>>() {
+            }).size());
+        }
+    }
+
+    private static Stream<Recipe> getRecipes(int count) {
+        return LongStream.rangeClosed(1, count).mapToObj(id -> getRecipe(id, "Recipe " + id, "Recipe " + id + " description", 50L));
+    }
+
+    private static Recipe getRecipe(Long id, String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
@@ -0,0 +1,80 @@
+package org.olivetree.recipes.server.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class LatencyHistogramTest {
+
+    @Nested
+    @DisplayName("Buckets should")
+    public class BucketTests {
+        @Test
+        @DisplayName("cover every value with a bounded relative error")
+        public void shouldBoundRelativeError() {
+            for(long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+                long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+
+                assertTrue(highest >= value);
+                assertTrue(highest - value <= value / 32, "value " + value + " reported as " + highest);
+            }
+            assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+        }
+    }
+
+    @Nested
+    @DisplayName("Quantiles should")
+    public class QuantileTests {
+        @Test
+        @DisplayName("report the recorded distribution")
+        public void shouldReportQuantiles() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for(long micros = 1; micros <= 1000; micros++) {
+                histogram.record(micros * 1000);
+            }
+
+            assertEquals(1000, histogram.getCount());
+            assertEquals(500_500_000L, histogram.getSumNanos());
+            assertEquals(500_000, histogram.getValueAtQuantile(0.5), 500_000 / 32.0);
+            assertEquals(990_000, histogram.getValueAtQuantile(0.99), 990_000 / 32.0);
+            assertEquals(1_000_000, histogram.getValueAtQuantile(1.0), 1_000_000 / 32.0);
+        }
+
+        @Test
+        @DisplayName("be zero when nothing was recorded")
+        public void shouldBeZeroWhenEmpty() {
+            assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+        }
+    }
+
+    @Nested
+    @DisplayName("Recording should")
+    public class RecordingTests {
+        @Test
+        @DisplayName("not allocate")
+        public void shouldNotAllocate() {
+            assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            CallMetrics metrics = new CallMetrics();
+            for(int i = 0; i < 100_000; i++) {
+                metrics.record(i, i % 10 == 0);
+            }
+
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for(int i = 0; i < 100_000; i++) {
+                metrics.record(i * 7919L, i % 10 == 0);
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            // The allocation counter itself may account a few bytes, 100k boxed values would be megabytes
+            assertTrue(allocated < 1024, allocated + " bytes allocated");
+        }
+    }
+}
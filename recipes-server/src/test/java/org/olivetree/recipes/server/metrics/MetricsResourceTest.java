@@ -0,0 +1,77 @@
+package org.olivetree.recipes.server.metrics;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+import org.olivetree.recipes.server.RecipeServer;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MetricsResourceTest {
+    private HttpServer server;
+    private WebTarget target;
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        server = RecipeServer.createHttpServer(recipeRepository);
+        target = ClientBuilder.newClient().target(RecipeServer.BASE_URI);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    @DisplayName("GET metrics should expose request and repository metrics in Prometheus format")
+    public void shouldExposeMetrics() {
+        Recipe recipe = new Recipe();
+        recipe.setId(1L);
+        recipe.setName("Recipe 1");
+        recipe.setDescription("Recipe 1 description");
+        recipe.setDurationInMinutes(50L);
+
+        when(recipeRepository.getRecipeById(1L)).thenReturn(Optional.of(recipe));
+        when(recipeRepository.getRecipeById(2L)).thenThrow(new RepositoryException("Database is gone"));
+
+        assertEquals(200, get("recipes/1").getStatus());
+        assertEquals(200, get("recipes/1").getStatus());
+        assertEquals(500, get("recipes/2").getStatus());
+
+        Response response = target.path("metrics").request().get();
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getMediaType().isCompatible(MediaType.TEXT_PLAIN_TYPE));
+
+        String metrics = response.readEntity(String.class);
+        assertTrue(metrics.contains("# TYPE recipes_http_request_duration_seconds summary\n"), metrics);
+        assertTrue(metrics.contains("recipes_http_requests_total{method=\"GET\",path=\"/recipes/{id}\"} 3\n"), metrics);
+        assertTrue(metrics.contains("recipes_http_errors_total{method=\"GET\",path=\"/recipes/{id}\"} 1\n"), metrics);
+        assertTrue(metrics.contains("recipes_http_request_duration_seconds{method=\"GET\",path=\"/recipes/{id}\",quantile=\"0.99\"} "), metrics);
+        assertTrue(metrics.contains("recipes_repository_calls_total{operation=\"getRecipeById\"} 3\n"), metrics);
+        assertTrue(metrics.contains("recipes_repository_errors_total{operation=\"getRecipeById\"} 1\n"), metrics);
+        assertTrue(metrics.contains("recipes_http_requests_total{method=\"POST\",path=\"/search/recipe\"} 0\n"), metrics);
+    }
+
+    private Response get(String path) {
+        return target.path(path).request(MediaType.APPLICATION_JSON).get();
+    }
+}
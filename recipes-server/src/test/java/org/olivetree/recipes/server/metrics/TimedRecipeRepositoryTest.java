@@ -0,0 +1,106 @@
+package org.olivetree.recipes.server.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.repository.exception.RepositoryException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TimedRecipeRepositoryTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    private MetricsRegistry registry;
+    private TimedRecipeRepository timedRepository;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new MetricsRegistry();
+        timedRepository = new TimedRecipeRepository(recipeRepository, registry);
+    }
+
+    @Test
+    @DisplayName("Calls should be recorded with their failures")
+    public void shouldRecordCalls() {
+        when(recipeRepository.getChangeCount()).thenReturn(3L).thenThrow(new RepositoryException("Database is gone"));
+
+        assertEquals(3L, timedRepository.getChangeCount());
+        assertThrows(RepositoryException.class, () -> timedRepository.getChangeCount());
+
+        CallMetrics metrics = registry.repositoryOperation("getChangeCount");
+        assertEquals(2, metrics.getCalls());
+        assertEquals(1, metrics.getErrors());
+    }
+
+    @Test
+    @DisplayName("Streams should be recorded once closed, after closing the repository stream")
+    public void shouldRecordStreamOnClose() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(recipeRepository.streamAllRecipes()).thenReturn(Stream.of(getRecipe(1L), getRecipe(2L)).onClose(() -> closed.set(true)));
+        CallMetrics metrics = registry.repositoryOperation("streamAllRecipes");
+
+        try(Stream<Recipe> recipes = timedRepository.streamAllRecipes()) {
+            assertEquals(2, recipes.count());
+            assertEquals(0, metrics.getCalls());
+        }
+
+        assertTrue(closed.get());
+        assertEquals(1, metrics.getCalls());
+        assertEquals(0, metrics.getErrors());
+    }
+
+    @Test
+    @DisplayName("Streams should be recorded as failed when reading them threw")
+    public void shouldRecordStreamFailingWhileRead() {
+        when(recipeRepository.streamAllRecipes()).thenReturn(Stream.of(1L, 2L).map(id -> {
+            if(id == 2L) {
+                throw new RepositoryException("Database is gone");
+            }
+            return getRecipe(id);
+        }));
+
+        try(Stream<Recipe> recipes = timedRepository.streamAllRecipes()) {
+            assertThrows(RepositoryException.class, () -> recipes.forEach(recipe -> {}));
+        }
+
+        assertEquals(1, registry.repositoryOperation("streamAllRecipes").getErrors());
+    }
+
+    @Test
+    @DisplayName("Streams should not be recorded as failed when their consumer threw")
+    public void shouldNotRecordConsumerFailures() {
+        when(recipeRepository.streamAllRecipes()).thenReturn(Stream.of(getRecipe(1L)));
+
+        try(Stream<Recipe> recipes = timedRepository.streamAllRecipes()) {
+            assertThrows(IllegalStateException.class, () -> recipes.iterator().forEachRemaining(recipe -> {
+                throw new IllegalStateException("Client is gone");
+            }));
+        }
+
+        CallMetrics metrics = registry.repositoryOperation("streamAllRecipes");
+        assertEquals(1, metrics.getCalls());
+        assertEquals(0, metrics.getErrors());
+    }
+
+    private static Recipe getRecipe(Long id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName("Recipe " + id);
+        recipe.setDescription("Recipe " + id + " description");
+        recipe.setDurationInMinutes(10L);
+
+        return recipe;
+    }
+}
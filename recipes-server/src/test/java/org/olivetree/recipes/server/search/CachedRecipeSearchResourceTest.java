@@ -0,0 +1,96 @@
+package org.olivetree.recipes.server.search;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeRepository;
+import org.olivetree.recipes.server.ExecutionMode;
+import org.olivetree.recipes.server.RecipeServer;
+import org.olivetree.recipes.server.RepositoryExecutorConfig;
+import org.olivetree.recipes.server.ServerConfig;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachedRecipeSearchResourceTest {
+    private HttpServer server;
+    private WebTarget target;
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        server = RecipeServer.createHttpServer(recipeRepository, new ServerConfig(ExecutionMode.PLATFORM, RepositoryExecutorConfig.defaults(), SearchCacheConfig.defaults(), null, null));
+        target = ClientBuilder.newClient().target(RecipeServer.BASE_URI);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    @DisplayName("POST recipe search should answer repeated searches from the cache until a write touches their range")
+    public void shouldCacheUntilMatchingWrite() {
+        RecipeSearch quick = new RecipeSearch(10L, 30L);
+        when(recipeRepository.streamRecipes(quick))
+                .thenAnswer(invocation -> Stream.of(getRecipe(1L, "Salad", "Green salad", 10L)));
+        when(recipeRepository.createRecipe(any(Recipe.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals("Salad", search(quick).get(0).getName());
+        assertEquals("Salad", search(quick).get(0).getName());
+        verify(recipeRepository, times(1)).streamRecipes(quick);
+
+        // Outside of the cached range
+        post("recipes", getRecipe(null, "Stew", "Beef stew", 120L));
+        search(quick);
+        verify(recipeRepository, times(1)).streamRecipes(quick);
+
+        post("recipes", getRecipe(null, "Soup", "Tomato soup", 20L));
+        search(quick);
+        verify(recipeRepository, times(2)).streamRecipes(quick);
+    }
+
+    private List<Recipe> search(RecipeSearch search) {
+        Response response = post("search/recipe", search);
+        assertEquals(200, response.getStatus());
+
+        return response.readEntity(new GenericType<>() {
+        });
+    }
+
+    private Response post(String path, Object entity) {
+        return target.path(path)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(entity, MediaType.APPLICATION_JSON));
+    }
+
+    private Recipe getRecipe(Long id, String name, String description, Long duration) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setDurationInMinutes(duration);
+
+        return recipe;
+    }
+}
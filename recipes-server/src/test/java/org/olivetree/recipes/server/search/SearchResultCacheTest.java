@@ -0,0 +1,173 @@
+package org.olivetree.recipes.server.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.olivetree.recipes.domain.Recipe;
+import org.olivetree.recipes.domain.RecipeSearch;
+import org.olivetree.recipes.repository.RecipeRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SearchResultCacheTest {
+
+    private static final RecipeSearch QUICK = new RecipeSearch(0L, 30L);
+    private static final RecipeSearch LONG = new RecipeSearch(60L, 240L);
+
+    private SearchResultCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new SearchResultCache(new SearchCacheConfig(100, 50));
+    }
+
+    @Nested
+    @DisplayName("Invalidation should")
+    public class InvalidationTests {
+        @Test
+        @DisplayName("only evict the ranges containing a written duration")
+        public void shouldEvictMatchingRanges() {
+            cache.put(QUICK, bytes("[quick]"), ids(1L), cache.generation());
+            cache.put(LONG, bytes("[long]"), ids(2L), cache.generation());
+            cache.put(new RecipeSearch(null, null, "soup"), bytes("[soup]"), ids(3L), cache.generation());
+
+            cache.invalidate(20L);
+
+            assertNull(cache.get(QUICK));
+            assertArrayEquals(bytes("[long]"), cache.get(LONG));
+            assertNull(cache.get(new RecipeSearch(null, null, "soup")));
+            assertEquals(2, cache.getStats().invalidations());
+        }
+
+        @Test
+        @DisplayName("reject results read before a write")
+        public void shouldRejectStaleResults() {
+            long generation = cache.generation();
+            cache.invalidate(200L);
+
+            cache.put(QUICK, bytes("[stale]"), ids(1L), generation);
+
+            assertNull(cache.get(QUICK));
+        }
+    }
+
+    @Nested
+    @DisplayName("Memory bound should")
+    public class MemoryBoundTests {
+        @Test
+        @DisplayName("evict the least recently used results")
+        public void shouldEvictLeastRecentlyUsed() {
+            cache.put(QUICK, new byte[40], ids(), cache.generation());
+            cache.put(LONG, new byte[40], ids(), cache.generation());
+            cache.get(QUICK);
+            cache.put(new RecipeSearch(30L, 60L), new byte[40], ids(), cache.generation());
+
+            assertNotNull(cache.get(QUICK));
+            assertNull(cache.get(LONG));
+            assertEquals(80, cache.getStats().bytes());
+            assertEquals(1, cache.getStats().evictions());
+        }
+
+        @Test
+        @DisplayName("stream results too large to cache without keeping them")
+        public void shouldNotCacheLargeResults() throws IOException {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+            cache.fillWhileWriting(QUICK, cache.generation(), output -> output.write(new byte[60]), () -> ids(1L)).write(response);
+            cache.fillWhileWriting(LONG, cache.generation(), output -> output.write(bytes("[long]")), () -> ids(2L)).write(response);
+
+            assertEquals(66, response.size());
+            assertNull(cache.get(QUICK));
+            assertArrayEquals(bytes("[long]"), cache.get(LONG));
+            assertEquals(0.5, cache.getStats().hitRate());
+        }
+    }
+
+    @Nested
+    @DisplayName("Invalidating repository should")
+    public class InvalidatingRepositoryTests {
+        private RecipeRepository recipeRepository;
+        private SearchCacheInvalidatingRecipeRepository invalidatingRepository;
+
+        @BeforeEach
+        public void setUp() {
+            recipeRepository = mock(RecipeRepository.class);
+            invalidatingRepository = new SearchCacheInvalidatingRecipeRepository(recipeRepository, cache);
+        }
+
+        @Test
+        @DisplayName("evict the searches holding an updated recipe and the range of its new duration without reading it")
+        public void shouldEvictByIdAndNewDuration() {
+            RecipeSearch middle = new RecipeSearch(30L, 60L);
+            when(recipeRepository.updateRecipe(eq(1L), any(Recipe.class))).thenReturn(Optional.of(getRecipe(100L)));
+            cache.put(QUICK, bytes("[quick with recipe]"), ids(1L, 2L), cache.generation());
+            cache.put(middle, bytes("[middle]"), ids(3L), cache.generation());
+            cache.put(LONG, bytes("[long]"), ids(4L), cache.generation());
+
+            invalidatingRepository.updateRecipe(1L, getRecipe(100L));
+
+            assertNull(cache.get(QUICK));
+            assertArrayEquals(bytes("[middle]"), cache.get(middle));
+            assertNull(cache.get(LONG));
+            verify(recipeRepository, never()).getRecipesByIds(anyCollection());
+        }
+
+        @Test
+        @DisplayName("evict the searches holding a recipe patched without a duration by the duration it kept")
+        public void shouldEvictByPatchedDuration() {
+            when(recipeRepository.patchRecipe(eq(1L), any(Recipe.class))).thenReturn(Optional.of(getRecipe(100L)));
+            cache.put(QUICK, bytes("[quick]"), ids(2L), cache.generation());
+            cache.put(LONG, bytes("[long]"), ids(), cache.generation());
+
+            invalidatingRepository.patchRecipe(1L, getRecipe(null));
+
+            assertArrayEquals(bytes("[quick]"), cache.get(QUICK));
+            assertNull(cache.get(LONG));
+        }
+
+        @Test
+        @DisplayName("evict the searches holding deleted recipes only")
+        public void shouldEvictDeletedRecipes() {
+            when(recipeRepository.deleteRecipes(anyCollection())).thenReturn(List.of(1L));
+            cache.put(QUICK, bytes("[quick]"), ids(2L), cache.generation());
+            cache.put(LONG, bytes("[long with recipe]"), ids(1L), cache.generation());
+
+            invalidatingRepository.deleteRecipes(List.of(1L));
+
+            assertArrayEquals(bytes("[quick]"), cache.get(QUICK));
+            assertNull(cache.get(LONG));
+        }
+
+        private static Recipe getRecipe(Long duration) {
+            Recipe recipe = new Recipe();
+            recipe.setId(1L);
+            recipe.setName("Recipe 1");
+            recipe.setDescription("Recipe 1 description");
+            recipe.setDurationInMinutes(duration);
+
+            return recipe;
+        }
+    }
+
+    private static long[] ids(long... ids) {
+        return ids;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}